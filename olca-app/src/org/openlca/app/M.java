@@ -31,6 +31,7 @@ public class M extends NLS {
 	public static String AddedValue;
 	public static String AdditionalInformation;
 	public static String Address;
+	public static String AffectedExchangesAndFactors;
 	public static String AdministrativeInformation;
 	public static String Aggregation;
 	public static String AggregationType;
@@ -116,6 +117,7 @@ public class M extends NLS {
 	public static String ComparingWithRepository;
 	public static String Complete;
 	public static String CompleteReferenceData;
+	public static String CompressBackup;
 	public static String Component;
 	public static String Configuration;
 	public static String ConfigureEcospoldMessage;
@@ -437,6 +439,7 @@ public class M extends NLS {
 	public static String LastChange;
 	public static String LastModificationDate;
 	public static String Latitude;
+	public static String Layered;
 	public static String Layout;
 	public static String LayoutAs;
 	public static String LciaCategoryDescriptionTable;
@@ -445,6 +448,7 @@ public class M extends NLS {
 	public static String Library;
 	public static String LibraryDataSets;
 	public static String Line;
+	public static String Loading;
 	public static String Local;
 	public static String LocalDatabase;
 	public static String LocalModel;
@@ -465,6 +469,7 @@ public class M extends NLS {
 	public static String BulkreplaceProviders;
 	public static String MatrixExport;
 	public static String MatrixFiles;
+	public static String MaxDepth;
 	public static String Maximize;
 	public static String MaximizeAll;
 	public static String Maximum;
@@ -3,8 +3,14 @@ package org.openlca.app;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.openlca.app.db.SearchIndex;
+import org.openlca.app.db.SearchIndex.Hit;
 import org.openlca.app.navigation.ModelTypeComparison;
 import org.openlca.app.util.Labels;
 import org.openlca.core.database.Daos;
@@ -12,6 +18,7 @@ import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.ParameterDao;
 import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.BaseDescriptor;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,6 +26,7 @@ class Search implements Runnable {
 
 	private Logger log = LoggerFactory.getLogger(getClass());
 	private IDatabase database;
+	private SearchIndex index;
 
 	ModelType typeFilter;
 	private String rawTerm;
@@ -26,7 +34,16 @@ class Search implements Runnable {
 	private List<BaseDescriptor> result = new ArrayList<>();
 
 	public Search(IDatabase database, String term) {
+		this(database, null, term);
+	}
+
+	/**
+	 * Creates a search that uses the given full-text index. If the index is
+	 * null, all descriptors of the database are scanned.
+	 */
+	public Search(IDatabase database, SearchIndex index, String term) {
 		this.database = database;
+		this.index = index;
 		this.rawTerm = term == null ? "" : term.toLowerCase().trim();
 		terms = rawTerm.split(" ");
 		for (int i = 0; i < terms.length; i++)
@@ -43,6 +60,10 @@ class Search implements Runnable {
 		if (rawTerm.isEmpty())
 			return;
 		log.trace("run search with term {}", rawTerm);
+		if (index != null) {
+			runIndexed();
+			return;
+		}
 		ModelType[] types = typeFilter == null ? getSearchTypes()
 				: new ModelType[] { typeFilter };
 		for (ModelType type : types) {
@@ -53,6 +74,31 @@ class Search implements Runnable {
 		log.trace("{} results fetched and ranked", result.size());
 	}
 
+	private void runIndexed() {
+		index.ensureBuilt();
+		List<Hit> hits = index.find(rawTerm, typeFilter);
+		Map<ModelType, Set<Long>> ids = new HashMap<>();
+		for (Hit hit : hits) {
+			Set<Long> set = ids.get(hit.type);
+			if (set == null)
+				ids.put(hit.type, set = new HashSet<>());
+			set.add(hit.id);
+		}
+		Map<String, CategorizedDescriptor> descriptors = new HashMap<>();
+		for (ModelType type : ids.keySet()) {
+			for (CategorizedDescriptor d : Daos.createCategorizedDao(
+					database, type).getDescriptors(ids.get(type)))
+				descriptors.put(type.name() + "/" + d.getId(), d);
+		}
+		// the hits are already ranked
+		for (Hit hit : hits) {
+			BaseDescriptor d = descriptors.get(hit.type.name() + "/" + hit.id);
+			if (d != null)
+				result.add(d);
+		}
+		log.trace("{} results fetched from index", result.size());
+	}
+
 	private ModelType[] getSearchTypes() {
 		return ModelTypeComparison.getOrderedTypes();
 	}
@@ -69,7 +69,8 @@ public class SearchText extends WorkbenchWindowControlContribution {
 			return;
 		}
 		String term = text.getText();
-		Search search = new Search(Database.get(), text.getText());
+		Search search = new Search(Database.get(),
+				Database.getSearchIndex(), text.getText());
 		search.typeFilter = typeFilter;
 		App.run(M.Searching, search,
 				() -> SearchResultView.show(term, search.getResult()));
@@ -2,10 +2,16 @@ package org.openlca.app.cloud.index;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
@@ -13,15 +19,48 @@ import org.openlca.cloud.api.RepositoryClient;
 import org.openlca.cloud.api.RepositoryConfig;
 import org.openlca.cloud.model.data.Dataset;
 import org.openlca.core.model.ModelType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-// NOT SYNCHRONIZED //
+/**
+ * The index of the differences between the local database and the
+ * repository. The diffs are read through an in-memory cache and changes are
+ * first only applied to this cache. A commit schedules a write of all changed
+ * diffs to the index file which is executed in a background thread after a
+ * short delay, so that many changes (e.g. from an import) result in a single
+ * write. Parents that are updated by many changed children are thus also
+ * written only once. All methods of this class are thread-safe: the cached
+ * diffs are never modified but replaced by modified copies (copy-on-write),
+ * so that they can be read without locking.
+ *
+ * Registered listeners are notified together with the delayed write about
+ * the datasets and model types for which the changed state (the dataset or
+ * one of its descendants was changed) flipped since the last notification.
+ */
 public class DiffIndex {
 
-	private File file;
+	/** The delay in milliseconds after which changes are written. */
+	private static final long WRITE_DELAY = 500;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final File file;
 	private DB db;
 	private Map<String, Diff> index;
 	private Map<String, Set<String>> changedTopLevelElements;
 
+	private final Map<String, Diff> cache = new ConcurrentHashMap<>();
+	private final Map<String, Set<String>> topLevel = new ConcurrentHashMap<>();
+	private final Set<String> dirty = new HashSet<>();
+	private final Set<String> dirtyTopLevel = new HashSet<>();
+	private final ScheduledExecutorService writer;
+	private boolean writeScheduled;
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+	/** The changed states of the datasets before the pending notification. */
+	private final Map<String, Boolean> states = new HashMap<>();
+	/** The changed states of the model types before the pending notification. */
+	private final Map<String, Boolean> typeStates = new HashMap<>();
+
 	public static DiffIndex getFor(RepositoryClient client) {
 		RepositoryConfig config = client.getConfig();
 		return new DiffIndex(new File(config.getDatabase()
@@ -33,36 +72,68 @@ public class DiffIndex {
 			indexDirectory.mkdirs();
 		file = new File(indexDirectory, "indexfile");
 		createDb(file);
+		writer = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+			Thread thread = new Thread(runnable, "DiffIndex writer");
+			thread.setDaemon(true);
+			return thread;
+		});
 	}
 
 	private void createDb(File file) {
 		db = DBMaker.fileDB(file).lockDisable().closeOnJvmShutdown().make();
 		index = db.hashMap("diffIndex");
 		changedTopLevelElements = db.hashMap("changedTopLevelElements");
+		for (Map.Entry<String, Set<String>> e : changedTopLevelElements
+				.entrySet()) {
+			Set<String> elements = ConcurrentHashMap.newKeySet();
+			elements.addAll(e.getValue());
+			topLevel.put(e.getKey(), elements);
+		}
 	}
 
-	public void close() {
-		if (!db.isClosed())
-			db.close();
+	public synchronized void close() {
+		writer.shutdownNow();
+		if (db.isClosed())
+			return;
+		write();
+		db.close();
 	}
 
-	public void clear() {
+	public synchronized void clear() {
+		states.clear();
+		typeStates.clear();
+		cache.clear();
+		topLevel.clear();
+		dirty.clear();
+		dirtyTopLevel.clear();
 		index.clear();
 		changedTopLevelElements.clear();
-		commit();
+		db.commit();
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
 	}
 
-	public void add(Dataset dataset, long localId) {
-		Diff diff = index.get(dataset.refId);
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	public synchronized void add(Dataset dataset, long localId) {
+		Diff diff = load(dataset.refId);
 		if (diff != null)
 			return;
+		mark(dataset);
 		diff = new Diff(dataset, DiffType.NO_DIFF);
 		diff.localId = localId;
-		index.put(dataset.refId, diff);
+		put(diff, dataset.refId);
 	}
 
-	public void update(Dataset dataset, DiffType newType) {
-		Diff diff = index.get(dataset.refId);
+	public synchronized void update(Dataset dataset, DiffType newType) {
+		Diff diff = edit(dataset.refId);
+		mark(dataset);
+		mark(diff.dataset);
+		mark(diff.changed);
 		if (diff.type == DiffType.NEW && newType == DiffType.DELETED) {
 			// user added something and then deleted it again
 			remove(dataset.refId);
@@ -83,49 +154,126 @@ public class DiffIndex {
 		}
 		if (dataset.categoryRefId == null)
 			updateChangedTopLevelElements(dataset, newType);
-		index.put(dataset.refId, diff);
+		put(diff, dataset.refId);
 	}
 
 	private void updateChangedTopLevelElements(Dataset dataset, DiffType newType) {
 		String type = dataset.categoryType.name();
-		Set<String> elements = changedTopLevelElements.get(type);
-		if (elements == null)
-			elements = new HashSet<>();
-		if (newType == DiffType.NO_DIFF)
-			elements.remove(dataset.refId);
-		else
-			elements.add(dataset.refId);
-		if (elements.isEmpty())
-			changedTopLevelElements.remove(type);
-		else
-			changedTopLevelElements.put(type, elements);
+		Set<String> elements = topLevel.get(type);
+		if (elements == null) {
+			if (newType == DiffType.NO_DIFF)
+				return;
+			elements = ConcurrentHashMap.newKeySet();
+			topLevel.put(type, elements);
+		}
+		boolean changed = newType == DiffType.NO_DIFF
+				? elements.remove(dataset.refId)
+				: elements.add(dataset.refId);
+		if (changed)
+			dirtyTopLevel.add(type);
 	}
 
+	/**
+	 * Returns the diff with the given reference ID. The returned diff is the
+	 * cached instance and must not be modified; it is replaced by a new
+	 * instance when the diff changes.
+	 */
 	public Diff get(String key) {
-		return index.get(key);
+		if (key == null)
+			return null;
+		Diff diff = cache.get(key);
+		if (diff != null)
+			return diff;
+		synchronized (this) {
+			return load(key);
+		}
+	}
+
+	/** Must be called in a synchronized block. */
+	private Diff load(String key) {
+		Diff diff = cache.get(key);
+		if (diff != null || dirty.contains(key))
+			return diff;
+		diff = index.get(key);
+		if (diff != null)
+			cache.put(key, diff);
+		return diff;
+	}
+
+	/**
+	 * Returns a copy of the diff with the given key that can be modified and
+	 * then stored via {@link #put(Diff, String)}; must be called in a
+	 * synchronized block.
+	 */
+	private Diff edit(String key) {
+		Diff diff = load(key);
+		if (diff == null)
+			return null;
+		Diff copy = diff.copy();
+		copy.changedChildren = new HashSet<>(diff.changedChildren);
+		return copy;
+	}
+
+	private void put(Diff diff, String key) {
+		cache.put(key, diff);
+		dirty.add(key);
 	}
 
-	public List<Diff> getChanged() {
+	public synchronized List<Diff> getChanged() {
 		List<Diff> changed = new ArrayList<>();
-		for (Diff diff : index.values())
+		for (Diff diff : getAll())
 			if (diff.hasChanged())
 				changed.add(diff);
 		return changed;
 	}
 
-	public List<Diff> getAll() {
-		return new ArrayList<>(index.values());
+	public synchronized List<Diff> getAll() {
+		write();
+		List<Diff> all = new ArrayList<>();
+		for (Map.Entry<String, Diff> e : index.entrySet()) {
+			Diff cached = cache.get(e.getKey());
+			all.add(cached != null ? cached : e.getValue());
+		}
+		return all;
 	}
 
 	public boolean hasChanged(ModelType type) {
-		Set<String> elements = changedTopLevelElements.get(type.name());
+		return type != null && hasChanged(type.name());
+	}
+
+	private boolean hasChanged(String type) {
+		Set<String> elements = topLevel.get(type);
 		return elements != null && !elements.isEmpty();
 	}
 
-	public void remove(String key) {
-		Diff diff = index.remove(key);
+	/** Returns true if there is any changed dataset in the index. */
+	public boolean hasChanges() {
+		for (Set<String> elements : topLevel.values())
+			if (!elements.isEmpty())
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns true if the dataset with the given reference ID or one of its
+	 * descendants was changed.
+	 */
+	public boolean isChanged(String refId) {
+		return isChanged(get(refId));
+	}
+
+	private boolean isChanged(Diff diff) {
+		return diff != null && (diff.hasChanged() || diff.childrenHaveChanged());
+	}
+
+	public synchronized void remove(String key) {
+		Diff diff = load(key);
 		if (diff == null)
 			return;
+		mark(diff.dataset);
+		mark(diff.changed);
+		cache.remove(key);
+		dirty.add(key);
 		updateChangedTopLevelElements(diff.getDataset(), DiffType.NO_DIFF);
 		updateParents(diff, false);
 	}
@@ -140,12 +288,12 @@ public class DiffIndex {
 	private void updateParents(Dataset dataset, boolean add) {
 		String parentId = dataset.categoryRefId;
 		while (parentId != null) {
-			Diff parent = index.get(parentId);
-			if (add)
-				parent.changedChildren.add(dataset.refId);
-			else
-				parent.changedChildren.remove(dataset.refId);
-			index.put(parentId, parent);
+			Diff parent = edit(parentId);
+			boolean changed = add
+					? parent.changedChildren.add(dataset.refId)
+					: parent.changedChildren.remove(dataset.refId);
+			if (changed)
+				put(parent, parentId);
 			parentId = parent.dataset.categoryRefId;
 		}
 		if (add)
@@ -154,8 +302,117 @@ public class DiffIndex {
 			updateChangedTopLevelElements(dataset, DiffType.NO_DIFF);
 	}
 
-	public void commit() {
+	/**
+	 * Schedules the write of the changed diffs to the index file and the
+	 * notification of the listeners. Both are executed after a short delay in
+	 * a background thread so that multiple commits are combined into a single
+	 * write and a single notification.
+	 */
+	public synchronized void commit() {
+		if (writeScheduled)
+			return;
+		if (dirty.isEmpty() && dirtyTopLevel.isEmpty() && states.isEmpty()
+				&& typeStates.isEmpty())
+			return;
+		if (writer.isShutdown()) {
+			flush();
+			return;
+		}
+		writeScheduled = true;
+		writer.schedule(() -> {
+			synchronized (this) {
+				writeScheduled = false;
+				if (!db.isClosed())
+					flush();
+			}
+		}, WRITE_DELAY, TimeUnit.MILLISECONDS);
+	}
+
+	/** Must be called in a synchronized block. */
+	private void flush() {
+		write();
+		notifyListeners();
+	}
+
+	/**
+	 * Remembers the changed states of the given dataset, its parent
+	 * categories, and its model type before they are modified.
+	 */
+	private void mark(Dataset dataset) {
+		if (dataset == null || listeners.isEmpty())
+			return;
+		String key = dataset.refId;
+		while (key != null) {
+			Diff diff = load(key);
+			if (!states.containsKey(key))
+				states.put(key, isChanged(diff));
+			if (diff != null && diff.dataset != null)
+				key = diff.dataset.categoryRefId;
+			else
+				key = key.equals(dataset.refId) ? dataset.categoryRefId : null;
+		}
+		if (dataset.categoryType == null)
+			return;
+		String type = dataset.categoryType.name();
+		if (!typeStates.containsKey(type))
+			typeStates.put(type, hasChanged(type));
+	}
+
+	private void notifyListeners() {
+		if (states.isEmpty() && typeStates.isEmpty())
+			return;
+		Set<String> refIds = new HashSet<>();
+		for (Map.Entry<String, Boolean> e : states.entrySet()) {
+			if (isChanged(load(e.getKey())) != e.getValue())
+				refIds.add(e.getKey());
+		}
+		Set<ModelType> types = new HashSet<>();
+		for (Map.Entry<String, Boolean> e : typeStates.entrySet()) {
+			if (hasChanged(e.getKey()) != e.getValue())
+				types.add(ModelType.valueOf(e.getKey()));
+		}
+		states.clear();
+		typeStates.clear();
+		if (refIds.isEmpty() && types.isEmpty())
+			return;
+		for (Listener listener : listeners)
+			listener.stateChanged(refIds, types);
+	}
+
+	/** Writes the changed diffs; must be called in a synchronized block. */
+	private void write() {
+		if (dirty.isEmpty() && dirtyTopLevel.isEmpty())
+			return;
+		log.trace("write {} changed diffs", dirty.size());
+		Map<String, Diff> puts = new HashMap<>();
+		for (String key : dirty) {
+			Diff diff = cache.get(key);
+			if (diff == null)
+				index.remove(key);
+			else
+				puts.put(key, diff);
+		}
+		index.putAll(puts);
+		for (String type : dirtyTopLevel) {
+			Set<String> elements = topLevel.get(type);
+			if (elements == null || elements.isEmpty())
+				changedTopLevelElements.remove(type);
+			else
+				changedTopLevelElements.put(type, new HashSet<>(elements));
+		}
+		dirty.clear();
+		dirtyTopLevel.clear();
 		db.commit();
 	}
 
+	public interface Listener {
+
+		/**
+		 * Called when the changed state of the datasets with the given
+		 * reference IDs or of the given model types flipped.
+		 */
+		void stateChanged(Set<String> refIds, Set<ModelType> types);
+
+	}
+
 }
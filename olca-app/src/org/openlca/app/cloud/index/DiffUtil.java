@@ -1,8 +1,9 @@
 package org.openlca.app.cloud.index;
 
-import org.openlca.app.cloud.CloudUtil;
 import org.openlca.app.db.Database;
 import org.openlca.app.navigation.CategoryElement;
+import org.openlca.app.navigation.DatabaseElement;
+import org.openlca.app.navigation.GroupElement;
 import org.openlca.app.navigation.INavigationElement;
 import org.openlca.app.navigation.ModelElement;
 import org.openlca.app.navigation.ModelTypeElement;
@@ -11,22 +12,54 @@ import org.openlca.core.model.ModelType;
 
 public class DiffUtil {
 
+	/**
+	 * Returns true if the dataset of the given element or one of its
+	 * descendants was changed. This is a constant time lookup in the diff index
+	 * and does not load the child elements (except for unknown element types).
+	 */
 	public static boolean hasChanged(INavigationElement<?> element) {
-		if (element instanceof CategoryElement)
-			return hasChanged(CloudUtil.toDataset(element));
-		if (element instanceof ModelElement)
-			return hasChanged(CloudUtil.toDataset(element));
+		DiffIndex index = Database.getDiffIndex();
+		if (index == null || element == null)
+			return false;
+		if (element instanceof CategoryElement
+				|| element instanceof ModelElement)
+			return index.isChanged(getRefId(element));
 		if (element instanceof ModelTypeElement)
 			return hasChanged(((ModelTypeElement) element).getContent());
+		if (element instanceof GroupElement) {
+			for (ModelType type : ((GroupElement) element).getContent().types)
+				if (hasChanged(type))
+					return true;
+			return false;
+		}
+		if (element instanceof DatabaseElement) {
+			DatabaseElement e = (DatabaseElement) element;
+			return Database.isActive(e.getContent()) && index.hasChanges();
+		}
 		for (INavigationElement<?> child : element.getChildren())
 			if (hasChanged(child))
 				return true;
 		return false;
 	}
 
-	private static boolean hasChanged(Dataset dataset) {
-		Diff diff = getDiff(dataset);
-		return diff.hasChanged() || diff.childrenHaveChanged();
+	/**
+	 * Returns the diff of the given category or model element or null if the
+	 * element is not a category or model element.
+	 */
+	public static Diff getDiff(INavigationElement<?> element) {
+		String refId = getRefId(element);
+		DiffIndex index = Database.getDiffIndex();
+		if (refId == null || index == null)
+			return null;
+		return index.get(refId);
+	}
+
+	private static String getRefId(INavigationElement<?> element) {
+		if (element instanceof CategoryElement)
+			return ((CategoryElement) element).getContent().getRefId();
+		if (element instanceof ModelElement)
+			return ((ModelElement) element).getContent().getRefId();
+		return null;
 	}
 
 	private static boolean hasChanged(ModelType type) {
@@ -1,6 +1,7 @@
 package org.openlca.app.components.replace;
 
 import java.util.List;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import org.eclipse.jface.viewers.ComboViewer;
@@ -14,13 +15,22 @@ class FilterOnKey extends KeyAdapter {
 
 	private boolean active = true;
 	private final ComboViewer viewer;
-	private final NameFilter filter;
-	private final Supplier<List<?>> inputSupplier;
+	private final Function<String, List<?>> search;
 
 	FilterOnKey(ComboViewer viewer, NameFilter filter, Supplier<List<?>> inputSupplier) {
+		this(viewer, (text) -> {
+			filter.filter = text.toLowerCase();
+			return inputSupplier.get();
+		});
+	}
+
+	/**
+	 * Creates a key listener that sets the result of the given search
+	 * function for the current text of the combo as input of the viewer.
+	 */
+	FilterOnKey(ComboViewer viewer, Function<String, List<?>> search) {
 		this.viewer = viewer;
-		this.filter = filter;
-		this.inputSupplier = inputSupplier;
+		this.search = search;
 	}
 
 	@Override
@@ -30,8 +40,7 @@ class FilterOnKey extends KeyAdapter {
 		active = false;
 		String text = viewer.getCCombo().getText();
 		Point caret = viewer.getCCombo().getSelection();
-		filter.filter = text.toLowerCase();
-		viewer.setInput(inputSupplier.get());
+		viewer.setInput(search.apply(text));
 		viewer.setSelection(new StructuredSelection(new FlowDescriptor()));
 		viewer.getCCombo().setText(text);
 		viewer.getCCombo().setSelection(caret);
@@ -0,0 +1,203 @@
+package org.openlca.app.components.replace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.openlca.core.database.FlowDao;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.descriptors.BaseDescriptor;
+import org.openlca.core.model.descriptors.FlowDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory index of the flows of a database for the flow replacement. The
+ * flows are loaded once and partitioned by their reference flow property and
+ * flow type so that the replacement candidates of a flow can be directly
+ * taken from its partition.
+ */
+class FlowIndex {
+
+	private final List<FlowDescriptor> used = new ArrayList<>();
+	private final Map<Long, Partition> partitionOf = new HashMap<>();
+
+	private FlowIndex() {
+	}
+
+	static FlowIndex build(IDatabase db) {
+		FlowIndex index = new FlowIndex();
+		FlowDao dao = new FlowDao(db);
+		Map<Long, Long> properties = new HashMap<>();
+		try {
+			NativeSql.on(db).query(
+					"SELECT id, f_reference_flow_property FROM tbl_flows",
+					(rs) -> {
+						properties.put(rs.getLong(1), rs.getLong(2));
+						return true;
+					});
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(FlowIndex.class);
+			log.error("failed to load reference flow properties", e);
+		}
+		Map<Partition, Partition> partitions = new HashMap<>();
+		Set<Long> usedIds = dao.getUsed();
+		for (FlowDescriptor flow : dao.getDescriptors()) {
+			if (usedIds.contains(flow.getId()))
+				index.used.add(flow);
+			Long property = properties.get(flow.getId());
+			if (property == null || property == 0)
+				continue;
+			Partition key = new Partition(property, flow.getFlowType());
+			Partition partition = partitions.get(key);
+			if (partition == null) {
+				partition = key;
+				partitions.put(key, partition);
+			}
+			partition.flows.add(flow);
+			index.partitionOf.put(flow.getId(), partition);
+		}
+		return index;
+	}
+
+	/** Returns the flows that are used in exchanges. */
+	List<FlowDescriptor> getUsed() {
+		return used;
+	}
+
+	/**
+	 * Returns the flows with the same reference flow property and flow type as
+	 * the given flow (without the flow itself).
+	 */
+	List<FlowDescriptor> getCandidates(FlowDescriptor flow) {
+		if (flow == null)
+			return new ArrayList<>();
+		Partition partition = partitionOf.get(flow.getId());
+		if (partition == null)
+			return new ArrayList<>();
+		List<FlowDescriptor> candidates = new ArrayList<>(
+				partition.flows.size());
+		for (FlowDescriptor candidate : partition.flows) {
+			if (candidate.getId() != flow.getId())
+				candidates.add(candidate);
+		}
+		return candidates;
+	}
+
+	private static class Partition {
+
+		final long property;
+		final FlowType type;
+		final List<FlowDescriptor> flows = new ArrayList<>();
+
+		Partition(long property, FlowType type) {
+			this.property = property;
+			this.type = type;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Partition))
+				return false;
+			Partition other = (Partition) obj;
+			return property == other.property && type == other.type;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(property, type);
+		}
+	}
+
+	/**
+	 * A prefix search over the words of the descriptor names. A descriptor
+	 * matches a search text when each word of the text is the prefix of a word
+	 * in its name. The words are kept in a sorted array so that the
+	 * descriptors with a word prefix can be found via binary search.
+	 */
+	static class Search<T extends BaseDescriptor> {
+
+		private final List<T> items;
+		private final String[] words;
+		private final int[] owners;
+
+		Search(List<T> items) {
+			this.items = items;
+			List<String> wordList = new ArrayList<>();
+			List<Integer> ownerList = new ArrayList<>();
+			for (int i = 0; i < items.size(); i++) {
+				for (String word : split(items.get(i).getName())) {
+					wordList.add(word);
+					ownerList.add(i);
+				}
+			}
+			Integer[] order = new Integer[wordList.size()];
+			for (int i = 0; i < order.length; i++)
+				order[i] = i;
+			Arrays.sort(order, (i, j) -> wordList.get(i).compareTo(
+					wordList.get(j)));
+			words = new String[order.length];
+			owners = new int[order.length];
+			for (int i = 0; i < order.length; i++) {
+				words[i] = wordList.get(order[i]);
+				owners[i] = ownerList.get(order[i]);
+			}
+		}
+
+		/** Returns the matching items in their original order. */
+		List<T> find(String text) {
+			String[] prefixes = split(text);
+			if (prefixes.length == 0)
+				return new ArrayList<>(items);
+			BitSet matches = null;
+			for (String prefix : prefixes) {
+				BitSet m = new BitSet(items.size());
+				int i = lowerBound(prefix);
+				while (i < words.length && words[i].startsWith(prefix)) {
+					m.set(owners[i]);
+					i++;
+				}
+				if (matches == null)
+					matches = m;
+				else
+					matches.and(m);
+				if (matches.isEmpty())
+					break;
+			}
+			List<T> result = new ArrayList<>(matches.cardinality());
+			for (int i = matches.nextSetBit(0); i >= 0; i = matches
+					.nextSetBit(i + 1))
+				result.add(items.get(i));
+			return result;
+		}
+
+		private int lowerBound(String prefix) {
+			int low = 0;
+			int high = words.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (words[mid].compareTo(prefix) < 0)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			return low;
+		}
+
+		private static String[] split(String text) {
+			if (text == null)
+				return new String[0];
+			String t = text.trim().toLowerCase();
+			if (t.isEmpty())
+				return new String[0];
+			return t.split("[\\s,;/()\\[\\]]+");
+		}
+	}
+}
@@ -2,11 +2,12 @@ package org.openlca.app.components.replace;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 import org.eclipse.jface.dialogs.IDialogConstants;
+import org.eclipse.jface.dialogs.ProgressMonitorDialog;
 import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.ComboViewer;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.CCombo;
 import org.eclipse.swt.layout.GridData;
@@ -20,25 +21,33 @@ import org.eclipse.ui.forms.widgets.FormToolkit;
 import org.openlca.app.M;
 import org.openlca.app.db.Cache;
 import org.openlca.app.db.Database;
+import org.openlca.app.util.Controls;
 import org.openlca.app.util.Info;
 import org.openlca.app.util.Labels;
 import org.openlca.app.util.UI;
 import org.openlca.app.util.viewers.Viewers;
 import org.openlca.app.viewers.BaseLabelProvider;
 import org.openlca.app.viewers.BaseNameSorter;
-import org.openlca.core.database.Daos;
 import org.openlca.core.database.FlowDao;
+import org.openlca.core.database.NativeSql;
 import org.openlca.core.model.Category;
-import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.FlowDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class ReplaceFlowsDialog extends FormDialog {
 
-	private List<FlowDescriptor> usedInExchanges;
-	private List<FlowDescriptor> replacementCandidates;
+	private Logger log = LoggerFactory.getLogger(getClass());
+
+	private final FlowIndex index = FlowIndex.build(Database.get());
+	private FlowIndex.Search<FlowDescriptor> usedSearch;
+	private FlowIndex.Search<FlowDescriptor> candidateSearch;
 	private ComboViewer selectionViewer;
 	private ComboViewer replacementViewer;
 	private Button excludeWithProviders;
+	private Label countLabel;
+	private org.eclipse.swt.widgets.List pairList;
+	private final List<Pair> pairs = new ArrayList<>();
 
 	public static void openDialog() {
 		if (Database.get() == null) {
@@ -71,7 +80,7 @@ public class ReplaceFlowsDialog extends FormDialog {
 	private void createTop(Composite parent, FormToolkit toolkit) {
 		Composite top = UI.formComposite(parent, toolkit);
 		UI.gridLayout(top, 2, 20, 5);
-		usedInExchanges = getUsedInExchanges();
+		usedSearch = new FlowIndex.Search<>(index.getUsed());
 		selectionViewer = createSelectionViewer(top, toolkit);
 		replacementViewer = createReplacementViewer(top, toolkit);
 		toolkit.paintBordersFor(top);
@@ -83,11 +92,51 @@ public class ReplaceFlowsDialog extends FormDialog {
 		UI.gridLayout(bottom, 2, 20, 5);
 		excludeWithProviders = UI.formCheckbox(bottom, toolkit);
 		UI.formLabel(bottom, toolkit, M.ExcludeExchangesWithDefaultProviders);
+		Controls.onSelect(excludeWithProviders, (e) -> updateCount());
 		toolkit.paintBordersFor(bottom);
 		toolkit.adapt(bottom);
+		countLabel = toolkit.createLabel(parent, "");
+		UI.gridData(countLabel, true, false);
+		createPairList(parent, toolkit);
 		createNote(parent, toolkit);
 	}
 
+	/**
+	 * Creates the list of flow pairs that are replaced together when the
+	 * dialog is confirmed.
+	 */
+	private void createPairList(Composite parent, FormToolkit toolkit) {
+		Composite comp = UI.formComposite(parent, toolkit);
+		UI.gridLayout(comp, 2, 10, 0);
+		UI.gridData(comp, true, false);
+		pairList = new org.eclipse.swt.widgets.List(comp,
+				SWT.BORDER | SWT.MULTI | SWT.V_SCROLL);
+		GridData gd = UI.gridData(pairList, true, false);
+		gd.heightHint = 80;
+		gd.widthHint = 300;
+		Composite buttons = toolkit.createComposite(comp);
+		UI.gridLayout(buttons, 1, 0, 0);
+		Button add = toolkit.createButton(buttons, M.Add, SWT.NONE);
+		UI.gridData(add, true, false);
+		Controls.onSelect(add, (e) -> {
+			Pair pair = selectedPair();
+			if (pair == null || pairs.contains(pair))
+				return;
+			pairs.add(pair);
+			pairList.add(pair.toString());
+			updateButtons();
+		});
+		Button remove = toolkit.createButton(buttons, M.Remove, SWT.NONE);
+		UI.gridData(remove, true, false);
+		Controls.onSelect(remove, (e) -> {
+			int[] selection = pairList.getSelectionIndices();
+			for (int i = selection.length - 1; i >= 0; i--)
+				pairs.remove(selection[i]);
+			pairList.remove(selection);
+			updateButtons();
+		});
+	}
+
 	private void createNote(Composite parent, FormToolkit toolkit) {
 		String note = M.NoteDefaultProviders;
 		Label noteLabel = toolkit.createLabel(parent, note, SWT.WRAP);
@@ -100,19 +149,19 @@ public class ReplaceFlowsDialog extends FormDialog {
 		UI.formLabel(parent, toolkit, M.ReplaceFlow);
 		ComboViewer viewer = new ComboViewer(new CCombo(parent, SWT.DROP_DOWN));
 		decorateViewer(viewer);
-		NameFilter filter = new NameFilter();
-		viewer.addFilter(filter);
-		viewer.setInput(usedInExchanges);
+		viewer.setInput(withEmpty(index.getUsed()));
 		UI.gridData(viewer.getCCombo(), true, false).widthHint = 300;
-		viewer.getCCombo().addKeyListener(new FilterOnKey(viewer, filter, () -> usedInExchanges));
+		viewer.getCCombo().addKeyListener(new FilterOnKey(viewer,
+				(text) -> withEmpty(usedSearch.find(text))));
 		viewer.addSelectionChangedListener((e) -> {
 			FlowDescriptor selected = Viewers.getFirstSelected(viewer);
-			if (selected == null || selected.getId() == 0l) {
-				replacementCandidates = new ArrayList<>();
-			} else {
-				replacementCandidates = getReplacementCandidates(selected);
-			}
-			replacementViewer.setInput(replacementCandidates);
+			List<FlowDescriptor> candidates = selected == null
+					|| selected.getId() == 0l
+							? new ArrayList<>()
+							: index.getCandidates(selected);
+			candidateSearch = new FlowIndex.Search<>(candidates);
+			replacementViewer.setInput(withEmpty(candidates));
+			updateCount();
 			updateButtons();
 		});
 		return viewer;
@@ -122,9 +171,11 @@ public class ReplaceFlowsDialog extends FormDialog {
 		UI.formLabel(parent, toolkit, M.With);
 		ComboViewer viewer = new ComboViewer(new CCombo(parent, SWT.NONE));
 		decorateViewer(viewer);
-		NameFilter filter = new NameFilter();
-		viewer.addFilter(filter);
-		viewer.getCCombo().addKeyListener(new FilterOnKey(viewer, filter, () -> replacementCandidates));
+		viewer.getCCombo().addKeyListener(new FilterOnKey(viewer, (text) -> {
+			if (candidateSearch == null)
+				return withEmpty(new ArrayList<>());
+			return withEmpty(candidateSearch.find(text));
+		}));
 		UI.gridData(viewer.getCCombo(), true, false).widthHint = 300;
 		viewer.addSelectionChangedListener((e) -> {
 			updateButtons();
@@ -133,34 +184,65 @@ public class ReplaceFlowsDialog extends FormDialog {
 	}
 
 	private void updateButtons() {
+		Button ok = getButton(IDialogConstants.OK_ID);
+		if (ok != null)
+			ok.setEnabled(selectedPair() != null || !pairs.isEmpty());
+	}
+
+	private Pair selectedPair() {
 		FlowDescriptor first = Viewers.getFirstSelected(selectionViewer);
 		FlowDescriptor second = Viewers.getFirstSelected(replacementViewer);
-		boolean enabled = first != null && first.getId() != 0l && second != null && second.getId() != 0l;
-		getButton(IDialogConstants.OK_ID).setEnabled(enabled);
+		if (first == null || first.getId() == 0l || second == null
+				|| second.getId() == 0l)
+			return null;
+		return new Pair(first, second);
 	}
 
-	private void decorateViewer(ComboViewer viewer) {
-		viewer.setContentProvider(new ArrayContentProvider());
-		viewer.setLabelProvider(new LabelProvider());
-		viewer.setSorter(new BaseNameSorter());
+	/**
+	 * Shows the number of exchanges and impact factors that would be changed
+	 * when the selected flow is replaced.
+	 */
+	private void updateCount() {
+		FlowDescriptor flow = Viewers.getFirstSelected(selectionViewer);
+		if (flow == null || flow.getId() == 0l) {
+			countLabel.setText("");
+			return;
+		}
+		long exchanges = count("SELECT COUNT(*) FROM tbl_exchanges WHERE f_flow = "
+				+ flow.getId() + (excludeWithProviders.getSelection()
+						? " AND (f_default_provider IS NULL OR f_default_provider = 0)"
+						: ""));
+		long factors = count("SELECT COUNT(*) FROM tbl_impact_factors WHERE f_flow = "
+				+ flow.getId());
+		countLabel.setText(NLS.bind(M.AffectedExchangesAndFactors,
+				exchanges, factors));
+		countLabel.getParent().layout();
 	}
 
-	private List<FlowDescriptor> getUsedInExchanges() {
-		FlowDao dao = (FlowDao) Daos.createCategorizedDao(Database.get(), ModelType.FLOW);
-		Set<Long> ids = dao.getUsed();
-		List<FlowDescriptor> result = new ArrayList<>();
-		result.add(new FlowDescriptor());
-		result.addAll(dao.getDescriptors(ids));
-		return result;
+	private long count(String query) {
+		long[] count = new long[1];
+		try {
+			NativeSql.on(Database.get()).query(query, (rs) -> {
+				count[0] = rs.getLong(1);
+				return false;
+			});
+		} catch (Exception e) {
+			log.error("failed to count flow usages", e);
+		}
+		return count[0];
 	}
 
-	private List<FlowDescriptor> getReplacementCandidates(FlowDescriptor flow) {
-		FlowDao dao = (FlowDao) Daos.createCategorizedDao(Database.get(), ModelType.FLOW);
-		Set<Long> ids = dao.getReplacementCandidates(flow.getId(), flow.getFlowType());
-		List<FlowDescriptor> result = new ArrayList<>();
-		result.add(new FlowDescriptor());
-		result.addAll(dao.getDescriptors(ids));
-		return result;
+	private List<FlowDescriptor> withEmpty(List<FlowDescriptor> flows) {
+		List<FlowDescriptor> list = new ArrayList<>(flows.size() + 1);
+		list.add(new FlowDescriptor());
+		list.addAll(flows);
+		return list;
+	}
+
+	private void decorateViewer(ComboViewer viewer) {
+		viewer.setContentProvider(new ArrayContentProvider());
+		viewer.setLabelProvider(new LabelProvider());
+		viewer.setSorter(new BaseNameSorter());
 	}
 
 	@Override
@@ -171,14 +253,65 @@ public class ReplaceFlowsDialog extends FormDialog {
 
 	@Override
 	protected void okPressed() {
-		FlowDescriptor oldFlow = Viewers.getFirstSelected(selectionViewer);
-		FlowDescriptor newFlow = Viewers.getFirstSelected(replacementViewer);
-		FlowDao dao = (FlowDao) Daos.createCategorizedDao(Database.get(), ModelType.FLOW);
-		dao.replace(oldFlow.getId(), newFlow.getId(), excludeWithProviders.getSelection());
+		List<Pair> all = new ArrayList<>(pairs);
+		Pair selected = selectedPair();
+		if (selected != null && !all.contains(selected))
+			all.add(selected);
+		boolean exclude = excludeWithProviders.getSelection();
+		try {
+			new ProgressMonitorDialog(getShell()).run(true, true, (monitor) -> {
+				monitor.beginTask(M.BulkreplaceFlows, all.size());
+				FlowDao dao = new FlowDao(Database.get());
+				for (Pair pair : all) {
+					if (monitor.isCanceled())
+						break;
+					monitor.subTask(pair.toString());
+					// each pair is replaced in its own transaction
+					dao.replace(pair.oldFlow.getId(), pair.newFlow.getId(),
+							exclude);
+					monitor.worked(1);
+				}
+				monitor.done();
+			});
+		} catch (Exception e) {
+			log.error("failed to replace flows", e);
+		}
 		Database.get().getEntityFactory().getCache().evictAll();
 		super.okPressed();
 	}
 
+	private class Pair {
+
+		final FlowDescriptor oldFlow;
+		final FlowDescriptor newFlow;
+
+		Pair(FlowDescriptor oldFlow, FlowDescriptor newFlow) {
+			this.oldFlow = oldFlow;
+			this.newFlow = newFlow;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Pair))
+				return false;
+			Pair other = (Pair) obj;
+			return oldFlow.getId() == other.oldFlow.getId()
+					&& newFlow.getId() == other.newFlow.getId();
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(oldFlow.getId()) * 31
+					+ Long.hashCode(newFlow.getId());
+		}
+
+		@Override
+		public String toString() {
+			return Labels.getDisplayName(oldFlow) + " -> "
+					+ Labels.getDisplayName(newFlow);
+		}
+	}
+
 	private class LabelProvider extends BaseLabelProvider {
 
 		private Category getCategory(FlowDescriptor flow) {
@@ -1,5 +1,8 @@
 package org.openlca.app.db;
 
+import java.util.Map;
+import java.util.Set;
+
 import org.openlca.core.database.EntityCache;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.matrix.cache.MatrixCache;
@@ -17,6 +20,7 @@ public final class Cache {
 	private static AppCache appCache = new AppCache();
 	private static EntityCache entityCache;
 	private static MatrixCache matrixCache;
+	private static ResultCache resultCache;
 
 	private Cache() {
 	}
@@ -29,11 +33,16 @@ public final class Cache {
 		return matrixCache;
 	}
 
+	public static ResultCache getResultCache() {
+		return resultCache;
+	}
+
 	public static void close() {
 		log.trace("close cache");
 		evictAll();
 		entityCache = null;
 		matrixCache = null;
+		resultCache = null;
 		appCache = null;
 	}
 
@@ -44,8 +53,10 @@ public final class Cache {
 	public static void create(IDatabase database) {
 		log.trace("create cache");
 		close();
+		CacheStats.reset();
 		entityCache = EntityCache.create(database);
 		matrixCache = MatrixCache.createLazy(database);
+		resultCache = new ResultCache();
 		appCache = new AppCache();
 	}
 
@@ -58,11 +69,12 @@ public final class Cache {
 			return;
 		log.trace("evict {} with ID {}", descriptor.getClass(),
 				descriptor.getId());
+		if (resultCache != null)
+			resultCache.evict(descriptor);
 		if (descriptor.getModelType() == null)
 			evictAll(); // to be on the save side
-		else if (shouldEvictAll(descriptor.getModelType())) {
-			if (entityCache != null)
-				entityCache.invalidateAll();
+		else if (hasDependents(descriptor.getModelType())) {
+			evictWithDependents(descriptor);
 			evictFromMatrices(descriptor);
 		} else {
 			evictEntity(descriptor);
@@ -70,17 +82,27 @@ public final class Cache {
 		}
 	}
 
-	private static boolean shouldEvictAll(ModelType type) {
+	/**
+	 * Returns true if instances of the given type are referenced by other
+	 * entities in the entity cache.
+	 */
+	private static boolean hasDependents(ModelType type) {
 		return type != null && type.isOneOf(ModelType.UNIT, ModelType.UNIT_GROUP, ModelType.FLOW,
 				ModelType.FLOW_PROPERTY, ModelType.CATEGORY);
 	}
 
 	public static void evictAll() {
 		log.trace("evict all from caches");
-		if (entityCache != null)
+		if (entityCache != null) {
 			entityCache.invalidateAll();
-		if (matrixCache != null)
+			CacheStats.count(CacheStats.ENTITY_CACHE, CacheStats.FULL_EVICTIONS);
+		}
+		if (matrixCache != null) {
 			matrixCache.evictAll();
+			CacheStats.count(CacheStats.MATRIX_CACHE, CacheStats.FULL_EVICTIONS);
+		}
+		if (resultCache != null)
+			resultCache.evictAll();
 	}
 
 	private static void evictEntity(BaseDescriptor descriptor) {
@@ -90,17 +112,48 @@ public final class Cache {
 		Class<?> clazz = descriptor.getClass();
 		log.trace("evict from entity cache {} with id={}", clazz, id);
 		entityCache.invalidate(clazz, id);
+		CacheStats.count(CacheStats.ENTITY_CACHE, CacheStats.EVICTIONS);
 		if (descriptor.getModelType() == null)
 			return;
 		clazz = descriptor.getModelType().getModelClass();
 		log.trace("evict from entity cache {} with id={}", clazz, id);
 		entityCache.invalidate(clazz, id);
+		CacheStats.count(CacheStats.ENTITY_CACHE, CacheStats.EVICTIONS);
+	}
+
+	/**
+	 * Evicts the given model and the entities that reference it from the
+	 * entity cache; e.g. for a flow also the processes and LCIA categories
+	 * that contain this flow. If there are too many of such entities, the
+	 * complete entity cache is invalidated.
+	 */
+	private static void evictWithDependents(BaseDescriptor descriptor) {
+		if (entityCache == null)
+			return;
+		evictEntity(descriptor);
+		Map<Class<?>, Set<Long>> dependents = EntityDependencies.of(
+				Database.get(), descriptor);
+		if (dependents == null) {
+			log.trace("invalidate entity cache for {}", descriptor);
+			entityCache.invalidateAll();
+			CacheStats.count(CacheStats.ENTITY_CACHE, CacheStats.FULL_EVICTIONS);
+			return;
+		}
+		int count = 0;
+		for (Map.Entry<Class<?>, Set<Long>> e : dependents.entrySet()) {
+			for (Long id : e.getValue())
+				entityCache.invalidate(e.getKey(), id);
+			count += e.getValue().size();
+		}
+		log.trace("evicted {} entities for {}", count, descriptor);
+		CacheStats.count(CacheStats.ENTITY_CACHE, CacheStats.EVICTIONS, count);
 	}
 
 	private static void evictFromMatrices(BaseDescriptor descriptor) {
 		if (matrixCache == null)
 			return;
 		matrixCache.evict(descriptor.getModelType(), descriptor.getId());
+		CacheStats.count(CacheStats.MATRIX_CACHE, CacheStats.EVICTIONS);
 	}
 
 	public static void registerNew(BaseDescriptor descriptor) {
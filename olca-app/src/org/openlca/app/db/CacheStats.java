@@ -0,0 +1,59 @@
+package org.openlca.app.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the hits, misses, and evictions of the caches of the
+ * application. The entity and matrix caches are implemented in olca-core and
+ * do not expose their lookups; for these caches the evictions that are
+ * triggered from {@link Cache} are counted.
+ */
+public final class CacheStats {
+
+	public static final String ENTITY_CACHE = "Entity cache";
+	public static final String MATRIX_CACHE = "Matrix cache";
+	public static final String RESULT_CACHE = "Result cache";
+
+	public static final String HITS = "hits";
+	public static final String MISSES = "misses";
+	public static final String EVICTIONS = "evictions";
+	public static final String FULL_EVICTIONS = "full evictions";
+
+	private static final Map<String, AtomicLong> counters = new ConcurrentSkipListMap<>();
+
+	private CacheStats() {
+	}
+
+	static void count(String cache, String metric) {
+		count(cache, metric, 1);
+	}
+
+	static void count(String cache, String metric, long n) {
+		String key = cache + ": " + metric;
+		AtomicLong counter = counters.get(key);
+		if (counter == null) {
+			counters.putIfAbsent(key, new AtomicLong());
+			counter = counters.get(key);
+		}
+		counter.addAndGet(n);
+	}
+
+	/**
+	 * Returns the current values of all counters as pairs of the counter name
+	 * and value.
+	 */
+	public static List<Object[]> get() {
+		List<Object[]> list = new ArrayList<>();
+		for (Map.Entry<String, AtomicLong> e : counters.entrySet())
+			list.add(new Object[] { e.getKey(), e.getValue().get() });
+		return list;
+	}
+
+	public static void reset() {
+		counters.clear();
+	}
+}
@@ -7,6 +7,8 @@ import org.openlca.app.App;
 import org.openlca.app.cloud.TokenDialog;
 import org.openlca.app.cloud.index.DiffIndex;
 import org.openlca.app.navigation.CopyPaste;
+import org.openlca.app.navigation.Navigator;
+import org.openlca.app.validation.DatabaseValidation;
 import org.openlca.cloud.api.RepositoryClient;
 import org.openlca.cloud.api.RepositoryConfig;
 import org.openlca.core.database.BaseDao;
@@ -26,6 +28,7 @@ public class Database {
 	private static DatabaseListener listener;
 	private static DatabaseList configurations = loadConfigs();
 	private static DiffIndex diffIndex;
+	private static SearchIndex searchIndex;
 	private static RepositoryClient repositoryClient;
 
 	private Database() {
@@ -39,11 +42,20 @@ public class Database {
 		return listener.getIndexUpdater();
 	}
 
+	/**
+	 * Returns the full-text index of the active database or null if no
+	 * database is active.
+	 */
+	public static SearchIndex getSearchIndex() {
+		return searchIndex;
+	}
+
 	public static IDatabase activate(IDatabaseConfiguration config)
 			throws Exception {
 		try {
 			Database.database = config.createInstance();
-			listener = new DatabaseListener();
+			searchIndex = new SearchIndex(database);
+			listener = new DatabaseListener(searchIndex);
 			Database.database.addListener(listener);
 			Cache.create(database);
 			Database.config = config;
@@ -58,6 +70,9 @@ public class Database {
 			return Database.database;
 		} catch (Exception e) {
 			Database.database = null;
+			if (searchIndex != null)
+				searchIndex.close();
+			searchIndex = null;
 			Cache.close();
 			Database.config = null;
 			throw e;
@@ -69,6 +84,7 @@ public class Database {
 			diffIndex.close();
 		repositoryClient = client;
 		diffIndex = DiffIndex.getFor(repositoryClient);
+		diffIndex.addListener(Navigator::updateRepositoryState);
 	}
 
 	public static void disconnect() {
@@ -104,6 +120,9 @@ public class Database {
 			return;
 		Cache.close();
 		CopyPaste.clearCache();
+		DatabaseValidation.close(database);
+		searchIndex.close();
+		searchIndex = null;
 		database.close();
 		database = null;
 		listener = null;
@@ -0,0 +1,593 @@
+package org.openlca.app.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Packs, unpacks, and copies database folders. The files of a folder are
+ * compressed in parallel and written into a standard zip file (a zolca file)
+ * so that the archives can be still read by other tools and older versions.
+ * Archives can be also created without compression which is much faster for
+ * local snapshots of a database. All methods report their progress to the
+ * given monitor (which can be null) and stop with an
+ * {@link OperationCanceledException} when the monitor is canceled; partial
+ * output is deleted in this case and when an error occurs.
+ */
+public final class DatabaseArchive {
+
+	/** Files larger than this are compressed into a temporary file. */
+	private static final long MAX_MEMORY_ENTRY = 8 * 1024 * 1024;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Archives above these limits are written with zip64 extensions. */
+	private static final long MAX_SIZE = 0xFFFFFFFFL;
+	private static final int MAX_ENTRIES = 0xFFFF;
+
+	private DatabaseArchive() {
+	}
+
+	/**
+	 * Packs the content of the given folder into the given zip file. If
+	 * compress is false, the files are stored without compression.
+	 */
+	public static void pack(File folder, File zip, boolean compress,
+			IProgressMonitor monitor) throws IOException {
+		IProgressMonitor m = monitor != null ? monitor
+				: new NullProgressMonitor();
+		List<Entry> entries = new ArrayList<>();
+		collect(folder, "", entries);
+		long total = 0;
+		for (Entry e : entries)
+			total += e.size;
+		m.beginTask("Pack " + folder.getName(), units(total));
+		try {
+			if (entries.size() >= MAX_ENTRIES
+					|| maxArchiveSize(entries, compress) >= MAX_SIZE)
+				new SequentialPacker(zip, compress, m).pack(entries);
+			else
+				new ParallelPacker(zip, compress, m).pack(entries);
+		} catch (IOException | RuntimeException e) {
+			FileUtils.deleteQuietly(zip);
+			throw e;
+		} finally {
+			m.done();
+		}
+	}
+
+	/**
+	 * Unpacks the given zip file into the given folder. The checksums of the
+	 * entries are checked while they are extracted.
+	 */
+	public static void unpack(File zip, File folder, IProgressMonitor monitor)
+			throws IOException {
+		IProgressMonitor m = monitor != null ? monitor
+				: new NullProgressMonitor();
+		m.beginTask("Unpack " + zip.getName(), units(zip.length()));
+		String root = folder.getCanonicalPath() + File.separator;
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (FileInputStream fis = new FileInputStream(zip);
+				CountingInputStream counter = new CountingInputStream(
+						new BufferedInputStream(fis, BUFFER_SIZE));
+				ZipInputStream zis = new ZipInputStream(counter)) {
+			long reported = 0;
+			ZipEntry entry;
+			while ((entry = zis.getNextEntry()) != null) {
+				File file = new File(folder, entry.getName());
+				if (!file.getCanonicalPath().startsWith(root))
+					throw new IOException("invalid zip entry " + entry.getName());
+				if (entry.isDirectory()) {
+					file.mkdirs();
+					continue;
+				}
+				file.getParentFile().mkdirs();
+				try (OutputStream out = new FileOutputStream(file)) {
+					int n;
+					while ((n = zis.read(buffer)) != -1) {
+						out.write(buffer, 0, n);
+						long read = units(counter.getByteCount());
+						if (read > reported) {
+							m.worked((int) (read - reported));
+							reported = read;
+						}
+						checkCanceled(m);
+					}
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			FileUtils.deleteQuietly(folder);
+			throw e;
+		} finally {
+			m.done();
+		}
+	}
+
+	/**
+	 * Copies the content of the source folder into the target folder via file
+	 * channels. The target folder should not exist yet.
+	 */
+	public static void copy(File from, File to, IProgressMonitor monitor)
+			throws IOException {
+		IProgressMonitor m = monitor != null ? monitor
+				: new NullProgressMonitor();
+		List<Entry> entries = new ArrayList<>();
+		collect(from, "", entries);
+		long total = 0;
+		for (Entry e : entries)
+			total += e.size;
+		m.beginTask("Copy " + from.getName(), units(total));
+		try {
+			to.mkdirs();
+			for (Entry entry : entries) {
+				checkCanceled(m);
+				File target = new File(to, entry.path);
+				if (entry.isDirectory()) {
+					target.mkdirs();
+					continue;
+				}
+				copyFile(entry.file, target, m);
+			}
+		} catch (IOException | RuntimeException e) {
+			FileUtils.deleteQuietly(to);
+			throw e;
+		} finally {
+			m.done();
+		}
+	}
+
+	private static void copyFile(File source, File target, IProgressMonitor m)
+			throws IOException {
+		target.getParentFile().mkdirs();
+		try (FileInputStream in = new FileInputStream(source);
+				FileOutputStream out = new FileOutputStream(target);
+				FileChannel inChannel = in.getChannel();
+				FileChannel outChannel = out.getChannel()) {
+			long size = inChannel.size();
+			long pos = 0;
+			while (pos < size) {
+				long n = inChannel.transferTo(pos, Math.min(size - pos,
+						MAX_MEMORY_ENTRY), outChannel);
+				if (n <= 0)
+					break;
+				m.worked((int) (units(pos + n) - units(pos)));
+				pos += n;
+				checkCanceled(m);
+			}
+			if (pos != size || outChannel.size() != size)
+				throw new IOException("failed to copy " + source);
+		}
+		target.setLastModified(source.lastModified());
+	}
+
+	private static void collect(File dir, String prefix, List<Entry> entries) {
+		File[] files = dir.listFiles();
+		if (files == null)
+			return;
+		for (File file : files) {
+			String path = prefix + file.getName();
+			if (file.isDirectory()) {
+				entries.add(new Entry(file, path + "/"));
+				collect(file, path + "/", entries);
+			} else {
+				entries.add(new Entry(file, path));
+			}
+		}
+	}
+
+	/**
+	 * Returns an upper bound of the size of an archive with the given entries
+	 * without zip64 extensions: the local header, data descriptor, and central
+	 * directory header of each entry, the end record, and the size of the
+	 * data, which can grow slightly when incompressible data are deflated.
+	 */
+	private static long maxArchiveSize(List<Entry> entries, boolean compress) {
+		long size = 22;
+		for (Entry e : entries) {
+			long name = e.path.getBytes(StandardCharsets.UTF_8).length;
+			size += 30 + 16 + 46 + 2 * name;
+			if (!compress) {
+				size += e.size;
+				continue;
+			}
+			// the worst case expansion of deflate as calculated by zlib
+			size += e.size + (e.size >> 12) + (e.size >> 14)
+					+ (e.size >> 25) + 13;
+		}
+		return size;
+	}
+
+	/** We report the progress in kilobytes to stay in the integer range. */
+	private static int units(long bytes) {
+		return (int) (bytes / 1024);
+	}
+
+	private static void checkCanceled(IProgressMonitor m) {
+		if (m.isCanceled())
+			throw new OperationCanceledException();
+	}
+
+	private static class Entry {
+
+		final File file;
+		final String path;
+		final long size;
+		final long time;
+
+		Entry(File file, String path) {
+			this.file = file;
+			this.path = path;
+			this.size = file.isDirectory() ? 0 : file.length();
+			this.time = file.lastModified();
+		}
+
+		boolean isDirectory() {
+			return path.endsWith("/");
+		}
+	}
+
+	/**
+	 * Writes archives that are too large for the plain zip format with the
+	 * JDK zip stream that adds the zip64 extensions when required.
+	 */
+	private static class SequentialPacker {
+
+		private final File zip;
+		private final boolean compress;
+		private final IProgressMonitor monitor;
+
+		SequentialPacker(File zip, boolean compress, IProgressMonitor monitor) {
+			this.zip = zip;
+			this.compress = compress;
+			this.monitor = monitor;
+		}
+
+		void pack(List<Entry> entries) throws IOException {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			try (FileOutputStream fos = new FileOutputStream(zip);
+					ZipOutputStream zos = new ZipOutputStream(
+							new BufferedOutputStream(fos, BUFFER_SIZE))) {
+				if (!compress)
+					zos.setLevel(Deflater.NO_COMPRESSION);
+				for (Entry entry : entries) {
+					checkCanceled(monitor);
+					ZipEntry zipEntry = new ZipEntry(entry.path);
+					zipEntry.setTime(entry.time);
+					zos.putNextEntry(zipEntry);
+					if (!entry.isDirectory())
+						write(entry, zos, buffer);
+					zos.closeEntry();
+				}
+			}
+		}
+
+		private void write(Entry entry, OutputStream out, byte[] buffer)
+				throws IOException {
+			try (InputStream in = new FileInputStream(entry.file)) {
+				long total = 0;
+				int n;
+				while ((n = in.read(buffer)) != -1) {
+					out.write(buffer, 0, n);
+					monitor.worked(units(total + n) - units(total));
+					total += n;
+					checkCanceled(monitor);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compresses the files in parallel and writes the compressed data in the
+	 * order of the entries into the zip file. The number of compressed entries
+	 * that wait for being written is bounded; large entries are buffered in
+	 * temporary files.
+	 */
+	private static class ParallelPacker {
+
+		private final Logger log = LoggerFactory.getLogger(getClass());
+		private final File zip;
+		private final boolean compress;
+		private final IProgressMonitor monitor;
+		private final List<Header> headers = new ArrayList<>();
+
+		ParallelPacker(File zip, boolean compress, IProgressMonitor monitor) {
+			this.zip = zip;
+			this.compress = compress;
+			this.monitor = monitor;
+		}
+
+		void pack(List<Entry> entries) throws IOException {
+			int threads = Runtime.getRuntime().availableProcessors();
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			Deque<Future<Packed>> queue = new ArrayDeque<>();
+			try (RandomAccessFile file = new RandomAccessFile(zip, "rw");
+					FileChannel channel = file.getChannel()) {
+				channel.truncate(0);
+				int next = 0;
+				while (next < entries.size() || !queue.isEmpty()) {
+					while (next < entries.size() && queue.size() < 2 * threads) {
+						Entry entry = entries.get(next++);
+						queue.add(pool.submit(() -> compress(entry)));
+					}
+					Packed packed = take(queue.poll());
+					try {
+						write(packed, channel);
+					} finally {
+						packed.dispose();
+					}
+					checkCanceled(monitor);
+				}
+				writeDirectory(channel);
+			} finally {
+				for (Future<Packed> f : queue)
+					f.cancel(true);
+				pool.shutdownNow();
+			}
+		}
+
+		private Packed take(Future<Packed> future) throws IOException {
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				throw new OperationCanceledException();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException)
+					throw (IOException) e.getCause();
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw new IOException(e.getCause());
+			}
+		}
+
+		private Packed compress(Entry entry) throws IOException {
+			Packed packed = new Packed(entry);
+			if (entry.isDirectory() || monitor.isCanceled())
+				return packed;
+			if (!compress) {
+				packed.crc = crc(entry.file);
+				packed.compressedSize = entry.size;
+				return packed;
+			}
+			packed.method = ZipEntry.DEFLATED;
+			OutputStream target;
+			if (entry.size > MAX_MEMORY_ENTRY) {
+				packed.tempFile = File.createTempFile("olca_zip", ".tmp");
+				target = new FileOutputStream(packed.tempFile);
+			} else {
+				packed.buffer = new Buffer((int) (entry.size / 2) + 64);
+				target = packed.buffer;
+			}
+			CRC32 crc = new CRC32();
+			Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			try (InputStream in = new FileInputStream(entry.file);
+					DeflaterOutputStream out = new DeflaterOutputStream(
+							target, deflater, BUFFER_SIZE)) {
+				int n;
+				while ((n = in.read(buffer)) != -1) {
+					crc.update(buffer, 0, n);
+					out.write(buffer, 0, n);
+					if (monitor.isCanceled())
+						break;
+				}
+				out.finish();
+				packed.compressedSize = deflater.getBytesWritten();
+			} finally {
+				deflater.end();
+			}
+			packed.crc = crc.getValue();
+			return packed;
+		}
+
+		private long crc(File file) throws IOException {
+			CRC32 crc = new CRC32();
+			byte[] buffer = new byte[BUFFER_SIZE];
+			try (InputStream in = new FileInputStream(file)) {
+				int n;
+				while ((n = in.read(buffer)) != -1)
+					crc.update(buffer, 0, n);
+			}
+			return crc.getValue();
+		}
+
+		private void write(Packed packed, FileChannel channel)
+				throws IOException {
+			Entry entry = packed.entry;
+			Header header = new Header(packed, channel.position());
+			headers.add(header);
+			ByteBuffer buf = header.local();
+			while (buf.hasRemaining())
+				channel.write(buf);
+			if (entry.isDirectory())
+				return;
+			if (packed.buffer != null) {
+				ByteBuffer data = ByteBuffer.wrap(packed.buffer.data(), 0,
+						packed.buffer.size());
+				while (data.hasRemaining())
+					channel.write(data);
+			} else {
+				File source = packed.tempFile != null ? packed.tempFile
+						: entry.file;
+				transfer(source, packed.compressedSize, channel);
+			}
+			monitor.worked(units(entry.size));
+		}
+
+		private void transfer(File source, long size, FileChannel channel)
+				throws IOException {
+			try (FileInputStream in = new FileInputStream(source);
+					FileChannel inChannel = in.getChannel()) {
+				long pos = 0;
+				while (pos < size) {
+					long n = inChannel.transferTo(pos, size - pos, channel);
+					if (n <= 0)
+						throw new IOException("failed to read " + source);
+					pos += n;
+				}
+			}
+		}
+
+		private void writeDirectory(FileChannel channel) throws IOException {
+			long offset = channel.position();
+			for (Header header : headers) {
+				ByteBuffer buf = header.central();
+				while (buf.hasRemaining())
+					channel.write(buf);
+			}
+			long size = channel.position() - offset;
+			ByteBuffer end = ByteBuffer.allocate(22)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			end.putInt(0x06054b50);
+			end.putShort((short) 0);
+			end.putShort((short) 0);
+			end.putShort((short) headers.size());
+			end.putShort((short) headers.size());
+			end.putInt((int) size);
+			end.putInt((int) offset);
+			end.putShort((short) 0);
+			end.flip();
+			while (end.hasRemaining())
+				channel.write(end);
+			log.trace("packed {} entries into {}", headers.size(), zip);
+		}
+	}
+
+	/** A compressed entry that waits for being written. */
+	private static class Packed {
+
+		final Entry entry;
+		int method = ZipEntry.STORED;
+		long crc;
+		long compressedSize;
+		Buffer buffer;
+		File tempFile;
+
+		Packed(Entry entry) {
+			this.entry = entry;
+		}
+
+		void dispose() {
+			buffer = null;
+			if (tempFile != null)
+				FileUtils.deleteQuietly(tempFile);
+		}
+	}
+
+	/** A byte array stream that gives access to its internal buffer. */
+	private static class Buffer extends ByteArrayOutputStream {
+
+		Buffer(int size) {
+			super(size);
+		}
+
+		byte[] data() {
+			return buf;
+		}
+	}
+
+	/** The local and central zip header of an entry. */
+	private static class Header {
+
+		private static final int UTF8_FLAG = 0x0800;
+
+		final Packed packed;
+		final long offset;
+		final byte[] name;
+		final int dosTime;
+
+		Header(Packed packed, long offset) {
+			this.packed = packed;
+			this.offset = offset;
+			this.name = packed.entry.path.getBytes(StandardCharsets.UTF_8);
+			this.dosTime = dosTime(packed.entry.time);
+		}
+
+		ByteBuffer local() {
+			ByteBuffer buf = ByteBuffer.allocate(30 + name.length)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			buf.putInt(0x04034b50);
+			buf.putShort((short) 20);
+			putCommon(buf);
+			buf.putShort((short) 0);
+			buf.put(name);
+			buf.flip();
+			return buf;
+		}
+
+		ByteBuffer central() {
+			ByteBuffer buf = ByteBuffer.allocate(46 + name.length)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			buf.putInt(0x02014b50);
+			buf.putShort((short) 20);
+			buf.putShort((short) 20);
+			putCommon(buf);
+			buf.putShort((short) 0); // extra field length
+			buf.putShort((short) 0); // comment length
+			buf.putShort((short) 0); // disk number
+			buf.putShort((short) 0); // internal attributes
+			buf.putInt(packed.entry.isDirectory() ? 0x10 : 0);
+			buf.putInt((int) offset);
+			buf.put(name);
+			buf.flip();
+			return buf;
+		}
+
+		/** Flags, method, time, checksum, sizes, and the name length. */
+		private void putCommon(ByteBuffer buf) {
+			buf.putShort((short) UTF8_FLAG);
+			buf.putShort((short) packed.method);
+			buf.putInt(dosTime);
+			buf.putInt((int) packed.crc);
+			buf.putInt((int) packed.compressedSize);
+			buf.putInt((int) packed.entry.size);
+			buf.putShort((short) name.length);
+		}
+
+		private static int dosTime(long time) {
+			Calendar c = Calendar.getInstance();
+			c.setTimeInMillis(time);
+			int year = c.get(Calendar.YEAR);
+			if (year < 1980)
+				return (1 << 21) | (1 << 16);
+			return (year - 1980) << 25
+					| (c.get(Calendar.MONTH) + 1) << 21
+					| c.get(Calendar.DAY_OF_MONTH) << 16
+					| c.get(Calendar.HOUR_OF_DAY) << 11
+					| c.get(Calendar.MINUTE) << 5
+					| c.get(Calendar.SECOND) >> 1;
+		}
+	}
+}
@@ -7,6 +7,11 @@ import org.openlca.core.model.CategorizedEntity;
 class DatabaseListener implements IDatabaseListener {
 
 	private IndexUpdater indexUpdater = new IndexUpdater();
+	private final SearchIndex searchIndex;
+
+	DatabaseListener(SearchIndex searchIndex) {
+		this.searchIndex = searchIndex;
+	}
 
 	IndexUpdater getIndexUpdater() {
 		return indexUpdater;
@@ -18,6 +23,7 @@ class DatabaseListener implements IDatabaseListener {
 			return;
 		CategorizedEntity entity = (CategorizedEntity) object;
 		indexUpdater.insert(CloudUtil.toDataset(entity), entity.getId());
+		searchIndex.update(entity);
 	}
 
 	@Override
@@ -26,6 +32,7 @@ class DatabaseListener implements IDatabaseListener {
 			return;
 		CategorizedEntity entity = (CategorizedEntity) object;
 		indexUpdater.update(CloudUtil.toDataset(entity));
+		searchIndex.update(entity);
 	}
 
 	@Override
@@ -34,5 +41,6 @@ class DatabaseListener implements IDatabaseListener {
 			return;
 		CategorizedEntity entity = (CategorizedEntity) object;
 		indexUpdater.delete(CloudUtil.toDataset(entity));
+		searchIndex.delete(entity);
 	}
 }
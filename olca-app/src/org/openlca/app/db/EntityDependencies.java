@@ -0,0 +1,249 @@
+package org.openlca.app.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openlca.core.database.CategorizedEntityDao;
+import org.openlca.core.database.Daos;
+import org.openlca.core.database.EntityCache;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.model.Category;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowProperty;
+import org.openlca.core.model.FlowPropertyFactor;
+import org.openlca.core.model.ImpactCategory;
+import org.openlca.core.model.ImpactMethod;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.Project;
+import org.openlca.core.model.ProjectVariant;
+import org.openlca.core.model.SocialIndicator;
+import org.openlca.core.model.Unit;
+import org.openlca.core.model.UnitGroup;
+import org.openlca.core.model.descriptors.BaseDescriptor;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+
+/**
+ * Collects the entities that contain a reference to a changed unit, unit
+ * group, flow property, flow, or category and thus could contain an outdated
+ * instance of it in the entity cache; e.g. for a flow these are the flow
+ * property factors of the flow, the processes and product systems with
+ * exchanges of that flow, the LCIA categories and methods with
+ * characterisation factors of that flow, and the project variants (and their
+ * projects) with a flow property factor of that flow. The units of project
+ * variants and the activity units of social indicators are covered by their
+ * flow property factors and activity quantities. For other model types the
+ * complete cache is invalidated.
+ */
+class EntityDependencies {
+
+	/**
+	 * If there are more dependent entities, the complete entity cache is
+	 * invalidated instead.
+	 */
+	private static final int MAX_DEPENDENTS = 10_000;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final IDatabase db;
+	private final Map<Class<?>, Set<Long>> dependents = new HashMap<>();
+	private int count;
+	private boolean failed;
+
+	private EntityDependencies(IDatabase db) {
+		this.db = db;
+	}
+
+	/**
+	 * Returns the IDs of the entities (by class) that need to be evicted from
+	 * the entity cache when the given model was changed, including the model
+	 * itself. Returns null if the complete cache should be invalidated.
+	 */
+	static Map<Class<?>, Set<Long>> of(IDatabase db, BaseDescriptor d) {
+		if (db == null || d == null || d.getModelType() == null)
+			return null;
+		EntityDependencies deps = new EntityDependencies(db);
+		long id = d.getId();
+		switch (d.getModelType()) {
+		case UNIT:
+			deps.unit(id);
+			break;
+		case UNIT_GROUP:
+			deps.unitGroup(id);
+			break;
+		case FLOW_PROPERTY:
+			deps.flowProperty(id);
+			break;
+		case FLOW:
+			deps.flow(id);
+			break;
+		case CATEGORY:
+			deps.category(id);
+			break;
+		default:
+			return null;
+		}
+		if (deps.failed || deps.count > MAX_DEPENDENTS)
+			return null;
+		return deps.dependents;
+	}
+
+	private void unit(long id) {
+		if (!add(Unit.class, id))
+			return;
+		for (long group : query("SELECT f_unit_group FROM tbl_units"
+				+ " WHERE id = " + id))
+			unitGroup(group);
+	}
+
+	private void unitGroup(long id) {
+		if (!add(UnitGroup.class, id))
+			return;
+		addAll(Unit.class, "SELECT id FROM tbl_units WHERE f_unit_group = " + id);
+		flowProperties("SELECT id FROM tbl_flow_properties"
+				+ " WHERE f_unit_group = " + id);
+	}
+
+	private void flowProperty(long id) {
+		flowProperties("SELECT id FROM tbl_flow_properties WHERE id = " + id);
+	}
+
+	/**
+	 * Adds the flow properties with the IDs of the given sub-query and their
+	 * dependents with a fixed number of set based queries.
+	 */
+	private void flowProperties(String ids) {
+		addAll(FlowProperty.class, ids);
+		addAll(SocialIndicator.class, "SELECT id FROM tbl_social_indicators"
+				+ " WHERE f_activity_quantity IN (" + ids + ")");
+		addAll(UnitGroup.class, "SELECT id FROM tbl_unit_groups"
+				+ " WHERE f_default_flow_property IN (" + ids + ")");
+		flows("SELECT DISTINCT f_flow FROM tbl_flow_property_factors"
+				+ " WHERE f_flow_property IN (" + ids + ")");
+	}
+
+	private void flow(long id) {
+		flows("SELECT id FROM tbl_flows WHERE id = " + id);
+	}
+
+	/**
+	 * Adds the flows with the IDs of the given sub-query and their dependents
+	 * with a fixed number of set based queries.
+	 */
+	private void flows(String ids) {
+		addAll(Flow.class, ids);
+		String factors = "SELECT id FROM tbl_flow_property_factors"
+				+ " WHERE f_flow IN (" + ids + ")";
+		addAll(FlowPropertyFactor.class, factors);
+		String variants = "SELECT id FROM tbl_project_variants"
+				+ " WHERE f_flow_property_factor IN (" + factors + ")";
+		addAll(ProjectVariant.class, variants);
+		addAll(Project.class, "SELECT DISTINCT f_project FROM"
+				+ " tbl_project_variants WHERE id IN (" + variants + ")");
+		addAll(ProductSystem.class, "SELECT s.id FROM tbl_product_systems s"
+				+ " INNER JOIN tbl_exchanges e ON s.f_reference_exchange = e.id"
+				+ " WHERE e.f_flow IN (" + ids + ")");
+		String impacts = "SELECT DISTINCT f_impact_category FROM"
+				+ " tbl_impact_factors WHERE f_flow IN (" + ids + ")";
+		addAll(ImpactCategory.class, impacts);
+		addAll(ImpactMethod.class, "SELECT DISTINCT f_impact_method FROM"
+				+ " tbl_impact_categories WHERE id IN (" + impacts + ")");
+		addAll(Process.class, "SELECT DISTINCT f_owner FROM tbl_exchanges"
+				+ " WHERE f_flow IN (" + ids + ")");
+	}
+
+	/**
+	 * The category path is part of the cached entities, thus we evict the
+	 * category, its sub-categories, and all models in these categories. The
+	 * parent category is evicted too as it contains the changed category in
+	 * its list of child categories.
+	 */
+	private void category(long id) {
+		for (long parent : query("SELECT f_category FROM tbl_categories"
+				+ " WHERE id = " + id)) {
+			if (parent != 0)
+				add(Category.class, parent);
+		}
+		subCategory(id);
+	}
+
+	private void subCategory(long id) {
+		if (!add(Category.class, id))
+			return;
+		EntityCache cache = Cache.getEntityCache();
+		Category category = cache == null ? null
+				: cache.get(Category.class, id);
+		if (category != null && category.getModelType() != null) {
+			ModelType type = category.getModelType();
+			CategorizedEntityDao<?, ?> dao = Daos.createCategorizedDao(db, type);
+			if (dao != null) {
+				for (CategorizedDescriptor d : dao.getDescriptors(Optional
+						.of(category)))
+					add(type.getModelClass(), d.getId());
+			}
+		}
+		for (long child : query("SELECT id FROM tbl_categories"
+				+ " WHERE f_category = " + id)) {
+			subCategory(child);
+			if (failed || count > MAX_DEPENDENTS)
+				return;
+		}
+	}
+
+	private boolean add(Class<?> clazz, long id) {
+		if (clazz == null)
+			return false;
+		Set<Long> ids = dependents.get(clazz);
+		if (ids == null) {
+			ids = new HashSet<>();
+			dependents.put(clazz, ids);
+		}
+		if (!ids.add(id))
+			return false;
+		count++;
+		return true;
+	}
+
+	/**
+	 * Adds the IDs of the given query; stops reading when the maximum number
+	 * of dependents is exceeded.
+	 */
+	private void addAll(Class<?> clazz, String sql) {
+		if (failed || count > MAX_DEPENDENTS)
+			return;
+		try {
+			NativeSql.on(db).query(sql, (rs) -> {
+				add(clazz, rs.getLong(1));
+				return count <= MAX_DEPENDENTS;
+			});
+		} catch (Exception e) {
+			log.error("failed to query dependent entities: " + sql, e);
+			failed = true;
+		}
+	}
+
+	private List<Long> query(String sql) {
+		List<Long> ids = new ArrayList<>();
+		if (failed || count > MAX_DEPENDENTS)
+			return ids;
+		try {
+			NativeSql.on(db).query(sql, (rs) -> {
+				ids.add(rs.getLong(1));
+				return true;
+			});
+		} catch (Exception e) {
+			log.error("failed to query dependent entities: " + sql, e);
+			failed = true;
+		}
+		return ids;
+	}
+}
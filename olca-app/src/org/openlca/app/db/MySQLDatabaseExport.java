@@ -1,18 +1,47 @@
 package org.openlca.app.db;
 
 import java.io.File;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.derby.DerbyDatabase;
 import org.openlca.io.olca.DatabaseImport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.zeroturnaround.zip.ZipUtil;
 
+/**
+ * Exports a MySQL database into a zolca file. As a zolca file contains the
+ * folder of a Derby database, the data are first copied into a temporary
+ * Derby database which is deleted after it was packed. When the tables of the
+ * MySQL database have the same columns as the tables of a new Derby database,
+ * the rows are copied table by table via JDBC: the tables are copied in
+ * parallel and the rows are read and inserted in batches, so that only a
+ * batch of rows per table is in memory. Otherwise, the data are copied with
+ * the model based database import.
+ */
 public class MySQLDatabaseExport implements Runnable {
 
+	/** The number of rows that are copied in one batch. */
+	private static final int BATCH_SIZE = 1000;
+
 	private Logger log = LoggerFactory.getLogger(getClass());
 	private MySQLConfiguration config;
 	private File zolcaFile;
@@ -29,19 +58,43 @@ public class MySQLDatabaseExport implements Runnable {
 
 	@Override
 	public void run() {
+		run(null);
+	}
+
+	/**
+	 * Runs the export and reports the progress to the given monitor (which
+	 * can be null).
+	 */
+	public void run(IProgressMonitor monitor) {
+		SubMonitor m = SubMonitor.convert(monitor, 100);
+		DerbyDatabase targetDb = null;
 		try {
 			IDatabase sourceDb = config.createInstance();
-			DerbyDatabase targetDb = createTemporaryDb();
-			DatabaseImport io = new DatabaseImport(sourceDb, targetDb);
-			io.run();
+			targetDb = createTemporaryDb();
+			List<Table> tables = tables(sourceDb, targetDb);
+			if (tables != null) {
+				copyTables(sourceDb, targetDb, tables, m.newChild(60));
+			} else {
+				log.info("tables do not match, use the model based import");
+				m.newChild(60).beginTask("Copy data", IProgressMonitor.UNKNOWN);
+				DatabaseImport io = new DatabaseImport(sourceDb, targetDb);
+				io.run();
+			}
 			sourceDb.close();
 			targetDb.close();
-			ZipUtil.pack(targetDb.getDatabaseDirectory(), zolcaFile);
-			FileUtils.deleteDirectory(targetDb.getDatabaseDirectory());
+			DatabaseArchive.pack(targetDb.getDatabaseDirectory(), zolcaFile,
+					true, m.newChild(40));
 			success = true;
+		} catch (OperationCanceledException e) {
+			success = false;
+			throw e;
 		} catch (Exception e) {
 			success = false;
 			log.error("failed export MySQL database as zolca-File", e);
+		} finally {
+			if (targetDb != null)
+				deleteTemporaryDb(targetDb);
+			m.done();
 		}
 	}
 
@@ -53,4 +106,235 @@ public class MySQLDatabaseExport implements Runnable {
 		return new DerbyDatabase(dbDir);
 	}
 
+	private void deleteTemporaryDb(DerbyDatabase db) {
+		try {
+			db.close();
+		} catch (Exception e) {
+			log.trace("temporary database already closed", e);
+		}
+		FileUtils.deleteQuietly(db.getDatabaseDirectory());
+	}
+
+	/**
+	 * Returns the tables of the target database if the source database has
+	 * tables with the same columns; otherwise null is returned.
+	 */
+	private List<Table> tables(IDatabase sourceDb, IDatabase targetDb)
+			throws SQLException {
+		Map<String, String> sourceNames = new HashMap<>();
+		Map<String, Map<String, Integer>> sourceTables = columns(sourceDb,
+				sourceNames);
+		Map<String, Map<String, Integer>> targetTables = columns(targetDb,
+				new HashMap<>());
+		List<Table> tables = new ArrayList<>();
+		for (String name : targetTables.keySet()) {
+			Map<String, Integer> targetColumns = targetTables.get(name);
+			Map<String, Integer> sourceColumns = sourceTables.get(name);
+			if (sourceColumns == null
+					|| !sourceColumns.keySet().equals(targetColumns.keySet()))
+				return null;
+			tables.add(new Table(name, sourceNames.get(name), targetColumns));
+		}
+		return tables;
+	}
+
+	/**
+	 * Returns the columns and their SQL types by table; all in lower case. The
+	 * original table names are added to the given map as table names can be
+	 * case sensitive in MySQL.
+	 */
+	private Map<String, Map<String, Integer>> columns(IDatabase db,
+			Map<String, String> names) throws SQLException {
+		Map<String, Map<String, Integer>> tables = new HashMap<>();
+		try (Connection con = db.createConnection()) {
+			DatabaseMetaData meta = con.getMetaData();
+			String schema = db instanceof DerbyDatabase ? "APP" : null;
+			try (ResultSet rs = meta.getColumns(con.getCatalog(), schema,
+					"%", "%")) {
+				while (rs.next()) {
+					String name = rs.getString("TABLE_NAME");
+					String table = name.toLowerCase();
+					names.put(table, name);
+					String column = rs.getString("COLUMN_NAME").toLowerCase();
+					Map<String, Integer> columns = tables.get(table);
+					if (columns == null) {
+						columns = new HashMap<>();
+						tables.put(table, columns);
+					}
+					columns.put(column, rs.getInt("DATA_TYPE"));
+				}
+			}
+		}
+		return tables;
+	}
+
+	private void copyTables(IDatabase sourceDb, IDatabase targetDb,
+			List<Table> tables, SubMonitor monitor) throws Exception {
+		monitor.beginTask("Copy tables", tables.size());
+		int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (Table table : tables) {
+				futures.add(pool.submit(() -> {
+					if (monitor.isCanceled())
+						return null;
+					copyTable(sourceDb, targetDb, table);
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+				monitor.worked(1);
+				if (monitor.isCanceled())
+					throw new OperationCanceledException();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Copies the rows of the given table. Tables with an ID column are read in
+	 * batches ordered by ID; the other tables are small link and meta-data
+	 * tables that are read at once.
+	 */
+	private void copyTable(IDatabase sourceDb, IDatabase targetDb, Table table)
+			throws SQLException {
+		log.trace("copy table {}", table.name);
+		try (Connection source = sourceDb.createConnection();
+				Connection target = targetDb.createConnection()) {
+			target.setAutoCommit(false);
+			try (Statement delete = target.createStatement()) {
+				// a new database may contain some initial rows
+				delete.executeUpdate("DELETE FROM " + table.name);
+			}
+			try (PreparedStatement insert = target.prepareStatement(
+					table.insertSql())) {
+				if (!table.hasId()) {
+					try (Statement select = source.createStatement();
+							ResultSet rs = select.executeQuery(
+									table.selectSql(false))) {
+						copyRows(rs, insert, table, target);
+					}
+				} else {
+					long lastId = Long.MIN_VALUE;
+					try (PreparedStatement select = source.prepareStatement(
+							table.selectSql(true))) {
+						while (true) {
+							select.setLong(1, lastId);
+							try (ResultSet rs = select.executeQuery()) {
+								long id = copyRows(rs, insert, table, target);
+								if (id == Long.MIN_VALUE)
+									break;
+								lastId = id;
+							}
+						}
+					}
+				}
+			}
+			target.commit();
+		}
+	}
+
+	/**
+	 * Inserts the rows of the given result set in batches and returns the
+	 * last ID of the rows (or Long.MIN_VALUE if there were no rows or the
+	 * table has no ID column).
+	 */
+	private long copyRows(ResultSet rs, PreparedStatement insert, Table table,
+			Connection target) throws SQLException {
+		long lastId = Long.MIN_VALUE;
+		int count = 0;
+		while (rs.next()) {
+			for (int i = 0; i < table.columns.size(); i++) {
+				setValue(rs, insert, i + 1, table.types.get(i));
+			}
+			if (table.hasId())
+				lastId = rs.getLong(table.idIndex + 1);
+			insert.addBatch();
+			count++;
+			if (count % BATCH_SIZE == 0) {
+				insert.executeBatch();
+				target.commit();
+			}
+		}
+		if (count % BATCH_SIZE != 0) {
+			insert.executeBatch();
+			target.commit();
+		}
+		return lastId;
+	}
+
+	private void setValue(ResultSet rs, PreparedStatement insert, int i,
+			int type) throws SQLException {
+		switch (type) {
+		case Types.BLOB:
+		case Types.BINARY:
+		case Types.VARBINARY:
+		case Types.LONGVARBINARY:
+			byte[] bytes = rs.getBytes(i);
+			if (bytes == null)
+				insert.setNull(i, type);
+			else
+				insert.setBytes(i, bytes);
+			break;
+		case Types.CLOB:
+		case Types.LONGVARCHAR:
+			String text = rs.getString(i);
+			if (text == null)
+				insert.setNull(i, type);
+			else
+				insert.setString(i, text);
+			break;
+		default:
+			Object value = rs.getObject(i);
+			if (value == null)
+				insert.setNull(i, type);
+			else
+				insert.setObject(i, value, type);
+		}
+	}
+
+	private static class Table {
+
+		final String name;
+		final String sourceName;
+		final List<String> columns = new ArrayList<>();
+		final List<Integer> types = new ArrayList<>();
+		final int idIndex;
+
+		Table(String name, String sourceName, Map<String, Integer> columns) {
+			this.name = name;
+			this.sourceName = sourceName;
+			this.columns.addAll(columns.keySet());
+			this.columns.sort(null);
+			for (String column : this.columns)
+				types.add(columns.get(column));
+			this.idIndex = this.columns.indexOf("id");
+		}
+
+		boolean hasId() {
+			return idIndex >= 0;
+		}
+
+		String selectSql(boolean paged) {
+			String sql = "SELECT " + String.join(", ", columns)
+					+ " FROM " + sourceName;
+			if (!paged)
+				return sql;
+			return sql + " WHERE id > ? ORDER BY id LIMIT " + BATCH_SIZE;
+		}
+
+		String insertSql() {
+			StringBuilder params = new StringBuilder();
+			for (int i = 0; i < columns.size(); i++) {
+				if (i > 0)
+					params.append(", ");
+				params.append('?');
+			}
+			return "INSERT INTO " + name + " (" + String.join(", ", columns)
+					+ ") VALUES (" + params + ")";
+		}
+	}
 }
@@ -0,0 +1,278 @@
+package org.openlca.app.db;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openlca.core.math.CalculationSetup;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.ParameterRedef;
+import org.openlca.core.model.ProcessLink;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.descriptors.BaseDescriptor;
+import org.openlca.core.results.BaseResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded cache for calculation results. The results are stored under a
+ * fingerprint of the calculation setup so that a recalculation of a product
+ * system with the same setup can directly reuse the result. The cache keeps at
+ * most MAX_ENTRIES results and the estimated size of all results is limited to
+ * a quarter of the maximum heap size; the least recently used results are
+ * removed first. Results are invalidated from {@link Cache#evict} when models
+ * they depend on are changed.
+ */
+public class ResultCache {
+
+	private static final int MAX_ENTRIES = 5;
+
+	private Logger log = LoggerFactory.getLogger(getClass());
+	private final long maxBytes = Runtime.getRuntime().maxMemory() / 4;
+	private long bytes;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(
+			16, 0.75f, true);
+
+	/**
+	 * Returns the cached result of the given type for the setup or null if
+	 * there is no such result.
+	 */
+	public synchronized <T> T get(String kind, CalculationSetup setup,
+			Class<T> type) {
+		if (setup == null)
+			return null;
+		Entry entry = entries.get(key(kind, setup));
+		if (entry == null || !type.isInstance(entry.result)) {
+			CacheStats.count(CacheStats.RESULT_CACHE, CacheStats.MISSES);
+			return null;
+		}
+		log.trace("result cache hit for system {}", entry.systemId);
+		CacheStats.count(CacheStats.RESULT_CACHE, CacheStats.HITS);
+		return type.cast(entry.result);
+	}
+
+	/**
+	 * Stores the given result for the setup in the cache.
+	 *
+	 * @param kind
+	 *            the kind of calculation (e.g. full or contribution analysis)
+	 * @param setup
+	 *            the calculation setup
+	 * @param result
+	 *            the result that is returned from the cache (typically a
+	 *            result provider)
+	 * @param data
+	 *            the result data from which the size of the entry is
+	 *            estimated
+	 */
+	public synchronized void put(String kind, CalculationSetup setup,
+			Object result, BaseResult data) {
+		if (setup == null || setup.productSystem == null || result == null)
+			return;
+		Entry entry = new Entry();
+		entry.result = result;
+		entry.bytes = estimateSize(data);
+		if (entry.bytes > maxBytes)
+			return;
+		ProductSystem system = setup.productSystem;
+		entry.systemId = system.getId();
+		entry.processes = new HashSet<>(system.getProcesses());
+		if (setup.impactMethod != null)
+			entry.methodId = setup.impactMethod.getId();
+		if (setup.nwSet != null)
+			entry.nwSetId = setup.nwSet.getId();
+		Entry old = entries.put(key(kind, setup), entry);
+		if (old != null)
+			bytes -= old.bytes;
+		bytes += entry.bytes;
+		shrink();
+	}
+
+	private void shrink() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (it.hasNext()
+				&& (entries.size() > MAX_ENTRIES || bytes > maxBytes)) {
+			Entry eldest = it.next();
+			bytes -= eldest.bytes;
+			it.remove();
+			CacheStats.count(CacheStats.RESULT_CACHE, CacheStats.EVICTIONS);
+		}
+	}
+
+	/**
+	 * Removes the results that could be affected by a change of the given
+	 * model.
+	 */
+	public synchronized void evict(BaseDescriptor d) {
+		if (d == null || d.getModelType() == null) {
+			evictAll();
+			return;
+		}
+		ModelType type = d.getModelType();
+		if (type.isOneOf(ModelType.CATEGORY, ModelType.ACTOR,
+				ModelType.SOURCE, ModelType.PROJECT, ModelType.LOCATION,
+				ModelType.DQ_SYSTEM, ModelType.SOCIAL_INDICATOR))
+			return;
+		if (!type.isOneOf(ModelType.PRODUCT_SYSTEM, ModelType.PROCESS,
+				ModelType.IMPACT_METHOD, ModelType.NW_SET)) {
+			// flows, units, global parameters etc. can change any result
+			evictAll();
+			return;
+		}
+		long id = d.getId();
+		List<String> removals = new ArrayList<>();
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			if (e.getValue().dependsOn(type, id))
+				removals.add(e.getKey());
+		}
+		for (String key : removals) {
+			Entry removed = entries.remove(key);
+			bytes -= removed.bytes;
+		}
+		CacheStats.count(CacheStats.RESULT_CACHE, CacheStats.EVICTIONS,
+				removals.size());
+		if (!removals.isEmpty())
+			log.trace("evicted {} results for {}", removals.size(), d);
+	}
+
+	public synchronized void evictAll() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Roughly estimates the memory size of a result from its matrix
+	 * dimensions: the direct and upstream results of the flows and impact
+	 * categories for each product.
+	 */
+	private long estimateSize(BaseResult data) {
+		if (data == null || data.productIndex == null)
+			return 0;
+		long n = data.productIndex.size();
+		long m = data.flowIndex == null ? 0 : data.flowIndex.size();
+		long k = data.impactIndex == null ? 0 : data.impactIndex.size();
+		return 8L * (2 * m * n + 2 * k * n + n * n);
+	}
+
+	/**
+	 * Creates the fingerprint of a calculation setup. This includes a SHA-256
+	 * digest of the canonical structure of the product system (the sorted
+	 * process IDs and process links) and of the parameter redefinitions so
+	 * that unsaved changes of the system result in a different key.
+	 */
+	static String key(String kind, CalculationSetup setup) {
+		ProductSystem system = setup.productSystem;
+		StringBuilder b = new StringBuilder();
+		b.append(kind)
+				.append('|').append(system.getId())
+				.append('|').append(system.getVersion())
+				.append('|').append(system.getLastChange())
+				.append('|').append(system.getTargetAmount());
+		if (system.getReferenceExchange() != null)
+			b.append('|').append(system.getReferenceExchange().getId());
+		if (system.getTargetUnit() != null)
+			b.append('|').append(system.getTargetUnit().getId());
+		b.append('|').append(setup.allocationMethod)
+				.append('|').append(id(setup.impactMethod))
+				.append('|').append(id(setup.nwSet))
+				.append('|').append(setup.withCosts)
+				.append('|').append(digest(setup));
+		return b.toString();
+	}
+
+	private static String digest(CalculationSetup setup) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+		ProductSystem system = setup.productSystem;
+		List<String> redefs = new ArrayList<>();
+		for (ParameterRedef redef : setup.parameterRedefs)
+			redefs.add(redef.getName() + ":" + redef.getContextType() + ":"
+					+ redef.getContextId() + "=" + redef.getValue());
+		Collections.sort(redefs);
+		for (String redef : redefs)
+			digest.update((redef + "\n").getBytes(StandardCharsets.UTF_8));
+		long[] processes = new long[system.getProcesses().size()];
+		int i = 0;
+		for (Long process : system.getProcesses())
+			processes[i++] = process;
+		Arrays.sort(processes);
+		ByteBuffer buffer = ByteBuffer.allocate(32);
+		update(digest, buffer, processes.length);
+		for (long process : processes)
+			update(digest, buffer, process);
+		List<long[]> links = new ArrayList<>();
+		for (ProcessLink link : system.getProcessLinks())
+			links.add(new long[] { link.providerId, link.flowId,
+					link.processId, link.exchangeId });
+		links.sort((l1, l2) -> {
+			for (int k = 0; k < 4; k++) {
+				int c = Long.compare(l1[k], l2[k]);
+				if (c != 0)
+					return c;
+			}
+			return 0;
+		});
+		update(digest, buffer, links.size());
+		for (long[] link : links) {
+			buffer.clear();
+			for (long val : link)
+				buffer.putLong(val);
+			digest.update(buffer.array(), 0, 32);
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte by : digest.digest())
+			hex.append(String.format("%02x", by));
+		return hex.toString();
+	}
+
+	private static void update(MessageDigest digest, ByteBuffer buffer,
+			long val) {
+		buffer.clear();
+		buffer.putLong(val);
+		digest.update(buffer.array(), 0, 8);
+	}
+
+	private static String id(BaseDescriptor d) {
+		return d == null ? "-" : Long.toString(d.getId());
+	}
+
+	private static class Entry {
+
+		Object result;
+		long bytes;
+		long systemId;
+		Set<Long> processes;
+		long methodId;
+		long nwSetId;
+
+		boolean dependsOn(ModelType type, long id) {
+			switch (type) {
+			case PRODUCT_SYSTEM:
+				return systemId == id;
+			case PROCESS:
+				return processes != null && processes.contains(id);
+			case IMPACT_METHOD:
+				return methodId == id;
+			case NW_SET:
+				return nwSetId == id;
+			default:
+				return true;
+			}
+		}
+	}
+}
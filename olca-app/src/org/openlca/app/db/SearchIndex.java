@@ -0,0 +1,594 @@
+package org.openlca.app.db;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.Table;
+
+import org.apache.commons.io.FileUtils;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.openlca.app.navigation.ModelTypeComparison;
+import org.openlca.app.util.Labels;
+import org.openlca.core.database.Daos;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.database.ParameterDao;
+import org.openlca.core.model.CategorizedEntity;
+import org.openlca.core.model.Category;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.Parameter;
+import org.openlca.core.model.ParameterScope;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.openlca.io.CategoryPath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent full-text index of the models of a database. The index is
+ * stored in the file storage location of the database, it is built on the
+ * first search, and it is then updated incrementally by the database
+ * listener. The changes from the listener are only collected and written
+ * together after a short delay in a background thread (or before the next
+ * search), so that an import results in a single write. When too many
+ * changes are pending, the index is invalidated instead and rebuilt on the
+ * next search. The tokens are stored in a sorted map so that prefix queries
+ * are just range scans.
+ *
+ * Changes that are not reported by the listener (e.g. from other applications
+ * or database upgrades) are detected with a fingerprint of the database that
+ * is stored with the index. It contains the database version and the row
+ * count, maximum ID and maximum last change of the indexed tables; it is
+ * checked on the first search of a session and stored when the index is
+ * closed.
+ *
+ * The maps of the index are guarded by the monitor of the index. The changes
+ * of the listener are collected under the monitor of the pending changes only
+ * so that saving a model is not blocked by a running build or search. A build
+ * collects the documents without holding the monitor of the index and writes
+ * them together with the changes that were reported in the meantime.
+ */
+public class SearchIndex {
+
+	private static final int VERSION = 1;
+	private static final char SEP = '\u0000';
+
+	// weights of the different fields; a match in the name of a model is
+	// ranked higher than a match in its synonyms or category path.
+	private static final int NAME = 8;
+	private static final int CODE = 4;
+	private static final int SYNONYM = 2;
+	private static final int CATEGORY = 1;
+
+	/** The delay in milliseconds after which changes are written. */
+	private static final long WRITE_DELAY = 500;
+
+	/** With more pending changes the index is rebuilt on the next search. */
+	private static final int MAX_PENDING = 10000;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final IDatabase database;
+	private final File file;
+
+	private DB db;
+	/** token + SEP + document key -> weight */
+	private NavigableMap<String, Integer> tokens;
+	/** document key -> the index keys of the document */
+	private Map<String, String[]> docs;
+	private Map<String, Object> meta;
+
+	/**
+	 * document key -> document of a changed model; null for deleted models.
+	 * The documents are created when the change is reported so that no
+	 * entities are accessed later from the writer thread.
+	 */
+	private final Map<String, Doc> pending = new LinkedHashMap<>();
+	private boolean invalidated;
+	private final ScheduledExecutorService writer;
+	private boolean writeScheduled;
+
+	/** True if the changes of the listener should be collected. */
+	private volatile boolean tracked;
+	/** Held while the index is built so that only one build runs. */
+	private final Object buildLock = new Object();
+	/** True while the documents of a build are collected. */
+	private boolean building;
+	/** True if the fingerprint of the database was checked. */
+	private volatile boolean verified;
+
+	SearchIndex(IDatabase database) {
+		this.database = database;
+		File dir = new File(DatabaseDir.getFileStorageLocation(database),
+				"search");
+		if (!dir.exists())
+			dir.mkdirs();
+		file = new File(dir, "indexfile");
+		open();
+		tracked = isBuilt();
+		writer = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+			Thread thread = new Thread(runnable, "SearchIndex writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	private void open() {
+		try {
+			createDb();
+		} catch (Exception e) {
+			log.warn("search index corrupted; create a new one", e);
+			FileUtils.deleteQuietly(file.getParentFile());
+			file.getParentFile().mkdirs();
+			createDb();
+		}
+	}
+
+	private void createDb() {
+		db = DBMaker.fileDB(file).transactionDisable()
+				.closeOnJvmShutdown().make();
+		tokens = db.treeMap("tokens");
+		docs = db.hashMap("docs");
+		meta = db.hashMap("meta");
+	}
+
+	public synchronized void close() {
+		writer.shutdownNow();
+		if (db.isClosed())
+			return;
+		write();
+		// an index that was not checked in this session could be outdated,
+		// so its fingerprint is not updated
+		if (verified && isBuilt()) {
+			String fingerprint = fingerprint();
+			if (fingerprint != null)
+				meta.put("fingerprint", fingerprint);
+			else
+				meta.remove("fingerprint");
+			db.commit();
+		}
+		db.close();
+	}
+
+	public synchronized boolean isBuilt() {
+		synchronized (pending) {
+			if (invalidated)
+				return false;
+		}
+		Object version = meta.get("version");
+		return version != null && version.equals(VERSION);
+	}
+
+	/**
+	 * Builds the index if this was not done yet or if it was invalidated. The
+	 * monitor of the index is not held while the documents are collected.
+	 */
+	public void ensureBuilt() {
+		synchronized (buildLock) {
+			String fingerprint = verified ? null : fingerprint();
+			synchronized (this) {
+				write();
+				if (isBuilt() && (verified || (fingerprint != null
+						&& fingerprint.equals(meta.get("fingerprint"))))) {
+					verified = true;
+					return;
+				}
+				building = true;
+			}
+			if (fingerprint == null)
+				fingerprint = fingerprint();
+			log.trace("build search index for {}", database.getName());
+			// changes that are reported from now on are written after the
+			// build; they may overwrite documents with the same content
+			tracked = true;
+			List<Doc> newDocs = null;
+			try {
+				newDocs = collectDocs();
+			} finally {
+				synchronized (this) {
+					building = false;
+					if (newDocs != null && !db.isClosed()) {
+						tokens.clear();
+						docs.clear();
+						for (Doc doc : newDocs)
+							put(doc);
+						meta.put("version", VERSION);
+						if (fingerprint != null)
+							meta.put("fingerprint", fingerprint);
+						db.commit();
+						verified = true;
+						log.trace("search index with {} documents created",
+								docs.size());
+					}
+					write();
+				}
+			}
+		}
+	}
+
+	private List<Doc> collectDocs() {
+		List<Doc> docs = new ArrayList<>();
+		Map<Long, String> paths = new HashMap<>();
+		for (ModelType type : ModelTypeComparison.getOrderedTypes()) {
+			Map<Long, String[]> flowInfos = type == ModelType.FLOW
+					? queryFlowInfos()
+					: Collections.emptyMap();
+			for (CategorizedDescriptor d : getDescriptors(type)) {
+				String[] info = flowInfos.get(d.getId());
+				Doc doc = new Doc(type, d.getId());
+				doc.add(Labels.getDisplayName(d), NAME);
+				doc.add(d.getRefId(), CODE);
+				if (info != null) {
+					doc.add(info[0], CODE);
+					doc.add(info[1], SYNONYM);
+				}
+				doc.add(getPath(d.getCategory(), paths), CATEGORY);
+				docs.add(doc);
+			}
+		}
+		return docs;
+	}
+
+	private List<? extends CategorizedDescriptor> getDescriptors(
+			ModelType type) {
+		if (type == ModelType.PARAMETER)
+			return new ParameterDao(database).getGlobalDescriptors();
+		return Daos.createCategorizedDao(database, type).getDescriptors();
+	}
+
+	/**
+	 * Returns the fingerprint of the indexed tables or null if it could not be
+	 * calculated.
+	 */
+	private String fingerprint() {
+		StringBuilder b = new StringBuilder();
+		b.append(database.getVersion());
+		List<ModelType> types = new ArrayList<>();
+		types.add(ModelType.CATEGORY);
+		Collections.addAll(types, ModelTypeComparison.getOrderedTypes());
+		try {
+			for (ModelType type : types) {
+				Table table = type.getModelClass().getAnnotation(Table.class);
+				if (table == null)
+					continue;
+				String query = "SELECT COUNT(*), MAX(id), MAX(last_change) "
+						+ "FROM " + table.name();
+				NativeSql.on(database).query(query, (rs) -> {
+					b.append('/').append(rs.getLong(1))
+							.append(':').append(rs.getLong(2))
+							.append(':').append(rs.getLong(3));
+					return false;
+				});
+			}
+			return b.toString();
+		} catch (Exception e) {
+			log.warn("failed to calculate the fingerprint of the database", e);
+			return null;
+		}
+	}
+
+	/** Returns the CAS numbers and synonyms of the flows. */
+	private Map<Long, String[]> queryFlowInfos() {
+		Map<Long, String[]> infos = new HashMap<>();
+		String query = "SELECT id, cas_number, synonyms FROM tbl_flows";
+		try {
+			NativeSql.on(database).query(query, (rs) -> {
+				String cas = rs.getString("cas_number");
+				String synonyms = rs.getString("synonyms");
+				if (cas != null || synonyms != null)
+					infos.put(rs.getLong("id"), new String[] { cas, synonyms });
+				return true;
+			});
+		} catch (Exception e) {
+			log.warn("failed to query CAS numbers and synonyms of flows", e);
+		}
+		return infos;
+	}
+
+	private String getPath(Long categoryId, Map<Long, String> paths) {
+		if (categoryId == null)
+			return null;
+		if (paths.containsKey(categoryId))
+			return paths.get(categoryId);
+		Category category = Cache.getEntityCache().get(Category.class,
+				categoryId);
+		String path = category == null ? null : CategoryPath.getFull(category);
+		paths.put(categoryId, path);
+		return path;
+	}
+
+	void update(CategorizedEntity entity) {
+		if (entity == null || !tracked)
+			return;
+		if (entity instanceof Category) {
+			// the category paths of all contained models could have changed;
+			// instead of tracking them we rebuild the index on the next search
+			invalidate();
+			return;
+		}
+		ModelType type = ModelType.forModelClass(entity.getClass());
+		if (!isIndexed(type, entity))
+			return;
+		String key = Doc.key(type, entity.getId());
+		enqueue(key, createDoc(key, entity));
+	}
+
+	void delete(CategorizedEntity entity) {
+		if (entity == null || !tracked)
+			return;
+		if (entity instanceof Category) {
+			invalidate();
+			return;
+		}
+		ModelType type = ModelType.forModelClass(entity.getClass());
+		if (type == null)
+			return;
+		enqueue(Doc.key(type, entity.getId()), null);
+	}
+
+	private void enqueue(String docKey, Doc doc) {
+		synchronized (pending) {
+			pending.put(docKey, doc);
+			if (pending.size() > MAX_PENDING) {
+				invalidate();
+				return;
+			}
+			scheduleWrite();
+		}
+	}
+
+	private void invalidate() {
+		synchronized (pending) {
+			pending.clear();
+			invalidated = true;
+			scheduleWrite();
+		}
+	}
+
+	/**
+	 * Schedules the write of the pending changes so that multiple changes are
+	 * combined into a single commit. Must be called while holding the monitor
+	 * of the pending changes.
+	 */
+	private void scheduleWrite() {
+		// when the writer is shut down the index is closed
+		if (writeScheduled || writer.isShutdown())
+			return;
+		writeScheduled = true;
+		writer.schedule(() -> {
+			synchronized (this) {
+				synchronized (pending) {
+					writeScheduled = false;
+				}
+				write();
+			}
+		}, WRITE_DELAY, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Writes the pending changes. Must be called while holding the monitor of
+	 * the index; during a build the changes are kept until the build is
+	 * finished.
+	 */
+	private void write() {
+		if (building || db.isClosed())
+			return;
+		Map<String, Doc> changes;
+		boolean invalid;
+		synchronized (pending) {
+			invalid = invalidated;
+			if (invalid) {
+				invalidated = false;
+				tracked = false;
+			}
+			changes = new LinkedHashMap<>(pending);
+			pending.clear();
+		}
+		if (invalid) {
+			meta.remove("version");
+			db.commit();
+			return;
+		}
+		if (changes.isEmpty())
+			return;
+		log.trace("write {} changed models to the search index",
+				changes.size());
+		for (Map.Entry<String, Doc> e : changes.entrySet()) {
+			remove(e.getKey());
+			if (e.getValue() != null)
+				put(e.getValue());
+		}
+		db.commit();
+	}
+
+	private Doc createDoc(String key, CategorizedEntity entity) {
+		Doc doc = new Doc(key);
+		doc.add(Labels.getDisplayName(entity), NAME);
+		doc.add(entity.getRefId(), CODE);
+		if (entity instanceof Flow) {
+			Flow flow = (Flow) entity;
+			doc.add(flow.getCasNumber(), CODE);
+			doc.add(flow.getSynonyms(), SYNONYM);
+		}
+		if (entity.getCategory() != null)
+			doc.add(CategoryPath.getFull(entity.getCategory()), CATEGORY);
+		return doc;
+	}
+
+	private boolean isIndexed(ModelType type, CategorizedEntity entity) {
+		if (type == null)
+			return false;
+		if (entity instanceof Parameter) {
+			Parameter param = (Parameter) entity;
+			return param.getScope() == ParameterScope.GLOBAL;
+		}
+		for (ModelType t : ModelTypeComparison.getOrderedTypes()) {
+			if (t == type)
+				return true;
+		}
+		return false;
+	}
+
+	private void put(Doc doc) {
+		String[] keys = new String[doc.weights.size()];
+		int i = 0;
+		for (Map.Entry<String, Integer> e : doc.weights.entrySet()) {
+			String key = e.getKey() + SEP + doc.key;
+			tokens.put(key, e.getValue());
+			keys[i++] = key;
+		}
+		docs.put(doc.key, keys);
+	}
+
+	private void remove(String docKey) {
+		String[] keys = docs.remove(docKey);
+		if (keys == null)
+			return;
+		for (String key : keys)
+			tokens.remove(key);
+	}
+
+	/**
+	 * Searches for models where each of the given terms is a prefix of a token
+	 * of the model. The returned hits are ranked by their score: matches in
+	 * the name count more than matches in the category path and exact token
+	 * matches count more than prefix matches.
+	 */
+	public synchronized List<Hit> find(String term, ModelType typeFilter) {
+		write();
+		String[] terms = tokenize(term).keySet().toArray(new String[0]);
+		if (terms.length == 0)
+			return Collections.emptyList();
+		Map<String, Double> scores = null;
+		for (String t : terms) {
+			Map<String, Double> matches = match(t, typeFilter);
+			if (scores == null) {
+				scores = matches;
+				continue;
+			}
+			Map<String, Double> next = new HashMap<>();
+			for (Map.Entry<String, Double> e : matches.entrySet()) {
+				Double score = scores.get(e.getKey());
+				if (score != null)
+					next.put(e.getKey(), score + e.getValue());
+			}
+			scores = next;
+			if (scores.isEmpty())
+				break;
+		}
+		List<Hit> hits = new ArrayList<>();
+		for (Map.Entry<String, Double> e : scores.entrySet()) {
+			Hit hit = Hit.of(e.getKey());
+			if (hit == null)
+				continue;
+			hit.score = e.getValue();
+			hits.add(hit);
+		}
+		Collections.sort(hits, (h1, h2) -> Double.compare(h2.score, h1.score));
+		return hits;
+	}
+
+	/** Returns the best score per document for the given prefix. */
+	private Map<String, Double> match(String prefix, ModelType typeFilter) {
+		Map<String, Double> scores = new HashMap<>();
+		NavigableMap<String, Integer> range = tokens.subMap(
+				prefix, true, prefix + Character.MAX_VALUE, true);
+		String typePrefix = typeFilter == null ? null : typeFilter.name() + "/";
+		for (Map.Entry<String, Integer> e : range.entrySet()) {
+			String key = e.getKey();
+			int sep = key.indexOf(SEP);
+			if (sep < 0)
+				continue;
+			String docKey = key.substring(sep + 1);
+			if (typePrefix != null && !docKey.startsWith(typePrefix))
+				continue;
+			double score = e.getValue();
+			if (sep == prefix.length())
+				score *= 2; // exact token match
+			Double old = scores.get(docKey);
+			if (old == null || old < score)
+				scores.put(docKey, score);
+		}
+		return scores;
+	}
+
+	/**
+	 * Splits the given text into lower case tokens. The whitespace separated
+	 * words are kept (e.g. for UUIDs or CAS numbers) and additionally split at
+	 * the non-alphanumeric characters. The map contains the tokens in the order
+	 * of their occurrence.
+	 */
+	static Map<String, Boolean> tokenize(String text) {
+		Map<String, Boolean> tokens = new LinkedHashMap<>();
+		if (text == null)
+			return tokens;
+		for (String word : text.toLowerCase().split("\\s+")) {
+			String w = word.replaceAll("^[^\\p{L}\\p{N}]+|[^\\p{L}\\p{N}]+$",
+					"");
+			if (w.isEmpty())
+				continue;
+			tokens.put(w, true);
+			for (String part : w.split("[^\\p{L}\\p{N}]+")) {
+				if (!part.isEmpty())
+					tokens.put(part, true);
+			}
+		}
+		return tokens;
+	}
+
+	private static class Doc {
+
+		final String key;
+		final Map<String, Integer> weights = new HashMap<>();
+
+		Doc(ModelType type, long id) {
+			this(key(type, id));
+		}
+
+		Doc(String key) {
+			this.key = key;
+		}
+
+		static String key(ModelType type, long id) {
+			return type.name() + "/" + id;
+		}
+
+		void add(String text, int weight) {
+			for (String token : tokenize(text).keySet()) {
+				Integer old = weights.get(token);
+				if (old == null || old < weight)
+					weights.put(token, weight);
+			}
+		}
+	}
+
+	public static class Hit {
+
+		public ModelType type;
+		public long id;
+		public double score;
+
+		private static Hit of(String docKey) {
+			int sep = docKey.indexOf('/');
+			if (sep < 0)
+				return null;
+			try {
+				Hit hit = new Hit();
+				hit.type = ModelType.valueOf(docKey.substring(0, sep));
+				hit.id = Long.parseLong(docKey.substring(sep + 1));
+				return hit;
+			} catch (Exception e) {
+				return null;
+			}
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package org.openlca.app.devtools;
+
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IToolBarManager;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.part.ViewPart;
+import org.openlca.app.db.CacheStats;
+import org.openlca.app.rcp.images.Icon;
+import org.openlca.app.util.Actions;
+import org.openlca.app.util.tables.Tables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A developer view that shows the counters of the application caches.
+ */
+public class CacheStatsView extends ViewPart {
+
+	public static final String ID = "views.devtools.cachestats";
+
+	private TableViewer viewer;
+
+	public static void open() {
+		try {
+			IWorkbenchPage page = PlatformUI.getWorkbench()
+					.getActiveWorkbenchWindow().getActivePage();
+			page.showView(ID);
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(CacheStatsView.class);
+			log.error("failed to open cache statistics", e);
+		}
+	}
+
+	@Override
+	public void createPartControl(Composite parent) {
+		viewer = Tables.createViewer(parent, "Counter", "Value");
+		viewer.setLabelProvider(new CounterLabel());
+		Tables.bindColumnWidths(viewer, 0.7, 0.3);
+		Action refresh = Actions.create("Refresh", Icon.REFRESH.descriptor(),
+				this::refresh);
+		Action reset = Actions.create("Reset", Icon.DELETE.descriptor(), () -> {
+			CacheStats.reset();
+			refresh();
+		});
+		IToolBarManager toolbar = getViewSite().getActionBars()
+				.getToolBarManager();
+		toolbar.add(refresh);
+		toolbar.add(reset);
+		refresh();
+	}
+
+	private void refresh() {
+		if (viewer == null || viewer.getTable().isDisposed())
+			return;
+		viewer.setInput(CacheStats.get());
+	}
+
+	@Override
+	public void setFocus() {
+		refresh();
+	}
+
+	private class CounterLabel extends LabelProvider implements
+			ITableLabelProvider {
+
+		@Override
+		public Image getColumnImage(Object element, int column) {
+			return null;
+		}
+
+		@Override
+		public String getColumnText(Object element, int column) {
+			if (!(element instanceof Object[]))
+				return null;
+			Object[] row = (Object[]) element;
+			if (column < 0 || column >= row.length)
+				return null;
+			return String.valueOf(row[column]);
+		}
+	}
+}
@@ -1,6 +1,11 @@
 package org.openlca.app.editors.graphical;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.draw2d.ConnectionRouter;
@@ -19,8 +24,10 @@ import org.eclipse.ui.PartInitException;
 import org.eclipse.ui.views.contentoutline.IContentOutlinePage;
 import org.openlca.app.M;
 import org.openlca.app.db.Cache;
+import org.openlca.app.db.Database;
 import org.openlca.app.editors.graphical.layout.LayoutType;
 import org.openlca.app.editors.graphical.layout.NodeLayoutStore;
+import org.openlca.app.editors.graphical.model.ExchangeItemCache;
 import org.openlca.app.editors.graphical.model.Link;
 import org.openlca.app.editors.graphical.model.ProcessNode;
 import org.openlca.app.editors.graphical.model.ProductSystemNode;
@@ -47,12 +54,19 @@ public class ProductSystemGraphEditor extends GraphicalEditor {
 	private ISelection selection;
 	private List<String> actionIds;
 	private boolean initialized = false;
+	private final ExchangeItemCache exchangeCache = new ExchangeItemCache(Database.get());
 
 	public ProductSystemGraphEditor(ProductSystemEditor editor) {
 		this.systemEditor = editor;
 		editor.onSaved(() -> NodeLayoutStore.saveLayout(getModel()));
 	}
 
+	@Override
+	public void dispose() {
+		exchangeCache.close();
+		super.dispose();
+	}
+
 	public ProductSystemEditor getSystemEditor() {
 		return systemEditor;
 	}
@@ -125,23 +139,42 @@ public class ProductSystemGraphEditor extends GraphicalEditor {
 	}
 
 	public void createNecessaryLinks(ProcessNode node) {
-		MutableProcessLinkSearchMap linkSearch = node.parent().linkSearch;
-		long id = node.process.getId();
-		for (ProcessLink link : linkSearch.getLinks(id)) {
-			long processId = link.processId == id ? link.providerId : link.processId;
-			ProcessNode otherNode = model.getProcessNode(processId);
-			if (otherNode == null)
-				continue;
-			ProcessNode sourceNode = link.processId == id ? otherNode : node;
-			ProcessNode targetNode = link.processId == id ? node : otherNode;
-			if (!sourceNode.isExpandedRight() && !targetNode.isExpandedLeft())
-				continue;
-			Link connectionLink = new Link();
-			connectionLink.sourceNode = sourceNode;
-			connectionLink.targetNode = targetNode;
-			connectionLink.processLink = link;
-			connectionLink.link();
+		createNecessaryLinks(Collections.singletonList(node));
+	}
+
+	/**
+	 * Creates the links of the given nodes to the other nodes in the model in
+	 * a single batch; the connections of each affected node are refreshed
+	 * only once.
+	 */
+	public void createNecessaryLinks(Collection<ProcessNode> nodes) {
+		List<Link> links = new ArrayList<>();
+		Set<ProcessLink> handled = Collections.newSetFromMap(
+				new IdentityHashMap<>());
+		for (ProcessNode node : nodes) {
+			MutableProcessLinkSearchMap linkSearch = node.parent().linkSearch;
+			long id = node.process.getId();
+			for (ProcessLink link : linkSearch.getLinks(id)) {
+				if (handled.contains(link))
+					continue;
+				long processId = link.processId == id ? link.providerId : link.processId;
+				ProcessNode otherNode = model.getProcessNode(processId);
+				if (otherNode == null)
+					continue;
+				ProcessNode sourceNode = link.processId == id ? otherNode : node;
+				ProcessNode targetNode = link.processId == id ? node : otherNode;
+				if (!sourceNode.isExpandedRight() && !targetNode.isExpandedLeft())
+					continue;
+				handled.add(link);
+				Link connectionLink = new Link();
+				connectionLink.sourceNode = sourceNode;
+				connectionLink.targetNode = targetNode;
+				connectionLink.processLink = link;
+				links.add(connectionLink);
+			}
 		}
+		if (!links.isEmpty())
+			Link.linkAll(links);
 	}
 
 	private GraphicalViewerConfigurator createGraphicalViewerConfigurator() {
@@ -211,10 +244,19 @@ public class ProductSystemGraphEditor extends GraphicalEditor {
 		return layoutType;
 	}
 
+	public void setLayoutType(LayoutType layoutType) {
+		this.layoutType = layoutType;
+	}
+
 	public ProductSystemNode getModel() {
 		return model;
 	}
 
+	/** Returns the cache of the exchanges that are shown in this editor. */
+	public ExchangeItemCache getExchangeCache() {
+		return exchangeCache;
+	}
+
 	public OutlinePage getOutline() {
 		return outline;
 	}
@@ -278,7 +320,8 @@ public class ProductSystemGraphEditor extends GraphicalEditor {
 			router = TreeConnectionRouter.instance;
 		for (ProcessNode node : model.getChildren())
 			for (Link link : node.links)
-				link.figure.setConnectionRouter(router);
+				if (link.figure != null)
+					link.figure.setConnectionRouter(router);
 	}
 
 }
@@ -14,6 +14,7 @@ public interface ActionIds {
 	String LAYOUT_MENU = "graphical.actions.LayoutMenuAction";
 	String LAYOUT_MINIMAL_TREE = "graphical.actions.LayoutAction.MINIMAL_TREE_LAYOUT";
 	String LAYOUT_TREE = "graphical.actions.LayoutAction.TREE_LAYOUT";
+	String LAYOUT_LAYERED = "graphical.actions.LayoutAction.LAYERED_LAYOUT";
 	String OPEN_MINIATURE_VIEW = "graphical.actions.OpenMiniatureViewAction";
 	String REMOVE_ALL_CONNECTIONS = "graphical.actions.RemoveAllConnectionsAction";
 	String REMOVE_SUPPLY_CHAIN = "graphical.actions.RemoveSupplyChainAction";
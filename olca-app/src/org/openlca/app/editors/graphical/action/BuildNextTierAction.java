@@ -1,7 +1,9 @@
 package org.openlca.app.editors.graphical.action;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.gef.commands.Command;
@@ -12,23 +14,25 @@ import org.openlca.app.editors.graphical.command.CommandUtil;
 import org.openlca.app.editors.graphical.command.ConnectionInput;
 import org.openlca.app.editors.graphical.command.ExpansionCommand;
 import org.openlca.app.editors.graphical.command.MassCreationCommand;
+import org.openlca.app.editors.graphical.model.ExchangeItem;
 import org.openlca.app.editors.graphical.model.ExchangeNode;
 import org.openlca.app.editors.graphical.model.ProcessNode;
 import org.openlca.app.editors.graphical.model.ProductSystemNode;
 import org.openlca.app.editors.graphical.search.ProcessLinkSearchMap;
-import org.openlca.core.database.BaseDao;
 import org.openlca.core.database.FlowDao;
+import org.openlca.core.database.NativeSql;
 import org.openlca.core.database.ProcessDao;
-import org.openlca.core.model.Exchange;
 import org.openlca.core.model.ProcessLink;
 import org.openlca.core.model.ProcessType;
 import org.openlca.core.model.descriptors.ProcessDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 class BuildNextTierAction extends Action implements IBuildAction {
 
+	private final Logger log = LoggerFactory.getLogger(getClass());
 	private final FlowDao flowDao;
 	private final ProcessDao processDao;
-	private final BaseDao<Exchange> exchangeDao;
 	private List<ProcessNode> nodes;
 	private ProductSystemNode systemNode;
 	private ProcessType preferredType = ProcessType.UNIT_PROCESS;
@@ -38,7 +42,6 @@ class BuildNextTierAction extends Action implements IBuildAction {
 		setText(M.BuildNextTier);
 		flowDao = new FlowDao(Database.get());
 		processDao = new ProcessDao(Database.get());
-		exchangeDao = new BaseDao<>(Exchange.class, Database.get());
 	}
 
 	@Override
@@ -60,6 +63,11 @@ class BuildNextTierAction extends Action implements IBuildAction {
 		ProductSystemNode systemNode = nodes.get(0).parent();
 		List<ProcessDescriptor> providers = new ArrayList<>();
 		List<ConnectionInput> newConnections = new ArrayList<>();
+		// load the exchanges of all nodes in one batch
+		List<Long> processIds = new ArrayList<>();
+		for (ProcessNode node : nodes)
+			processIds.add(node.process.getId());
+		systemNode.editor.getExchangeCache().load(processIds);
 		for (ProcessNode node : nodes)
 			collectFor(node, providers, newConnections);
 		Command command = MassCreationCommand.nextTier(providers, newConnections, systemNode);
@@ -117,7 +125,7 @@ class BuildNextTierAction extends Action implements IBuildAction {
 		return false;
 	}
 
-	private ProcessDescriptor findProvider(Exchange exchange) {
+	private ProcessDescriptor findProvider(ExchangeItem exchange) {
 		ProcessDescriptor defaultProvider = getDefaultProvider(exchange);
 		if (defaultProvider != null)
 			return defaultProvider;
@@ -140,10 +148,13 @@ class BuildNextTierAction extends Action implements IBuildAction {
 	private ProcessDescriptor findMatching(List<ProcessDescriptor> providers,
 			long flowId) {
 		ProcessDescriptor candidate = null;
+		Map<Long, Long> referenceFlows = getReferenceFlows(providers);
 		for (ProcessDescriptor descriptor : providers) {
-			Exchange reference = exchangeDao.getForId(descriptor
-					.getQuantitativeReference());
-			if (reference.getFlow().getId() != flowId)
+			Long refId = descriptor.getQuantitativeReference();
+			if (refId == null)
+				continue;
+			Long refFlow = referenceFlows.get(refId);
+			if (refFlow == null || refFlow != flowId)
 				continue;
 			if (descriptor.getProcessType() == preferredType)
 				return descriptor;
@@ -153,6 +164,35 @@ class BuildNextTierAction extends Action implements IBuildAction {
 		return candidate;
 	}
 
+	/**
+	 * Returns the flow IDs of the quantitative references of the given
+	 * processes, mapped by the exchange IDs; loaded with a single query.
+	 */
+	private Map<Long, Long> getReferenceFlows(List<ProcessDescriptor> providers) {
+		Map<Long, Long> flows = new HashMap<>();
+		StringBuilder ids = new StringBuilder();
+		for (ProcessDescriptor descriptor : providers) {
+			if (descriptor.getQuantitativeReference() == null)
+				continue;
+			if (ids.length() > 0)
+				ids.append(',');
+			ids.append(descriptor.getQuantitativeReference());
+		}
+		if (ids.length() == 0)
+			return flows;
+		String query = "SELECT id, f_flow FROM tbl_exchanges WHERE id IN ("
+				+ ids + ")";
+		try {
+			NativeSql.on(Database.get()).query(query, (rs) -> {
+				flows.put(rs.getLong(1), rs.getLong(2));
+				return true;
+			});
+		} catch (Exception e) {
+			log.error("failed to load reference flows of providers", e);
+		}
+		return flows;
+	}
+
 	private ProcessDescriptor findExisting(List<ProcessDescriptor> providers) {
 		Set<Long> existing = systemNode.getProductSystem().getProcesses();
 		for (ProcessDescriptor descriptor : providers)
@@ -168,13 +208,13 @@ class BuildNextTierAction extends Action implements IBuildAction {
 		return null;
 	}
 
-	private ProcessDescriptor getDefaultProvider(Exchange exchange) {
+	private ProcessDescriptor getDefaultProvider(ExchangeItem exchange) {
 		if (exchange.getDefaultProviderId() == 0)
 			return null;
 		return processDao.getDescriptor(exchange.getDefaultProviderId());
 	}
 
-	private List<ProcessDescriptor> getProviders(Exchange exchange) {
+	private List<ProcessDescriptor> getProviders(ExchangeItem exchange) {
 		Set<Long> providerIds = flowDao
 				.getProviders(exchange.getFlow().getId());
 		return processDao.getDescriptors(providerIds);
@@ -22,12 +22,16 @@ class LayoutAction extends Action {
 		case MINIMAL_TREE_LAYOUT:
 			setId(ActionIds.LAYOUT_MINIMAL_TREE);
 			break;
+		case LAYERED_LAYOUT:
+			setId(ActionIds.LAYOUT_LAYERED);
+			break;
 		}
 		this.layoutType = layoutType;
 	}
 
 	@Override
 	public void run() {
+		model.editor.setLayoutType(layoutType);
 		LayoutManager layoutManager = (LayoutManager) model.figure.getLayoutManager();
 		LayoutCommand command = new LayoutCommand(model, layoutManager, layoutType);
 		model.editor.getCommandStack().execute(command);
@@ -17,6 +17,7 @@ class LayoutMenuAction extends EditorAction {
 	private ProductSystemGraphEditor editor;
 	private LayoutAction minimalLayoutAction = new LayoutAction(LayoutType.MINIMAL_TREE_LAYOUT);
 	private LayoutAction treeLayoutAction = new LayoutAction(LayoutType.TREE_LAYOUT);
+	private LayoutAction layeredLayoutAction = new LayoutAction(LayoutType.LAYERED_LAYOUT);
 
 	LayoutMenuAction() {
 		setId(ActionIds.LAYOUT_MENU);
@@ -29,6 +30,7 @@ class LayoutMenuAction extends EditorAction {
 	public void setEditor(ProductSystemGraphEditor editor) {
 		minimalLayoutAction.setModel(editor.getModel());
 		treeLayoutAction.setModel(editor.getModel());
+		layeredLayoutAction.setModel(editor.getModel());
 		this.editor = editor;
 	}
 
@@ -43,10 +45,15 @@ class LayoutMenuAction extends EditorAction {
 			MenuItem treeItem = new MenuItem(menu, SWT.RADIO);
 			treeItem.setText(treeLayoutAction.getText());
 			Controls.onSelect(treeItem, (e) -> treeLayoutAction.run());
-			treeItem.setSelection(true);
+			treeItem.setSelection(editor.getLayoutType() == LayoutType.TREE_LAYOUT);
 			MenuItem minimalItem = new MenuItem(menu, SWT.RADIO);
 			minimalItem.setText(minimalLayoutAction.getText());
-			Controls.onSelect(treeItem, (e) -> minimalLayoutAction.run());
+			Controls.onSelect(minimalItem, (e) -> minimalLayoutAction.run());
+			minimalItem.setSelection(editor.getLayoutType() == LayoutType.MINIMAL_TREE_LAYOUT);
+			MenuItem layeredItem = new MenuItem(menu, SWT.RADIO);
+			layeredItem.setText(layeredLayoutAction.getText());
+			Controls.onSelect(layeredItem, (e) -> layeredLayoutAction.run());
+			layeredItem.setSelection(editor.getLayoutType() == LayoutType.LAYERED_LAYOUT);
 			new MenuItem(menu, SWT.SEPARATOR);
 			MenuItem routedCheck = new MenuItem(menu, SWT.CHECK);
 			routedCheck.setText(M.Route);
@@ -3,7 +3,6 @@ package org.openlca.app.editors.graphical.command;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.gef.commands.Command;
 import org.openlca.app.M;
@@ -17,7 +16,7 @@ public class LayoutCommand extends Command {
 	private final ProductSystemNode model;
 	private final LayoutManager layoutManager;
 	private final LayoutType type;
-	private final Map<IFigure, Rectangle> oldConstraints = new HashMap<>();
+	private final Map<ProcessNode, Rectangle> oldConstraints = new HashMap<>();
 
 	public LayoutCommand(ProductSystemNode model, LayoutManager layoutManager, LayoutType type) {
 		this.model = model;
@@ -44,9 +43,8 @@ public class LayoutCommand extends Command {
 	@Override
 	public void execute() {
 		for (ProcessNode node : model.getChildren())
-			if (node.figure.isVisible())
-				oldConstraints.put(node.figure, node.figure
-						.getBounds().getCopy());
+			if (node.isVisible())
+				oldConstraints.put(node, node.getXyLayoutConstraints().getCopy());
 		layoutManager.layout(model.figure, type);
 		model.editor.setDirty(true);
 	}
@@ -64,9 +62,11 @@ public class LayoutCommand extends Command {
 
 	@Override
 	public void undo() {
+		// a layout of a large system could be still running in the background
+		layoutManager.cancelPendingLayout();
 		for (ProcessNode node : model.getChildren())
-			if (oldConstraints.get(node.figure) != null)
-				node.setXyLayoutConstraints(oldConstraints.get(node.figure));
+			if (oldConstraints.get(node) != null)
+				node.setXyLayoutConstraints(oldConstraints.get(node));
 		model.editor.setDirty(true);
 	}
 
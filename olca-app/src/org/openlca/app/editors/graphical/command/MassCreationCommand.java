@@ -2,10 +2,11 @@ package org.openlca.app.editors.graphical.command;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.gef.commands.Command;
 import org.openlca.app.M;
@@ -23,9 +24,10 @@ public class MassCreationCommand extends Command {
 	private final List<ProcessDescriptor> toCreate;
 	private final List<ConnectionInput> newConnections;
 	// for undoing
-	private final Map<IFigure, Rectangle> oldConstraints = new HashMap<>();
+	private final Map<ProcessNode, Rectangle> oldConstraints = new HashMap<>();
 	private final List<ProcessNode> createdNodes = new ArrayList<>();
 	private final List<Link> createdLinks = new ArrayList<>();
+	private final Set<Long> createdIds = new HashSet<>();
 
 	public static MassCreationCommand nextTier(List<ProcessDescriptor> toCreate,
 			List<ConnectionInput> newConnections, ProductSystemNode model) {
@@ -54,23 +56,27 @@ public class MassCreationCommand extends Command {
 	public void execute() {
 		for (ProcessDescriptor process : toCreate)
 			addNode(process);
+		model.addAll(createdNodes);
 		for (ConnectionInput input : newConnections)
 			link(input.sourceId, input.flowId, input.targetId, input.exchangeId);
+		Link.linkAll(createdLinks);
 		for (ProcessNode node : model.getChildren())
-			if (node.figure.isVisible())
-				oldConstraints.put(node.figure, node.figure.getBounds().getCopy());
+			if (node.isVisible())
+				oldConstraints.put(node, node.getXyLayoutConstraints().getCopy());
 		((LayoutManager) model.figure.getLayoutManager()).layout(model.figure, model.editor.getLayoutType());
 		model.editor.setDirty(true);
 		if (model.editor.getOutline() != null)
 			model.editor.getOutline().refresh();
 	}
 
+	/** The nodes are added to the model together in the execute method. */
 	private void addNode(ProcessDescriptor process) {
 		if (model.getProcessNode(process.getId()) != null)
 			return;
+		if (!createdIds.add(process.getId()))
+			return;
 		ProcessNode node = new ProcessNode(process);
 		model.getProductSystem().getProcesses().add(process.getId());
-		model.add(node);
 		createdNodes.add(node);
 	}
 
@@ -80,7 +86,6 @@ public class MassCreationCommand extends Command {
 		system.getProcessLinks().add(processLink);
 		model.linkSearch.put(processLink);
 		Link link = createLink(sourceId, targetId, processLink);
-		link.link();
 		createdLinks.add(link);
 	}
 
@@ -111,30 +116,24 @@ public class MassCreationCommand extends Command {
 
 	@Override
 	public void undo() {
-		for (Link link : createdLinks)
-			unlink(link);
+		ProductSystem system = model.getProductSystem();
+		for (Link link : createdLinks) {
+			system.getProcessLinks().remove(link.processLink);
+			model.linkSearch.remove(link.processLink);
+		}
+		Link.unlinkAll(createdLinks);
 		for (ProcessNode node : createdNodes)
-			removeNode(node);
+			system.getProcesses().remove(node.process.getId());
+		model.removeAll(createdNodes);
 		for (ProcessNode node : model.getChildren())
-			if (oldConstraints.get(node.figure) != null)
-				node.setXyLayoutConstraints(oldConstraints.get(node.figure));
+			if (oldConstraints.get(node) != null)
+				node.setXyLayoutConstraints(oldConstraints.get(node));
 		createdLinks.clear();
 		createdNodes.clear();
+		createdIds.clear();
 		oldConstraints.clear();
 		if (model.editor.getOutline() != null)
 			model.editor.getOutline().refresh();
 		model.editor.setDirty(true);
 	}
-
-	private void removeNode(ProcessNode node) {
-		model.getProductSystem().getProcesses().remove(node.process.getId());
-		model.remove(node);
-	}
-
-	private void unlink(Link link) {
-		ProductSystem system = model.getProductSystem();
-		system.getProcessLinks().remove(link.processLink);
-		model.linkSearch.remove(link.processLink);
-		link.unlink();
-	}
 }
@@ -28,6 +28,12 @@ import org.eclipse.draw2d.geometry.Translatable;
  */
 public class Animation {
 
+	/**
+	 * Layouts of containers with more children than this are not animated
+	 * (and are calculated in a background job by the layered layout).
+	 */
+	static final int MAX_FIGURES = 200;
+
 	static long current;
 
 	static long DURATION = 500;
@@ -197,6 +203,8 @@ public class Animation {
 	}
 
 	public static boolean captureLayout(IFigure root) {
+		if (root.getChildren().size() > MAX_FIGURES)
+			return false;
 
 		RECORDING = true;
 
@@ -0,0 +1,512 @@
+package org.openlca.app.editors.graphical.layout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.draw2d.geometry.Dimension;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.openlca.app.editors.graphical.model.Link;
+import org.openlca.app.editors.graphical.model.ProcessNode;
+import org.openlca.app.editors.graphical.model.ProductSystemNode;
+import org.openlca.core.model.ProcessLink;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+/**
+ * A layered (Sugiyama style) layout for large product systems. The nodes are
+ * assigned to layers by their tier in the supply chain so that the providers
+ * are placed on the left side of their recipients; the links that close
+ * cycles are reversed or ignored, and the crossings between neighbouring
+ * layers are reduced by barycenter sweeps. All calculations are done on
+ * primitive arrays. The graph is copied from the model when the layout is created so
+ * that {@link #run()} can be executed outside of the UI thread; the positions
+ * are then set via {@link #apply(ProductSystemNode)} in the UI thread.
+ */
+public class LayeredLayout {
+
+	/** The number of sweeps of the crossing minimization. */
+	private static final int SWEEPS = 8;
+
+	/** The number of sweeps for aligning the nodes vertically. */
+	private static final int ALIGN_SWEEPS = 4;
+
+	private static final int LAYER_SPACE = 2 * LayoutManager.H_SPACE;
+
+	// the copied graph; the links point from the providers to the recipients
+	private final int n;
+	private final long[] ids;
+	private final int[] widths;
+	private final int[] heights;
+	private final int[] sources;
+	private final int[] targets;
+
+	// the state of the calculation
+	private int[] layerOf;
+	private int[] layerStart;
+	private int[] order;
+	private int[] pos;
+	private int[] predStart;
+	private int[] preds;
+	private int[] succStart;
+	private int[] succs;
+
+	// the result
+	private int[] xs;
+	private int[] ys;
+
+	private LayeredLayout(long[] ids, int[] widths, int[] heights,
+			int[] sources, int[] targets) {
+		this.n = ids.length;
+		this.ids = ids;
+		this.widths = widths;
+		this.heights = heights;
+		this.sources = sources;
+		this.targets = targets;
+	}
+
+	/**
+	 * Copies the graph of the given nodes from the model; must be called in
+	 * the UI thread.
+	 */
+	public static LayeredLayout of(ProductSystemNode model,
+			Collection<ProcessNode> nodes) {
+		int n = nodes.size();
+		long[] ids = new long[n];
+		int[] widths = new int[n];
+		int[] heights = new int[n];
+		TLongIntHashMap index = new TLongIntHashMap(n, 0.5f, -1L, -1);
+		int i = 0;
+		for (ProcessNode node : nodes) {
+			ids[i] = node.process.getId();
+			Dimension size = node.getSize();
+			if ((size.width == 0 || size.height == 0) && node.figure != null)
+				size = node.figure.getPreferredSize();
+			widths[i] = size.width;
+			heights[i] = size.height;
+			index.put(ids[i], i);
+			i++;
+		}
+		TIntArrayList sources = new TIntArrayList();
+		TIntArrayList targets = new TIntArrayList();
+		TLongHashSet added = new TLongHashSet();
+		for (int v = 0; v < n; v++) {
+			for (ProcessLink link : model.linkSearch.getOutgoingLinks(ids[v])) {
+				int w = index.get(link.processId);
+				if (w < 0 || w == v)
+					continue;
+				if (!added.add((long) v * n + w))
+					continue;
+				sources.add(v);
+				targets.add(w);
+			}
+		}
+		return new LayeredLayout(ids, widths, heights, sources.toArray(),
+				targets.toArray());
+	}
+
+	/**
+	 * Places the visible neighbours of the given node that were not placed yet
+	 * (e.g. after the node was expanded) next to the node. Only this region is
+	 * calculated; the other nodes are not moved.
+	 */
+	public static void layoutRegion(ProcessNode node) {
+		Rectangle anchor = node.getXyLayoutConstraints();
+		if (anchor == null)
+			return;
+		Set<ProcessNode> region = Collections.newSetFromMap(
+				new IdentityHashMap<>());
+		List<ProcessNode> nodes = new ArrayList<>();
+		region.add(node);
+		nodes.add(node);
+		for (Link link : node.links) {
+			ProcessNode other = link.sourceNode == node ? link.targetNode
+					: link.sourceNode;
+			if (other == null || !other.isVisible() || region.contains(other))
+				continue;
+			Rectangle r = other.getXyLayoutConstraints();
+			if (r != null && (r.x != 0 || r.y != 0))
+				continue; // already placed
+			region.add(other);
+			nodes.add(other);
+		}
+		if (nodes.size() < 2)
+			return;
+		ProductSystemNode model = node.parent();
+		LayeredLayout layout = of(model, nodes);
+		layout.run();
+		int dx = anchor.x - layout.xs[0];
+		int dy = anchor.y - layout.ys[0];
+		List<Rectangle> occupied = new ArrayList<>();
+		for (ProcessNode other : model.getChildren()) {
+			if (!other.isVisible() || other.getXyLayoutConstraints() == null)
+				continue;
+			if (other == node || !region.contains(other))
+				occupied.add(other.getXyLayoutConstraints());
+		}
+		for (int i = 1; i < layout.n; i++) {
+			Rectangle r = new Rectangle(
+					Math.max(layout.xs[i] + dx, LayoutManager.H_SPACE),
+					Math.max(layout.ys[i] + dy, LayoutManager.V_SPACE),
+					layout.widths[i], layout.heights[i]);
+			moveToFreeSpace(r, occupied);
+			occupied.add(r);
+			nodes.get(i).setXyLayoutConstraints(r);
+		}
+	}
+
+	private static void moveToFreeSpace(Rectangle r, List<Rectangle> occupied) {
+		boolean moved = true;
+		while (moved) {
+			moved = false;
+			for (Rectangle other : occupied) {
+				if (!other.intersects(r))
+					continue;
+				r.y = other.bottom() + LayoutManager.V_SPACE;
+				moved = true;
+			}
+		}
+	}
+
+	/** Calculates the layout; can be called outside of the UI thread. */
+	public void run() {
+		double[] keys = new double[n];
+		int layerCount = assignLayers(keys);
+		breakCycles();
+		initOrder(layerCount, keys);
+		minimizeCrossings(layerCount, keys);
+		assignCoordinates(layerCount);
+	}
+
+	/**
+	 * Assigns the layers by the shortest path of the nodes to a sink (the
+	 * tiers of the supply chain) via a breadth-first search over the links in
+	 * reverse direction. When there are nodes left that cannot reach a sink
+	 * (as they are in a cycle), the node with the most providers of them
+	 * starts a new search. The visiting order is stored in the given
+	 * array; it is used as initial order of the nodes in their layers.
+	 * Returns the number of layers.
+	 */
+	private int assignLayers(double[] visited) {
+		int[] start = csrStart(targets, n);
+		int[] edges = csrEdges(targets, start);
+		boolean[] hasRecipients = new boolean[n];
+		for (int source : sources)
+			hasRecipients[source] = true;
+		int[] providerCount = new int[n];
+		for (int target : targets)
+			providerCount[target]++;
+		int[] distance = new int[n];
+		Arrays.fill(distance, -1);
+		int[] queue = new int[n];
+		int head = 0;
+		int tail = 0;
+		for (int v = 0; v < n; v++) {
+			if (hasRecipients[v])
+				continue;
+			distance[v] = 0;
+			queue[tail++] = v;
+		}
+		int max = 0;
+		while (head < n) {
+			if (head == tail) {
+				int root = -1;
+				for (int v = 0; v < n; v++) {
+					if (distance[v] < 0 && (root < 0
+							|| providerCount[v] > providerCount[root]))
+						root = v;
+				}
+				distance[root] = 0;
+				queue[tail++] = root;
+			}
+			int v = queue[head];
+			visited[v] = head++;
+			max = Math.max(max, distance[v]);
+			for (int k = start[v]; k < start[v + 1]; k++) {
+				int u = sources[edges[k]];
+				if (distance[u] >= 0)
+					continue;
+				distance[u] = distance[v] + 1;
+				queue[tail++] = u;
+			}
+		}
+		layerOf = new int[n];
+		for (int v = 0; v < n; v++)
+			layerOf[v] = max - distance[v];
+		return max + 1;
+	}
+
+	/**
+	 * With the layers of the breadth-first search, a provider is never more
+	 * than one layer left of a recipient. The links that do not point to the
+	 * next layer close cycles: links that point to the previous layer are
+	 * reversed, the others are not considered for the order of the nodes. The
+	 * remaining links are stored as adjacency lists between neighbouring
+	 * layers.
+	 */
+	private void breakCycles() {
+		TIntArrayList from = new TIntArrayList();
+		TIntArrayList to = new TIntArrayList();
+		for (int e = 0; e < sources.length; e++) {
+			int span = layerOf[targets[e]] - layerOf[sources[e]];
+			if (span == 1) {
+				from.add(sources[e]);
+				to.add(targets[e]);
+			} else if (span == -1) {
+				from.add(targets[e]);
+				to.add(sources[e]);
+			}
+		}
+		int[] f = from.toArray();
+		int[] t = to.toArray();
+		succStart = csrStart(f, n);
+		succs = neighbours(csrEdges(f, succStart), t);
+		predStart = csrStart(t, n);
+		preds = neighbours(csrEdges(t, predStart), f);
+	}
+
+	private void initOrder(int layerCount, double[] keys) {
+		layerStart = csrStart(layerOf, layerCount);
+		order = new int[n];
+		int[] next = Arrays.copyOf(layerStart, layerCount);
+		for (int v = 0; v < n; v++)
+			order[next[layerOf[v]]++] = v;
+		pos = new int[n];
+		int[] buffer = new int[n];
+		for (int l = 0; l < layerCount; l++)
+			sortLayer(l, keys, buffer);
+	}
+
+	private void minimizeCrossings(int layerCount, double[] keys) {
+		int[] buffer = new int[Math.max(n, succs.length)];
+		int[] best = order.clone();
+		long bestCrossings = crossings(layerCount, buffer);
+		for (int i = 0; i < SWEEPS && bestCrossings > 0; i++) {
+			if (i % 2 == 0) {
+				for (int l = 1; l < layerCount; l++)
+					reorder(l, predStart, preds, keys, buffer);
+			} else {
+				for (int l = layerCount - 2; l >= 0; l--)
+					reorder(l, succStart, succs, keys, buffer);
+			}
+			long c = crossings(layerCount, buffer);
+			if (c < bestCrossings) {
+				bestCrossings = c;
+				best = order.clone();
+			}
+		}
+		order = best;
+		for (int i = 0; i < n; i++)
+			pos[order[i]] = i - layerStart[layerOf[order[i]]];
+	}
+
+	/** Sorts the nodes of the layer by the barycenter of their neighbours. */
+	private void reorder(int layer, int[] start, int[] adjacent,
+			double[] keys, int[] buffer) {
+		for (int i = layerStart[layer]; i < layerStart[layer + 1]; i++) {
+			int v = order[i];
+			int count = start[v + 1] - start[v];
+			if (count == 0) {
+				keys[v] = pos[v];
+				continue;
+			}
+			double sum = 0;
+			for (int k = start[v]; k < start[v + 1]; k++)
+				sum += pos[adjacent[k]];
+			keys[v] = sum / count;
+		}
+		sortLayer(layer, keys, buffer);
+	}
+
+	/** A stable merge sort of the nodes of the layer by the given keys. */
+	private void sortLayer(int layer, double[] keys, int[] buffer) {
+		int begin = layerStart[layer];
+		int end = layerStart[layer + 1];
+		for (int width = 1; width < end - begin; width *= 2) {
+			for (int low = begin; low < end - width; low += 2 * width) {
+				int mid = low + width;
+				int high = Math.min(low + 2 * width, end);
+				int i = low;
+				int j = mid;
+				int k = low;
+				while (i < mid && j < high)
+					buffer[k++] = keys[order[j]] < keys[order[i]] ? order[j++]
+							: order[i++];
+				while (i < mid)
+					buffer[k++] = order[i++];
+				while (j < high)
+					buffer[k++] = order[j++];
+				System.arraycopy(buffer, low, order, low, high - low);
+			}
+		}
+		for (int i = begin; i < end; i++)
+			pos[order[i]] = i - begin;
+	}
+
+	/**
+	 * Counts the link crossings between all neighbouring layers with an
+	 * accumulator tree (Barth, Juenger, Mutzel 2002).
+	 */
+	private long crossings(int layerCount, int[] buffer) {
+		long crossings = 0;
+		for (int l = 0; l < layerCount - 1; l++) {
+			int count = 0;
+			for (int i = layerStart[l]; i < layerStart[l + 1]; i++) {
+				int v = order[i];
+				int begin = count;
+				for (int k = succStart[v]; k < succStart[v + 1]; k++)
+					buffer[count++] = pos[succs[k]];
+				Arrays.sort(buffer, begin, count);
+			}
+			int south = layerStart[l + 2] - layerStart[l + 1];
+			int first = 1;
+			while (first < south)
+				first <<= 1;
+			int[] tree = new int[2 * first - 1];
+			first -= 1;
+			for (int k = 0; k < count; k++) {
+				int index = buffer[k] + first;
+				tree[index]++;
+				while (index > 0) {
+					if (index % 2 == 1)
+						crossings += tree[index + 1];
+					index = (index - 1) / 2;
+					tree[index]++;
+				}
+			}
+		}
+		return crossings;
+	}
+
+	/**
+	 * Places the layers from left to right and aligns the nodes vertically
+	 * to the centers of their neighbours while keeping their order.
+	 */
+	private void assignCoordinates(int layerCount) {
+		int[] layerX = new int[layerCount];
+		int x = LayoutManager.H_SPACE;
+		for (int l = 0; l < layerCount; l++) {
+			layerX[l] = x;
+			int width = 0;
+			for (int i = layerStart[l]; i < layerStart[l + 1]; i++)
+				width = Math.max(width, widths[order[i]]);
+			x += width + LAYER_SPACE;
+		}
+		double[] y = new double[n];
+		for (int l = 0; l < layerCount; l++) {
+			double next = 0;
+			for (int i = layerStart[l]; i < layerStart[l + 1]; i++) {
+				y[order[i]] = next;
+				next += heights[order[i]] + LayoutManager.V_SPACE;
+			}
+		}
+		double[] desired = new double[n];
+		double[] forward = new double[n];
+		for (int i = 0; i < ALIGN_SWEEPS; i++) {
+			if (i % 2 == 0) {
+				for (int l = 1; l < layerCount; l++)
+					align(l, predStart, preds, y, desired, forward);
+			} else {
+				for (int l = layerCount - 2; l >= 0; l--)
+					align(l, succStart, succs, y, desired, forward);
+			}
+		}
+		double minY = Double.MAX_VALUE;
+		for (int v = 0; v < n; v++)
+			minY = Math.min(minY, y[v]);
+		xs = new int[n];
+		ys = new int[n];
+		for (int v = 0; v < n; v++) {
+			xs[v] = layerX[layerOf[v]];
+			ys[v] = (int) Math.round(y[v] - minY) + LayoutManager.V_SPACE;
+		}
+	}
+
+	/**
+	 * Moves the nodes of the layer to the centers of their neighbours. A
+	 * forward pass pushes overlapping nodes down, a backward pass pushes them
+	 * up; the mean of both keeps the order and the spacing of the nodes.
+	 */
+	private void align(int layer, int[] start, int[] adjacent, double[] y,
+			double[] desired, double[] forward) {
+		int begin = layerStart[layer];
+		int end = layerStart[layer + 1];
+		if (begin == end)
+			return;
+		for (int i = begin; i < end; i++) {
+			int v = order[i];
+			int count = start[v + 1] - start[v];
+			if (count == 0) {
+				desired[i] = y[v];
+				continue;
+			}
+			double sum = 0;
+			for (int k = start[v]; k < start[v + 1]; k++) {
+				int w = adjacent[k];
+				sum += y[w] + heights[w] / 2.0;
+			}
+			desired[i] = sum / count - heights[v] / 2.0;
+		}
+		int gap = LayoutManager.V_SPACE;
+		forward[begin] = desired[begin];
+		for (int i = begin + 1; i < end; i++)
+			forward[i] = Math.max(desired[i],
+					forward[i - 1] + heights[order[i - 1]] + gap);
+		double backward = desired[end - 1];
+		y[order[end - 1]] = (forward[end - 1] + backward) / 2;
+		for (int i = end - 2; i >= begin; i--) {
+			backward = Math.min(desired[i],
+					backward - gap - heights[order[i]]);
+			y[order[i]] = (forward[i] + backward) / 2;
+		}
+	}
+
+	/**
+	 * Sets the calculated positions to the nodes of the model; must be called
+	 * in the UI thread.
+	 */
+	public void apply(ProductSystemNode model) {
+		if (xs == null)
+			return;
+		for (int i = 0; i < n; i++) {
+			ProcessNode node = model.getProcessNode(ids[i]);
+			if (node == null || !node.isVisible())
+				continue;
+			node.setXyLayoutConstraints(new Rectangle(xs[i], ys[i],
+					widths[i], heights[i]));
+		}
+	}
+
+	/** Returns the start indices of the nodes in a compressed adjacency list. */
+	private static int[] csrStart(int[] owners, int nodeCount) {
+		int[] start = new int[nodeCount + 1];
+		for (int owner : owners)
+			start[owner + 1]++;
+		for (int v = 0; v < nodeCount; v++)
+			start[v + 1] += start[v];
+		return start;
+	}
+
+	/** Returns the edge indices grouped by their owners. */
+	private static int[] csrEdges(int[] owners, int[] start) {
+		int[] next = Arrays.copyOf(start, start.length - 1);
+		int[] edges = new int[owners.length];
+		for (int e = 0; e < owners.length; e++)
+			edges[next[owners[e]]++] = e;
+		return edges;
+	}
+
+	private static int[] neighbours(int[] edges, int[] ends) {
+		int[] neighbours = new int[edges.length];
+		for (int k = 0; k < edges.length; k++)
+			neighbours[k] = ends[edges[k]];
+		return neighbours;
+	}
+
+}
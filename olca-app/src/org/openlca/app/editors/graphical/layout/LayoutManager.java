@@ -17,6 +17,8 @@ import org.eclipse.draw2d.AbstractLayout;
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.draw2d.geometry.Rectangle;
+import org.openlca.app.App;
+import org.openlca.app.M;
 import org.openlca.app.editors.graphical.model.ProcessNode;
 import org.openlca.app.editors.graphical.model.ProductSystemNode;
 
@@ -26,6 +28,7 @@ public class LayoutManager extends AbstractLayout {
 	public static int V_SPACE = 25;
 
 	private ProductSystemNode node;
+	private int layeredRun;
 
 	public LayoutManager(ProductSystemNode node) {
 		this.node = node;
@@ -48,6 +51,43 @@ public class LayoutManager extends AbstractLayout {
 		layout.layout(node);
 	}
 
+	/**
+	 * When the container is the figure of a process node (e.g. after the node
+	 * was expanded) only the neighbours of this node are placed. Large
+	 * systems are calculated in a background job; if another layout was
+	 * started in the meantime the result is dropped.
+	 */
+	private void layoutAsLayered(IFigure container) {
+		List<ProcessNode> nodes = new ArrayList<>();
+		for (ProcessNode child : node.getChildren()) {
+			if (child.figure == container && container != node.figure) {
+				LayeredLayout.layoutRegion(child);
+				return;
+			}
+			if (child.isVisible())
+				nodes.add(child);
+		}
+		LayeredLayout layout = LayeredLayout.of(node, nodes);
+		int run = ++layeredRun;
+		if (nodes.size() <= Animation.MAX_FIGURES) {
+			layout.run();
+			layout.apply(node);
+			return;
+		}
+		App.run(M.Layout, layout::run, () -> {
+			if (run == layeredRun)
+				layout.apply(node);
+		});
+	}
+
+	/**
+	 * Drops the result of a layout that is still calculated in a background
+	 * job, e.g. when the layout command is undone before the job finished.
+	 */
+	public void cancelPendingLayout() {
+		layeredRun++;
+	}
+
 	private void layoutXY() {
 		for (ProcessNode child : node.getChildren()) {
 			if (child.figure == null)
@@ -65,6 +105,10 @@ public class LayoutManager extends AbstractLayout {
 		Rectangle result = new Rectangle().setLocation(container.getClientArea().getLocation());
 		for (IFigure child : children)
 			result.union(child.getBounds());
+		// nodes outside of the visible area have no figures
+		for (ProcessNode child : node.getChildren())
+			if (child.figure == null && child.isVisible())
+				result.union(child.getXyLayoutConstraints());
 		result.resize(container.getInsets().getWidth(), container.getInsets().getHeight());
 		return result.getSize();
 	}
@@ -77,6 +121,19 @@ public class LayoutManager extends AbstractLayout {
 		layoutXY();
 	}
 
+	/**
+	 * Lays out the system after the given node was changed, e.g. expanded.
+	 * The node may have no figure when it is outside of the visible area.
+	 */
+	public void layout(ProcessNode processNode, LayoutType type) {
+		if (processNode.figure != null)
+			layout(processNode.figure, type);
+		else if (type == LayoutType.LAYERED_LAYOUT)
+			LayeredLayout.layoutRegion(processNode);
+		else
+			layout(node.figure, type);
+	}
+
 	public void layout(IFigure container, LayoutType type) {
 		Animation.recordInitialState(container);
 		if (Animation.playbackState(container))
@@ -89,6 +146,9 @@ public class LayoutManager extends AbstractLayout {
 			case MINIMAL_TREE_LAYOUT:
 				layoutAsMinimalTree();
 				break;
+			case LAYERED_LAYOUT:
+				layoutAsLayered(container);
+				break;
 			}
 	}
 
@@ -1,108 +1,314 @@
 package org.openlca.app.editors.graphical.layout;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.openlca.app.db.Cache;
 import org.openlca.app.db.DatabaseDir;
+import org.openlca.app.editors.graphical.ProductSystemGraphEditor;
 import org.openlca.app.editors.graphical.model.ProcessNode;
 import org.openlca.app.editors.graphical.model.ProductSystemNode;
 import org.openlca.core.model.ProductSystem;
 import org.openlca.core.model.descriptors.ProcessDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonWriter;
 
+/**
+ * Stores the layouts of the nodes of a product system in a binary file. The
+ * file starts with a header (magic number and version) which is followed by
+ * records of a fixed size: the process ID, the position, and the state flags
+ * of a node. When the layout is saved, only the records of the nodes that
+ * changed are appended; nodes that were removed get a record with the removed
+ * flag. When a record is read, it replaces the previous record of the same
+ * process. If the file contains much more records than nodes it is compacted
+ * by writing only the current records; this is also done when the file ends
+ * with an incomplete record so that new records are not misaligned. The
+ * stored records are kept in memory per editor and the file is only read
+ * again when its length or modification time changed. Layouts of older
+ * versions that were stored as JSON are still loaded; they are replaced on
+ * the next save.
+ */
 public final class NodeLayoutStore {
 
+	private static final int MAGIC = 0x4F4C4C59;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	private static final int RECORD_SIZE = 17;
+
+	/** The file is compacted when it has more than twice the needed records. */
+	private static final int COMPACTION_FACTOR = 2;
+	private static final int MIN_COMPACTION_RECORDS = 256;
+
+	private static final byte MINIMIZED = 1;
+	private static final byte EXPANDED_LEFT = 2;
+	private static final byte EXPANDED_RIGHT = 4;
+	private static final byte MARKED = 8;
+	private static final byte REMOVED = 16;
+
+	/** The records in the layout file of an editor after its last read or write. */
+	private static final Map<ProductSystemGraphEditor, StoredLayouts> storedLayouts = Collections
+			.synchronizedMap(new WeakHashMap<>());
+
 	private NodeLayoutStore() {
 	}
 
 	public static void saveLayout(ProductSystemNode model) {
 		if (model == null)
 			return;
-		List<NodeLayoutInfo> layoutInfo = new ArrayList<>();
+		Map<Long, NodeLayoutInfo> layouts = new LinkedHashMap<>();
 		for (ProcessNode node : model.getChildren()) {
 			if (!node.isVisible())
 				continue;
-			layoutInfo.add(new NodeLayoutInfo(node));
+			layouts.put(node.process.getId(), new NodeLayoutInfo(node));
+		}
+		try {
+			ProductSystem system = model.getProductSystem();
+			File file = getLayoutFile(system);
+			StoredLayouts stored = getStored(model.editor, file);
+			if (stored == null || !stored.complete) {
+				writeAll(layouts.values(), file);
+				stored = new StoredLayouts();
+				stored.layouts.putAll(layouts);
+				stored.records = layouts.size();
+				stored.complete = true;
+			} else {
+				List<NodeLayoutInfo> changed = new ArrayList<>();
+				for (NodeLayoutInfo layout : layouts.values()) {
+					NodeLayoutInfo old = stored.layouts.get(layout.getId());
+					if (old == null || !same(old, layout))
+						changed.add(layout);
+				}
+				List<Long> removed = new ArrayList<>();
+				for (Long id : stored.layouts.keySet()) {
+					if (!layouts.containsKey(id))
+						removed.add(id);
+				}
+				int records = stored.records + changed.size() + removed.size();
+				if (records > MIN_COMPACTION_RECORDS
+						&& records > COMPACTION_FACTOR * layouts.size()) {
+					writeAll(layouts.values(), file);
+					records = layouts.size();
+				} else if (!changed.isEmpty() || !removed.isEmpty())
+					append(changed, removed, file);
+				stored.layouts.clear();
+				stored.layouts.putAll(layouts);
+				stored.records = records;
+			}
+			stored.setFileState(file);
+			storedLayouts.put(model.editor, stored);
+			File jsonFile = getJsonFile(system);
+			if (jsonFile.exists())
+				jsonFile.delete();
+		} catch (IOException e) {
+			Logger log = LoggerFactory.getLogger(NodeLayoutStore.class);
+			log.error("failed to save the layout of the product system", e);
+		}
+	}
+
+	/** Appends the changed and removed nodes to the file. */
+	private static void append(List<NodeLayoutInfo> changed,
+			List<Long> removed, File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file, true)))) {
+			for (NodeLayoutInfo layout : changed)
+				writeRecord(layout, out);
+			for (Long id : removed) {
+				out.writeLong(id);
+				out.writeInt(0);
+				out.writeInt(0);
+				out.writeByte(REMOVED);
+			}
+		}
+	}
+
+	/** Writes the complete layout into a new file which replaces the old one. */
+	private static void writeAll(Collection<NodeLayoutInfo> layouts, File file)
+			throws IOException {
+		File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			for (NodeLayoutInfo layout : layouts)
+				writeRecord(layout, out);
+		}
+		Files.move(tempFile.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void writeRecord(NodeLayoutInfo layout, DataOutputStream out)
+			throws IOException {
+		out.writeLong(layout.getId());
+		out.writeInt(layout.getLocation().x);
+		out.writeInt(layout.getLocation().y);
+		out.writeByte(flags(layout));
+	}
+
+	/**
+	 * Returns the records of the file that were read or written last by the
+	 * given editor; the file is read again if it was changed in the meantime.
+	 * Returns null if the file does not exist or cannot be read.
+	 */
+	private static StoredLayouts getStored(ProductSystemGraphEditor editor,
+			File file) {
+		if (!file.exists())
+			return null;
+		StoredLayouts stored = storedLayouts.get(editor);
+		if (stored != null && stored.length == file.length()
+				&& stored.lastModified == file.lastModified())
+			return stored;
+		return tryRead(file);
+	}
+
+	/**
+	 * Reads the file at once and replays the records. An incomplete record at
+	 * the end of the file (e.g. from an interrupted save) is ignored.
+	 */
+	private static StoredLayouts read(File file) throws IOException {
+		long length = file.length();
+		long lastModified = file.lastModified();
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+			throw new IOException("invalid layout file " + file);
+		int version = buffer.getInt();
+		if (version != VERSION)
+			throw new IOException("unsupported layout file version " + version);
+		StoredLayouts stored = new StoredLayouts();
+		while (buffer.remaining() >= RECORD_SIZE) {
+			long id = buffer.getLong();
+			int x = buffer.getInt();
+			int y = buffer.getInt();
+			byte flags = buffer.get();
+			stored.records++;
+			if ((flags & REMOVED) != 0) {
+				stored.layouts.remove(id);
+				continue;
+			}
+			stored.layouts.put(id, new NodeLayoutInfo(id, x, y,
+					(flags & MINIMIZED) != 0,
+					(flags & EXPANDED_LEFT) != 0,
+					(flags & EXPANDED_RIGHT) != 0,
+					(flags & MARKED) != 0));
 		}
+		stored.complete = !buffer.hasRemaining();
+		if (length == buffer.limit()) {
+			stored.length = length;
+			stored.lastModified = lastModified;
+		}
+		return stored;
+	}
+
+	/** Returns null if the file cannot be read; it is then rewritten. */
+	private static StoredLayouts tryRead(File file) {
 		try {
-			File layoutFile = createLayoutFile(model);
-			writeAsJson(layoutInfo, layoutFile);
+			return read(file);
 		} catch (IOException e) {
-			e.printStackTrace();
+			Logger log = LoggerFactory.getLogger(NodeLayoutStore.class);
+			log.warn("failed to read layout file " + file, e);
+			return null;
 		}
 	}
 
-	private static void writeAsJson(List<NodeLayoutInfo> layoutInfo, File toFile) throws IOException {
-		JsonWriter writer = new JsonWriter(new FileWriter(toFile));
-		writer.beginObject();
-		writer.name("nodes");
-		writer.beginArray();
-		for (NodeLayoutInfo layout : layoutInfo)
-			writeAsJson(layout, writer);
-		writer.endArray();
-		writer.endObject();
-		writer.flush();
-		writer.close();
-	}
-
-	private static void writeAsJson(NodeLayoutInfo layout, JsonWriter writer) throws IOException {
-		writer.beginObject();
-		writer.name("id");
-		writer.value(layout.getId());
-		writer.name("x");
-		writer.value(layout.getLocation().x);
-		writer.name("y");
-		writer.value(layout.getLocation().y);
-		writer.name("minimized");
-		writer.value(layout.isMinimized());
-		writer.name("expandedLeft");
-		writer.value(layout.isExpandedLeft());
-		writer.name("expandedRight");
-		writer.value(layout.isExpandedRight());
-		writer.name("marked");
-		writer.value(layout.isMarked());
-		writer.endObject();
+	private static byte flags(NodeLayoutInfo layout) {
+		int flags = 0;
+		if (layout.isMinimized())
+			flags |= MINIMIZED;
+		if (layout.isExpandedLeft())
+			flags |= EXPANDED_LEFT;
+		if (layout.isExpandedRight())
+			flags |= EXPANDED_RIGHT;
+		if (layout.isMarked())
+			flags |= MARKED;
+		return (byte) flags;
+	}
+
+	private static boolean same(NodeLayoutInfo a, NodeLayoutInfo b) {
+		return a.getLocation().equals(b.getLocation())
+				&& flags(a) == flags(b);
 	}
 
 	public static boolean loadLayout(ProductSystemNode node) throws NodeLayoutException {
 		if (node == null || node.getProductSystem() == null)
 			return false;
-		File file = getLayoutFile(node.getProductSystem());
-		if (!file.exists())
-			return false;
+		ProductSystem system = node.getProductSystem();
 		try {
-			List<NodeLayoutInfo> layoutInfo = parseJson(file);
-			for (NodeLayoutInfo layout : layoutInfo)
-				apply(layout, node);
+			List<NodeLayoutInfo> layoutInfo;
+			File file = getLayoutFile(system);
+			if (file.exists()) {
+				StoredLayouts stored = read(file);
+				layoutInfo = new ArrayList<>(stored.layouts.values());
+				storedLayouts.put(node.editor, stored);
+			} else {
+				File jsonFile = getJsonFile(system);
+				if (!jsonFile.exists())
+					return false;
+				layoutInfo = parseJson(jsonFile);
+			}
+			apply(layoutInfo, node);
 			return true;
 		} catch (IOException e) {
-			e.printStackTrace();
+			Logger log = LoggerFactory.getLogger(NodeLayoutStore.class);
+			log.error("failed to load the layout of the product system", e);
 			return false;
 		}
 	}
 
-	private static void apply(NodeLayoutInfo layout, ProductSystemNode model) throws NodeLayoutException {
-		ProcessNode node = model.getProcessNode(layout.getId());
-		if (node != null) {
-			node.apply(layout);
-			return;
+	/**
+	 * Applies the given layouts to the model. Missing nodes are created and
+	 * added together; their links are then created in a single batch.
+	 */
+	private static void apply(List<NodeLayoutInfo> layouts, ProductSystemNode model) throws NodeLayoutException {
+		Set<Long> missing = new HashSet<>();
+		for (NodeLayoutInfo layout : layouts) {
+			if (model.getProcessNode(layout.getId()) == null)
+				missing.add(layout.getId());
 		}
-		ProcessDescriptor descriptor = Cache.getEntityCache().get(ProcessDescriptor.class, layout.getId());
-		if (descriptor == null)
-			return;
-		node = new ProcessNode(descriptor);
-		model.add(node);
-		node.apply(layout);
-		model.editor.createNecessaryLinks(node);
+		Map<Long, ProcessDescriptor> descriptors = missing.isEmpty()
+				? Collections.emptyMap()
+				: Cache.getEntityCache().getAll(ProcessDescriptor.class, missing);
+		List<ProcessNode> newNodes = new ArrayList<>();
+		for (NodeLayoutInfo layout : layouts) {
+			if (!missing.remove(layout.getId()))
+				continue;
+			ProcessDescriptor descriptor = descriptors.get(layout.getId());
+			if (descriptor != null)
+				newNodes.add(new ProcessNode(descriptor));
+		}
+		model.addAll(newNodes);
+		List<Long> expanded = new ArrayList<>();
+		for (NodeLayoutInfo layout : layouts) {
+			if (!layout.isMinimized())
+				expanded.add(layout.getId());
+		}
+		model.editor.getExchangeCache().load(expanded);
+		for (NodeLayoutInfo layout : layouts) {
+			ProcessNode node = model.getProcessNode(layout.getId());
+			if (node != null)
+				node.apply(layout);
+		}
+		if (!newNodes.isEmpty())
+			model.editor.createNecessaryLinks(newNodes);
 	}
 
+	/** Reads a layout file of older versions. */
 	private static List<NodeLayoutInfo> parseJson(File fromFile) throws IOException {
 		List<NodeLayoutInfo> layoutInfo = new ArrayList<>();
 		JsonReader reader = new JsonReader(new FileReader(fromFile));
@@ -137,20 +343,33 @@ public final class NodeLayoutStore {
 		return new NodeLayoutInfo(id, x, y, minimized, expandedLeft, expandedRight, marked);
 	}
 
-	private static File createLayoutFile(ProductSystemNode node) throws IOException {
-		File file = getLayoutFile(node.getProductSystem());
-		if (file.exists())
-			file.delete();
-		file.createNewFile();
-		return file;
-	}
-
 	private static File getLayoutFile(ProductSystem system) {
 		File dir = DatabaseDir.getDir(system);
 		if (!dir.exists())
 			dir.mkdirs();
-		File layoutFile = new File(dir, "layout.json");
-		return layoutFile;
+		return new File(dir, "layout.bin");
+	}
+
+	/** The layout file of older versions. */
+	private static File getJsonFile(ProductSystem system) {
+		return new File(DatabaseDir.getDir(system), "layout.json");
+	}
+
+	private static class StoredLayouts {
+
+		final Map<Long, NodeLayoutInfo> layouts = new LinkedHashMap<>();
+		int records;
+		/** False if the file ends with an incomplete record. */
+		boolean complete;
+		/** The length and modification time of the file with these records. */
+		long length = -1;
+		long lastModified;
+
+		void setFileState(File file) {
+			length = file.length();
+			lastModified = file.lastModified();
+		}
+
 	}
 
 	public static class NodeLayoutException extends Exception {
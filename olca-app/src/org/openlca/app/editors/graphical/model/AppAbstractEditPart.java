@@ -12,6 +12,17 @@ abstract class AppAbstractEditPart<N extends Node> extends AbstractGraphicalEdit
 		super.activate();
 	}
 
+	@Override
+	public void deactivate() {
+		// the part of a node outside of the visible area is removed
+		N node = getModel();
+		if (node.editPart == this)
+			node.editPart = null;
+		if (node.figure == figure)
+			node.figure = null;
+		super.deactivate();
+	}
+
 	@Override
 	public void refreshChildren() {
 		super.refreshChildren(); // make visible
@@ -24,7 +35,7 @@ abstract class AppAbstractEditPart<N extends Node> extends AbstractGraphicalEdit
 	}
 
 	@Override
-	protected final List<? extends Node> getModelChildren() {
+	protected List<? extends Node> getModelChildren() {
 		return getModel().getChildren();
 	}
 }
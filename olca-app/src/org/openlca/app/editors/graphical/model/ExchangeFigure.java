@@ -11,7 +11,6 @@ import org.openlca.app.M;
 import org.openlca.app.editors.graphical.layout.Animation;
 import org.openlca.app.rcp.images.Icon;
 import org.openlca.app.util.Labels;
-import org.openlca.core.model.Exchange;
 import org.openlca.core.model.FlowType;
 
 class ExchangeFigure extends Label {
@@ -25,7 +24,7 @@ class ExchangeFigure extends Label {
 		this.node = node;
 		if (node.isDummy())
 			return;
-		Exchange exchange = node.exchange;
+		ExchangeItem exchange = node.exchange;
 		setBorder(new LineBorder(ColorConstants.white, 1));
 		setForegroundColor(exchange.isAvoidedProduct() ? BACKGROUND_COLOR : TEXT_COLOR);
 		setBackgroundColor(BACKGROUND_COLOR);
@@ -38,7 +37,7 @@ class ExchangeFigure extends Label {
 				return M.AvoidedProductFlow;
 			return M.AvoidedWasteFlow;
 		}
-		return Labels.flowType(node.exchange.getFlow());
+		return Labels.flowType(node.exchange.getFlow().getFlowType());
 	}
 
 	void setHighlighted(boolean value) {
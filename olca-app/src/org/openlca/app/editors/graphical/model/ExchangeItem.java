@@ -0,0 +1,61 @@
+package org.openlca.app.editors.graphical.model;
+
+import org.openlca.core.model.descriptors.FlowDescriptor;
+
+/**
+ * A lightweight projection of a product or waste exchange of a process that
+ * is shown in the graphical editor. It contains only the data that are needed
+ * to display and connect the exchange so that the full process entities do not
+ * need to be loaded.
+ */
+public class ExchangeItem {
+
+	private final long id;
+	private final FlowDescriptor flow;
+	private final boolean input;
+	private final boolean avoidedProduct;
+	private final long defaultProviderId;
+	private final double amount;
+	private final String unit;
+
+	ExchangeItem(long id, FlowDescriptor flow, boolean input,
+			boolean avoidedProduct, long defaultProviderId, double amount,
+			String unit) {
+		this.id = id;
+		this.flow = flow;
+		this.input = input;
+		this.avoidedProduct = avoidedProduct;
+		this.defaultProviderId = defaultProviderId;
+		this.amount = amount;
+		this.unit = unit;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public FlowDescriptor getFlow() {
+		return flow;
+	}
+
+	public boolean isInput() {
+		return input;
+	}
+
+	public boolean isAvoidedProduct() {
+		return avoidedProduct;
+	}
+
+	public long getDefaultProviderId() {
+		return defaultProviderId;
+	}
+
+	public double getAmount() {
+		return amount;
+	}
+
+	public String getUnit() {
+		return unit;
+	}
+
+}
@@ -0,0 +1,175 @@
+package org.openlca.app.editors.graphical.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openlca.app.db.Cache;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.IDatabaseListener;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.descriptors.FlowDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads and caches the product and waste exchanges of the processes in the
+ * graphical editor. The exchanges of many processes are loaded together with
+ * a single query per batch of processes; the flows are taken from the entity
+ * cache. There is one cache per editor; it is registered as listener of the
+ * database so that the exchanges of changed or deleted processes are loaded
+ * again, and it holds the exchanges of at most MAX_PROCESSES processes.
+ */
+public class ExchangeItemCache implements IDatabaseListener {
+
+	/** The maximum number of process IDs in one query. */
+	private static final int BATCH_SIZE = 500;
+
+	/** The maximum number of processes of which the exchanges are cached. */
+	private static final int MAX_PROCESSES = 5000;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final IDatabase db;
+	private final Map<Long, List<ExchangeItem>> items = new LinkedHashMap<Long, List<ExchangeItem>>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<Long, List<ExchangeItem>> eldest) {
+			return size() > MAX_PROCESSES;
+		}
+	};
+
+	public ExchangeItemCache(IDatabase db) {
+		this.db = db;
+		if (db != null)
+			db.addListener(this);
+	}
+
+	/** Removes the cache from the listeners of the database. */
+	public void close() {
+		if (db != null)
+			db.removeListener(this);
+		clear();
+	}
+
+	public synchronized void clear() {
+		items.clear();
+	}
+
+	/**
+	 * Returns the product and waste exchanges of the given process; they are
+	 * loaded if they are not cached yet.
+	 */
+	public synchronized List<ExchangeItem> get(long processId) {
+		List<ExchangeItem> list = items.get(processId);
+		if (list != null)
+			return list;
+		load(Collections.singleton(processId));
+		list = items.get(processId);
+		return list != null ? list : Collections.emptyList();
+	}
+
+	/** Loads the exchanges of the given processes that are not cached yet. */
+	public synchronized void load(Collection<Long> processIds) {
+		List<Long> missing = new ArrayList<>();
+		for (Long id : processIds) {
+			if (id != null && !items.containsKey(id))
+				missing.add(id);
+		}
+		for (int i = 0; i < missing.size(); i += BATCH_SIZE) {
+			List<Long> batch = missing.subList(i,
+					Math.min(i + BATCH_SIZE, missing.size()));
+			loadBatch(batch);
+		}
+	}
+
+	private void loadBatch(List<Long> processIds) {
+		Map<Long, List<ExchangeItem>> loaded = new HashMap<>();
+		for (Long id : processIds)
+			loaded.put(id, new ArrayList<>());
+		List<Row> rows = new ArrayList<>();
+		Set<Long> flowIds = new HashSet<>();
+		StringBuilder ids = new StringBuilder();
+		for (Long id : processIds) {
+			if (ids.length() > 0)
+				ids.append(',');
+			ids.append(id);
+		}
+		String query = "SELECT e.id, e.f_owner, e.f_flow, e.is_input, "
+				+ "e.avoided_product, e.f_default_provider, "
+				+ "e.resulting_amount_value, u.name FROM tbl_exchanges e "
+				+ "INNER JOIN tbl_flows f ON e.f_flow = f.id "
+				+ "LEFT JOIN tbl_units u ON e.f_unit = u.id "
+				+ "WHERE f.flow_type <> 'ELEMENTARY_FLOW' "
+				+ "AND e.f_owner IN (" + ids + ")";
+		try {
+			NativeSql.on(db).query(query, (rs) -> {
+				Row row = new Row();
+				row.id = rs.getLong(1);
+				row.owner = rs.getLong(2);
+				row.flow = rs.getLong(3);
+				row.input = rs.getInt(4) == 1;
+				row.avoided = rs.getInt(5) == 1;
+				row.provider = rs.getLong(6);
+				row.amount = rs.getDouble(7);
+				row.unit = rs.getString(8);
+				rows.add(row);
+				flowIds.add(row.flow);
+				return true;
+			});
+		} catch (Exception e) {
+			log.error("failed to load exchanges of processes", e);
+			return;
+		}
+		Map<Long, FlowDescriptor> flows = Cache.getEntityCache().getAll(
+				FlowDescriptor.class, flowIds);
+		for (Row row : rows) {
+			FlowDescriptor flow = flows.get(row.flow);
+			if (flow == null)
+				continue;
+			loaded.get(row.owner).add(new ExchangeItem(row.id, flow,
+					row.input, row.avoided, row.provider, row.amount,
+					row.unit));
+		}
+		items.putAll(loaded);
+	}
+
+	@Override
+	public void modelInserted(Object object) {
+	}
+
+	@Override
+	public void modelUpdated(Object object) {
+		evict(object);
+	}
+
+	@Override
+	public void modelDeleted(Object object) {
+		evict(object);
+	}
+
+	private synchronized void evict(Object object) {
+		if (object instanceof Process)
+			items.remove(((Process) object).getId());
+	}
+
+	private static class Row {
+		long id;
+		long owner;
+		long flow;
+		boolean input;
+		boolean avoided;
+		long provider;
+		double amount;
+		String unit;
+	}
+}
@@ -1,14 +1,13 @@
 package org.openlca.app.editors.graphical.model;
 
 import org.openlca.app.util.Labels;
-import org.openlca.core.model.Exchange;
-import org.openlca.core.model.descriptors.Descriptors;
 
 public class ExchangeNode extends Node {
 
-	public Exchange exchange;
+	public ExchangeItem exchange;
+	private boolean highlighted;
 
-	public ExchangeNode(Exchange exchange) {
+	public ExchangeNode(ExchangeItem exchange) {
 		this.exchange = exchange;
 	}
 
@@ -20,7 +19,7 @@ public class ExchangeNode extends Node {
 	public String getName() {
 		if (isDummy())
 			return "";
-		return Labels.getDisplayName(Descriptors.toDescriptor(exchange.getFlow()));
+		return Labels.getDisplayName(exchange.getFlow());
 	}
 
 	public boolean matches(ExchangeNode node) {
@@ -30,7 +29,7 @@ public class ExchangeNode extends Node {
 			return false;
 		if (isDummy())
 			return false;
-		if (!exchange.getFlow().equals(node.exchange.getFlow()))
+		if (exchange.getFlow().getId() != node.exchange.getFlow().getId())
 			return false;
 		if (exchange.isInput() == node.exchange.isInput())
 			return false;
@@ -40,7 +39,15 @@ public class ExchangeNode extends Node {
 	public void setHighlighted(boolean value) {
 		if (isDummy())
 			return;
-		((ExchangeFigure) figure).setHighlighted(value);
+		highlighted = value;
+		// nodes outside of the visible area have no figure; the state is
+		// applied when the figure is created
+		if (figure != null)
+			((ExchangeFigure) figure).setHighlighted(value);
+	}
+
+	public boolean isHighlighted() {
+		return highlighted;
 	}
 
 	@Override
@@ -18,6 +18,8 @@ class ExchangePart extends AbstractNodeEditPart<ExchangeNode> {
 		node.figure = figure;
 		String name = node.getName();
 		figure.setText(name);
+		if (node.isHighlighted())
+			figure.setHighlighted(true);
 		return figure;
 	}
 
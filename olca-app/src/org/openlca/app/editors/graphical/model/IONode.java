@@ -5,14 +5,12 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
-import org.openlca.core.model.Exchange;
-import org.openlca.core.model.FlowType;
 
 public class IONode extends Node {
 
-	public IONode(Exchange[] exchanges) {
-		List<Exchange> inputs = filter(exchanges, true);
-		List<Exchange> outputs = filter(exchanges, false);
+	public IONode(List<ExchangeItem> exchanges) {
+		List<ExchangeItem> inputs = filter(exchanges, true);
+		List<ExchangeItem> outputs = filter(exchanges, false);
 		boolean inputsAreBiggerThanOutputs = inputs.size() > outputs.size();
 		int min = Math.min(inputs.size(), outputs.size());
 		Collections.sort(inputs, new ExchangeComparator());
@@ -33,10 +31,10 @@ public class IONode extends Node {
 		}
 	}
 
-	private List<Exchange> filter(Exchange[] exchanges, boolean inputs) {
-		List<Exchange> result = new ArrayList<>();
-		for (Exchange e : exchanges)
-			if (e.isInput() == inputs && e.getFlow().getFlowType() != FlowType.ELEMENTARY_FLOW)
+	private List<ExchangeItem> filter(List<ExchangeItem> exchanges, boolean inputs) {
+		List<ExchangeItem> result = new ArrayList<>();
+		for (ExchangeItem e : exchanges)
+			if (e.isInput() == inputs)
 				result.add(e);
 		return result;
 	}
@@ -52,10 +50,10 @@ public class IONode extends Node {
 		return (List<ExchangeNode>) super.getChildren();
 	}
 
-	private final class ExchangeComparator implements Comparator<Exchange> {
+	private final class ExchangeComparator implements Comparator<ExchangeItem> {
 
 		@Override
-		public int compare(Exchange o1, Exchange o2) {
+		public int compare(ExchangeItem o1, ExchangeItem o2) {
 			String s1 = o1.getFlow().getName().toLowerCase();
 			String s2 = o2.getFlow().getName().toLowerCase();
 			int length = s1.length();
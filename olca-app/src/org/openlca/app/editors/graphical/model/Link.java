@@ -1,6 +1,9 @@
 package org.openlca.app.editors.graphical.model;
 
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.Objects;
+import java.util.Set;
 
 import org.eclipse.draw2d.ColorConstants;
 import org.eclipse.draw2d.Connection;
@@ -17,38 +20,99 @@ public class Link {
 	public ProcessNode targetNode;
 	public Connection figure;
 	LinkPart editPart;
+	/**
+	 * The visibility is stored in the link because the figure only exists
+	 * while both nodes are in the visible area of the editor.
+	 */
+	private boolean visible = true;
 
 	void refreshSourceAnchor() {
-		editPart.refreshSourceAnchor();
+		if (editPart != null)
+			editPart.refreshSourceAnchor();
 	}
 
 	void refreshTargetAnchor() {
-		editPart.refreshTargetAnchor();
+		if (editPart != null)
+			editPart.refreshTargetAnchor();
 	}
 
 	void setSelected(int value) {
-		editPart.setSelected(value);
+		if (editPart != null)
+			editPart.setSelected(value);
 	}
 
 	public void link() {
+		visible = sourceNode.isVisible() && targetNode.isVisible();
 		sourceNode.add(this);
 		targetNode.add(this);
-		sourceNode.editPart().refreshSourceConnections();
-		targetNode.editPart().refreshTargetConnections();
+		if (sourceNode.editPart != null)
+			sourceNode.editPart().refreshSourceConnections();
+		if (targetNode.editPart != null)
+			targetNode.editPart().refreshTargetConnections();
 		sourceNode.refresh();
 		targetNode.refresh();
 	}
 
 	public void unlink() {
-		editPart.setSelected(0);
+		if (editPart != null)
+			editPart.setSelected(0);
 		sourceNode.remove(this);
 		targetNode.remove(this);
-		sourceNode.editPart().refreshSourceConnections();
-		targetNode.editPart().refreshTargetConnections();
+		if (sourceNode.editPart != null)
+			sourceNode.editPart().refreshSourceConnections();
+		if (targetNode.editPart != null)
+			targetNode.editPart().refreshTargetConnections();
 		sourceNode.refresh();
 		targetNode.refresh();
 	}
 
+	/**
+	 * Links all given connections and refreshes the connections of each
+	 * affected process node only once.
+	 */
+	public static void linkAll(Collection<Link> links) {
+		Set<ProcessNode> nodes = new LinkedHashSet<>();
+		for (Link link : links) {
+			link.visible = link.sourceNode.isVisible()
+					&& link.targetNode.isVisible();
+			if (!link.sourceNode.links.contains(link))
+				link.sourceNode.links.add(link);
+			if (!link.targetNode.links.contains(link))
+				link.targetNode.links.add(link);
+			nodes.add(link.sourceNode);
+			nodes.add(link.targetNode);
+		}
+		refresh(nodes);
+	}
+
+	/**
+	 * Removes all given connections and refreshes the connections of each
+	 * affected process node only once.
+	 */
+	public static void unlinkAll(Collection<Link> links) {
+		Set<ProcessNode> nodes = new LinkedHashSet<>();
+		for (Link link : links) {
+			if (link.editPart != null)
+				link.editPart.setSelected(0);
+			link.sourceNode.links.remove(link);
+			link.targetNode.links.remove(link);
+			nodes.add(link.sourceNode);
+			nodes.add(link.targetNode);
+		}
+		refresh(nodes);
+	}
+
+	private static void refresh(Set<ProcessNode> nodes) {
+		for (ProcessNode node : nodes) {
+			if (node.editPart != null) {
+				node.editPart().refreshSourceConnections();
+				node.editPart().refreshTargetConnections();
+				node.editPart.refresh();
+			}
+			node.refresh();
+		}
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (!(obj instanceof Link))
@@ -64,13 +128,13 @@ public class Link {
 	}
 
 	public boolean isVisible() {
-		return figure != null ? figure.isVisible() : false;
+		return visible;
 	}
 
 	public void setVisible(boolean value) {
-		if (figure == null)
-			return;
-		figure.setVisible(value);
+		visible = value;
+		if (figure != null)
+			figure.setVisible(value);
 	}
 
 }
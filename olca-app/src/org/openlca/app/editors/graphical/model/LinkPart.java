@@ -24,13 +24,23 @@ class LinkPart extends AbstractConnectionEditPart {
 		super.activate();
 	}
 
+	@Override
+	public void deactivate() {
+		Link link = getModel();
+		if (link.editPart == this)
+			link.editPart = null;
+		if (link.figure == figure)
+			link.figure = null;
+		super.deactivate();
+	}
+
 	@Override
 	protected IFigure createFigure() {
 		PolylineConnection figure = new PolylineConnection();
 		figure.setForegroundColor(Link.COLOR);
 		figure.setConnectionRouter(getConnectionRouter());
 		figure.setTargetDecoration(new PolygonDecoration());
-		figure.setVisible(isVisible());
+		figure.setVisible(getModel().isVisible());
 		getModel().figure = figure;
 		return figure;
 	}
@@ -59,14 +69,6 @@ class LinkPart extends AbstractConnectionEditPart {
 		return getEditor().isRouted() ? TreeConnectionRouter.instance : ConnectionRouter.NULL;
 	}
 
-	private boolean isVisible() {
-		if (!getModel().sourceNode.isVisible())
-			return false;
-		if (!getModel().targetNode.isVisible())
-			return false;
-		return true;
-	}
-
 	@Override
 	public void showSourceFeedback(Request req) {
 		ReconnectRequest request = ((ReconnectRequest) req);
@@ -1,7 +1,11 @@
 package org.openlca.app.editors.graphical.model;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.geometry.Dimension;
@@ -21,19 +25,65 @@ public abstract class Node implements Comparable<Node> {
 		if (!children.add(child))
 			return false;
 		child.parent = this;
+		added(child);
 		if (editPart != null)
 			editPart.refreshChildren();
 		return true;
 	}
 
+	/**
+	 * Adds the given nodes as children and refreshes the edit part only once
+	 * after all nodes were added.
+	 */
+	public void addAll(Collection<? extends Node> nodes) {
+		if (nodes == null || nodes.isEmpty())
+			return;
+		for (Node child : nodes) {
+			children.add(child);
+			child.parent = this;
+			added(child);
+		}
+		if (editPart != null)
+			editPart.refreshChildren();
+	}
+
 	public boolean remove(Node child) {
 		if (!children.remove(child))
 			return false;
+		removed(child);
 		if (editPart != null)
 			editPart.refreshChildren();
 		return true;
 	}
 
+	/**
+	 * Removes the given nodes and refreshes the edit part only once after all
+	 * nodes were removed.
+	 */
+	public void removeAll(Collection<? extends Node> nodes) {
+		if (nodes == null || nodes.isEmpty())
+			return;
+		Set<Node> removals = Collections.newSetFromMap(
+				new IdentityHashMap<>());
+		removals.addAll(nodes);
+		boolean changed = children.removeIf((child) -> {
+			if (!removals.contains(child))
+				return false;
+			removed(child);
+			return true;
+		});
+		if (changed && editPart != null)
+			editPart.refreshChildren();
+	}
+
+	/** Called when the given node was added as child to this node. */
+	protected void added(Node child) {
+	}
+
+	/** Called when the given child node was removed from this node. */
+	protected void removed(Node child) {
+	}
+
 	public boolean contains(final Node child) {
 		return children.contains(child);
 	}
@@ -47,6 +47,8 @@ class ProcessFigure extends Figure {
 	private static final int TEXT_HEIGHT = 16;
 	private static final Color LINE_COLOR = ColorConstants.gray;
 	private static final Color TEXT_COLOR = ColorConstants.black;
+	private static final Color PLACEHOLDER_COLOR = ColorConstants.lightGray;
+	private static final Color PLACEHOLDER_MARKED_COLOR = ColorConstants.orange;
 
 	final ProcessNode node;
 	private ProcessExpander leftExpander;
@@ -122,6 +124,10 @@ class ProcessFigure extends Figure {
 
 	@Override
 	protected void paintFigure(Graphics graphics) {
+		if (graphics.getAbsoluteScale() < VisibleArea.DETAIL_SCALE) {
+			paintPlaceholder(graphics);
+			return;
+		}
 		graphics.pushState();
 		graphics.setBackgroundColor(ColorConstants.white);
 		graphics.fillRectangle(new Rectangle(getLocation(), getSize()));
@@ -132,6 +138,27 @@ class ProcessFigure extends Figure {
 		super.paintFigure(graphics);
 	}
 
+	/**
+	 * When zoomed out, the header and the exchanges are not readable; so only
+	 * a box with the header color is painted.
+	 */
+	private void paintPlaceholder(Graphics graphics) {
+		paintPlaceholder(graphics, node, getBounds());
+	}
+
+	/**
+	 * Also used for the nodes outside of the visible area of the editor that
+	 * have no figure (e.g. in the miniature view).
+	 */
+	static void paintPlaceholder(Graphics graphics, ProcessNode node, Rectangle bounds) {
+		graphics.pushState();
+		graphics.setBackgroundColor(ColorConstants.white);
+		graphics.fillRectangle(bounds);
+		graphics.setBackgroundColor(node.isMarked() ? PLACEHOLDER_MARKED_COLOR : PLACEHOLDER_COLOR);
+		graphics.fillRectangle(bounds.x, bounds.y, bounds.width, Math.min(MINIMUM_HEIGHT, bounds.height));
+		graphics.popState();
+	}
+
 	private void paintBorder() {
 		if (node.process.getProcessType() == ProcessType.LCI_RESULT) {
 			LineBorder outer = new LineBorder(LINE_COLOR, 1);
@@ -185,6 +212,8 @@ class ProcessFigure extends Figure {
 
 	@Override
 	protected void paintChildren(Graphics graphics) {
+		if (graphics.getAbsoluteScale() < VisibleArea.DETAIL_SCALE)
+			return;
 		super.paintChildren(graphics);
 		if (getIOFigure() == null)
 			return;
@@ -222,25 +251,34 @@ class ProcessFigure extends Figure {
 	}
 
 	Dimension calculateSize() {
+		int width = getSize() != null ? getSize().width : 0;
+		return calculateSize(node, width);
+	}
+
+	/**
+	 * Calculates the size of the figure of the given node without creating
+	 * it; the width is at least the given width.
+	 */
+	static Dimension calculateSize(ProcessNode node, int width) {
 		int offSet = 0;
 		if (node.process.getProcessType() == ProcessType.LCI_RESULT)
 			offSet = 3;
 		int x = MINIMUM_WIDTH + offSet;
-		if (getSize() != null && getSize().width > x)
-			x = getSize().width;
+		if (width > x)
+			x = width;
 		int y = MINIMUM_HEIGHT + offSet;
-		if (node != null && !node.isMinimized())
-			y = getMinimumHeight();
+		if (!node.isMinimized())
+			y = node.getMinimumHeight();
 		return new Dimension(x, y);
 	}
 
 	int getMinimumHeight() {
 		if (minimumHeight == 0)
-			initializeMinimumHeight();
+			minimumHeight = calculateMinimumHeight(node);
 		return minimumHeight;
 	}
 
-	private void initializeMinimumHeight() {
+	static int calculateMinimumHeight(ProcessNode node) {
 		int inputs = 0;
 		int outputs = 0;
 		for (ExchangeNode e : node.getChildren().get(0).getChildren())
@@ -254,7 +292,7 @@ class ProcessFigure extends Figure {
 		if (node.process.getProcessType() == ProcessType.LCI_RESULT)
 			offSet = 3;
 		int startExchanges = MINIMUM_HEIGHT + 4 * MARGIN_HEIGHT + TEXT_HEIGHT + offSet;
-		minimumHeight = startExchanges + length * (TEXT_HEIGHT + 1);
+		return startExchanges + length * (TEXT_HEIGHT + 1);
 	}
 
 	private class DoubleClickListener implements MouseListener {
@@ -1,22 +1,21 @@
 package org.openlca.app.editors.graphical.model;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.draw2d.geometry.Point;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.openlca.app.db.Cache;
-import org.openlca.app.db.Database;
 import org.openlca.app.editors.graphical.layout.LayoutManager;
 import org.openlca.app.editors.graphical.layout.NodeLayoutInfo;
+import org.openlca.app.editors.graphical.model.ProcessExpander.Side;
 import org.openlca.app.editors.graphical.search.MutableProcessLinkSearchMap;
-import org.openlca.core.database.ProcessDao;
-import org.openlca.core.model.Exchange;
-import org.openlca.core.model.FlowType;
 import org.openlca.core.model.Location;
-import org.openlca.core.model.Process;
 import org.openlca.core.model.ProcessLink;
 import org.openlca.core.model.descriptors.ProcessDescriptor;
 
@@ -29,6 +28,12 @@ public class ProcessNode extends Node {
 	private Rectangle xyLayoutConstraints;
 	private boolean minimized = true;
 	private boolean marked = false;
+	private boolean visible = true;
+	private boolean expandedLeft;
+	private boolean expandedRight;
+	// used to prevent endless recursion in collapse
+	private boolean collapsingLeft;
+	private boolean collapsingRight;
 
 	public ProcessNode(ProcessDescriptor process) {
 		this.process = process;
@@ -50,25 +55,38 @@ public class ProcessNode extends Node {
 		if (xyLayoutConstraints == null)
 			xyLayoutConstraints = new Rectangle(0, 0, prefSize.width, prefSize.height);
 		this.figure = figure;
+		figure.setVisible(visible);
 	}
 
+	/**
+	 * Applies the stored layout; the figure of the node may not exist yet
+	 * when the node is outside of the visible area.
+	 */
 	public void apply(NodeLayoutInfo layout) {
 		minimized = layout.isMinimized();
 		if (!minimized)
 			if (getChildren().isEmpty())
 				initializeExchangeNodes();
-		Dimension prefSize = figure.getPreferredSize(-1, -1);
+		Dimension prefSize = figure != null
+				? figure.getPreferredSize(-1, -1)
+				: ProcessFigure.calculateSize(this, 0);
 		xyLayoutConstraints = new Rectangle(layout.getLocation(), prefSize);
-		figure.setBounds(getXyLayoutConstraints());
-		figure().getLeftExpander().setExpanded(layout.isExpandedLeft());
-		figure().getRightExpander().setExpanded(layout.isExpandedRight());
-		figure().refresh();
+		expandedLeft = layout.isExpandedLeft();
+		expandedRight = layout.isExpandedRight();
+		if (figure != null) {
+			figure.setBounds(getXyLayoutConstraints());
+			figure().refresh();
+		}
+		if (parent() != null)
+			parent().scheduleRefresh();
 	}
 
 	public void add(Link link) {
 		if (links.contains(link))
 			return;
 		links.add(link);
+		if (editPart == null)
+			return;
 		if (equals(link.sourceNode))
 			editPart().refreshSourceConnections();
 		if (equals(link.targetNode))
@@ -84,6 +102,8 @@ public class ProcessNode extends Node {
 		if (!links.contains(link))
 			return;
 		links.remove(link);
+		if (editPart == null)
+			return;
 		if (equals(link.sourceNode))
 			editPart().refreshSourceConnections();
 		if (equals(link.targetNode))
@@ -117,6 +137,29 @@ public class ProcessNode extends Node {
 		}
 	}
 
+	@Override
+	public boolean isVisible() {
+		return visible;
+	}
+
+	@Override
+	public void setVisible(boolean value) {
+		visible = value;
+		if (figure != null)
+			figure.setVisible(value);
+		if (parent() != null)
+			parent().scheduleRefresh();
+	}
+
+	@Override
+	public Dimension getSize() {
+		if (figure != null)
+			return figure.getSize();
+		if (xyLayoutConstraints != null)
+			return xyLayoutConstraints.getSize();
+		return ProcessFigure.calculateSize(this, 0);
+	}
+
 	@Override
 	public String getName() {
 		String text = process.getName();
@@ -156,18 +199,17 @@ public class ProcessNode extends Node {
 	}
 
 	private void initializeExchangeNodes() {
-		Process process = new ProcessDao(Database.get()).getForId(this.process.getId());
-		List<Exchange> technologies = new ArrayList<>();
-		for (Exchange exchange : process.getExchanges())
-			if (exchange.getFlow().getFlowType() == FlowType.ELEMENTARY_FLOW)
-				continue;
-			else
-				technologies.add(exchange);
-		Exchange[] technologyArray = technologies.toArray(new Exchange[technologies.size()]);
-		add(new IONode(technologyArray));
+		ExchangeItemCache cache = parent().editor.getExchangeCache();
+		add(new IONode(cache.get(process.getId())));
 	}
 
 	public void refresh() {
+		if (figure == null) {
+			Rectangle old = getXyLayoutConstraints();
+			xyLayoutConstraints = new Rectangle(old.getLocation(),
+					ProcessFigure.calculateSize(this, old.width));
+			return;
+		}
 		Point location = figure().getLocation();
 		if (xyLayoutConstraints != null)
 			location = xyLayoutConstraints.getLocation();
@@ -219,13 +261,22 @@ public class ProcessNode extends Node {
 		return getExchangeNodes();
 	}
 
+	/**
+	 * Returns the bounds of the node in the product system figure; a node that
+	 * was not placed yet is located at (0, 0).
+	 */
 	public Rectangle getXyLayoutConstraints() {
+		if (xyLayoutConstraints == null)
+			xyLayoutConstraints = new Rectangle(new Point(0, 0), getSize());
 		return xyLayoutConstraints;
 	}
 
 	public void setXyLayoutConstraints(Rectangle xyLayoutConstraints) {
 		this.xyLayoutConstraints = xyLayoutConstraints;
-		editPart().revalidate();
+		if (editPart != null)
+			editPart().revalidate();
+		if (parent() != null)
+			parent().scheduleRefresh();
 	}
 
 	public boolean hasIncoming(long exchangeId) {
@@ -239,7 +290,9 @@ public class ProcessNode extends Node {
 	public int getMinimumHeight() {
 		if (isMinimized())
 			return ProcessFigure.MINIMUM_HEIGHT;
-		return figure().getMinimumHeight();
+		if (figure != null)
+			return figure().getMinimumHeight();
+		return ProcessFigure.calculateMinimumHeight(this);
 	}
 
 	public int getMinimumWidth() {
@@ -269,62 +322,204 @@ public class ProcessNode extends Node {
 	public void collapseLeft() {
 		if (!isExpandedLeft())
 			return;
-		figure().getLeftExpander().collapse(this);
+		collapse(Side.LEFT, this);
 	}
 
 	public void collapseRight() {
 		if (!isExpandedRight())
 			return;
-		figure().getRightExpander().collapse(this);
+		collapse(Side.RIGHT, this);
 	}
 
 	/**
 	 * Used to avoid removing the initial node while collapsing, should only be
-	 * called from within ProcessExpander.collapse
+	 * called from within collapse
 	 */
 	void collapseLeft(ProcessNode initialNode) {
 		if (!isExpandedLeft())
 			return;
-		figure().getLeftExpander().collapse(initialNode);
+		collapse(Side.LEFT, initialNode);
 	}
 
 	/**
 	 * Used to avoid removing the initial node while collapsing, should only be
-	 * called from within ProcessExpander.collapse
+	 * called from within collapse
 	 */
 	void collapseRight(ProcessNode initialNode) {
 		if (!isExpandedRight())
 			return;
-		figure().getRightExpander().collapse(initialNode);
+		collapse(Side.RIGHT, initialNode);
 	}
 
 	public void expandLeft() {
-		figure().getLeftExpander().expand();
+		expand(Side.LEFT);
 	}
 
 	public void expandRight() {
-		figure().getRightExpander().expand();
+		expand(Side.RIGHT);
 	}
 
 	public boolean isExpandedLeft() {
-		return figure().getLeftExpander().isExpanded();
+		return expandedLeft;
 	}
 
 	public boolean isExpandedRight() {
-		return figure().getRightExpander().isExpanded();
+		return expandedRight;
+	}
+
+	private void expand(Side side) {
+		createNecessaryNodes(side);
+		showLinksAndNodes(side);
+		setExpanded(side, true);
+	}
+
+	private void createNecessaryNodes(Side side) {
+		ProductSystemNode systemNode = parent();
+		MutableProcessLinkSearchMap linkSearch = systemNode.linkSearch;
+		long processId = process.getId();
+		List<ProcessLink> links = null;
+		if (side == Side.LEFT)
+			links = linkSearch.getIncomingLinks(processId);
+		else
+			links = linkSearch.getOutgoingLinks(processId);
+		Map<Long, ProcessDescriptor> map = getLinkedProcesses(links, side);
+		// first add all new nodes, then create all links in one batch
+		Map<Long, ProcessNode> newNodes = new LinkedHashMap<>();
+		for (ProcessLink link : links) {
+			long linkedProcessId = side == Side.LEFT ? link.providerId : link.processId;
+			if (systemNode.getProcessNode(linkedProcessId) != null
+					|| newNodes.containsKey(linkedProcessId))
+				continue;
+			ProcessDescriptor descriptor = map.get(linkedProcessId);
+			newNodes.put(linkedProcessId, new ProcessNode(descriptor));
+		}
+		systemNode.addAll(newNodes.values());
+		List<Link> newLinks = new ArrayList<>();
+		for (ProcessLink link : links) {
+			long linkedProcessId = side == Side.LEFT ? link.providerId : link.processId;
+			ProcessNode node = systemNode.getProcessNode(linkedProcessId);
+			ProcessNode sourceNode = side == Side.LEFT ? node : this;
+			ProcessNode targetNode = side == Side.LEFT ? this : node;
+			Link connectionLink = new Link();
+			connectionLink.sourceNode = sourceNode;
+			connectionLink.targetNode = targetNode;
+			connectionLink.processLink = link;
+			newLinks.add(connectionLink);
+		}
+		Link.linkAll(newLinks);
+	}
+
+	private Map<Long, ProcessDescriptor> getLinkedProcesses(
+			List<ProcessLink> links, Side side) {
+		HashSet<Long> processIds = new HashSet<>();
+		for (ProcessLink link : links)
+			if (side == Side.LEFT)
+				processIds.add(link.providerId);
+			else
+				processIds.add(link.processId);
+		return Cache.getEntityCache().getAll(ProcessDescriptor.class, processIds);
+	}
+
+	private void showLinksAndNodes(Side side) {
+		List<ProcessNode> nodes = new ArrayList<>();
+		for (Link link : links) {
+			ProcessNode match = getMatchingNode(link, side);
+			if (match == null || nodes.contains(match))
+				continue;
+			nodes.add(match);
+		}
+		for (ProcessNode node : nodes) {
+			node.setVisible(true);
+			for (Link link : node.links) {
+				if (!link.sourceNode.isVisible() || !link.targetNode.isVisible())
+					continue;
+				link.setVisible(true);
+			}
+		}
+	}
+
+	private ProcessNode getMatchingNode(Link link, Side side) {
+		ProcessNode source = link.sourceNode;
+		ProcessNode target = link.targetNode;
+		if (side == Side.LEFT)
+			if (target.equals(this))
+				if (!source.equals(this))
+					return source;
+		if (side == Side.RIGHT)
+			if (source.equals(this))
+				if (!target.equals(this))
+					return target;
+		return null;
+	}
+
+	private void collapse(Side side, ProcessNode initialNode) {
+		if (isCollapsing(side))
+			return;
+		setCollapsing(side, true);
+		Link[] links = this.links.toArray(new Link[this.links.size()]);
+		for (Link link : links) {
+			ProcessNode thisNode = side == Side.LEFT ? link.targetNode : link.sourceNode;
+			ProcessNode otherNode = side == Side.LEFT ? link.sourceNode : link.targetNode;
+			if (!thisNode.equals(this))
+				continue;
+			link.unlink();
+			otherNode.collapseLeft(initialNode);
+			otherNode.collapseRight(initialNode);
+			if (otherNode.equals(initialNode))
+				continue;
+			if (!otherNode.links.isEmpty())
+				continue;
+			parent().remove(otherNode);
+		}
+		setCollapsing(side, false);
+		setExpanded(side, false);
+	}
+
+	private boolean isCollapsing(Side side) {
+		return side == Side.LEFT ? collapsingLeft : collapsingRight;
+	}
+
+	private void setCollapsing(Side side, boolean value) {
+		if (side == Side.LEFT)
+			collapsingLeft = value;
+		else
+			collapsingRight = value;
+	}
+
+	private void setExpanded(Side side, boolean value) {
+		if (side == Side.LEFT)
+			expandedLeft = value;
+		else
+			expandedRight = value;
+		if (figure == null)
+			return;
+		if (side == Side.LEFT)
+			figure().getLeftExpander().refresh();
+		else
+			figure().getRightExpander().refresh();
 	}
 
 	public void layout() {
 		LayoutManager layoutManager = (LayoutManager) parent().figure.getLayoutManager();
-		layoutManager.layout(figure, parent().editor.getLayoutType());
+		layoutManager.layout(this, parent().editor.getLayoutType());
 	}
 
 	public void select() {
-		parent().editor.getGraphicalViewer().select(editPart);
+		if (editPart == null)
+			reveal();
+		if (editPart != null)
+			parent().editor.getGraphicalViewer().select(editPart);
 	}
 
+	/**
+	 * Scrolls to the node; the edit part of the node is created when it was
+	 * outside of the visible area.
+	 */
 	public void reveal() {
-		parent().editor.getGraphicalViewer().reveal(editPart);
+		if (editPart == null)
+			parent().reveal(this);
+		if (editPart != null)
+			parent().editor.getGraphicalViewer().reveal(editPart);
 	}
 
 	private ProcessFigure figure() {
@@ -1,5 +1,6 @@
 package org.openlca.app.editors.graphical.model;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.draw2d.IFigure;
@@ -84,14 +85,26 @@ class ProcessPart extends AbstractNodeEditPart<ProcessNode> {
 		return null;
 	}
 
+	/**
+	 * Only the links to nodes that have an edit part (i.e. that are in the
+	 * visible area) are connected.
+	 */
 	@Override
 	protected List<Link> getModelSourceConnections() {
-		return getModel().links;
+		List<Link> links = new ArrayList<>();
+		for (Link link : getModel().links)
+			if (getModel().equals(link.sourceNode) && link.targetNode.editPart != null)
+				links.add(link);
+		return links;
 	}
 
 	@Override
 	protected List<Link> getModelTargetConnections() {
-		return getModel().links;
+		List<Link> links = new ArrayList<>();
+		for (Link link : getModel().links)
+			if (getModel().equals(link.targetNode) && link.sourceNode.editPart != null)
+				links.add(link);
+		return links;
 	}
 
 	@Override
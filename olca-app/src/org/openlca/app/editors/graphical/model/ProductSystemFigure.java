@@ -6,6 +6,8 @@ import org.eclipse.draw2d.ColorConstants;
 import org.eclipse.draw2d.Figure;
 import org.eclipse.draw2d.Graphics;
 import org.eclipse.draw2d.LineBorder;
+import org.eclipse.draw2d.geometry.Point;
+import org.eclipse.draw2d.geometry.Rectangle;
 import org.openlca.app.editors.graphical.layout.LayoutManager;
 import org.openlca.app.editors.graphical.layout.LayoutType;
 import org.openlca.app.editors.graphical.layout.NodeLayoutStore;
@@ -15,6 +17,7 @@ class ProductSystemFigure extends Figure {
 
 	private boolean firstTime = true;
 	private ProductSystemNode node;
+	VisibleArea visibleArea;
 
 	ProductSystemFigure(ProductSystemNode node) {
 		setForegroundColor(ColorConstants.black);
@@ -34,6 +37,46 @@ class ProductSystemFigure extends Figure {
 		return (LayoutManager) super.getLayoutManager();
 	}
 
+	/**
+	 * The nodes outside of the visible area of the editor have no figures;
+	 * they are painted as place holders with straight lines as connections,
+	 * e.g. in the miniature view.
+	 */
+	@Override
+	protected void paintFigure(Graphics graphics) {
+		super.paintFigure(graphics);
+		Rectangle clip = graphics.getClip(new Rectangle());
+		for (ProcessNode child : node.getChildren()) {
+			if (child.figure != null || !child.isVisible())
+				continue;
+			Rectangle bounds = child.getXyLayoutConstraints();
+			if (bounds.intersects(clip))
+				ProcessFigure.paintPlaceholder(graphics, child, bounds);
+			for (Link link : child.links)
+				paintPlaceholder(graphics, child, link, clip);
+		}
+	}
+
+	private void paintPlaceholder(Graphics graphics, ProcessNode child, Link link, Rectangle clip) {
+		if (link.figure != null || !link.isVisible())
+			return;
+		ProcessNode other = child.equals(link.sourceNode) ? link.targetNode : link.sourceNode;
+		// a link between two place holders is painted only once
+		if (other.figure == null && !child.equals(link.sourceNode))
+			return;
+		Point start = link.sourceNode.getXyLayoutConstraints().getRight();
+		Point end = link.targetNode.getXyLayoutConstraints().getLeft();
+		Rectangle bounds = new Rectangle(start, end);
+		bounds.width += 1;
+		bounds.height += 1;
+		if (!bounds.intersects(clip))
+			return;
+		graphics.pushState();
+		graphics.setForegroundColor(Link.COLOR);
+		graphics.drawLine(start, end);
+		graphics.popState();
+	}
+
 	@Override
 	public void paint(Graphics graphics) {
 		super.paint(graphics);
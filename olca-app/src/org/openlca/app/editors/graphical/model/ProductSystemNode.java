@@ -1,6 +1,8 @@
 package org.openlca.app.editors.graphical.model;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openlca.app.editors.graphical.ProductSystemGraphEditor;
 import org.openlca.app.editors.graphical.search.MutableProcessLinkSearchMap;
@@ -10,6 +12,8 @@ public class ProductSystemNode extends Node {
 
 	public final ProductSystemGraphEditor editor;
 	public final MutableProcessLinkSearchMap linkSearch;
+	/** The process nodes by process ID; updated when nodes are added or removed. */
+	private final Map<Long, ProcessNode> processNodes = new HashMap<>();
 
 	public ProductSystemNode(ProductSystemGraphEditor editor) {
 		this.linkSearch = new MutableProcessLinkSearchMap(editor.getSystemEditor().getModel().getProcessLinks());
@@ -27,10 +31,23 @@ public class ProductSystemNode extends Node {
 	}
 
 	public ProcessNode getProcessNode(long id) {
-		for (ProcessNode node : getChildren())
-			if (node.process.getId() == id)
-				return node;
-		return null;
+		return processNodes.get(id);
+	}
+
+	@Override
+	protected void added(Node child) {
+		if (!(child instanceof ProcessNode))
+			return;
+		ProcessNode node = (ProcessNode) child;
+		processNodes.putIfAbsent(node.process.getId(), node);
+	}
+
+	@Override
+	protected void removed(Node child) {
+		if (!(child instanceof ProcessNode))
+			return;
+		ProcessNode node = (ProcessNode) child;
+		processNodes.remove(node.process.getId(), node);
 	}
 
 	@Override
@@ -64,7 +81,7 @@ public class ProductSystemNode extends Node {
 		for (ProcessNode node : getChildren()) {
 			if (!node.isVisible() || node.isMinimized())
 				continue;
-			for (ExchangeNode exchangeNode : node.getChildren().get(0).getChildren())
+			for (ExchangeNode exchangeNode : node.getExchangeNodes())
 				exchangeNode.setHighlighted(false);
 		}
 	}
@@ -73,4 +90,19 @@ public class ProductSystemNode extends Node {
 		((ProductSystemPart) editPart).refreshChildren();
 	}
 
+	/**
+	 * Updates the edit parts of the process nodes in the visible area after
+	 * the current event was handled; calls are merged into a single refresh.
+	 */
+	void scheduleRefresh() {
+		if (editPart != null)
+			((ProductSystemPart) editPart).scheduleRefresh();
+	}
+
+	/** Scrolls to the given node and creates its edit part. */
+	void reveal(ProcessNode node) {
+		if (editPart != null)
+			((ProductSystemPart) editPart).reveal(node);
+	}
+
 }
@@ -1,12 +1,23 @@
 package org.openlca.app.editors.graphical.model;
 
+import java.util.ArrayList;
 import java.util.EventObject;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
+import org.eclipse.draw2d.FigureCanvas;
 import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.Viewport;
+import org.eclipse.draw2d.geometry.Dimension;
+import org.eclipse.draw2d.geometry.Point;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.gef.EditPart;
 import org.eclipse.gef.EditPolicy;
 import org.eclipse.gef.commands.CommandStackListener;
 import org.eclipse.gef.editpolicies.ComponentEditPolicy;
+import org.eclipse.swt.widgets.Control;
 import org.openlca.app.editors.graphical.layout.Animation;
 import org.openlca.app.editors.graphical.layout.LayoutManager;
 import org.openlca.app.editors.graphical.policy.LayoutPolicy;
@@ -14,16 +25,25 @@ import org.openlca.app.editors.graphical.policy.LayoutPolicy;
 class ProductSystemPart extends AppAbstractEditPart<ProductSystemNode> {
 
 	CommandStackListener stackListener = new CommandStackChangedListener();
+	private boolean refreshScheduled;
 
 	@Override
 	public void activate() {
 		super.activate();
 		getViewer().getEditDomain().getCommandStack().addCommandStackListener(stackListener);
+		ProductSystemFigure figure = (ProductSystemFigure) getFigure();
+		figure.visibleArea = VisibleArea.install(getViewer(), figure, this::scheduleRefresh);
+		scheduleRefresh();
 	}
 
 	@Override
 	public void deactivate() {
 		getViewer().getEditDomain().getCommandStack().removeCommandStackListener(stackListener);
+		ProductSystemFigure figure = (ProductSystemFigure) getFigure();
+		if (figure.visibleArea != null) {
+			figure.visibleArea.dispose();
+			figure.visibleArea = null;
+		}
 		super.deactivate();
 	}
 
@@ -43,6 +63,103 @@ class ProductSystemPart extends AppAbstractEditPart<ProductSystemNode> {
 		getFigure().setLayoutManager(manager);
 	}
 
+	/**
+	 * Only the visible process nodes in the visible area of the editor (and
+	 * the selected nodes) get an edit part and a figure. The other nodes are
+	 * painted as place holders by the product system figure.
+	 */
+	@Override
+	protected List<ProcessNode> getModelChildren() {
+		List<ProcessNode> nodes = new ArrayList<>();
+		if (!isActive())
+			return nodes;
+		VisibleArea area = ((ProductSystemFigure) getFigure()).visibleArea;
+		for (ProcessNode node : getModel().getChildren()) {
+			if (!node.isVisible())
+				continue;
+			if (area == null || area.intersects(node.getXyLayoutConstraints())
+					|| isSelected(node))
+				nodes.add(node);
+		}
+		return nodes;
+	}
+
+	private boolean isSelected(ProcessNode node) {
+		return node.editPart != null
+				&& node.editPart.getSelected() != EditPart.SELECTED_NONE;
+	}
+
+	/**
+	 * Also connects the links of the nodes that got an edit part and removes
+	 * the connections of the nodes that lost it.
+	 */
+	@Override
+	public void refreshChildren() {
+		Set<ProcessNode> before = new HashSet<>();
+		for (ProcessPart part : getChildren())
+			before.add(part.getModel());
+		super.refreshChildren();
+		Set<ProcessNode> changed = new HashSet<>();
+		for (ProcessPart part : getChildren())
+			if (!before.remove(part.getModel()))
+				changed.add(part.getModel());
+		changed.addAll(before);
+		if (changed.isEmpty())
+			return;
+		Set<ProcessNode> nodes = new LinkedHashSet<>();
+		for (ProcessNode node : changed) {
+			if (node.editPart != null)
+				nodes.add(node);
+			for (Link link : node.links) {
+				ProcessNode other = node.equals(link.sourceNode)
+						? link.targetNode
+						: link.sourceNode;
+				if (other.editPart != null)
+					nodes.add(other);
+			}
+		}
+		for (ProcessNode node : nodes) {
+			node.editPart().refreshSourceConnections();
+			node.editPart().refreshTargetConnections();
+		}
+	}
+
+	/**
+	 * Refreshes the children after the current event was handled, e.g. when
+	 * the editor was scrolled or the nodes were moved by a layout.
+	 */
+	void scheduleRefresh() {
+		if (refreshScheduled || !isActive())
+			return;
+		Control control = getViewer().getControl();
+		if (control == null || control.isDisposed())
+			return;
+		refreshScheduled = true;
+		control.getDisplay().asyncExec(() -> {
+			refreshScheduled = false;
+			if (!isActive())
+				return;
+			refreshChildren();
+			// the size depends on the nodes without figures too
+			getFigure().revalidate();
+		});
+	}
+
+	/** Scrolls the given node into the center of the viewport. */
+	void reveal(ProcessNode node) {
+		if (!(getViewer().getControl() instanceof FigureCanvas))
+			return;
+		FigureCanvas canvas = (FigureCanvas) getViewer().getControl();
+		Viewport viewport = canvas.getViewport();
+		Rectangle bounds = node.getXyLayoutConstraints().getCopy();
+		getFigure().translateToAbsolute(bounds);
+		Point location = viewport.getViewLocation();
+		Dimension size = viewport.getClientArea().getSize();
+		canvas.scrollTo(location.x + bounds.getCenter().x - size.width / 2,
+				location.y + bounds.getCenter().y - size.height / 2);
+		refreshChildren();
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public List<ProcessPart> getChildren() {
@@ -22,15 +22,27 @@ public class TreeConnectionRouter extends BendpointConnectionRouter {
 			return (ProcessFigure) anchor.getOwner().getParent().getParent();
 	}
 
+	private VisibleArea getVisibleArea(ProcessFigure figure) {
+		if (figure.getParent() instanceof ProductSystemFigure)
+			return ((ProductSystemFigure) figure.getParent()).visibleArea;
+		return null;
+	}
+
 	@Override
 	public void route(Connection conn) {
 		super.route(conn);
 		if (conn.getSourceAnchor().getOwner() == null || conn.getTargetAnchor().getOwner() == null)
 			return;
-		PointList points = new PointList();
-		points.addPoint(conn.getPoints().getFirstPoint());
 		ProcessFigure source = getProcessFigure(conn.getSourceAnchor());
 		ProcessFigure target = getProcessFigure(conn.getTargetAnchor());
+		VisibleArea area = getVisibleArea(source);
+		if (area != null && !area.intersects(conn.getPoints().getFirstPoint(), conn.getPoints().getLastPoint())) {
+			// keep the straight line until the connection becomes visible
+			area.defer(conn);
+			return;
+		}
+		PointList points = new PointList();
+		points.addPoint(conn.getPoints().getFirstPoint());
 		Point sourceLoc = source.getLocation();
 		Point targetLoc = target.getLocation();
 		Point firstPoint = conn.getPoints().getFirstPoint();
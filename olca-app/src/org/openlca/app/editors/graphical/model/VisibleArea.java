@@ -0,0 +1,155 @@
+package org.openlca.app.editors.graphical.model;
+
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.eclipse.draw2d.Connection;
+import org.eclipse.draw2d.FigureCanvas;
+import org.eclipse.draw2d.FigureListener;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.Viewport;
+import org.eclipse.draw2d.geometry.Point;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.gef.GraphicalViewer;
+import org.eclipse.gef.editparts.ScalableRootEditPart;
+import org.eclipse.gef.editparts.ZoomListener;
+import org.eclipse.gef.editparts.ZoomManager;
+
+/**
+ * Tracks the area of the product system figure that is visible in the
+ * viewport of the graphical editor (plus a margin). Only the process nodes in
+ * this area get an edit part and a figure; the product system part is
+ * refreshed when the area changes. Connections outside of this area are not
+ * routed; they are drawn as straight lines and routed when they are scrolled
+ * into the visible area.
+ */
+class VisibleArea {
+
+	/** Below this zoom level process figures are painted as place holders. */
+	static final double DETAIL_SCALE = 0.5;
+
+	/** The margin around the viewport in pixels of the screen. */
+	private static final int MARGIN = 200;
+
+	private final IFigure figure;
+	private final Viewport viewport;
+	private final ZoomManager zoomManager;
+	private final Set<Connection> deferred = Collections.newSetFromMap(
+			new WeakHashMap<>());
+	private final PropertyChangeListener scrollListener = (e) -> update();
+	private final ZoomListener zoomListener = (zoom) -> update();
+	private final FigureListener resizeListener = (f) -> update();
+	private final Runnable onChange;
+	private Rectangle area;
+
+	private VisibleArea(IFigure figure, Viewport viewport,
+			ZoomManager zoomManager, Runnable onChange) {
+		this.figure = figure;
+		this.viewport = viewport;
+		this.zoomManager = zoomManager;
+		this.onChange = onChange;
+		viewport.getHorizontalRangeModel().addPropertyChangeListener(
+				scrollListener);
+		viewport.getVerticalRangeModel().addPropertyChangeListener(
+				scrollListener);
+		viewport.addFigureListener(resizeListener);
+		if (zoomManager != null)
+			zoomManager.addZoomListener(zoomListener);
+	}
+
+	/**
+	 * Returns the visible area of the given product system figure or null if
+	 * the viewer has no scrollable canvas. The given function is called when
+	 * the area was scrolled, zoomed, or resized.
+	 */
+	static VisibleArea install(GraphicalViewer viewer, IFigure figure,
+			Runnable onChange) {
+		if (!(viewer.getControl() instanceof FigureCanvas))
+			return null;
+		Viewport viewport = ((FigureCanvas) viewer.getControl()).getViewport();
+		ZoomManager zoomManager = null;
+		if (viewer.getRootEditPart() instanceof ScalableRootEditPart)
+			zoomManager = ((ScalableRootEditPart) viewer.getRootEditPart())
+					.getZoomManager();
+		return new VisibleArea(figure, viewport, zoomManager, onChange);
+	}
+
+	void dispose() {
+		viewport.getHorizontalRangeModel().removePropertyChangeListener(
+				scrollListener);
+		viewport.getVerticalRangeModel().removePropertyChangeListener(
+				scrollListener);
+		viewport.removeFigureListener(resizeListener);
+		if (zoomManager != null)
+			zoomManager.removeZoomListener(zoomListener);
+		deferred.clear();
+	}
+
+	/**
+	 * Returns true if the line between the given points (in the coordinates
+	 * of the product system figure) intersects the visible area.
+	 */
+	boolean intersects(Point start, Point end) {
+		Rectangle area = get();
+		if (area == null)
+			return true;
+		Rectangle bounds = new Rectangle(start, end);
+		bounds.width += 1;
+		bounds.height += 1;
+		return bounds.intersects(area);
+	}
+
+	/**
+	 * Returns true if the given bounds (in the coordinates of the product
+	 * system figure) intersect the visible area. Returns false as long as the
+	 * viewport has no size; it is updated when the viewport is resized.
+	 */
+	boolean intersects(Rectangle bounds) {
+		if (bounds == null)
+			return true;
+		Rectangle area = get();
+		return area != null && bounds.intersects(area);
+	}
+
+	/** The connection is routed when it is scrolled into the visible area. */
+	void defer(Connection connection) {
+		deferred.add(connection);
+	}
+
+	private Rectangle get() {
+		if (area != null)
+			return area;
+		Rectangle bounds = viewport.getBounds();
+		if (bounds.isEmpty())
+			return null;
+		Rectangle r = bounds.getCopy().expand(MARGIN, MARGIN);
+		if (viewport.getParent() != null)
+			viewport.getParent().translateToAbsolute(r);
+		figure.translateToRelative(r);
+		area = r;
+		return area;
+	}
+
+	private void update() {
+		area = null;
+		if (onChange != null)
+			onChange.run();
+		if (deferred.isEmpty())
+			return;
+		List<Connection> visible = new ArrayList<>();
+		for (Connection connection : deferred) {
+			if (connection.getPoints().size() < 2)
+				continue;
+			if (intersects(connection.getPoints().getFirstPoint(),
+					connection.getPoints().getLastPoint()))
+				visible.add(connection);
+		}
+		deferred.removeAll(visible);
+		for (Connection connection : visible)
+			connection.revalidate();
+	}
+}
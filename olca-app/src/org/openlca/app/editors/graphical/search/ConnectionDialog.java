@@ -25,6 +25,7 @@ import org.eclipse.ui.forms.widgets.FormToolkit;
 import org.eclipse.ui.forms.widgets.Section;
 import org.openlca.app.M;
 import org.openlca.app.db.Database;
+import org.openlca.app.editors.graphical.model.ExchangeItem;
 import org.openlca.app.editors.graphical.model.ExchangeNode;
 import org.openlca.app.editors.graphical.model.ProductSystemNode;
 import org.openlca.app.util.Tuple;
@@ -32,7 +33,6 @@ import org.openlca.app.util.UI;
 import org.openlca.app.util.tables.Tables;
 import org.openlca.core.database.NativeSql;
 import org.openlca.core.database.ProcessDao;
-import org.openlca.core.model.Exchange;
 import org.openlca.core.model.ProcessLink;
 import org.openlca.core.model.descriptors.ProcessDescriptor;
 import org.slf4j.Logger;
@@ -50,7 +50,7 @@ public class ConnectionDialog extends Dialog {
 	}
 
 	private static final Logger log = LoggerFactory.getLogger(ConnectionDialog.class);
-	private final Exchange exchange;
+	private final ExchangeItem exchange;
 	private final long processId;
 	private final Set<Long> existingProcesses;
 	private final MutableProcessLinkSearchMap linkSearch;
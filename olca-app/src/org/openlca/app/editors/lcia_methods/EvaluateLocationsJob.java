@@ -1,20 +1,30 @@
 package org.openlca.app.editors.lcia_methods;
 
 import org.openlca.app.M;
+import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.openlca.app.db.Database;
 import org.openlca.app.editors.processes.kml.KmlUtil;
-import org.openlca.core.database.LocationDao;
+import org.openlca.core.database.NativeSql;
 import org.openlca.core.database.ParameterDao;
 import org.openlca.core.model.ImpactMethod;
 import org.openlca.core.model.Parameter;
-import org.openlca.core.model.descriptors.LocationDescriptor;
 import org.openlca.geo.kml.KmlFeature;
 import org.openlca.geo.parameter.ParameterCache;
 import org.openlca.geo.parameter.ParameterCalculator;
@@ -23,16 +33,32 @@ import org.python.google.common.base.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Calculates the shape-file parameters of all locations for an LCIA method.
+ * The KMZ data of the locations are read in a single query and the locations
+ * are evaluated in parallel where each worker thread has its own parameter
+ * calculators. A location is only intersected with the features of a
+ * shape-file when its bounding box overlaps with a feature in the spatial
+ * index of the shape-file; for locations outside of a shape-file no
+ * parameters are stored and the default values of the parameters are used.
+ * Locations which geometry and shape-files did not change since the last
+ * evaluation are skipped (see {@link LocationHashes}); the hashes of deleted
+ * locations are removed.
+ */
 class EvaluateLocationsJob implements IRunnableWithProgress {
 
 	private Logger log = LoggerFactory.getLogger(getClass());
 	private ImpactMethod method;
+	private File folder;
 	private ShapeFileFolder shapeFileFolder;
 	private ParameterCache parameterCache;
-	private ParameterCalculator parameterCalculator;
-	private LocationDao locationDao;
 	private IProgressMonitor monitor;
 	private List<String> shapeFiles;
+	private Map<String, List<Parameter>> parameters;
+	private final Map<String, ShapeFileIndex> indices = new HashMap<>();
+	private LocationHashes hashes;
+	/** The number of running workers. */
+	private final AtomicInteger workers = new AtomicInteger();
 
 	public EvaluateLocationsJob(ImpactMethod method) {
 		this.method = method;
@@ -41,72 +67,162 @@ class EvaluateLocationsJob implements IRunnableWithProgress {
 	@Override
 	public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
 		this.monitor = monitor;
-		List<LocationDescriptor> locations = init();
-		beginTask(M.EvaluatingLocations, locations.size());
-		for (LocationDescriptor location : locations)
-			if (!isCanceled())
-				evaluate(location);
+		if (!init()) {
+			done();
+			return;
+		}
+		beginTask(M.EvaluatingLocations, countLocations());
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+		BlockingQueue<Location> queue = new ArrayBlockingQueue<>(threads * 4);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		workers.set(threads);
+		for (int i = 0; i < threads; i++)
+			pool.execute(new Worker(queue));
+		try {
+			Set<Long> ids = readLocations(queue);
+			if (ids != null)
+				hashes.retain(ids);
+		} finally {
+			for (int i = 0; i < threads; i++) {
+				if (!put(queue, Location.END))
+					break;
+			}
+			pool.shutdown();
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+			hashes.save();
+		}
 		done();
 	}
 
-	private List<LocationDescriptor> init() {
+	private boolean init() {
 		beginTask(M.Initializing);
-		shapeFileFolder = new ShapeFileFolder(ShapeFileUtils.getFolder(method));
+		folder = ShapeFileUtils.getFolder(method);
+		shapeFileFolder = new ShapeFileFolder(folder);
 		shapeFiles = shapeFileFolder.getShapeFiles();
 		if (shapeFiles.size() == 0)
-			return Collections.emptyList();
+			return false;
 		parameterCache = new ParameterCache(shapeFileFolder);
-		List<Parameter> parameters = getShapeFileParameters();
+		parameters = getShapeFileParameters();
 		if (parameters.size() == 0)
-			return Collections.emptyList();
-		parameterCalculator = new ParameterCalculator(parameters,
-				shapeFileFolder);
-		locationDao = new LocationDao(Database.get());
-		return locationDao.getDescriptors();
+			return false;
+		for (String shapeFile : parameters.keySet()) {
+			if (isCanceled())
+				return false;
+			subTask(shapeFile);
+			ShapeFileIndex index = ShapeFileIndex.get(folder, shapeFile);
+			if (index != null)
+				indices.put(shapeFile, index);
+		}
+		hashes = LocationHashes.load(folder, parameters);
+		return true;
+	}
+
+	private int countLocations() {
+		int[] count = new int[1];
+		try {
+			NativeSql.on(Database.get()).query(
+					"SELECT COUNT(*) FROM tbl_locations", (rs) -> {
+						count[0] = rs.getInt(1);
+						return false;
+					});
+		} catch (Exception e) {
+			log.error("failed to count locations", e);
+		}
+		return count[0] == 0 ? IProgressMonitor.UNKNOWN : count[0];
+	}
+
+	/**
+	 * Reads the locations with their KMZ data in a single query and passes
+	 * them to the worker threads. Returns the IDs of all locations or null if
+	 * the locations could not be read completely.
+	 */
+	private Set<Long> readLocations(BlockingQueue<Location> queue)
+			throws InterruptedException {
+		String query = "SELECT id, name, kmz FROM tbl_locations";
+		Set<Long> ids = new HashSet<>();
+		boolean[] complete = { true };
+		try {
+			NativeSql.on(Database.get()).query(query, (rs) -> {
+				if (isCanceled()) {
+					complete[0] = false;
+					return false;
+				}
+				Location location = new Location(rs.getLong(1),
+						rs.getString(2), rs.getBytes(3));
+				ids.add(location.id);
+				try {
+					if (put(queue, location))
+						return true;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				complete[0] = false;
+				return false;
+			});
+		} catch (Exception e) {
+			log.error("failed to read locations", e);
+			return null;
+		}
+		if (Thread.interrupted())
+			throw new InterruptedException();
+		return complete[0] ? ids : null;
 	}
 
-	private void evaluate(LocationDescriptor location) {
-		subTask(location.getName());
-		for (String shapeFile : ShapeFileUtils.getShapeFiles(method))
-			parameterCache.remove(location.getId(), shapeFile);
-		KmlFeature feature = getKmlFeature(location);
-		if (feature != null)
-			parameterCalculator.calculate(location.getId(), feature);
-		worked();
+	/**
+	 * Puts the location into the queue; returns false if this is not possible
+	 * because all workers stopped.
+	 */
+	private boolean put(BlockingQueue<Location> queue, Location location)
+			throws InterruptedException {
+		while (!queue.offer(location, 100, TimeUnit.MILLISECONDS)) {
+			if (workers.get() == 0) {
+				log.error("all workers stopped; cannot evaluate locations");
+				return false;
+			}
+		}
+		return true;
 	}
 
-	private List<Parameter> getShapeFileParameters() {
+	/** Returns the shape-file parameters of the method by shape-file. */
+	private Map<String, List<Parameter>> getShapeFileParameters() {
 		if (method == null)
-			return Collections.emptyList();
+			return Collections.emptyMap();
 		long methodId = method.getId();
 		String query = "select m.parameters from ImpactMethod m where " + "m.id = :methodId";
 		ParameterDao dao = new ParameterDao(Database.get());
 		List<Parameter> allParams = dao.getAll(query, Collections.singletonMap("methodId", methodId));
-		List<Parameter> shapeFileParams = new ArrayList<>();
+		Map<String, List<Parameter>> shapeFileParams = new HashMap<>();
 		for (Parameter param : allParams) {
 			if (param == null)
 				continue;
-			if (param.getExternalSource() == null)
+			String shapeFile = param.getExternalSource();
+			if (shapeFile == null)
 				continue;
 			if (!"SHAPE_FILE".equals(param.getSourceType()))
 				continue;
-			shapeFileParams.add(param);
+			if (!shapeFiles.contains(shapeFile))
+				continue;
+			List<Parameter> list = shapeFileParams.get(shapeFile);
+			if (list == null) {
+				list = new ArrayList<>();
+				shapeFileParams.put(shapeFile, list);
+			}
+			list.add(param);
 		}
 		return shapeFileParams;
 	}
 
-	private KmlFeature getKmlFeature(LocationDescriptor location) {
-		byte[] kmz = locationDao.getForId(location.getId()).getKmz();
-		if (kmz == null)
+	private KmlFeature getKmlFeature(Location location) {
+		if (location.kmz == null)
 			return null;
-		String kml = KmlUtil.toKml(kmz);
+		String kml = KmlUtil.toKml(location.kmz);
 		if (Strings.isNullOrEmpty(kml))
 			return null;
 		try {
 			KmlFeature feature = KmlFeature.parse(kml);
 			return feature;
 		} catch (Exception e) {
-			log.warn("Could not parse kml data for location " + location.getName());
+			log.warn("Could not parse kml data for location " + location.name);
 		}
 		return null;
 	}
@@ -122,12 +238,12 @@ class EvaluateLocationsJob implements IRunnableWithProgress {
 			monitor.beginTask(name, totalWork);
 	}
 
-	private void worked() {
+	private synchronized void worked() {
 		if (monitor != null)
 			monitor.worked(1);
 	}
 
-	private void subTask(String name) {
+	private synchronized void subTask(String name) {
 		if (monitor != null)
 			monitor.subTask(name);
 	}
@@ -143,4 +259,89 @@ class EvaluateLocationsJob implements IRunnableWithProgress {
 		return monitor.isCanceled();
 	}
 
+	private static class Location {
+
+		static final Location END = new Location(-1, null, null);
+
+		final long id;
+		final String name;
+		final byte[] kmz;
+
+		Location(long id, String name, byte[] kmz) {
+			this.id = id;
+			this.name = name;
+			this.kmz = kmz;
+		}
+	}
+
+	/**
+	 * Evaluates the locations of the queue until it takes the end marker.
+	 * The parameter calculators are not shared between threads as they hold
+	 * open data stores of the shape-files.
+	 */
+	private class Worker implements Runnable {
+
+		private final BlockingQueue<Location> queue;
+		private final Map<String, ParameterCalculator> calculators = new HashMap<>();
+
+		Worker(BlockingQueue<Location> queue) {
+			this.queue = queue;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Location location;
+					try {
+						location = queue.take();
+					} catch (InterruptedException e) {
+						return;
+					}
+					if (location == Location.END)
+						return;
+					if (isCanceled())
+						continue;
+					try {
+						evaluate(location);
+					} catch (Throwable e) {
+						log.error("failed to evaluate location "
+								+ location.name, e);
+					}
+					worked();
+				}
+			} finally {
+				workers.decrementAndGet();
+			}
+		}
+
+		private void evaluate(Location location) {
+			String hash = LocationHashes.hash(location.kmz);
+			if (!hashes.hasChanged(location.id, hash))
+				return;
+			subTask(location.name);
+			for (String shapeFile : shapeFiles)
+				parameterCache.remove(location.id, shapeFile);
+			KmlFeature feature = getKmlFeature(location);
+			if (feature != null) {
+				for (String shapeFile : parameters.keySet()) {
+					ShapeFileIndex index = indices.get(shapeFile);
+					if (index != null && !index.mayIntersect(feature.geometry))
+						continue;
+					calculator(shapeFile).calculate(location.id, feature);
+				}
+			}
+			hashes.put(location.id, hash);
+		}
+
+		private ParameterCalculator calculator(String shapeFile) {
+			ParameterCalculator calculator = calculators.get(shapeFile);
+			if (calculator == null) {
+				calculator = new ParameterCalculator(parameters.get(shapeFile),
+						shapeFileFolder);
+				calculators.put(shapeFile, calculator);
+			}
+			return calculator;
+		}
+	}
 }
@@ -0,0 +1,145 @@
+package org.openlca.app.editors.lcia_methods;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openlca.core.model.Parameter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+
+/**
+ * Stores the hashes of the KMZ data of the locations that were evaluated for
+ * the shape-files of an LCIA method in the file <code>locations.hash</code>
+ * of the shape-file folder. Together with the hashes a fingerprint of the
+ * shape-files and parameters is stored; when this fingerprint changes, all
+ * locations are evaluated again.
+ */
+class LocationHashes {
+
+	private final File file;
+	private final String fingerprint;
+	private final Map<Long, String> hashes;
+
+	private LocationHashes(File file, String fingerprint,
+			Map<Long, String> hashes) {
+		this.file = file;
+		this.fingerprint = fingerprint;
+		this.hashes = hashes;
+	}
+
+	static LocationHashes load(File folder,
+			Map<String, List<Parameter>> parameters) {
+		File file = new File(folder, "locations.hash");
+		String fingerprint = fingerprint(folder, parameters);
+		Map<Long, String> hashes = new HashMap<>();
+		if (file.exists()) {
+			Content content = read(file);
+			if (content != null && content.hashes != null
+					&& fingerprint.equals(content.fingerprint))
+				hashes.putAll(content.hashes);
+		}
+		return new LocationHashes(file, fingerprint, hashes);
+	}
+
+	/**
+	 * Creates a fingerprint from the names and modification dates of the
+	 * shape-files and the names of the parameters.
+	 */
+	private static String fingerprint(File folder,
+			Map<String, List<Parameter>> parameters) {
+		List<String> shapeFiles = new ArrayList<>(parameters.keySet());
+		Collections.sort(shapeFiles);
+		StringBuilder b = new StringBuilder();
+		for (String shapeFile : shapeFiles) {
+			File shp = new File(folder, shapeFile + ".shp");
+			b.append(shapeFile).append(':').append(shp.lastModified());
+			List<String> names = new ArrayList<>();
+			for (Parameter param : parameters.get(shapeFile))
+				names.add(param.getName());
+			Collections.sort(names);
+			for (String name : names)
+				b.append(':').append(name);
+			b.append(';');
+		}
+		return hash(b.toString().getBytes());
+	}
+
+	static String hash(byte[] data) {
+		if (data == null)
+			return "";
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			return Base64.getEncoder().encodeToString(digest.digest(data));
+		} catch (Exception e) {
+			return Integer.toHexString(Arrays.hashCode(data));
+		}
+	}
+
+	/**
+	 * Returns true if the location with the given ID was not evaluated yet or
+	 * if the given hash of its KMZ data is different from the stored one.
+	 */
+	synchronized boolean hasChanged(long locationId, String hash) {
+		String old = hashes.get(locationId);
+		return old == null || !old.equals(hash);
+	}
+
+	synchronized void put(long locationId, String hash) {
+		hashes.put(locationId, hash);
+	}
+
+	/**
+	 * Removes the hashes of the locations that are not contained in the given
+	 * IDs, e.g. because they were deleted.
+	 */
+	synchronized void retain(Set<Long> locationIds) {
+		hashes.keySet().retainAll(locationIds);
+	}
+
+	synchronized void save() {
+		Content content = new Content();
+		content.fingerprint = fingerprint;
+		content.hashes = hashes;
+		try (FileOutputStream os = new FileOutputStream(file);
+				OutputStreamWriter writer = new OutputStreamWriter(os, "utf-8");
+				BufferedWriter buffer = new BufferedWriter(writer)) {
+			new Gson().toJson(content, buffer);
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(getClass());
+			log.warn("failed to write location hashes " + file, e);
+		}
+	}
+
+	private static Content read(File file) {
+		try (FileInputStream is = new FileInputStream(file);
+				InputStreamReader reader = new InputStreamReader(is, "utf-8");
+				BufferedReader buffer = new BufferedReader(reader)) {
+			return new Gson().fromJson(buffer, Content.class);
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(LocationHashes.class);
+			log.warn("failed to read location hashes " + file, e);
+			return null;
+		}
+	}
+
+	private static class Content {
+		String fingerprint;
+		Map<Long, String> hashes;
+	}
+}
@@ -0,0 +1,126 @@
+package org.openlca.app.editors.lcia_methods;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.opengis.feature.simple.SimpleFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * An STR-tree of the bounding boxes of the features in a shape-file. It is
+ * used to find out quickly if a location can intersect with any feature of
+ * the shape-file. The index is stored in a file next to the shape-file (with
+ * the extension <code>.strtree</code>) and is rebuilt when the shape-file is
+ * newer than the index file.
+ */
+class ShapeFileIndex {
+
+	private final STRtree tree;
+
+	private ShapeFileIndex(STRtree tree) {
+		this.tree = tree;
+	}
+
+	/**
+	 * Loads or creates the index for the shape-file with the given name
+	 * (without file extension) in the given folder. Returns null if the index
+	 * could not be created.
+	 */
+	static ShapeFileIndex get(File folder, String shapeFile) {
+		File shp = new File(folder, shapeFile + ".shp");
+		File file = new File(folder, shapeFile + ".strtree");
+		if (file.exists() && file.lastModified() >= shp.lastModified()) {
+			STRtree tree = read(file);
+			if (tree != null)
+				return new ShapeFileIndex(tree);
+		}
+		STRtree tree = build(shp);
+		if (tree == null)
+			return null;
+		write(tree, file);
+		return new ShapeFileIndex(tree);
+	}
+
+	/**
+	 * Returns true if the bounding box of the given geometry intersects with
+	 * the bounding box of at least one feature of the shape-file.
+	 */
+	boolean mayIntersect(Geometry geometry) {
+		if (geometry == null)
+			return false;
+		Envelope envelope = geometry.getEnvelopeInternal();
+		if (envelope.isNull())
+			return false;
+		synchronized (tree) {
+			return !tree.query(envelope).isEmpty();
+		}
+	}
+
+	private static STRtree build(File shp) {
+		Logger log = LoggerFactory.getLogger(ShapeFileIndex.class);
+		log.trace("build spatial index for {}", shp);
+		ShapefileDataStore store = null;
+		try {
+			store = new ShapefileDataStore(shp.toURI().toURL());
+			STRtree tree = new STRtree();
+			SimpleFeatureIterator it = store.getFeatureSource().getFeatures()
+					.features();
+			try {
+				while (it.hasNext()) {
+					SimpleFeature feature = it.next();
+					Object geometry = feature.getDefaultGeometry();
+					if (!(geometry instanceof Geometry))
+						continue;
+					Envelope envelope = ((Geometry) geometry)
+							.getEnvelopeInternal();
+					tree.insert(envelope, envelope);
+				}
+			} finally {
+				it.close();
+			}
+			tree.build();
+			return tree;
+		} catch (Exception e) {
+			log.error("failed to build spatial index for " + shp, e);
+			return null;
+		} finally {
+			if (store != null)
+				store.dispose();
+		}
+	}
+
+	private static STRtree read(File file) {
+		try (FileInputStream fis = new FileInputStream(file);
+				ObjectInputStream in = new ObjectInputStream(
+						new BufferedInputStream(fis))) {
+			return (STRtree) in.readObject();
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(ShapeFileIndex.class);
+			log.warn("failed to read spatial index " + file, e);
+			return null;
+		}
+	}
+
+	private static void write(STRtree tree, File file) {
+		try (FileOutputStream fos = new FileOutputStream(file);
+				ObjectOutputStream out = new ObjectOutputStream(
+						new BufferedOutputStream(fos))) {
+			out.writeObject(tree);
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(ShapeFileIndex.class);
+			log.warn("failed to write spatial index " + file, e);
+		}
+	}
+}
@@ -1,8 +1,13 @@
 package org.openlca.app.editors.processes.exchanges;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -180,31 +185,61 @@ class ExchangeTable {
 		List<Exchange> selection = Viewers.getAllSelected(viewer);
 		if (!Exchanges.canRemove(process, selection))
 			return;
-		selection.forEach(e -> process.getExchanges().remove(e));
-		viewer.setInput(process.getExchanges());
+		remove(selection);
+	}
+
+	/**
+	 * Removes the given exchanges from the process with a single pass over
+	 * the exchange list and a single update of the table.
+	 */
+	void remove(List<Exchange> exchanges) {
+		if (exchanges == null || exchanges.isEmpty())
+			return;
+		Process process = editor.getModel();
+		Set<Exchange> removals = Collections.newSetFromMap(
+				new IdentityHashMap<>());
+		removals.addAll(exchanges);
+		process.getExchanges().removeIf(removals::contains);
+		viewer.remove(exchanges.toArray());
 		editor.setDirty(true);
 		editor.postEvent(editor.EXCHANGES_CHANGED, this);
 	}
 
-	private void add(List<BaseDescriptor> descriptors) {
-		if (descriptors.isEmpty())
+	/**
+	 * Adds exchanges for the flows of the given descriptors. The flows are
+	 * loaded with a single query via the entity cache and the table is
+	 * updated once for all new exchanges.
+	 */
+	void add(List<BaseDescriptor> descriptors) {
+		if (descriptors == null || descriptors.isEmpty())
 			return;
-		Process process = editor.getModel();
+		List<Long> flowIds = new ArrayList<>();
 		for (BaseDescriptor descriptor : descriptors) {
-			if (!(descriptor instanceof FlowDescriptor))
+			if (descriptor instanceof FlowDescriptor)
+				flowIds.add(descriptor.getId());
+		}
+		if (flowIds.isEmpty())
+			return;
+		Map<Long, Flow> flows = cache.getAll(Flow.class, new HashSet<>(flowIds));
+		Process process = editor.getModel();
+		List<Exchange> added = new ArrayList<>();
+		for (long flowId : flowIds) {
+			Flow flow = flows.get(flowId);
+			if (flow == null)
 				continue;
 			Exchange e = new Exchange();
-			FlowDao flowDao = new FlowDao(Database.get());
-			Flow flow = flowDao.getForId(descriptor.getId());
 			e.setFlow(flow);
 			e.setFlowPropertyFactor(flow.getReferenceFactor());
 			Unit unit = getUnit(flow.getReferenceFactor());
 			e.setUnit(unit);
 			e.setAmountValue(1.0);
 			e.setInput(forInputs);
-			process.getExchanges().add(e);
+			added.add(e);
 		}
-		viewer.setInput(process.getExchanges());
+		if (added.isEmpty())
+			return;
+		process.getExchanges().addAll(added);
+		viewer.add(added.toArray());
 		editor.setDirty(true);
 		editor.postEvent(editor.EXCHANGES_CHANGED, this);
 	}
@@ -0,0 +1,206 @@
+package org.openlca.app.editors.systems;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.openlca.app.App;
+import org.openlca.app.M;
+import org.openlca.app.db.Cache;
+import org.openlca.app.db.Database;
+import org.openlca.app.db.ResultCache;
+import org.openlca.app.results.ResultEditorInput;
+import org.openlca.app.results.analysis.AnalyzeEditor;
+import org.openlca.app.results.quick.QuickResultEditor;
+import org.openlca.app.results.regionalized.RegionalizedResultEditor;
+import org.openlca.app.results.simulation.SimulationInit;
+import org.openlca.app.util.Editors;
+import org.openlca.app.util.Info;
+import org.openlca.core.math.CalculationSetup;
+import org.openlca.core.math.SystemCalculator;
+import org.openlca.core.math.data_quality.DQCalculationSetup;
+import org.openlca.core.math.data_quality.DQResult;
+import org.openlca.core.results.ContributionResult;
+import org.openlca.core.results.ContributionResultProvider;
+import org.openlca.core.results.FullResult;
+import org.openlca.core.results.FullResultProvider;
+import org.openlca.geo.RegionalizedCalculator;
+import org.openlca.geo.RegionalizedResult;
+import org.openlca.geo.RegionalizedResultProvider;
+import org.openlca.geo.parameter.ParameterSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the calculations of product systems as background jobs. The jobs are
+ * executed one after another so that two large systems are not calculated at
+ * the same time. The results of analysis and quick calculations are stored in
+ * the {@link ResultCache} so that a recalculation with the same setup directly
+ * opens the cached result.
+ */
+class CalculationQueue {
+
+	private static final ISchedulingRule RULE = new ISchedulingRule() {
+
+		@Override
+		public boolean isConflicting(ISchedulingRule rule) {
+			return rule == this;
+		}
+
+		@Override
+		public boolean contains(ISchedulingRule rule) {
+			return rule == this;
+		}
+	};
+
+	private CalculationQueue() {
+	}
+
+	static Job submit(CalculationSetup setup, CalculationType type,
+			DQCalculationSetup dqSetup) {
+		CalculationJob job = new CalculationJob(setup, type, dqSetup);
+		job.setRule(RULE);
+		job.setUser(true);
+		job.schedule();
+		return job;
+	}
+
+	private static class CalculationJob extends Job {
+
+		private Logger log = LoggerFactory.getLogger(getClass());
+		private CalculationSetup setup;
+		private CalculationType type;
+		private DQCalculationSetup dqSetup;
+
+		CalculationJob(CalculationSetup setup, CalculationType type,
+				DQCalculationSetup dqSetup) {
+			super(M.RunCalculation + ": " + setup.productSystem.getName());
+			this.setup = setup;
+			this.type = type;
+			this.dqSetup = dqSetup;
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			monitor.beginTask(getName(), IProgressMonitor.UNKNOWN);
+			int size = setup.productSystem.getProcesses().size();
+			log.trace("calculate a {} x {} system", size, size);
+			try {
+				switch (type) {
+				case ANALYSIS:
+					analyse(monitor);
+					break;
+				case MONTE_CARLO:
+					simulate();
+					break;
+				case QUICK:
+					solve(monitor);
+					break;
+				case REGIONALIZED:
+					calcRegionalized(monitor);
+					break;
+				default:
+					break;
+				}
+			} catch (OutOfMemoryError e) {
+				App.runInUI("Out of memory", MemoryError::show);
+			} catch (Exception e) {
+				log.error("Calculation failed", e);
+			}
+			monitor.done();
+			return monitor.isCanceled() ? Status.CANCEL_STATUS
+					: Status.OK_STATUS;
+		}
+
+		private void analyse(IProgressMonitor monitor) {
+			ResultCache cache = Cache.getResultCache();
+			FullResultProvider provider = cache == null ? null
+					: cache.get("full", setup, FullResultProvider.class);
+			if (provider == null) {
+				log.trace("run analysis");
+				SystemCalculator calculator = new SystemCalculator(
+						Cache.getMatrixCache(), App.getSolver());
+				FullResult result = calculator.calculateFull(setup);
+				provider = new FullResultProvider(result,
+						Cache.getEntityCache());
+				if (cache != null)
+					cache.put("full", setup, provider, result);
+			}
+			if (monitor.isCanceled())
+				return;
+			log.trace("calculation done, open editor");
+			DQResult dqResult = DQResult.calculate(Database.get(),
+					provider.result, dqSetup);
+			ResultEditorInput input = getEditorInput(provider, null,
+					dqResult);
+			Editors.open(input, AnalyzeEditor.ID);
+		}
+
+		private void solve(IProgressMonitor monitor) {
+			ResultCache cache = Cache.getResultCache();
+			@SuppressWarnings("unchecked")
+			ContributionResultProvider<ContributionResult> provider = cache == null
+					? null
+					: cache.get("contributions", setup,
+							ContributionResultProvider.class);
+			if (provider == null) {
+				log.trace("run quick calculation");
+				SystemCalculator calculator = new SystemCalculator(
+						Cache.getMatrixCache(), App.getSolver());
+				ContributionResult result = calculator
+						.calculateContributions(setup);
+				provider = new ContributionResultProvider<>(result,
+						Cache.getEntityCache());
+				if (cache != null)
+					cache.put("contributions", setup, provider, result);
+			}
+			if (monitor.isCanceled())
+				return;
+			log.trace("calculation done, open editor");
+			DQResult dqResult = DQResult.calculate(Database.get(),
+					provider.result, dqSetup);
+			ResultEditorInput input = getEditorInput(provider, null,
+					dqResult);
+			Editors.open(input, QuickResultEditor.ID);
+		}
+
+		private void simulate() {
+			log.trace("init Monte Carlo Simulation");
+			SimulationInit init = new SimulationInit(setup,
+					Cache.getMatrixCache());
+			init.run();
+		}
+
+		private void calcRegionalized(IProgressMonitor monitor) {
+			log.trace("calculate regionalized result");
+			RegionalizedCalculator calculator = new RegionalizedCalculator(
+					setup, App.getSolver());
+			RegionalizedResult regioResult = calculator.calculate(
+					Database.get(), Cache.getMatrixCache());
+			if (regioResult == null) {
+				App.runInUI("No regionalized information", () -> Info.showBox(
+						"No regionalized information available for this system"));
+				return;
+			}
+			if (monitor.isCanceled())
+				return;
+			RegionalizedResultProvider provider = new RegionalizedResultProvider();
+			provider.result = new FullResultProvider(regioResult.result,
+					Cache.getEntityCache());
+			provider.kmlData = regioResult.kmlData;
+			DQResult dqResult = DQResult.calculate(Database.get(),
+					regioResult.result, dqSetup);
+			ResultEditorInput input = getEditorInput(provider,
+					regioResult.parameterSet, dqResult);
+			Editors.open(input, RegionalizedResultEditor.ID);
+		}
+
+		private ResultEditorInput getEditorInput(Object result,
+				ParameterSet parameterSet, DQResult dqResult) {
+			return ResultEditorInput.create(setup, result)
+					.with(dqResult)
+					.with(parameterSet);
+		}
+	}
+}
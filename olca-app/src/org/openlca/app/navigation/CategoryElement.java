@@ -4,15 +4,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import org.openlca.app.db.Database;
-import org.openlca.core.database.CategorizedEntityDao;
 import org.openlca.core.model.Category;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Optional;
-
 /**
  * Represents categories in the navigation tree.
  */
@@ -24,6 +20,13 @@ public class CategoryElement extends NavigationElement<Category> {
 		super(parent, category);
 	}
 
+	@Override
+	public void update() {
+		Category category = getContent();
+		DescriptorCache.invalidate(category);
+		super.update();
+	}
+
 	@Override
 	protected List<INavigationElement<?>> queryChilds() {
 		Category category = getContent();
@@ -42,12 +45,8 @@ public class CategoryElement extends NavigationElement<Category> {
 	private void addModelElements(Category category,
 			List<INavigationElement<?>> list) {
 		try {
-			CategorizedEntityDao<?, ?> dao = Database.createCategorizedDao(category
-					.getModelType());
-			if (dao == null)
-				return;
-			Optional<Category> optional = Optional.fromNullable(category);
-			for (CategorizedDescriptor descriptor : dao.getDescriptors(optional)) 
+			for (CategorizedDescriptor descriptor : DescriptorCache.get(
+					category.getModelType(), category))
 				list.add(new ModelElement(this, descriptor));
 		} catch (Exception e) {
 			log.error("failed to get model elements: " + category, e);
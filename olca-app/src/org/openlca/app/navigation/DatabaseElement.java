@@ -17,6 +17,12 @@ public class DatabaseElement extends NavigationElement<IDatabaseConfiguration> {
 		super(parent, config);
 	}
 
+	@Override
+	public void update() {
+		DescriptorCache.clear();
+		super.update();
+	}
+
 	@Override
 	protected List<INavigationElement<?>> queryChilds() {
 		if (!Database.isActive(getContent()))
@@ -0,0 +1,190 @@
+package org.openlca.app.navigation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openlca.app.db.Database;
+import org.openlca.core.database.Daos;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.ParameterDao;
+import org.openlca.core.model.Category;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+
+/**
+ * A cache of the model descriptors that are shown in the navigation tree. The
+ * descriptors of a model type are loaded with a single query and grouped by
+ * their category, so that expanding a category or refreshing the tree does not
+ * query the database again. The descriptors of a model type are reloaded after
+ * the type was invalidated; the descriptors of a single category can be
+ * reloaded separately.
+ */
+class DescriptorCache {
+
+	private static final Logger log = LoggerFactory
+			.getLogger(DescriptorCache.class);
+
+	/** model type -> category ID (null for the root) -> descriptors */
+	private static final Map<ModelType, Map<Long, List<CategorizedDescriptor>>> cache = new ConcurrentHashMap<>();
+	private static volatile IDatabase database;
+
+	private DescriptorCache() {
+	}
+
+	static boolean isLoaded(ModelType type) {
+		if (type == null)
+			return true;
+		checkDatabase();
+		return cache.containsKey(type);
+	}
+
+	/**
+	 * Returns the descriptors of the given type that are directly located in
+	 * the given category or in the root of the type if the category is null.
+	 * The descriptors are loaded if this was not done yet.
+	 */
+	static List<CategorizedDescriptor> get(ModelType type, Category category) {
+		Map<Long, List<CategorizedDescriptor>> map = load(type);
+		Long key = category == null ? null : category.getId();
+		List<CategorizedDescriptor> list = map.get(key);
+		if (list == null)
+			return Collections.emptyList();
+		return list;
+	}
+
+	/**
+	 * Returns true if there are models of the given type directly located in
+	 * the given category.
+	 */
+	static boolean hasModels(ModelType type, Category category) {
+		return !get(type, category).isEmpty();
+	}
+
+	static Map<Long, List<CategorizedDescriptor>> load(ModelType type) {
+		checkDatabase();
+		Map<Long, List<CategorizedDescriptor>> map = cache.get(type);
+		if (map != null)
+			return map;
+		synchronized (DescriptorCache.class) {
+			map = cache.get(type);
+			if (map != null)
+				return map;
+			map = query(type);
+			cache.put(type, map);
+			return map;
+		}
+	}
+
+	private static Map<Long, List<CategorizedDescriptor>> query(ModelType type) {
+		Map<Long, List<CategorizedDescriptor>> map = new HashMap<>();
+		IDatabase db = Database.get();
+		if (db == null || type == null)
+			return map;
+		log.trace("load descriptors of type {}", type);
+		try {
+			List<? extends CategorizedDescriptor> all = null;
+			if (type == ModelType.PARAMETER)
+				all = new ParameterDao(db).getGlobalDescriptors();
+			else
+				all = Daos.createCategorizedDao(db, type).getDescriptors();
+			for (CategorizedDescriptor d : all) {
+				List<CategorizedDescriptor> list = map.get(d.getCategory());
+				if (list == null) {
+					list = new ArrayList<>();
+					map.put(d.getCategory(), list);
+				}
+				list.add(d);
+			}
+		} catch (Exception e) {
+			log.error("failed to load descriptors of type " + type, e);
+		}
+		return map;
+	}
+
+	/**
+	 * Replaces the cached descriptor of a model with its new descriptor, e.g.
+	 * after the model was renamed or moved into another category. The new
+	 * descriptor is null when the model was deleted.
+	 */
+	static void update(CategorizedDescriptor old,
+			CategorizedDescriptor descriptor) {
+		if (old == null)
+			return;
+		Map<Long, List<CategorizedDescriptor>> map = cache.get(old
+				.getModelType());
+		if (map == null)
+			return;
+		synchronized (DescriptorCache.class) {
+			List<CategorizedDescriptor> list = map.get(old.getCategory());
+			if (list != null)
+				list.removeIf(d -> d.getId() == old.getId());
+			if (descriptor == null)
+				return;
+			list = map.get(descriptor.getCategory());
+			if (list == null) {
+				list = new ArrayList<>();
+				map.put(descriptor.getCategory(), list);
+			}
+			list.removeIf(d -> d.getId() == descriptor.getId());
+			list.add(descriptor);
+		}
+	}
+
+	static void invalidate(ModelType type) {
+		if (type != null)
+			cache.remove(type);
+	}
+
+	/**
+	 * Reloads the descriptors that are directly located in the given category
+	 * if the descriptors of its model type are loaded.
+	 */
+	static void invalidate(Category category) {
+		if (category == null)
+			return;
+		ModelType type = category.getModelType();
+		Map<Long, List<CategorizedDescriptor>> map = type == null ? null
+				: cache.get(type);
+		if (map == null)
+			return;
+		List<CategorizedDescriptor> list = new ArrayList<>();
+		IDatabase db = Database.get();
+		try {
+			for (CategorizedDescriptor d : Daos.createCategorizedDao(db, type)
+					.getDescriptors(Optional.of(category)))
+				list.add(d);
+		} catch (Exception e) {
+			log.error("failed to load descriptors of category " + category, e);
+			invalidate(type);
+			return;
+		}
+		synchronized (DescriptorCache.class) {
+			map.put(category.getId(), list);
+		}
+	}
+
+	static void clear() {
+		cache.clear();
+	}
+
+	/** Clears the cache when another database was activated. */
+	private static void checkDatabase() {
+		IDatabase db = Database.get();
+		if (db == database)
+			return;
+		synchronized (DescriptorCache.class) {
+			if (db == database)
+				return;
+			cache.clear();
+			database = db;
+		}
+	}
+}
@@ -11,6 +11,13 @@ public class GroupElement extends NavigationElement<Group> {
 		super(parent, group);
 	}
 
+	@Override
+	public void update() {
+		for (ModelType type : getContent().types)
+			DescriptorCache.invalidate(type);
+		super.update();
+	}
+
 	@Override
 	protected List<INavigationElement<?>> queryChilds() {
 		List<INavigationElement<?>> elements = new ArrayList<>();
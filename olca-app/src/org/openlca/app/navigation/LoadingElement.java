@@ -0,0 +1,23 @@
+package org.openlca.app.navigation;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.openlca.app.M;
+
+/**
+ * A placeholder that is shown under an element while its child elements are
+ * loaded in the background.
+ */
+class LoadingElement extends NavigationElement<String> {
+
+	LoadingElement(INavigationElement<?> parent) {
+		super(parent, M.Loading);
+	}
+
+	@Override
+	protected List<INavigationElement<?>> queryChilds() {
+		return Collections.emptyList();
+	}
+
+}
@@ -23,7 +23,7 @@ public class ModelElement extends NavigationElement<CategorizedDescriptor> {
 		CategorizedDescriptor newContent = Cache.getEntityCache().get(content.getClass(),
 				content.getId());
 		setContent(newContent);
+		DescriptorCache.update(content, newContent);
 		super.update();
-
 	}
 }
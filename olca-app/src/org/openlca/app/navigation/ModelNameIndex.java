@@ -0,0 +1,110 @@
+package org.openlca.app.navigation;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.openlca.app.db.Database;
+import org.openlca.app.util.Labels;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the display names and category paths of the models of a type.
+ * It is used to decide which elements of a navigation tree are visible for a
+ * filter text without creating the child elements of the tree.
+ */
+class ModelNameIndex {
+
+	private final ModelType type;
+	private final long[] ids;
+	private final String[] names;
+	/** the category IDs of the models; 0 for models in the root */
+	private final long[] categories;
+	/** category ID -> parent category ID (0 for root categories) */
+	private final Map<Long, Long> parents;
+
+	private ModelNameIndex(ModelType type, int size, Map<Long, Long> parents) {
+		this.type = type;
+		this.ids = new long[size];
+		this.names = new String[size];
+		this.categories = new long[size];
+		this.parents = parents;
+	}
+
+	/**
+	 * Creates the index for the given model type. The descriptors are taken
+	 * from the descriptor cache of the navigation; thus, this method should be
+	 * not called in the UI thread.
+	 */
+	static ModelNameIndex build(ModelType type) {
+		Map<Long, List<CategorizedDescriptor>> map = DescriptorCache.load(type);
+		int size = 0;
+		for (List<CategorizedDescriptor> list : map.values())
+			size += list.size();
+		ModelNameIndex index = new ModelNameIndex(type, size, queryParents());
+		int i = 0;
+		for (List<CategorizedDescriptor> list : map.values()) {
+			for (CategorizedDescriptor d : list) {
+				index.ids[i] = d.getId();
+				index.names[i] = Labels.getDisplayName(d).toLowerCase();
+				index.categories[i] = d.getCategory() == null ? 0 : d
+						.getCategory();
+				i++;
+			}
+		}
+		return index;
+	}
+
+	private static Map<Long, Long> queryParents() {
+		Map<Long, Long> parents = new HashMap<>();
+		IDatabase db = Database.get();
+		if (db == null)
+			return parents;
+		String query = "SELECT id, f_category FROM tbl_categories";
+		try {
+			NativeSql.on(db).query(query, (rs) -> {
+				parents.put(rs.getLong(1), rs.getLong(2));
+				return true;
+			});
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(ModelNameIndex.class);
+			log.error("failed to query category tree", e);
+		}
+		return parents;
+	}
+
+	ModelType getType() {
+		return type;
+	}
+
+	/**
+	 * Adds the IDs of the models which names contain the given (lower case)
+	 * term and the IDs of all categories on the paths to these models to the
+	 * given sets. Returns true if at least one model matched.
+	 */
+	boolean match(String term, Set<Long> models, Set<Long> categories,
+			IProgressMonitor monitor) {
+		boolean matched = false;
+		for (int i = 0; i < ids.length; i++) {
+			if ((i & 0xfff) == 0 && monitor.isCanceled())
+				return matched;
+			if (!names[i].contains(term))
+				continue;
+			matched = true;
+			models.add(ids[i]);
+			long category = this.categories[i];
+			while (category != 0 && categories.add(category)) {
+				Long parent = parents.get(category);
+				category = parent == null ? 0 : parent;
+			}
+		}
+		return matched;
+	}
+}
@@ -1,59 +1,187 @@
 package org.openlca.app.navigation;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerFilter;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.swt.widgets.TreeItem;
-import org.openlca.app.util.Labels;
+import org.openlca.core.model.Category;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
 
 /**
  * A class for filtering model elements from an navigation tree via a text
- * filter. The filter directly registers a listener on the text field.
+ * filter. The filter directly registers a listener on the text field. The
+ * matching is done in a background job on a {@link ModelNameIndex} after the
+ * user stopped typing for a short time; the tree is refreshed when the
+ * matching is finished.
  */
 public class ModelTextFilter extends ViewerFilter {
 
-	private Text filterText;
+	/** The time in milliseconds to wait for further input. */
+	private static final long DELAY = 300;
+
+	private final TreeViewer viewer;
+	private final Map<ModelType, ModelNameIndex> indices = new EnumMap<>(
+			ModelType.class);
+	private Job job;
+
+	/** The result of the last matching or null if nothing is filtered. */
+	private Match match;
 
 	public ModelTextFilter(Text filterText, final TreeViewer viewer) {
-		this.filterText = filterText;
-		filterText.addModifyListener((e) -> {
+		this.viewer = viewer;
+		filterText.addModifyListener((e) -> schedule(filterText.getText()));
+	}
+
+	private void schedule(String text) {
+		if (job != null)
+			job.cancel();
+		String term = text == null ? "" : text.trim().toLowerCase();
+		if (term.isEmpty()) {
+			job = null;
+			match = null;
 			viewer.refresh();
-			expand(viewer);
-		});
+			return;
+		}
+		job = new MatchJob(term, getTypes());
+		job.setSystem(true);
+		job.schedule(DELAY);
 	}
 
-	private void expand(TreeViewer viewer) {
+	/** Returns the model types of the elements in the viewer. */
+	private Set<ModelType> getTypes() {
+		Object input = viewer.getInput();
+		if (input instanceof ModelTypeElement)
+			return EnumSet.of(((ModelTypeElement) input).getContent());
+		if (input instanceof CategoryElement)
+			return EnumSet.of(((CategoryElement) input).getContent()
+					.getModelType());
+		ModelType[] types = input instanceof GroupElement
+				? ((GroupElement) input).getContent().types
+				: ModelTypeComparison.getOrderedTypes();
+		Set<ModelType> set = EnumSet.noneOf(ModelType.class);
+		for (ModelType type : types)
+			set.add(type);
+		return set;
+	}
+
+	private void apply(Match match) {
+		if (viewer.getControl().isDisposed())
+			return;
+		this.match = match;
+		viewer.refresh();
+		expand();
+	}
+
+	/**
+	 * Expands the first path in the tree so that the first matching model is
+	 * visible.
+	 */
+	private void expand() {
 		TreeItem[] items = viewer.getTree().getItems();
 		while (items != null && items.length > 0) {
 			TreeItem next = items[0];
-			next.setExpanded(true);
-			for (int i = 1; i < items.length; i++)
-				items[i].setExpanded(false);
+			for (int i = 1; i < items.length; i++) {
+				if (items[i].getData() != null)
+					viewer.setExpandedState(items[i].getData(), false);
+			}
+			if (next.getData() == null)
+				return;
+			viewer.expandToLevel(next.getData(), 1);
 			items = next.getItems();
-			viewer.refresh();
 		}
 	}
 
 	@Override
 	public boolean select(Viewer viewer, Object parentElement, Object element) {
-		String text = filterText.getText();
-		if (text == null || text.trim().isEmpty())
+		Match m = match;
+		if (m == null)
 			return true;
-		text = text.trim().toLowerCase();
-		return select((INavigationElement<?>) element, text);
+		if (element instanceof ModelElement) {
+			CategorizedDescriptor d = ((ModelElement) element).getContent();
+			return d != null && m.models.contains(d.getId());
+		}
+		if (element instanceof CategoryElement) {
+			Category category = ((CategoryElement) element).getContent();
+			return category != null && m.categories.contains(category.getId());
+		}
+		if (element instanceof ModelTypeElement)
+			return m.types.contains(((ModelTypeElement) element).getContent());
+		if (element instanceof GroupElement) {
+			for (ModelType type : ((GroupElement) element).getContent().types) {
+				if (m.types.contains(type))
+					return true;
+			}
+			return false;
+		}
+		if (element instanceof LoadingElement)
+			return true;
+		return !m.types.isEmpty();
 	}
 
-	private boolean select(INavigationElement<?> element, String text) {
-		if (element instanceof ModelElement) {
-			ModelElement modelElement = (ModelElement) element;
-			String feed = Labels.getDisplayName(modelElement.getContent())
-					.toLowerCase();
-			return feed.contains(text);
+	private static class Match {
+		final Set<Long> models = new HashSet<>();
+		final Set<Long> categories = new HashSet<>();
+		final Set<ModelType> types = EnumSet.noneOf(ModelType.class);
+	}
+
+	private class MatchJob extends Job {
+
+		private final String term;
+		private final Set<ModelType> types;
+
+		MatchJob(String term, Set<ModelType> types) {
+			super("Filter navigation tree");
+			this.term = term;
+			this.types = types;
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			List<ModelNameIndex> list = new ArrayList<>();
+			for (ModelType type : types) {
+				if (monitor.isCanceled())
+					return Status.CANCEL_STATUS;
+				list.add(getIndex(type));
+			}
+			Match m = new Match();
+			for (ModelNameIndex index : list) {
+				if (index.match(term, m.models, m.categories, monitor))
+					m.types.add(index.getType());
+				if (monitor.isCanceled())
+					return Status.CANCEL_STATUS;
+			}
+			if (viewer.getControl().isDisposed())
+				return Status.OK_STATUS;
+			viewer.getControl().getDisplay().asyncExec(() -> {
+				if (job == this)
+					apply(m);
+			});
+			return Status.OK_STATUS;
+		}
+
+		private ModelNameIndex getIndex(ModelType type) {
+			synchronized (indices) {
+				ModelNameIndex index = indices.get(type);
+				if (index == null) {
+					index = ModelNameIndex.build(type);
+					indices.put(type, index);
+				}
+				return index;
+			}
 		}
-		for (INavigationElement<?> child : element.getChildren())
-			if (select(child, text))
-				return true;
-		return false;
 	}
-}
\ No newline at end of file
+}
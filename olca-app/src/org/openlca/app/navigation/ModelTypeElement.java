@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.openlca.app.db.Database;
-import org.openlca.core.database.CategorizedEntityDao;
 import org.openlca.core.database.CategoryDao;
 import org.openlca.core.model.Category;
 import org.openlca.core.model.ModelType;
@@ -12,8 +11,6 @@ import org.openlca.core.model.descriptors.CategorizedDescriptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Optional;
-
 public class ModelTypeElement extends NavigationElement<ModelType> {
 
 	private Logger log = LoggerFactory.getLogger(getClass());
@@ -22,6 +19,12 @@ public class ModelTypeElement extends NavigationElement<ModelType> {
 		super(parent, type);
 	}
 
+	@Override
+	public void update() {
+		DescriptorCache.invalidate(getContent());
+		super.update();
+	}
+
 	@Override
 	protected List<INavigationElement<?>> queryChilds() {
 		ModelType type = getContent();
@@ -47,11 +50,8 @@ public class ModelTypeElement extends NavigationElement<ModelType> {
 	private void addModelElements(ModelType type,
 			List<INavigationElement<?>> elements) {
 		try {
-			CategorizedEntityDao<?, ?> entityDao = Database.createCategorizedDao(type);
-			if (entityDao == null)
-				return;
-			Optional<Category> nil = Optional.absent();
-			for (CategorizedDescriptor descriptor : entityDao.getDescriptors(nil)) 
+			for (CategorizedDescriptor descriptor : DescriptorCache.get(type,
+					null))
 				elements.add(new ModelElement(this, descriptor));
 		} catch (Exception e) {
 			log.error("Failed to add model elements: " + type, e);
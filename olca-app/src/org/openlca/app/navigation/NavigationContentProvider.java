@@ -1,14 +1,37 @@
 package org.openlca.app.navigation;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.ui.IMemento;
+import org.eclipse.ui.navigator.CommonViewer;
 import org.eclipse.ui.navigator.ICommonContentExtensionSite;
 import org.eclipse.ui.navigator.ICommonContentProvider;
+import org.openlca.app.M;
+import org.openlca.core.model.Category;
+import org.openlca.core.model.ModelType;
 
+/**
+ * The content provider of the navigation tree. In the navigator, the
+ * descriptors of a model type are loaded in a background job when a category
+ * or model type element is expanded the first time; a loading placeholder is
+ * shown until they are available. In other viewers (e.g. model selection
+ * dialogs) the child elements are loaded directly.
+ */
 public class NavigationContentProvider implements ICommonContentProvider {
 
+	private CommonViewer viewer;
+
+	/** The elements that wait for the descriptors of a model type. */
+	private final Map<ModelType, List<INavigationElement<?>>> pending = new HashMap<>();
+
 	@Override
 	public void dispose() {
 	}
@@ -18,11 +41,53 @@ public class NavigationContentProvider implements ICommonContentProvider {
 		if (!(parent instanceof INavigationElement))
 			return new Object[0];
 		INavigationElement<?> e = (INavigationElement<?>) parent;
+		ModelType type = getModelType(e);
+		if (viewer != null && !DescriptorCache.isLoaded(type)) {
+			load(type, e);
+			return new Object[] { new LoadingElement(e) };
+		}
 		List<INavigationElement<?>> childs = e.getChildren();
 		if (childs == null)
 			return new Object[0];
-		else
-			return childs.toArray();
+		Object[] elements = childs.toArray();
+		if (viewer != null)
+			Navigator.register(elements);
+		return elements;
+	}
+
+	private void load(ModelType type, INavigationElement<?> element) {
+		synchronized (pending) {
+			List<INavigationElement<?>> elements = pending.get(type);
+			if (elements != null) {
+				elements.add(element);
+				return;
+			}
+			elements = new ArrayList<>();
+			elements.add(element);
+			pending.put(type, elements);
+		}
+		Job job = new Job(M.Loading) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				DescriptorCache.load(type);
+				List<INavigationElement<?>> elements;
+				synchronized (pending) {
+					elements = pending.remove(type);
+				}
+				CommonViewer v = viewer;
+				if (v == null || v.getControl().isDisposed())
+					return Status.OK_STATUS;
+				v.getControl().getDisplay().asyncExec(() -> {
+					if (v.getControl().isDisposed())
+						return;
+					for (INavigationElement<?> e : elements)
+						v.refresh(e);
+				});
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.schedule();
 	}
 
 	@Override
@@ -42,16 +107,45 @@ public class NavigationContentProvider implements ICommonContentProvider {
 	public boolean hasChildren(Object element) {
 		if (!(element instanceof INavigationElement))
 			return false;
+		if (element instanceof ModelElement || element instanceof LoadingElement)
+			return false;
 		INavigationElement<?> e = (INavigationElement<?>) element;
+		if (e instanceof CategoryElement) {
+			Category category = ((CategoryElement) e).getContent();
+			if (!category.getChildCategories().isEmpty())
+				return true;
+			if (!DescriptorCache.isLoaded(category.getModelType()))
+				return true;
+			return DescriptorCache.hasModels(category.getModelType(), category);
+		}
+		if (!DescriptorCache.isLoaded(getModelType(e)))
+			return true;
 		return !e.getChildren().isEmpty();
 	}
 
+	/**
+	 * Returns the model type of which the descriptors are required to create
+	 * the child elements of the given element, or null if no descriptors are
+	 * required.
+	 */
+	private ModelType getModelType(INavigationElement<?> e) {
+		if (e instanceof ModelTypeElement)
+			return ((ModelTypeElement) e).getContent();
+		if (e instanceof CategoryElement)
+			return ((CategoryElement) e).getContent().getModelType();
+		return null;
+	}
+
 	@Override
 	public void init(ICommonContentExtensionSite aConfig) {
 	}
 
 	@Override
 	public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+		if (viewer instanceof CommonViewer)
+			this.viewer = (CommonViewer) viewer;
+		else
+			this.viewer = null;
 	}
 
 	@Override
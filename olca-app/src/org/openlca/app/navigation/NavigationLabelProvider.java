@@ -114,6 +114,8 @@ public class NavigationLabelProvider extends ColumnLabelProvider
 			return Labels.modelType((ModelType) content);
 		if (content instanceof BaseDescriptor)
 			return Labels.getDisplayName((BaseDescriptor) content);
+		if (elem instanceof LoadingElement)
+			return ((LoadingElement) elem).getContent();
 		else
 			return null;
 	}
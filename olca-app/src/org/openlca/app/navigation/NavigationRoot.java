@@ -29,6 +29,7 @@ public class NavigationRoot extends PlatformObject implements
 	@Override
 	public void update() {
 		childs = null;
+		DescriptorCache.clear();
 	}
 
 	@Override
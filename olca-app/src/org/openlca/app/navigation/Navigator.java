@@ -1,9 +1,12 @@
 package org.openlca.app.navigation;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.Stack;
 
 import org.eclipse.jface.viewers.ColumnViewerToolTipSupport;
@@ -14,6 +17,7 @@ import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.TreeItem;
 import org.eclipse.ui.IViewPart;
 import org.eclipse.ui.IWorkbench;
@@ -28,6 +32,9 @@ import org.openlca.app.db.IDatabaseConfiguration;
 import org.openlca.app.navigation.actions.DatabaseActivateAction;
 import org.openlca.app.util.Colors;
 import org.openlca.app.util.viewers.Viewers;
+import org.openlca.core.model.Category;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
 
 import com.google.common.base.Objects;
 
@@ -36,6 +43,9 @@ public class Navigator extends CommonNavigator {
 	public static String ID = "views.navigation";
 	private NavigationRoot root;
 
+	/** The model and category elements of the tree by their reference IDs. */
+	private static final Map<String, INavigationElement<?>> elementsByRefId = new HashMap<>();
+
 	@Override
 	protected Object getInitialInput() {
 		root = new NavigationRoot();
@@ -92,6 +102,7 @@ public class Navigator extends CommonNavigator {
 		if (viewer == null || root == null)
 			return;
 		Object[] oldExpansion = viewer.getExpandedElements();
+		elementsByRefId.clear();
 		root.update();
 		viewer.refresh();
 		setRefreshedExpansion(viewer, oldExpansion);
@@ -147,6 +158,78 @@ public class Navigator extends CommonNavigator {
 		return Objects.equal(data.getContent(), element.getContent());
 	}
 
+	/**
+	 * Registers the given model and category elements that are shown in the
+	 * navigation tree by their reference IDs, so that their labels can be
+	 * updated directly when their repository state changed; called by the
+	 * content provider in the UI thread.
+	 */
+	static void register(Object[] elements) {
+		for (Object element : elements) {
+			String refId = null;
+			if (element instanceof ModelElement) {
+				CategorizedDescriptor d = ((ModelElement) element).getContent();
+				refId = d != null ? d.getRefId() : null;
+			} else if (element instanceof CategoryElement) {
+				Category c = ((CategoryElement) element).getContent();
+				refId = c != null ? c.getRefId() : null;
+			}
+			if (refId != null)
+				elementsByRefId.put(refId, (INavigationElement<?>) element);
+		}
+	}
+
+	/**
+	 * Updates the labels of the tree items of which the repository state
+	 * changed. The model and category elements are found via their reference
+	 * IDs; for the model types only the top level items of the tree are
+	 * checked. This method can be called from any thread.
+	 */
+	public static void updateRepositoryState(Set<String> refIds,
+			Set<ModelType> types) {
+		Display display = PlatformUI.getWorkbench().getDisplay();
+		if (display == null || display.isDisposed())
+			return;
+		display.asyncExec(() -> {
+			CommonViewer viewer = getNavigationViewer();
+			if (viewer == null || viewer.getTree().isDisposed())
+				return;
+			for (String refId : refIds) {
+				INavigationElement<?> element = elementsByRefId.get(refId);
+				if (element != null)
+					viewer.update(element, null);
+			}
+			if (types.isEmpty())
+				return;
+			Stack<TreeItem> items = new Stack<>();
+			for (TreeItem item : viewer.getTree().getItems())
+				items.add(item);
+			while (!items.empty()) {
+				TreeItem next = items.pop();
+				Object data = next.getData();
+				if (data == null || data instanceof ModelElement
+						|| data instanceof CategoryElement)
+					continue;
+				if (stateChanged(data, types))
+					viewer.update(data, null);
+				for (TreeItem item : next.getItems())
+					items.add(item);
+			}
+		});
+	}
+
+	private static boolean stateChanged(Object element, Set<ModelType> types) {
+		if (element instanceof ModelTypeElement)
+			return types.contains(((ModelTypeElement) element).getContent());
+		if (element instanceof GroupElement) {
+			for (ModelType type : ((GroupElement) element).getContent().types)
+				if (types.contains(type))
+					return true;
+			return false;
+		}
+		return element instanceof DatabaseElement && !types.isEmpty();
+	}
+
 	/**
 	 * Expands the elements in the viewer that have the same content as in the
 	 * elements of the <code>oldExpansion</code> array.
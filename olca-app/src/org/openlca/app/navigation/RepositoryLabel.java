@@ -1,7 +1,6 @@
 package org.openlca.app.navigation;
 
 import org.eclipse.swt.graphics.Image;
-import org.openlca.app.cloud.CloudUtil;
 import org.openlca.app.cloud.index.Diff;
 import org.openlca.app.cloud.index.DiffType;
 import org.openlca.app.cloud.index.DiffUtil;
@@ -26,8 +25,10 @@ class RepositoryLabel {
 			return null;
 		if (element instanceof ModelTypeElement)
 			return null;
-		Diff diff = DiffUtil.getDiff(CloudUtil.toDataset(element));
-		if (diff.type != DiffType.NEW)
+		if (element instanceof LoadingElement)
+			return null;
+		Diff diff = DiffUtil.getDiff(element);
+		if (diff == null || diff.type != DiffType.NEW)
 			return null;
 		if (element instanceof CategoryElement) {
 			Category category = ((CategoryElement) element).getContent();
@@ -53,6 +54,8 @@ class RepositoryLabel {
 			return null;
 		if (element instanceof NavigationRoot)
 			return null;
+		if (element instanceof LoadingElement)
+			return null;
 		RepositoryClient client = Database.getRepositoryClient();
 		if (client == null)
 			return null;
@@ -65,14 +68,14 @@ class RepositoryLabel {
 	}
 
 	private static boolean isNew(INavigationElement<?> element) {
-		Diff diff = DiffUtil.getDiff(CloudUtil.toDataset(element));
 		if (element instanceof DatabaseElement)
 			return false;
 		if (element instanceof GroupElement)
 			return false;
 		if (element instanceof ModelTypeElement)
 			return false;
-		return diff.type == DiffType.NEW;
+		Diff diff = DiffUtil.getDiff(element);
+		return diff != null && diff.type == DiffType.NEW;
 	}
 
 }
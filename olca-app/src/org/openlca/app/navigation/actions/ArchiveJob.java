@@ -0,0 +1,95 @@
+package org.openlca.app.navigation.actions;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.openlca.app.App;
+import org.openlca.app.db.IDatabaseConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cancelable background job for copying, exporting, and importing database
+ * folders. The callback is executed in the UI thread after the job finished;
+ * it gets true if the task was executed without errors and was not canceled.
+ * The database of a job is marked as busy from the creation of the job until
+ * its callback was executed; the database actions are not available for busy
+ * databases.
+ */
+class ArchiveJob extends Job {
+
+	interface Task {
+		void run(IProgressMonitor monitor) throws Exception;
+	}
+
+	/** The names of the databases of the running jobs. */
+	private static final Set<String> busy = Collections
+			.synchronizedSet(new HashSet<>());
+
+	private Logger log = LoggerFactory.getLogger(getClass());
+	private final String database;
+	private final Task task;
+	private final Consumer<Boolean> callback;
+
+	/**
+	 * @param name
+	 *            the name of the job
+	 * @param database
+	 *            the name of the database that is read or written by the job
+	 * @param task
+	 *            the task of the job
+	 * @param callback
+	 *            the callback that is executed after the job finished (can be
+	 *            null)
+	 */
+	ArchiveJob(String name, String database, Task task,
+			Consumer<Boolean> callback) {
+		super(name);
+		this.database = database;
+		this.task = task;
+		this.callback = callback;
+		setUser(true);
+		busy.add(database);
+	}
+
+	/** Returns true if a job is running for the given database. */
+	static boolean isBusy(IDatabaseConfiguration config) {
+		return config != null && busy.contains(config.getName());
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		IStatus status;
+		try {
+			task.run(monitor);
+			status = monitor.isCanceled()
+					? Status.CANCEL_STATUS
+					: Status.OK_STATUS;
+		} catch (OperationCanceledException e) {
+			log.info("{} canceled", getName());
+			status = Status.CANCEL_STATUS;
+		} catch (Exception e) {
+			log.error("Failed to run " + getName(), e);
+			status = Status.CANCEL_STATUS;
+			App.runInUI(getName(), () -> org.openlca.app.util.Error
+					.showBox(getName(), e.getMessage()));
+		}
+		boolean success = status == Status.OK_STATUS;
+		App.runInUI("Callback of " + getName(), () -> {
+			try {
+				if (callback != null)
+					callback.accept(success);
+			} finally {
+				busy.remove(database);
+			}
+		});
+		return status;
+	}
+}
@@ -50,7 +50,7 @@ public class DatabaseActivateAction extends Action implements INavigationAction
 			return false;
 		DatabaseElement e = (DatabaseElement) element;
 		IDatabaseConfiguration config = e.getContent();
-		if (Database.isActive(config))
+		if (Database.isActive(config) || ArchiveJob.isBusy(config))
 			return false;
 		this.config = config;
 		return true;
@@ -63,6 +63,9 @@ public class DatabaseActivateAction extends Action implements INavigationAction
 
 	@Override
 	public void run() {
+		// the database could be copied or exported in a background job
+		if (ArchiveJob.isBusy(config))
+			return;
 		if (Database.get() != null)
 			Editors.closeAll();
 
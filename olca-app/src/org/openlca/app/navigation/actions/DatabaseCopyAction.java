@@ -3,14 +3,13 @@ package org.openlca.app.navigation.actions;
 import java.io.File;
 import java.util.List;
 
-import org.apache.commons.io.FileUtils;
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.dialogs.InputDialog;
 import org.eclipse.jface.window.Window;
-import org.openlca.app.App;
 import org.openlca.app.M;
 import org.openlca.app.cloud.ui.commits.HistoryView;
 import org.openlca.app.db.Database;
+import org.openlca.app.db.DatabaseArchive;
 import org.openlca.app.db.DatabaseDir;
 import org.openlca.app.db.DerbyConfiguration;
 import org.openlca.app.db.IDatabaseConfiguration;
@@ -42,7 +41,8 @@ class DatabaseCopyAction extends Action implements INavigationAction {
 			return false;
 		DatabaseElement dbElement = (DatabaseElement) element;
 		IDatabaseConfiguration config = dbElement.getContent();
-		if (!(config instanceof DerbyConfiguration))
+		if (!(config instanceof DerbyConfiguration)
+				|| ArchiveJob.isBusy(config))
 			return false;
 		else {
 			this.config = (DerbyConfiguration) config;
@@ -72,24 +72,39 @@ class DatabaseCopyAction extends Action implements INavigationAction {
 					.showBox(M.NewDatabase_InvalidName);
 			return;
 		}
-		App.runInUI("Copy database", () -> doCopy(newName));
+		doCopy(newName);
 	}
 
 	private void doCopy(String newName) {
+		// the action may get another configuration while the job is running
+		DerbyConfiguration config = this.config;
 		boolean isActive = Database.isActive(config);
-		try {
-			if (isActive) {
+		if (isActive) {
+			try {
 				Editors.closeAll();
 				Database.close();
 				ValidationView.clear();
+			} catch (Exception e) {
+				log.error("failed to close database", e);
+				return;
+			}
+		}
+		File fromFolder = DatabaseDir.getRootFolder(config.getName());
+		File toFolder = DatabaseDir.getRootFolder(newName);
+		new ArchiveJob(M.Copy + " " + config.getName(), config.getName(),
+				monitor -> DatabaseArchive.copy(fromFolder, toFolder, monitor),
+				success -> afterCopy(config, newName, isActive, success)).schedule();
+	}
+
+	private void afterCopy(DerbyConfiguration config, String newName,
+			boolean wasActive, boolean success) {
+		try {
+			if (success) {
+				DerbyConfiguration newConf = new DerbyConfiguration();
+				newConf.setName(newName);
+				Database.register(newConf);
 			}
-			File fromFolder = DatabaseDir.getRootFolder(config.getName());
-			File toFolder = DatabaseDir.getRootFolder(newName);
-			FileUtils.copyDirectory(fromFolder, toFolder);
-			DerbyConfiguration newConf = new DerbyConfiguration();
-			newConf.setName(newName);
-			Database.register(newConf);
-			if (isActive)
+			if (wasActive)
 				Database.activate(config);
 			Navigator.refresh();
 			HistoryView.refresh();
@@ -47,6 +47,8 @@ class DatabaseDeleteAction extends Action implements INavigationAction {
 		if (!(element instanceof DatabaseElement))
 			return false;
 		DatabaseElement e = (DatabaseElement) element;
+		if (ArchiveJob.isBusy(e.getContent()))
+			return false;
 		configs = Collections.singletonList(e.getContent());
 		return true;
 	}
@@ -58,6 +60,8 @@ class DatabaseDeleteAction extends Action implements INavigationAction {
 			if (!(element instanceof DatabaseElement))
 				return false;
 			DatabaseElement e = (DatabaseElement) element;
+			if (ArchiveJob.isBusy(e.getContent()))
+				return false;
 			config.add(e.getContent());
 		}
 		this.configs = config;
@@ -3,12 +3,13 @@ package org.openlca.app.navigation.actions;
 import java.io.File;
 import java.util.List;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.action.Action;
-import org.openlca.app.App;
 import org.openlca.app.M;
 import org.openlca.app.cloud.ui.commits.HistoryView;
 import org.openlca.app.components.FileChooser;
 import org.openlca.app.db.Database;
+import org.openlca.app.db.DatabaseArchive;
 import org.openlca.app.db.DatabaseDir;
 import org.openlca.app.db.DerbyConfiguration;
 import org.openlca.app.db.IDatabaseConfiguration;
@@ -20,9 +21,9 @@ import org.openlca.app.navigation.Navigator;
 import org.openlca.app.rcp.images.Icon;
 import org.openlca.app.util.Editors;
 import org.openlca.app.util.InformationPopup;
+import org.openlca.app.util.Question;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.zeroturnaround.zip.ZipUtil;
 
 class DatabaseExportAction extends Action implements INavigationAction {
 
@@ -39,6 +40,8 @@ class DatabaseExportAction extends Action implements INavigationAction {
 		if (!(element instanceof DatabaseElement))
 			return false;
 		DatabaseElement e = (DatabaseElement) element;
+		if (ArchiveJob.isBusy(e.getContent()))
+			return false;
 		this.element = e;
 		return true;
 	}
@@ -71,28 +74,35 @@ class DatabaseExportAction extends Action implements INavigationAction {
 				return;
 			}
 		}
+		boolean compress = !(config instanceof DerbyConfiguration)
+				|| Question.ask(M.BackupDatabase, M.CompressBackup);
 		if (active)
 			Editors.closeAll();
 		log.trace("run database export to file {}", zip);
-		App.runWithProgress(M.ExportDatabase, () -> realExport(config, zip, active));
-		updateUI(zip, active);
+		new ArchiveJob(M.ExportDatabase, config.getName(),
+				monitor -> realExport(config, zip, active, compress, monitor),
+				success -> {
+					if (success)
+						updateUI(zip, active);
+					else if (active)
+						Navigator.refresh();
+				}).schedule();
 	}
 
 	private void realExport(IDatabaseConfiguration config, File zip,
-			boolean active) {
-		try {
-			if (active)
-				Database.close();
-			if (config instanceof DerbyConfiguration) {
-				File folder = DatabaseDir.getRootFolder(config.getName());
-				ZipUtil.pack(folder, zip);
-			} else if (config instanceof MySQLConfiguration) {
-				MySQLDatabaseExport export = new MySQLDatabaseExport(
-						(MySQLConfiguration) config, zip);
-				export.run();
-			}
-		} catch (Exception e) {
-			log.error("Export failed " + zip, e);
+			boolean active, boolean compress, IProgressMonitor monitor)
+			throws Exception {
+		if (active)
+			Database.close();
+		if (config instanceof DerbyConfiguration) {
+			File folder = DatabaseDir.getRootFolder(config.getName());
+			DatabaseArchive.pack(folder, zip, compress, monitor);
+		} else if (config instanceof MySQLConfiguration) {
+			MySQLDatabaseExport export = new MySQLDatabaseExport(
+					(MySQLConfiguration) config, zip);
+			export.run(monitor);
+			if (!export.doneWithSuccess())
+				throw new Exception("Export failed " + zip);
 		}
 	}
 
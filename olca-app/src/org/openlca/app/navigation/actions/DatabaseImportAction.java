@@ -10,11 +10,11 @@ import org.openlca.app.Config;
 import org.openlca.app.M;
 import org.openlca.app.components.FileChooser;
 import org.openlca.app.db.Database;
+import org.openlca.app.db.DatabaseArchive;
 import org.openlca.app.db.DerbyConfiguration;
 import org.openlca.app.navigation.INavigationElement;
 import org.openlca.app.navigation.Navigator;
 import org.openlca.app.rcp.images.Icon;
-import org.zeroturnaround.zip.ZipUtil;
 
 class DatabaseImportAction extends Action implements INavigationAction {
 
@@ -64,15 +64,16 @@ class DatabaseImportAction extends Action implements INavigationAction {
 	}
 
 	private void realImport(File dbFolder, String dbName, File zip) {
-		App.run(M.ImportDatabase, () -> {
-			File folder = new File(dbFolder, dbName);
-			folder.mkdirs();
-			ZipUtil.unpack(zip, folder);
-		}, () -> {
-			DerbyConfiguration conf = new DerbyConfiguration();
-			conf.setName(dbName);
-			Database.register(conf);
-			Navigator.refresh();
-		});
+		File folder = new File(dbFolder, dbName);
+		new ArchiveJob(M.ImportDatabase, dbName,
+				monitor -> DatabaseArchive.unpack(zip, folder, monitor),
+				success -> {
+					if (!success)
+						return;
+					DerbyConfiguration conf = new DerbyConfiguration();
+					conf.setName(dbName);
+					Database.register(conf);
+					Navigator.refresh();
+				}).schedule();
 	}
 }
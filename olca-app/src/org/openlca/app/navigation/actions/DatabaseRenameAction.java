@@ -40,7 +40,8 @@ class DatabaseRenameAction extends Action implements INavigationAction {
 			return false;
 		DatabaseElement dbElement = (DatabaseElement) element;
 		IDatabaseConfiguration config = dbElement.getContent();
-		if (!(config instanceof DerbyConfiguration))
+		if (!(config instanceof DerbyConfiguration)
+				|| ArchiveJob.isBusy(config))
 			return false;
 		else {
 			this.config = (DerbyConfiguration) config;
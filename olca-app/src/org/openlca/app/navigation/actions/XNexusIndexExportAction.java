@@ -4,9 +4,16 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.dialogs.InputDialog;
@@ -18,18 +25,20 @@ import org.openlca.app.navigation.DatabaseElement;
 import org.openlca.app.navigation.INavigationElement;
 import org.openlca.app.rcp.images.Icon;
 import org.openlca.app.util.UI;
+import org.openlca.core.database.CategoryDao;
 import org.openlca.core.database.IDatabase;
-import org.openlca.core.database.ProcessDao;
-import org.openlca.core.model.Process;
-import org.openlca.core.model.ProcessDocumentation;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.model.Category;
 import org.openlca.core.model.Version;
-import org.openlca.core.model.descriptors.ProcessDescriptor;
 import org.openlca.io.CategoryPath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+
+import gnu.trove.list.array.TLongArrayList;
 
 /**
  * Exports an file with the process meta-data of the currently activated
@@ -77,11 +86,21 @@ class XNexusIndexExportAction extends Action implements
 		App.run("Export Nexus index", new Runner(file, db, systemModel));
 	}
 
+	/**
+	 * Reads the meta-data of the processes directly from the database. The
+	 * processes are split into batches by their IDs which are read and
+	 * converted in parallel; the entries are written batch by batch in the
+	 * order of the IDs so that only a bounded number of batches is in memory.
+	 */
 	private class Runner implements Runnable {
 
+		private static final int BATCH_SIZE = 1000;
+
 		private File file;
 		private IDatabase db;
 		private String systemModel;
+		private Map<Long, Category> categories = new HashMap<>();
+		private Map<Long, String> actors = new HashMap<>();
 
 		public Runner(File file, IDatabase db, String systemModel) {
 			this.file = file;
@@ -92,37 +111,101 @@ class XNexusIndexExportAction extends Action implements
 		@Override
 		public void run() {
 			log.trace("run Nexus index export");
+			int threads = Runtime.getRuntime().availableProcessors();
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
 			try {
-				List<IndexEntry> entries = new ArrayList<>();
-				ProcessDao dao = new ProcessDao(db);
-				for (ProcessDescriptor descriptor : dao.getDescriptors()) {
-					log.trace("index process {}", descriptor);
-					Process process = dao.getForId(descriptor.getId());
-					IndexEntry entry = new IndexEntry(process);
-					entry.systemModel = systemModel;
-					entries.add(entry);
-				}
-				writeEntries(entries);
+				for (Category category : new CategoryDao(db).getAll())
+					categories.put(category.getId(), category);
+				NativeSql.on(db).query("SELECT id, name FROM tbl_actors", (rs) -> {
+					actors.put(rs.getLong(1), rs.getString(2));
+					return true;
+				});
+				TLongArrayList ids = new TLongArrayList();
+				NativeSql.on(db).query(
+						"SELECT id FROM tbl_processes ORDER BY id", (rs) -> {
+							ids.add(rs.getLong(1));
+							return true;
+						});
+				writeEntries(ids, pool, threads);
 			} catch (Exception e) {
 				log.error("failed to write index entries", e);
+			} finally {
+				pool.shutdownNow();
 			}
 		}
 
-		private void writeEntries(List<IndexEntry> entries) throws Exception {
-			log.trace("write {} entries to file {}", entries.size(), file);
+		private void writeEntries(TLongArrayList ids, ExecutorService pool,
+				int threads) throws Exception {
+			log.trace("write {} entries to file {}", ids.size(), file);
+			Gson gson = new GsonBuilder().setDateFormat(
+					"yyyy-MM-dd'T'HH:mm:ssZ").create();
 			try (FileOutputStream out = new FileOutputStream(file);
 					OutputStreamWriter writer = new OutputStreamWriter(out,
 							"utf-8");
-					BufferedWriter buffer = new BufferedWriter(writer)) {
-				Gson gson = new GsonBuilder().setDateFormat(
-						"yyyy-MM-dd'T'HH:mm:ssZ").create();
-				gson.toJson(entries, buffer);
+					BufferedWriter buffer = new BufferedWriter(writer);
+					JsonWriter json = new JsonWriter(buffer)) {
+				json.beginArray();
+				Deque<Future<List<IndexEntry>>> queue = new ArrayDeque<>();
+				int next = 0;
+				while (next < ids.size() || !queue.isEmpty()) {
+					while (next < ids.size() && queue.size() < 2 * threads) {
+						long first = ids.get(next);
+						next = Math.min(next + BATCH_SIZE, ids.size());
+						long last = ids.get(next - 1);
+						queue.add(pool.submit(() -> readEntries(first, last)));
+					}
+					for (IndexEntry entry : queue.poll().get())
+						gson.toJson(entry, IndexEntry.class, json);
+				}
+				json.endArray();
 			}
 		}
+
+		/** Reads the entries of the processes with first <= id <= last. */
+		private List<IndexEntry> readEntries(long first, long last)
+				throws Exception {
+			String query = "SELECT p.ref_id, p.name, p.description, "
+					+ "p.version, p.f_category, l.code, d.technology, "
+					+ "d.f_data_set_owner, d.f_data_generator, d.f_reviewer, "
+					+ "d.f_data_documentor, d.creation_date, d.valid_from, "
+					+ "d.valid_until FROM tbl_processes p "
+					+ "LEFT JOIN tbl_locations l ON p.f_location = l.id "
+					+ "LEFT JOIN tbl_process_docs d ON p.f_process_doc = d.id "
+					+ "WHERE p.id >= " + first + " AND p.id <= " + last
+					+ " ORDER BY p.id";
+			List<IndexEntry> entries = new ArrayList<>();
+			NativeSql.on(db).query(query, (rs) -> {
+				IndexEntry e = new IndexEntry();
+				e.id = rs.getString(1);
+				e.name = rs.getString(2);
+				e.description = rs.getString(3);
+				e.version = Version.asString(rs.getLong(4));
+				e.categoryPath = CategoryPath.getFull(
+						categories.get(rs.getLong(5)));
+				e.location = rs.getString(6);
+				e.technology = rs.getString(7);
+				e.owner = actors.get(rs.getLong(8));
+				e.generator = actors.get(rs.getLong(9));
+				e.reviewer = actors.get(rs.getLong(10));
+				e.documentor = actors.get(rs.getLong(11));
+				e.created = date(rs.getTimestamp(12));
+				e.validityTimeStart = date(rs.getDate(13));
+				e.validityTimeEnd = date(rs.getDate(14));
+				e.systemModel = systemModel;
+				entries.add(e);
+				return true;
+			});
+			return entries;
+		}
+
+		/** Gson writes sub-classes of java.util.Date in another format. */
+		private Date date(Date sqlDate) {
+			return sqlDate == null ? null : new Date(sqlDate.getTime());
+		}
 	}
 
 	@SuppressWarnings("unused")
-	private class IndexEntry {
+	private static class IndexEntry {
 
 		private String id;
 		private String name;
@@ -139,34 +222,5 @@ class XNexusIndexExportAction extends Action implements
 		private Date created;
 		private Date validityTimeStart;
 		private Date validityTimeEnd;
-
-		private IndexEntry(org.openlca.core.model.Process process) {
-			id = process.getRefId();
-			name = process.getName();
-			categoryPath = CategoryPath.getFull(process.getCategory());
-			description = process.getDescription();
-			version = Version.asString(process.getVersion());
-			if (process.getLocation() != null)
-				location = process.getLocation().getCode();
-			ProcessDocumentation doc = process.getDocumentation();
-			if (doc != null) {
-				writeDocValues(doc);
-			}
-		}
-
-		private void writeDocValues(ProcessDocumentation doc) {
-			technology = doc.getTechnology();
-			if (doc.getDataSetOwner() != null)
-				owner = doc.getDataSetOwner().getName();
-			if (doc.getDataGenerator() != null)
-				generator = doc.getDataGenerator().getName();
-			if (doc.getReviewer() != null)
-				reviewer = doc.getReviewer().getName();
-			if (doc.getDataDocumentor() != null)
-				documentor = doc.getDataDocumentor().getName();
-			created = doc.getCreationDate();
-			validityTimeStart = doc.getValidFrom();
-			validityTimeEnd = doc.getValidUntil();
-		}
 	}
 }
@@ -16,6 +16,8 @@ public enum FeatureFlag {
 
 	USE_SPARSE_MATRICES("Calculate with sparse matrices (requires restart)"),
 
+	PARALLEL_SIMULATION("Run Monte Carlo simulations on multiple cores"),
+
 	MATRIX_IMAGE_EXPORT("Enable matrix image export"),
 
 	ECOSPOLD1_EXPORT_CONFIG("EcoSpold 1 export configuration"),
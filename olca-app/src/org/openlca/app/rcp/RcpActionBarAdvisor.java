@@ -27,6 +27,7 @@ import org.openlca.app.Config;
 import org.openlca.app.M;
 import org.openlca.app.components.replace.ReplaceFlowsDialog;
 import org.openlca.app.components.replace.ReplaceProvidersDialog;
+import org.openlca.app.devtools.CacheStatsView;
 import org.openlca.app.devtools.js.JavaScriptEditor;
 import org.openlca.app.devtools.python.PythonEditor;
 import org.openlca.app.devtools.sql.SqlEditor;
@@ -141,6 +142,7 @@ public class RcpActionBarAdvisor extends ActionBarAdvisor {
 		devMenu.add(Actions.create("SQL", Icon.SQL.descriptor(), SqlEditor::open));
 		devMenu.add(Actions.create("JavaScript", Icon.JAVASCRIPT.descriptor(), JavaScriptEditor::open));
 		devMenu.add(Actions.create("Python", Icon.PYTHON.descriptor(), PythonEditor::open));
+		devMenu.add(Actions.create("Cache statistics", Icon.REFRESH.descriptor(), CacheStatsView::open));
 	}
 
 	private void createMassReplaceMenu(MenuManager windowMenu) {
@@ -0,0 +1,87 @@
+package org.openlca.app.results;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The non-zero contributions of a set of items to a result, sorted by their
+ * absolute values in descending order. The items with a contribution above a
+ * cutoff can be then selected without calculating the contributions again.
+ */
+class ContributionIndex<T> {
+
+	private final List<T> items;
+	private final double[] values;
+
+	private ContributionIndex(List<T> items, double[] values) {
+		this.items = items;
+		this.values = values;
+	}
+
+	/**
+	 * Creates the index for the given items where the contribution of an item
+	 * is calculated with the given function.
+	 */
+	static <T> ContributionIndex<T> build(Iterable<T> items,
+			ToDoubleFunction<T> fn) {
+		List<T> list = new ArrayList<>();
+		for (T item : items)
+			list.add(item);
+		double[] vals = new double[list.size()];
+		int n = 0;
+		for (int i = 0; i < vals.length; i++) {
+			vals[i] = fn.applyAsDouble(list.get(i));
+			if (vals[i] != 0)
+				n++;
+		}
+		Integer[] order = new Integer[n];
+		for (int i = 0, k = 0; i < vals.length; i++) {
+			if (vals[i] != 0)
+				order[k++] = i;
+		}
+		Arrays.sort(order, (i, j) -> Double.compare(Math.abs(vals[j]),
+				Math.abs(vals[i])));
+		List<T> sortedItems = new ArrayList<>(n);
+		double[] sortedValues = new double[n];
+		for (int i = 0; i < n; i++) {
+			sortedItems.add(list.get(order[i]));
+			sortedValues[i] = vals[order[i]];
+		}
+		return new ContributionIndex<>(sortedItems, sortedValues);
+	}
+
+	int size() {
+		return values.length;
+	}
+
+	T item(int i) {
+		return items.get(i);
+	}
+
+	double value(int i) {
+		return values[i];
+	}
+
+	/**
+	 * Returns the number of items with an absolute contribution that is
+	 * greater or equal than the given value. The items with these
+	 * contributions are the items <code>0 .. count - 1</code> of the index.
+	 */
+	int countAbove(double minAbs) {
+		if (minAbs <= 0)
+			return values.length;
+		// binary search for the first value below the limit
+		int low = 0;
+		int high = values.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (Math.abs(values[mid]) >= minAbs)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+}
@@ -2,6 +2,8 @@ package org.openlca.app.results;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.ITreeContentProvider;
@@ -18,6 +20,7 @@ import org.eclipse.ui.forms.editor.FormPage;
 import org.eclipse.ui.forms.widgets.FormToolkit;
 import org.eclipse.ui.forms.widgets.ScrolledForm;
 import org.eclipse.ui.forms.widgets.Section;
+import org.openlca.app.App;
 import org.openlca.app.M;
 import org.openlca.app.components.ContributionImage;
 import org.openlca.app.rcp.images.Images;
@@ -33,6 +36,7 @@ import org.openlca.app.util.trees.TreeClipboard.ClipboardLabelProvider;
 import org.openlca.app.util.trees.Trees;
 import org.openlca.app.util.viewers.Viewers;
 import org.openlca.core.math.data_quality.DQResult;
+import org.openlca.core.matrix.LongPair;
 import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.FlowDescriptor;
 import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
@@ -51,6 +55,9 @@ public class TotalImpactResultPage extends FormPage {
 
 	private boolean subgroupByProcesses = true;
 
+	private final Map<Long, ContributionIndex<ProcessDescriptor>> processIndices = new ConcurrentHashMap<>();
+	private final Map<LongPair, ContributionIndex<FlowDescriptor>> flowIndices = new ConcurrentHashMap<>();
+
 	public TotalImpactResultPage(FormEditor editor, ContributionResultProvider<?> result,
 			DQResult dqResult, ImpactFactorProvider impactFactors) {
 		super(editor, "ImpactTreePage", M.ImpactAnalysis);
@@ -73,6 +80,7 @@ public class TotalImpactResultPage extends FormPage {
 		createTree(client);
 		spinner.register(viewer);
 		form.reflow(true);
+		buildIndices();
 	}
 
 	private void createOptions(Composite parent) {
@@ -263,27 +271,27 @@ public class TotalImpactResultPage extends FormPage {
 				return null;
 			Item parent = (Item) obj;
 			List<Item> children = new ArrayList<>();
+			double cutoffValue = this.cutoff == 0d ? 0 : parent.result() * cutoff;
 			if (parent.type() == ModelType.IMPACT_CATEGORY && subgroupByProcesses) {
-				double cutoffValue = parent.result() * cutoff;
-				for (ProcessDescriptor process : result.getProcessDescriptors()) {
-					Item child = new Item(parent.impact, process);
-					double result = child.result();
-					if (result != 0 && (this.cutoff == 0d || Math.abs(result) >= cutoffValue)) {
-						children.add(child);
-					}
+				ContributionIndex<ProcessDescriptor> index = processIndex(parent.impact);
+				int count = index.countAbove(cutoffValue);
+				for (int i = 0; i < count; i++) {
+					Item child = new Item(parent.impact, index.item(i));
+					child.resultValue = index.value(i);
+					children.add(child);
 				}
 			} else {
-				double cutoffValue = parent.result() * cutoff;
-				for (FlowDescriptor flow : result.getFlowDescriptors()) {
-					// process will be null in case of subgroupByProcesses=false
-					Item child = new Item(parent.impact, parent.process, flow);
-					double result = child.result();
-					if (result != 0 && (this.cutoff == 0d || Math.abs(result) >= cutoffValue)) {
-						children.add(child);
-					}
+				// process will be null in case of subgroupByProcesses=false
+				ContributionIndex<FlowDescriptor> index = flowIndex(parent.impact,
+						parent.process);
+				int count = index.countAbove(cutoffValue);
+				for (int i = 0; i < count; i++) {
+					Item child = new Item(parent.impact, parent.process, index.item(i));
+					child.resultValue = index.value(i);
+					children.add(child);
 				}
 			}
-			children.sort((i1, i2) -> -Double.compare(i1.result(), i2.result()));
+			// the children are already sorted by the index
 			return children.toArray();
 		}
 
@@ -309,6 +317,45 @@ public class TotalImpactResultPage extends FormPage {
 
 	}
 
+	/**
+	 * Returns the index of the process contributions to the given impact
+	 * category; the index is created when it is requested the first time.
+	 */
+	private ContributionIndex<ProcessDescriptor> processIndex(
+			ImpactCategoryDescriptor impact) {
+		return processIndices.computeIfAbsent(impact.getId(),
+				(id) -> ContributionIndex.build(result.getProcessDescriptors(),
+						(p) -> result.getSingleImpactResult(p, impact).value));
+	}
+
+	/**
+	 * Returns the index of the flow contributions to the given impact category
+	 * for the given process or the total result if the process is null.
+	 */
+	private ContributionIndex<FlowDescriptor> flowIndex(
+			ImpactCategoryDescriptor impact, ProcessDescriptor process) {
+		LongPair key = new LongPair(impact.getId(),
+				process == null ? 0 : process.getId());
+		return flowIndices.computeIfAbsent(key,
+				(k) -> ContributionIndex.build(result.getFlowDescriptors(),
+						(flow) -> new Item(impact, process, flow).result()));
+	}
+
+	/**
+	 * Creates the contribution indices of the impact categories in the
+	 * background so that they are available when the user expands the tree.
+	 */
+	private void buildIndices() {
+		List<ImpactCategoryDescriptor> impacts = new ArrayList<>(
+				result.getImpactDescriptors());
+		App.run(M.ImpactAnalysis, () -> {
+			for (ImpactCategoryDescriptor impact : impacts)
+				processIndex(impact);
+			for (ImpactCategoryDescriptor impact : impacts)
+				flowIndex(impact, null);
+		});
+	}
+
 	public interface ImpactFactorProvider {
 
 		double get(ImpactCategoryDescriptor impact, ProcessDescriptor process,
@@ -322,6 +369,9 @@ public class TotalImpactResultPage extends FormPage {
 		final ProcessDescriptor process;
 		final FlowDescriptor flow;
 
+		/** The result of the item if it was already calculated. */
+		Double resultValue;
+
 		Item(ImpactCategoryDescriptor impact) {
 			this(impact, null, null);
 
@@ -389,6 +439,8 @@ public class TotalImpactResultPage extends FormPage {
 		}
 
 		double result() {
+			if (resultValue != null)
+				return resultValue;
 			switch (type()) {
 			case IMPACT_CATEGORY:
 				return result.getTotalImpactResult(impact).value;
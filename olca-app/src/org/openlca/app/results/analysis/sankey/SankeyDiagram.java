@@ -3,9 +3,12 @@ package org.openlca.app.results.analysis.sankey;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.Stack;
 
@@ -15,7 +18,9 @@ import org.eclipse.draw2d.Layer;
 import org.eclipse.draw2d.LayeredPane;
 import org.eclipse.draw2d.StackLayout;
 import org.eclipse.draw2d.geometry.Dimension;
+import org.eclipse.draw2d.geometry.Point;
 import org.eclipse.gef.DefaultEditDomain;
+import org.eclipse.gef.GraphicalEditPart;
 import org.eclipse.gef.GraphicalViewer;
 import org.eclipse.gef.KeyHandler;
 import org.eclipse.gef.KeyStroke;
@@ -32,6 +37,7 @@ import org.eclipse.jface.action.MenuManager;
 import org.eclipse.swt.SWT;
 import org.openlca.app.App;
 import org.openlca.app.results.analysis.sankey.actions.SankeyMenu;
+import org.openlca.app.results.analysis.sankey.layout.TreeLayout;
 import org.openlca.app.results.analysis.sankey.model.ConnectionLink;
 import org.openlca.app.results.analysis.sankey.model.ProcessNode;
 import org.openlca.app.results.analysis.sankey.model.ProductSystemNode;
@@ -85,7 +91,12 @@ public class SankeyDiagram extends GraphicalEditor implements
 		return linkSearchMap;
 	}
 
-	private void createConnections(long startProcessId) {
+	/**
+	 * Creates the connection links between the visible nodes that are not
+	 * created yet and returns these new links.
+	 */
+	private List<ConnectionLink> createConnections(long startProcessId) {
+		List<ConnectionLink> newLinks = new ArrayList<>();
 		Set<Long> processed = new HashSet<>();
 		Stack<Long> processes = new Stack<>();
 		processes.add(startProcessId);
@@ -97,16 +108,18 @@ public class SankeyDiagram extends GraphicalEditor implements
 				ProcessNode targetNode = createdProcesses.get(processLink.processId);
 				if (sourceNode == null || targetNode == null)
 					continue;
-				if (createdLinks.containsKey(processLink))
-					continue;
-				double ratio = sankeyResult.getLinkContribution(processLink);
-				ConnectionLink link = new ConnectionLink(sourceNode, targetNode, processLink, ratio);
-				createdLinks.put(processLink, link);
+				if (!createdLinks.containsKey(processLink)) {
+					double ratio = sankeyResult.getLinkContribution(processLink);
+					ConnectionLink link = new ConnectionLink(sourceNode, targetNode, processLink, ratio);
+					createdLinks.put(processLink, link);
+					newLinks.add(link);
+				}
 				if (processed.contains(sourceNode.process.getId()))
 					continue;
 				processes.add(sourceNode.process.getId());
 			}
 		}
+		return newLinks;
 	}
 
 	private ProcessNode createNode(ProcessDescriptor process) {
@@ -131,28 +144,77 @@ public class SankeyDiagram extends GraphicalEditor implements
 		}
 	}
 
-	private void updateModel(double cutoff) {
+	/**
+	 * Returns the IDs of the processes that are visible for the given cutoff.
+	 */
+	private Collection<Long> getProcessesToDraw(double cutoff) {
+		if (cutoff == 0)
+			return productSystem.getProcesses();
+		long refProcess = productSystem.getReferenceProcess().getId();
+		return SankeyProcessList.calculate(sankeyResult, refProcess, cutoff,
+				linkSearchMap);
+	}
+
+	private Map<Long, ProcessDescriptor> getDescriptors() {
 		Map<Long, ProcessDescriptor> descriptors = new HashMap<>();
 		for (ProcessDescriptor descriptor : result.getProcessDescriptors())
 			descriptors.put(descriptor.getId(), descriptor);
-		if (cutoff == 0) {
-			for (Long processId : productSystem.getProcesses()) {
-				ProcessDescriptor descriptor = descriptors.get(processId);
-				if (descriptor != null) {
-					systemNode.addChild(createNode(descriptor));
-				}
+		return descriptors;
+	}
+
+	private void updateModel(Collection<Long> processes) {
+		Map<Long, ProcessDescriptor> descriptors = getDescriptors();
+		for (Long processId : processes) {
+			ProcessDescriptor descriptor = descriptors.get(processId);
+			if (descriptor != null) {
+				systemNode.addChild(createNode(descriptor));
 			}
-		} else {
-			long refProcess = productSystem.getReferenceProcess().getId();
-			Set<Long> processesToDraw = SankeyProcessList.calculate(
-					sankeyResult, refProcess, cutoff, linkSearchMap);
-			for (final Long processId : processesToDraw) {
-				ProcessDescriptor process = descriptors.get(processId);
-				if (process != null) {
-					systemNode.addChild(createNode(process));
-				}
+		}
+	}
+
+	/**
+	 * Applies the changes of a new cutoff to the existing model: the nodes and
+	 * links of processes that are not visible anymore are removed and the
+	 * nodes and links of new visible processes are added, each with a single
+	 * change event. The result vectors of the selection do not change and
+	 * thus the existing nodes are kept. The given positions of the nodes were
+	 * calculated in the background job.
+	 */
+	private void applyCutoff(Collection<Long> processes,
+			Map<Long, Point> positions, double cutoff) {
+		Set<Long> visible = new HashSet<>(processes);
+		List<ProcessNode> removals = new ArrayList<>();
+		for (ProcessNode node : createdProcesses.values()) {
+			if (visible.contains(node.process.getId()))
+				continue;
+			for (ConnectionLink link : new ArrayList<>(node.links)) {
+				link.unlink();
+				createdLinks.remove(link.getProcessLink());
 			}
+			removals.add(node);
+		}
+		for (ProcessNode node : removals)
+			createdProcesses.remove(node.process.getId());
+		systemNode.removeChildren(removals);
+		Map<Long, ProcessDescriptor> descriptors = getDescriptors();
+		List<ProcessNode> additions = new ArrayList<>();
+		for (Long processId : processes) {
+			if (createdProcesses.containsKey(processId))
+				continue;
+			ProcessDescriptor descriptor = descriptors.get(processId);
+			if (descriptor != null)
+				additions.add(createNode(descriptor));
 		}
+		systemNode.addChildren(additions);
+		long refProcess = productSystem.getReferenceProcess().getId();
+		for (ConnectionLink link : createConnections(refProcess))
+			link.link();
+		systemNode.setCutoff(cutoff);
+		TreeLayout.apply(systemNode, positions);
+		GraphicalEditPart contents = (GraphicalEditPart) getGraphicalViewer()
+				.getContents();
+		if (contents != null)
+			contents.getFigure().repaint();
 	}
 
 	@Override
@@ -232,7 +294,10 @@ public class SankeyDiagram extends GraphicalEditor implements
 		initContent();
 	}
 
-	// TODO: avoid double calculation here
+	/**
+	 * Calculates the default selection to find the initial cutoff; the result
+	 * vectors are cached and not calculated again in the update.
+	 */
 	private void initContent() {
 		Object defaultSelection = getDefaultSelection();
 		if (defaultSelection == null) {
@@ -303,16 +368,38 @@ public class SankeyDiagram extends GraphicalEditor implements
 		return super.getGraphicalViewer();
 	}
 
+	/**
+	 * Updates the diagram for the given selection and cutoff. If only the
+	 * cutoff changed, the difference is applied to the existing model;
+	 * otherwise the model is created again.
+	 */
 	public void update(Object selection, double cutoff) {
 		if (selection == null || cutoff < 0d || cutoff > 1d)
 			return;
-		App.run("Calculate sankey results", () -> sankeyResult
-				.calculate(selection), () -> {
+		boolean sameSelection = systemNode != null
+				&& Objects.equals(selection, systemNode.getSelection());
+		List<Collection<Long>> processes = new ArrayList<>(1);
+		List<Map<Long, Point>> positions = new ArrayList<>(1);
+		App.run("Calculate sankey results", () -> {
+			sankeyResult.calculate(selection);
+			Collection<Long> visible = getProcessesToDraw(cutoff);
+			processes.add(visible);
+			if (sameSelection)
+				positions.add(new TreeLayout().calculate(productSystem,
+						linkSearchMap, visible));
+		}, () -> {
+			if (processes.isEmpty())
+				return;
+			if (sameSelection && systemNode != null && !positions.isEmpty()
+					&& Objects.equals(selection, systemNode.getSelection())) {
+				applyCutoff(processes.get(0), positions.get(0), cutoff);
+				return;
+			}
 			systemNode = new ProductSystemNode(productSystem,
 					SankeyDiagram.this, selection, cutoff);
 			createdProcesses.clear();
 			createdLinks.clear();
-			updateModel(cutoff);
+			updateModel(processes.get(0));
 			getGraphicalViewer().deselectAll();
 			getGraphicalViewer().setContents(systemNode);
 		});
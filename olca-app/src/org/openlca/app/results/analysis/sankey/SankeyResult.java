@@ -1,8 +1,9 @@
 package org.openlca.app.results.analysis.sankey;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.ToDoubleFunction;
 
@@ -25,12 +26,21 @@ class SankeyResult {
 	private ProductSystem system;
 	private FullResultProvider results;
 
+	/** The number of selections for which the result vectors are cached. */
+	private static final int MAX_CACHED = 10;
+
 	private LongIndex processIndex;
 	private ProcessDescriptor[] processes;
-	private double[] upstreamResults;
-	private double[] upstreamContributions;
-	private double[] directResults;
-	private double[] directContributions;
+	private volatile Vectors current;
+	private final Map<Object, Vectors> cache = new LinkedHashMap<Object, Vectors>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, Vectors> eldest) {
+			return size() > MAX_CACHED;
+		}
+	};
 
 	public SankeyResult(ProductSystem system, FullResultProvider results) {
 		this.system = system;
@@ -38,19 +48,23 @@ class SankeyResult {
 	}
 
 	public double getDirectResult(long processId) {
-		return fetchVal(processId, directResults);
+		Vectors v = current;
+		return fetchVal(processId, v == null ? null : v.directResults);
 	}
 
 	public double getDirectContribution(long processId) {
-		return fetchVal(processId, directContributions);
+		Vectors v = current;
+		return fetchVal(processId, v == null ? null : v.directContributions);
 	}
 
 	public double getUpstreamResult(long processId) {
-		return fetchVal(processId, upstreamResults);
+		Vectors v = current;
+		return fetchVal(processId, v == null ? null : v.upstreamResults);
 	}
 
 	public double getUpstreamContribution(long processId) {
-		return fetchVal(processId, upstreamContributions);
+		Vectors v = current;
+		return fetchVal(processId, v == null ? null : v.upstreamContributions);
 	}
 
 	private double fetchVal(long processId, double[] values) {
@@ -62,15 +76,57 @@ class SankeyResult {
 		return values[idx];
 	}
 
+	/**
+	 * Returns the cutoff for which the given number of processes have an
+	 * upstream contribution above or equal to the cutoff. Instead of sorting
+	 * all contributions, the k-th largest absolute contribution is selected
+	 * in linear time.
+	 */
 	public double findCutoff(int maxProcessesCount) {
-		if (upstreamContributions.length == 0
-				|| maxProcessesCount >= upstreamContributions.length)
+		Vectors v = current;
+		if (v == null || v.upstreamContributions.length == 0
+				|| maxProcessesCount <= 0
+				|| maxProcessesCount >= v.upstreamContributions.length)
 			return 0;
-		int length = upstreamContributions.length;
+		int length = v.upstreamContributions.length;
 		double[] contributions = new double[length];
-		System.arraycopy(upstreamContributions, 0, contributions, 0, length);
-		Arrays.sort(contributions);
-		return Math.abs(contributions[length - maxProcessesCount]);
+		for (int i = 0; i < length; i++)
+			contributions[i] = Math.abs(v.upstreamContributions[i]);
+		return select(contributions, length - maxProcessesCount);
+	}
+
+	/**
+	 * Returns the k-th smallest value (0-based) of the given array; the array
+	 * is modified.
+	 */
+	private static double select(double[] values, int k) {
+		int left = 0;
+		int right = values.length - 1;
+		while (left < right) {
+			double pivot = values[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (values[i] < pivot)
+					i++;
+				while (values[j] > pivot)
+					j--;
+				if (i <= j) {
+					double tmp = values[i];
+					values[i] = values[j];
+					values[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j)
+				right = j;
+			else if (k >= i)
+				left = i;
+			else
+				return values[k];
+		}
+		return values[k];
 	}
 
 	public List<Long> getProcesseIdsAboveCutoff(double cutoff) {
@@ -91,9 +147,22 @@ class SankeyResult {
 		return totalContr * linkShare;
 	}
 
-	public void calculate(Object selection) {
+	/**
+	 * Calculates the result vectors for the given selection. The vectors of
+	 * the last selections are cached so that they are not calculated again
+	 * when the user switches back to a selection.
+	 */
+	public synchronized void calculate(Object selection) {
+		if (processIndex == null)
+			buildProcessIndex();
+		Vectors cached = selection == null ? null : cache.get(selection);
+		if (cached != null) {
+			current = cached;
+			return;
+		}
 		log.trace("Calculate Sankey result for selection {}", selection);
-		buildProcessIndex();
+		double[] upstreamResults;
+		double[] directResults;
 		if (selection instanceof FlowDescriptor) {
 			FlowDescriptor f = (FlowDescriptor) selection;
 			upstreamResults = vec(p -> results.getUpstreamFlowResult(p, f).value);
@@ -115,8 +184,14 @@ class SankeyResult {
 		} else {
 			directResults = upstreamResults = new double[processIndex.size()];
 		}
-		upstreamContributions = calcContributions(upstreamResults);
-		directContributions = calcContributions(directResults);
+		Vectors v = new Vectors();
+		v.upstreamResults = upstreamResults;
+		v.directResults = directResults;
+		v.upstreamContributions = calcContributions(upstreamResults);
+		v.directContributions = calcContributions(directResults);
+		if (selection != null)
+			cache.put(selection, v);
+		current = v;
 		log.trace("Calculation done");
 	}
 
@@ -156,4 +231,11 @@ class SankeyResult {
 		}
 	}
 
+	private static class Vectors {
+		double[] upstreamResults;
+		double[] upstreamContributions;
+		double[] directResults;
+		double[] directContributions;
+	}
+
 }
@@ -1,6 +1,7 @@
 package org.openlca.app.results.analysis.sankey.layout;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -39,23 +40,61 @@ public class TreeLayout {
 	private ProcessLinkSearchMap linkSearchMap;
 
 	public void layout(final ProductSystemNode productSystemNode) {
-		linkSearchMap = productSystemNode.getEditor().getLinkSearchMap();
-		prepare(productSystemNode);
+		List<Long> processes = new ArrayList<>();
+		for (final Object o : productSystemNode.getChildrenArray()) {
+			if (o instanceof ProcessNode)
+				processes.add(((ProcessNode) o).process.getId());
+		}
+		Map<Long, Point> positions = calculate(
+				productSystemNode.getProductSystem(),
+				productSystemNode.getEditor().getLinkSearchMap(), processes);
+		apply(productSystemNode, positions);
+	}
+
+	/**
+	 * Sets the given positions as layout constraints of the process nodes.
+	 * Nodes of which the constraints did not change are not updated.
+	 */
+	public static void apply(ProductSystemNode productSystemNode,
+			Map<Long, Point> positions) {
+		for (final Object o : productSystemNode.getChildrenArray()) {
+			if (!(o instanceof ProcessNode))
+				continue;
+			ProcessNode node = (ProcessNode) o;
+			Point p = positions.get(node.process.getId());
+			if (p == null)
+				p = new Point(0, 0);
+			int width = node.figure != null ? node.figure.getSize().width
+					: ProcessFigure.WIDTH;
+			int height = node.figure != null ? node.figure.getSize().height
+					: ProcessFigure.HEIGHT;
+			Rectangle r = new Rectangle(p.x, p.y, width, height);
+			if (!r.equals(node.getXyLayoutConstraints()))
+				node.setXyLayoutConstraints(r);
+		}
+	}
+
+	/**
+	 * Calculates the positions of the given processes. This method does not
+	 * access the model or figures of the diagram and thus can be called
+	 * outside of the UI thread.
+	 */
+	public Map<Long, Point> calculate(ProductSystem system,
+			ProcessLinkSearchMap linkSearchMap, Collection<Long> processes) {
+		this.linkSearchMap = linkSearchMap;
+		paintedProcesses.addAll(processes);
+		Map<Long, Point> positions = new HashMap<>();
 		final List<Node> nodes = new ArrayList<>();
-		final Node mainNode = build(productSystemNode.getProductSystem());
+		final Node mainNode = build(system);
 		mainNode.sort();
 		nodes.add(mainNode);
-		for (final Object o : productSystemNode.getChildrenArray()) {
-			if (o instanceof ProcessNode) {
-				final ProcessNode processNode = (ProcessNode) o;
-				if (!containing.contains(processNode.process.getId())) {
-					final Node node = new Node();
-					node.processId = processNode.process.getId();
-					build(productSystemNode.getProductSystem(),
-							new Node[] { node });
-					node.sort();
-					nodes.add(node);
-				}
+		for (Long processId : processes) {
+			if (!containing.contains(processId)) {
+				final Node node = new Node();
+				node.processId = processId;
+				build(system, new Node[] { node });
+				node.sort();
+				nodes.add(node);
 			}
 		}
 		int additionalHeight = 0;
@@ -83,14 +122,6 @@ public class TreeLayout {
 					maximumY = p.y;
 				}
 			}
-			final Map<Long, ProcessFigure> figures = new HashMap<>();
-			for (final Object n : productSystemNode.getChildrenArray()) {
-				if (n instanceof ProcessNode) {
-					final ProcessFigure figure = ((ProcessNode) n).figure;
-					figures.put(figure.getProcessNode().process.getId(),
-							figure);
-				}
-			}
 
 			// apply layout
 			int xPosition = GraphLayoutManager.horizontalSpacing;
@@ -106,19 +137,13 @@ public class TreeLayout {
 						yPosition += ProcessFigure.HEIGHT
 								+ GraphLayoutManager.verticalSpacing;
 					}
-					if (processKey != null) {
-						final ProcessFigure figure = figures.get(processKey);
-						if (figure != null) {
-							figure.getProcessNode().setXyLayoutConstraints(
-									new Rectangle(xPosition, yPosition
-											+ additionalHeight, figure
-													.getSize().width,
-											figure.getSize().height));
-							newAdditionalHeight = Math.max(
-									newAdditionalHeight,
-									yPosition + additionalHeight
-											+ figure.getSize().height);
-						}
+					if (processKey != null
+							&& paintedProcesses.contains(processKey)) {
+						positions.put(processKey, new Point(xPosition,
+								yPosition + additionalHeight));
+						newAdditionalHeight = Math.max(newAdditionalHeight,
+								yPosition + additionalHeight
+										+ ProcessFigure.HEIGHT);
 					}
 				}
 			}
@@ -127,6 +152,8 @@ public class TreeLayout {
 		}
 		containing.clear();
 		locations.clear();
+		paintedProcesses.clear();
+		return positions;
 	}
 
 	private void applyLayout(final Node node, int addition,
@@ -209,17 +236,6 @@ public class TreeLayout {
 		}
 	}
 
-	private void prepare(final ProductSystemNode productSystemNode) {
-		for (final Object node : productSystemNode.getChildrenArray()) {
-			if (node instanceof ProcessNode) {
-				final ProcessNode processNode = (ProcessNode) node;
-				paintedProcesses.add(processNode.process.getId());
-				processNode.setXyLayoutConstraints(new Rectangle(0, 0,
-						processNode.figure.getSize().width, processNode.figure.getSize().height));
-			}
-		}
-	}
-
 	class Node {
 
 		List<Node> leftChildren = new ArrayList<>();
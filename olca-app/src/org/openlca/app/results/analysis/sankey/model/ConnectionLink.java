@@ -61,6 +61,12 @@ public class ConnectionLink {
 			targetNode.add(this);
 	}
 
+	public void unlink() {
+		sourceNode.remove(this);
+		if (sourceNode != targetNode)
+			targetNode.remove(this);
+	}
+
 	public void setFigure(IFigure figure) {
 		this.figure = figure;
 	}
@@ -3,7 +3,10 @@ package org.openlca.app.results.analysis.sankey.model;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public abstract class Node implements Comparable<Node> {
 
@@ -33,6 +36,43 @@ public abstract class Node implements Comparable<Node> {
 		return b;
 	}
 
+	public boolean removeChild(Node child) {
+		boolean b = children.remove(child);
+		if (b) {
+			child.setParent(null);
+			listeners.firePropertyChange(PROPERTY_REMOVE, child, null);
+		}
+		return b;
+	}
+
+	/**
+	 * Adds the given children with a single property change event of which
+	 * the new value is the collection of the added children.
+	 */
+	public void addChildren(Collection<? extends Node> nodes) {
+		if (nodes.isEmpty())
+			return;
+		for (Node child : nodes) {
+			children.add(child);
+			child.setParent(this);
+		}
+		listeners.firePropertyChange(PROPERTY_ADD, null, nodes);
+	}
+
+	/**
+	 * Removes the given children with a single property change event of which
+	 * the old value is the collection of the removed children.
+	 */
+	public void removeChildren(Collection<? extends Node> nodes) {
+		if (nodes.isEmpty())
+			return;
+		Set<Node> removals = new HashSet<>(nodes);
+		children.removeIf(removals::contains);
+		for (Node child : nodes)
+			child.setParent(null);
+		listeners.firePropertyChange(PROPERTY_REMOVE, nodes, null);
+	}
+
 	public void addPropertyChangeListener(PropertyChangeListener listener) {
 		listeners.addPropertyChangeListener(listener);
 	}
@@ -32,6 +32,11 @@ public class ProcessNode extends Node {
 		listeners.firePropertyChange(CONNECTION, null, link);
 	}
 
+	public void remove(ConnectionLink link) {
+		if (links.remove(link))
+			listeners.firePropertyChange(CONNECTION, link, null);
+	}
+
 	public List<ConnectionLink> getIncomingLinks() {
 		List<ConnectionLink> incomingPositive = new ArrayList<>();
 		List<ConnectionLink> incomingNegative = new ArrayList<>();
@@ -1,5 +1,7 @@
 package org.openlca.app.results.analysis.sankey.model;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.util.List;
 
 import org.eclipse.draw2d.IFigure;
@@ -9,7 +11,14 @@ import org.eclipse.swt.graphics.Font;
 import org.openlca.app.results.analysis.sankey.layout.GraphLayoutManager;
 import org.openlca.app.results.analysis.sankey.layout.LayoutPolicy;
 
-public class ProductSystemEditPart extends AbstractGraphicalEditPart {
+public class ProductSystemEditPart extends AbstractGraphicalEditPart
+		implements PropertyChangeListener {
+
+	@Override
+	public void activate() {
+		super.activate();
+		((Node) getModel()).addPropertyChangeListener(this);
+	}
 
 	@Override
 	protected void createEditPolicies() {
@@ -36,8 +45,17 @@ public class ProductSystemEditPart extends AbstractGraphicalEditPart {
 		return false;
 	}
 
+	@Override
+	public void propertyChange(PropertyChangeEvent evt) {
+		String property = evt.getPropertyName();
+		if (Node.PROPERTY_ADD.equals(property)
+				|| Node.PROPERTY_REMOVE.equals(property))
+			refreshChildren();
+	}
+
 	@Override
 	public void deactivate() {
+		((Node) getModel()).removePropertyChangeListener(this);
 		IFigure figure = getFigure();
 		if (figure instanceof ProductSystemFigure) {
 			ProductSystemFigure pFigure = (ProductSystemFigure) figure;
@@ -2,8 +2,9 @@ package org.openlca.app.results.analysis.sankey.model;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.openlca.app.results.analysis.sankey.SankeyDiagram;
 import org.openlca.core.model.ProductSystem;
@@ -13,7 +14,7 @@ public class ProductSystemNode extends Node implements PropertyChangeListener {
 	private double cutoff = 0;
 	private SankeyDiagram editor;
 	private Object selection;
-	private List<Long> processIds = new ArrayList<>();
+	private Set<Long> processIds = new HashSet<>();
 	private ProductSystem productSystem;
 
 	public ProductSystemNode(ProductSystem productSystem, SankeyDiagram editor,
@@ -33,6 +34,33 @@ public class ProductSystemNode extends Node implements PropertyChangeListener {
 		return added;
 	}
 
+	@Override
+	public boolean removeChild(Node child) {
+		boolean removed = super.removeChild(child);
+		if (removed && child instanceof ProcessNode) {
+			processIds.remove(((ProcessNode) child).process.getId());
+		}
+		return removed;
+	}
+
+	@Override
+	public void addChildren(Collection<? extends Node> nodes) {
+		for (Node child : nodes) {
+			if (child instanceof ProcessNode)
+				processIds.add(((ProcessNode) child).process.getId());
+		}
+		super.addChildren(nodes);
+	}
+
+	@Override
+	public void removeChildren(Collection<? extends Node> nodes) {
+		for (Node child : nodes) {
+			if (child instanceof ProcessNode)
+				processIds.remove(((ProcessNode) child).process.getId());
+		}
+		super.removeChildren(nodes);
+	}
+
 	public boolean containsProcess(long id) {
 		return processIds.contains(id);
 	}
@@ -50,6 +78,10 @@ public class ProductSystemNode extends Node implements PropertyChangeListener {
 		return cutoff;
 	}
 
+	public void setCutoff(double cutoff) {
+		this.cutoff = cutoff;
+	}
+
 	public SankeyDiagram getEditor() {
 		return editor;
 	}
@@ -1,14 +1,18 @@
 package org.openlca.app.results.contributions;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.MenuManager;
 import org.eclipse.jface.viewers.BaseLabelProvider;
 import org.eclipse.jface.viewers.ITableLabelProvider;
-import org.eclipse.jface.viewers.ITreeContentProvider;
+import org.eclipse.jface.viewers.ITreePathContentProvider;
+import org.eclipse.jface.viewers.TreePath;
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerSorter;
@@ -17,6 +21,7 @@ import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Menu;
+import org.eclipse.swt.widgets.Spinner;
 import org.eclipse.ui.forms.IManagedForm;
 import org.eclipse.ui.forms.editor.FormEditor;
 import org.eclipse.ui.forms.editor.FormPage;
@@ -30,6 +35,8 @@ import org.openlca.app.components.ResultTypeSelection.EventHandler;
 import org.openlca.app.db.Cache;
 import org.openlca.app.rcp.images.Icon;
 import org.openlca.app.rcp.images.Images;
+import org.openlca.app.results.ContributionCutoff;
+import org.openlca.app.results.ContributionCutoff.CutoffContentProvider;
 import org.openlca.app.util.Actions;
 import org.openlca.app.util.CostResultDescriptor;
 import org.openlca.app.util.CostResults;
@@ -57,6 +64,10 @@ public class ContributionTreePage extends FormPage {
 	private TreeViewer tree;
 	private Object selection;
 
+	private double cutoff;
+	private int maxDepth = 10;
+	private int inputVersion;
+
 	private static final String[] HEADERS = { M.Contribution,
 			M.Process, M.Amount, M.Unit };
 
@@ -84,10 +95,25 @@ public class ContributionTreePage extends FormPage {
 				.on(result, Cache.getEntityCache())
 				.withEventHandler(new SelectionHandler())
 				.create(composite, toolkit);
+		Composite options = toolkit.createComposite(body);
+		UI.gridLayout(options, 3);
+		ContributionCutoff cutoffSpinner = ContributionCutoff.create(options,
+				toolkit, 0);
+		UI.formLabel(options, toolkit, M.MaxDepth);
+		Spinner depthSpinner = new Spinner(options, SWT.BORDER);
+		depthSpinner.setMinimum(1);
+		depthSpinner.setMaximum(100);
+		depthSpinner.setSelection(maxDepth);
+		toolkit.adapt(depthSpinner);
 		Composite treeContainer = toolkit.createComposite(body);
 		UI.gridLayout(treeContainer, 1);
 		UI.gridData(treeContainer, true, true);
 		createTree(toolkit, treeContainer);
+		cutoffSpinner.register(tree);
+		depthSpinner.addModifyListener((e) -> {
+			maxDepth = depthSpinner.getSelection();
+			tree.refresh();
+		});
 		form.reflow(true);
 		selector.selectWithEvent(selection);
 	}
@@ -122,56 +148,104 @@ public class ContributionTreePage extends FormPage {
 		@Override
 		public void flowSelected(FlowDescriptor flow) {
 			selection = flow;
-			UpstreamTree model = result.getTree(flow);
-			tree.setInput(model);
+			setInput(() -> result.getTree(flow));
 		}
 
 		@Override
 		public void impactCategorySelected(
 				ImpactCategoryDescriptor impactCategory) {
 			selection = impactCategory;
-			UpstreamTree model = result.getTree(impactCategory);
-			tree.setInput(model);
+			setInput(() -> result.getTree(impactCategory));
 		}
 
 		@Override
 		public void costResultSelected(CostResultDescriptor cost) {
 			selection = cost;
-			UpstreamTree model = result.getCostTree();
-			if (cost.forAddedValue)
-				CostResults.forAddedValues(model);
-			tree.setInput(model);
+			setInput(() -> {
+				UpstreamTree model = result.getCostTree();
+				if (cost.forAddedValue)
+					CostResults.forAddedValues(model);
+				return model;
+			});
 		}
-	}
-
-	private class ContributionContentProvider implements ITreeContentProvider {
 
-		@Override
-		public Object[] getChildren(Object parent) {
-			if (!(parent instanceof UpstreamTreeNode))
-				return null;
-			UpstreamTreeNode node = (UpstreamTreeNode) parent;
-			return node.getChildren().toArray();
+		/**
+		 * Calculates the upstream tree in a background job and shows a
+		 * placeholder until it is ready.
+		 */
+		private void setInput(Supplier<UpstreamTree> fn) {
+			int version = ++inputVersion;
+			tree.setInput(M.Loading);
+			UpstreamTree[] model = new UpstreamTree[1];
+			App.run(M.ContributionTree, () -> model[0] = fn.get(), () -> {
+				if (version != inputVersion || tree.getControl().isDisposed())
+					return;
+				tree.setInput(model[0]);
+			});
 		}
+	}
+
+	/**
+	 * Returns only the children of a node with a contribution above the cutoff
+	 * and stops at the maximum depth, which bounds 'expand all' for supply
+	 * chains with loops. The depth is taken from the tree path of a node.
+	 */
+	private class ContributionContentProvider implements
+			ITreePathContentProvider, CutoffContentProvider {
 
 		@Override
 		public Object[] getElements(Object inputElement) {
+			if (inputElement instanceof String)
+				return new Object[] { inputElement };
 			if (!(inputElement instanceof UpstreamTree))
 				return null;
 			return new Object[] { ((UpstreamTree) inputElement).getRoot() };
 		}
 
 		@Override
-		public Object getParent(Object element) {
-			return null;
+		public Object[] getChildren(TreePath parentPath) {
+			return getChildren(parentPath, false).toArray();
 		}
 
 		@Override
-		public boolean hasChildren(Object element) {
-			if (!(element instanceof UpstreamTreeNode))
-				return false;
-			UpstreamTreeNode node = (UpstreamTreeNode) element;
-			return !node.getChildren().isEmpty();
+		public boolean hasChildren(TreePath path) {
+			return !getChildren(path, true).isEmpty();
+		}
+
+		/**
+		 * Returns the children above the cutoff; if `first` is true only the
+		 * first of these children is returned.
+		 */
+		private List<UpstreamTreeNode> getChildren(TreePath path,
+				boolean first) {
+			List<UpstreamTreeNode> children = new ArrayList<>();
+			if (path.getSegmentCount() > maxDepth)
+				return children;
+			if (!(path.getLastSegment() instanceof UpstreamTreeNode))
+				return children;
+			if (!(tree.getInput() instanceof UpstreamTree))
+				return children;
+			UpstreamTree model = (UpstreamTree) tree.getInput();
+			double min = cutoff * Math.abs(model.getRoot().getAmount());
+			UpstreamTreeNode node = (UpstreamTreeNode) path.getLastSegment();
+			for (UpstreamTreeNode child : node.getChildren()) {
+				if (min > 0 && Math.abs(child.getAmount()) < min)
+					continue;
+				children.add(child);
+				if (first)
+					break;
+			}
+			return children;
+		}
+
+		@Override
+		public TreePath[] getParents(Object element) {
+			return new TreePath[0];
+		}
+
+		@Override
+		public void setCutoff(double cutoff) {
+			ContributionTreePage.this.cutoff = cutoff;
 		}
 
 		@Override
@@ -198,7 +272,7 @@ public class ContributionTreePage extends FormPage {
 
 		@Override
 		public Image getColumnImage(Object element, int columnIndex) {
-			if (!(element instanceof UpstreamTreeNode) || element == null)
+			if (!(element instanceof UpstreamTreeNode))
 				return null;
 			if (columnIndex != 1)
 				return null;
@@ -208,6 +282,8 @@ public class ContributionTreePage extends FormPage {
 
 		@Override
 		public String getColumnText(Object element, int columnIndex) {
+			if (element instanceof String)
+				return columnIndex == 1 ? (String) element : null;
 			if (!(element instanceof UpstreamTreeNode))
 				return null;
 			UpstreamTreeNode node = (UpstreamTreeNode) element;
@@ -266,8 +342,7 @@ public class ContributionTreePage extends FormPage {
 		@Override
 		public int compare(Viewer viewer, Object e1, Object e2) {
 			if (!(e1 instanceof UpstreamTreeNode
-					&& e2 instanceof UpstreamTreeNode)
-					|| e1 == null || e2 == null)
+					&& e2 instanceof UpstreamTreeNode))
 				return 0;
 			UpstreamTreeNode node1 = (UpstreamTreeNode) e1;
 			UpstreamTreeNode node2 = (UpstreamTreeNode) e2;
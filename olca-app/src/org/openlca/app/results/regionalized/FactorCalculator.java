@@ -1,9 +1,13 @@
 package org.openlca.app.results.regionalized;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.ImpactMethodDao;
@@ -23,6 +27,14 @@ import org.openlca.geo.parameter.ParameterSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Calculates the characterisation factors of an impact category for
+ * locations. The formulas of the factors and calculated parameters are
+ * compiled once into {@link Formula} objects that are evaluated against a
+ * vector of parameter values per location; the locations are evaluated in
+ * parallel. Formulas that cannot be compiled or that refer to undefined
+ * parameters are evaluated with the formula interpreter as before.
+ */
 class FactorCalculator {
 
 	private Logger log = LoggerFactory.getLogger(getClass());
@@ -30,10 +42,17 @@ class FactorCalculator {
 	private Map<String, Double> inputParams = new HashMap<>();
 	private Map<String, String> calcParams = new HashMap<>();
 
+	/** The slots of the parameters in the value vectors (by lower case name). */
+	private final Map<String, Integer> slots = new HashMap<>();
+	private final List<Double> inputValues = new ArrayList<>();
+	private final List<Formula> calcFormulas = new ArrayList<>();
+	private final Map<String, Formula> compiled = new HashMap<>();
+
 	FactorCalculator(ParameterSet inputParams, IDatabase db,
 			CalculationSetup setup) {
 		this.regioParams = inputParams;
 		initContext(db, setup);
+		initSlots();
 	}
 
 	private void initContext(IDatabase db, CalculationSetup setup) {
@@ -62,18 +81,107 @@ class FactorCalculator {
 		}
 	}
 
+	/**
+	 * Registers the slots of the parameters. As in the interpreter scope,
+	 * input parameters hide calculated parameters with the same name.
+	 */
+	private void initSlots() {
+		for (Entry<String, String> param : calcParams.entrySet()) {
+			int slot = slot(param.getKey());
+			Formula formula = Formula.compile(param.getValue(), this::slot);
+			calcFormulas.set(slot, formula);
+		}
+		for (Entry<String, Double> param : inputParams.entrySet()) {
+			if (param.getValue() == null)
+				continue;
+			inputValues.set(slot(param.getKey()), param.getValue());
+		}
+	}
+
+	private int slot(String name) {
+		String key = name.toLowerCase();
+		Integer slot = slots.get(key);
+		if (slot != null)
+			return slot;
+		slot = slots.size();
+		slots.put(key, slot);
+		inputValues.add(null);
+		calcFormulas.add(null);
+		return slot;
+	}
+
 	Map<FlowDescriptor, Double> calculate(ImpactCategory category, long locationId) {
-		Scope scope = buildScope(locationId);
-		Map<FlowDescriptor, Double> result = new HashMap<>();
-		for (ImpactFactor factor : category.getImpactFactors()) {
-			FlowDescriptor flow = Descriptors.toDescriptor(factor.getFlow());
-			if (factor.getFormula() == null) {
-				result.put(flow, factor.getValue());
-			} else {
-				result.put(flow, eval(factor, scope));
+		return calculate(category, Collections.singleton(locationId))
+				.get(locationId);
+	}
+
+	/**
+	 * Calculates the characterisation factors of the given impact category for
+	 * the given locations in parallel.
+	 */
+	Map<Long, Map<FlowDescriptor, Double>> calculate(ImpactCategory category,
+			Collection<Long> locationIds) {
+		List<ImpactFactor> factors = category.getImpactFactors();
+		FlowDescriptor[] flows = new FlowDescriptor[factors.size()];
+		Formula[] formulas = new Formula[factors.size()];
+		Double[] inputs;
+		Formula[] calcs;
+		Map<String, Integer> slotMap;
+		synchronized (this) {
+			// all slots are registered before the parallel evaluation
+			for (int i = 0; i < flows.length; i++) {
+				ImpactFactor factor = factors.get(i);
+				flows[i] = Descriptors.toDescriptor(factor.getFlow());
+				formulas[i] = compile(factor.getFormula());
+			}
+			for (long locationId : locationIds) {
+				Map<String, Double> regioMap = regioParams.get(locationId);
+				if (regioMap == null)
+					continue;
+				for (String name : regioMap.keySet())
+					slot(name);
 			}
+			inputs = inputValues.toArray(new Double[inputValues.size()]);
+			calcs = calcFormulas.toArray(new Formula[calcFormulas.size()]);
+			slotMap = new HashMap<>(slots);
 		}
-		return result;
+		Map<Long, Map<FlowDescriptor, Double>> results = new ConcurrentHashMap<>();
+		locationIds.parallelStream().forEach((locationId) -> {
+			Values values = new Values(locationId, inputs, calcs,
+					slotMap);
+			Map<FlowDescriptor, Double> result = new HashMap<>();
+			for (int i = 0; i < flows.length; i++) {
+				ImpactFactor factor = factors.get(i);
+				if (factor.getFormula() == null) {
+					result.put(flows[i], factor.getValue());
+				} else {
+					result.put(flows[i], eval(factor, formulas[i], values));
+				}
+			}
+			results.put(locationId, result);
+		});
+		return results;
+	}
+
+	private Formula compile(String formula) {
+		if (formula == null)
+			return null;
+		if (compiled.containsKey(formula))
+			return compiled.get(formula);
+		Formula f = Formula.compile(formula, this::slot);
+		compiled.put(formula, f);
+		return f;
+	}
+
+	private double eval(ImpactFactor factor, Formula formula, Values values) {
+		if (formula != null) {
+			try {
+				return formula.eval(values);
+			} catch (Formula.UndefinedException e) {
+				// try it with the interpreter
+			}
+		}
+		return eval(factor, values.scope());
 	}
 
 	private Scope buildScope(long locationId) {
@@ -104,4 +212,80 @@ class FactorCalculator {
 		}
 		return 0;
 	}
+
+	/**
+	 * The parameter values of a location. The values of the calculated
+	 * parameters are evaluated on demand.
+	 */
+	private class Values implements Formula.Values {
+
+		private static final byte UNKNOWN = 0;
+		private static final byte EVALUATING = 1;
+		private static final byte DEFINED = 2;
+		private static final byte UNDEFINED = 3;
+
+		private final long locationId;
+		private final Formula[] calcs;
+		private final double[] values;
+		private final byte[] states;
+		private Scope scope;
+
+		Values(long locationId, Double[] inputs, Formula[] calcs,
+				Map<String, Integer> slots) {
+			this.locationId = locationId;
+			this.calcs = calcs;
+			values = new double[inputs.length];
+			states = new byte[inputs.length];
+			for (int i = 0; i < inputs.length; i++) {
+				if (inputs[i] != null)
+					set(i, inputs[i]);
+			}
+			Map<String, Double> regioMap = regioParams.get(locationId);
+			if (regioMap == null)
+				return;
+			for (Entry<String, Double> param : regioMap.entrySet()) {
+				if (param.getValue() == null)
+					continue;
+				Integer slot = slots.get(param.getKey().toLowerCase());
+				if (slot != null && slot < values.length)
+					set(slot, param.getValue());
+			}
+		}
+
+		private void set(int slot, double value) {
+			values[slot] = value;
+			states[slot] = DEFINED;
+		}
+
+		@Override
+		public double get(int slot) {
+			if (slot >= values.length)
+				throw new Formula.UndefinedException("slot " + slot);
+			switch (states[slot]) {
+			case DEFINED:
+				return values[slot];
+			case UNKNOWN:
+				Formula calc = calcs[slot];
+				if (calc == null)
+					break;
+				states[slot] = EVALUATING;
+				try {
+					set(slot, calc.eval(this));
+					return values[slot];
+				} finally {
+					if (states[slot] == EVALUATING)
+						states[slot] = UNDEFINED;
+				}
+			default:
+				break;
+			}
+			throw new Formula.UndefinedException("slot " + slot);
+		}
+
+		Scope scope() {
+			if (scope == null)
+				scope = buildScope(locationId);
+			return scope;
+		}
+	}
 }
@@ -0,0 +1,347 @@
+package org.openlca.app.results.regionalized;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * A formula that is parsed once into an expression tree where the variables
+ * are replaced by slots in a parameter vector. Only arithmetic expressions
+ * (numbers, variables, <code>+ - * / ^</code>, parentheses, and some common
+ * functions) are supported; for other formulas {@link #compile} returns null
+ * and the formula interpreter needs to be used instead.
+ */
+abstract class Formula {
+
+	/** The values of the parameter slots. */
+	interface Values {
+
+		/**
+		 * Returns the value of the given slot; throws an
+		 * {@link UndefinedException} if the slot has no value.
+		 */
+		double get(int slot);
+	}
+
+	static class UndefinedException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		UndefinedException(String message) {
+			super(message);
+		}
+	}
+
+	abstract double eval(Values values);
+
+	/**
+	 * Compiles the given formula. The slot of a variable is taken from the
+	 * given function with the lower case name of the variable. Returns null if
+	 * the formula cannot be compiled.
+	 */
+	static Formula compile(String text, ToIntFunction<String> slots) {
+		if (text == null)
+			return null;
+		try {
+			Parser parser = new Parser(text, slots);
+			Formula formula = parser.parseSum();
+			parser.skipSpace();
+			if (parser.pos < text.length())
+				return null;
+			return formula;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private static class Parser {
+
+		private final String text;
+		private final ToIntFunction<String> slots;
+		private int pos;
+
+		Parser(String text, ToIntFunction<String> slots) {
+			this.text = text;
+			this.slots = slots;
+		}
+
+		Formula parseSum() {
+			Formula left = parseProduct();
+			while (true) {
+				char c = peek();
+				if (c != '+' && c != '-')
+					return left;
+				pos++;
+				Formula right = parseProduct();
+				left = new Binary(c, left, right);
+			}
+		}
+
+		private Formula parseProduct() {
+			Formula left = parseUnary();
+			while (true) {
+				char c = peek();
+				if (c != '*' && c != '/')
+					return left;
+				pos++;
+				Formula right = parseUnary();
+				left = new Binary(c, left, right);
+			}
+		}
+
+		private Formula parseUnary() {
+			char c = peek();
+			if (c != '-' && c != '+')
+				return parsePower();
+			pos++;
+			Formula operand = parseUnary();
+			// the precedence of a sign before a power is not the same in
+			// all formula languages; thus, we leave this to the interpreter
+			if (operand instanceof Binary && ((Binary) operand).op == '^')
+				throw new IllegalArgumentException();
+			return c == '+' ? operand : new Negation(operand);
+		}
+
+		private Formula parsePower() {
+			Formula base = parseAtom();
+			if (peek() != '^')
+				return base;
+			pos++;
+			Formula exponent = parseUnary();
+			return new Binary('^', base, exponent);
+		}
+
+		private Formula parseAtom() {
+			char c = peek();
+			if (c == '(') {
+				pos++;
+				Formula inner = parseSum();
+				expect(')');
+				return inner;
+			}
+			if (Character.isDigit(c) || c == '.')
+				return new Constant(parseNumber());
+			if (Character.isLetter(c) || c == '_')
+				return parseName();
+			throw new IllegalArgumentException();
+		}
+
+		private double parseNumber() {
+			int start = pos;
+			while (pos < text.length()) {
+				char c = text.charAt(pos);
+				if (Character.isDigit(c) || c == '.') {
+					pos++;
+				} else if ((c == 'e' || c == 'E') && pos + 1 < text.length()) {
+					char next = text.charAt(pos + 1);
+					if (Character.isDigit(next))
+						pos++;
+					else if ((next == '-' || next == '+')
+							&& pos + 2 < text.length()
+							&& Character.isDigit(text.charAt(pos + 2)))
+						pos += 2;
+					else
+						break;
+				} else {
+					break;
+				}
+			}
+			try {
+				return Double.parseDouble(text.substring(start, pos));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		private Formula parseName() {
+			int start = pos;
+			while (pos < text.length()) {
+				char c = text.charAt(pos);
+				if (!Character.isLetterOrDigit(c) && c != '_')
+					break;
+				pos++;
+			}
+			String name = text.substring(start, pos).toLowerCase();
+			if (peek() != '(')
+				return new Variable(name, slots.applyAsInt(name));
+			pos++;
+			List<Formula> args = new ArrayList<>();
+			if (peek() != ')') {
+				args.add(parseSum());
+				while (peek() == ',' || peek() == ';') {
+					pos++;
+					args.add(parseSum());
+				}
+			}
+			expect(')');
+			return Function.create(name, args);
+		}
+
+		private void expect(char c) {
+			if (peek() != c)
+				throw new IllegalArgumentException();
+			pos++;
+		}
+
+		private char peek() {
+			skipSpace();
+			return pos < text.length() ? text.charAt(pos) : 0;
+		}
+
+		void skipSpace() {
+			while (pos < text.length()
+					&& Character.isWhitespace(text.charAt(pos)))
+				pos++;
+		}
+	}
+
+	private static class Constant extends Formula {
+
+		private final double value;
+
+		Constant(double value) {
+			this.value = value;
+		}
+
+		@Override
+		double eval(Values values) {
+			return value;
+		}
+	}
+
+	private static class Variable extends Formula {
+
+		private final String name;
+		private final int slot;
+
+		Variable(String name, int slot) {
+			this.name = name;
+			this.slot = slot;
+		}
+
+		@Override
+		double eval(Values values) {
+			if (slot < 0)
+				throw new UndefinedException(name);
+			return values.get(slot);
+		}
+	}
+
+	private static class Negation extends Formula {
+
+		private final Formula operand;
+
+		Negation(Formula operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		double eval(Values values) {
+			return -operand.eval(values);
+		}
+	}
+
+	private static class Binary extends Formula {
+
+		private final char op;
+		private final Formula left;
+		private final Formula right;
+
+		Binary(char op, Formula left, Formula right) {
+			this.op = op;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		double eval(Values values) {
+			double a = left.eval(values);
+			double b = right.eval(values);
+			switch (op) {
+			case '+':
+				return a + b;
+			case '-':
+				return a - b;
+			case '*':
+				return a * b;
+			case '/':
+				return a / b;
+			default:
+				return Math.pow(a, b);
+			}
+		}
+	}
+
+	private static class Function extends Formula {
+
+		private final String name;
+		private final Formula[] args;
+
+		private Function(String name, Formula[] args) {
+			this.name = name;
+			this.args = args;
+		}
+
+		static Function create(String name, List<Formula> args) {
+			int n = args.size();
+			switch (name) {
+			case "abs":
+			case "sqr":
+			case "sqrt":
+			case "exp":
+			case "ln":
+			case "log":
+			case "ceil":
+			case "floor":
+				if (n != 1)
+					throw new IllegalArgumentException();
+				break;
+			case "pow":
+				if (n != 2)
+					throw new IllegalArgumentException();
+				break;
+			case "min":
+			case "max":
+				if (n == 0)
+					throw new IllegalArgumentException();
+				break;
+			default:
+				throw new IllegalArgumentException();
+			}
+			return new Function(name, args.toArray(new Formula[n]));
+		}
+
+		@Override
+		double eval(Values values) {
+			double a = args[0].eval(values);
+			switch (name) {
+			case "abs":
+				return Math.abs(a);
+			case "sqr":
+				return a * a;
+			case "sqrt":
+				return Math.sqrt(a);
+			case "exp":
+				return Math.exp(a);
+			case "ln":
+				return Math.log(a);
+			case "log":
+				return Math.log10(a);
+			case "ceil":
+				return Math.ceil(a);
+			case "floor":
+				return Math.floor(a);
+			case "pow":
+				return Math.pow(a, args[1].eval(values));
+			case "min":
+				for (int i = 1; i < args.length; i++)
+					a = Math.min(a, args[i].eval(values));
+				return a;
+			default:
+				for (int i = 1; i < args.length; i++)
+					a = Math.max(a, args[i].eval(values));
+				return a;
+			}
+		}
+	}
+}
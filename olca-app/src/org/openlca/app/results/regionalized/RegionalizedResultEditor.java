@@ -1,7 +1,9 @@
 package org.openlca.app.results.regionalized;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.ui.IEditorInput;
@@ -158,16 +160,32 @@ public class RegionalizedResultEditor extends FormEditor implements IResultEdito
 		return Math.abs(result.impactFactors.get(row, col));
 	}
 
-	private Map<FlowDescriptor, Double> getImpactFactors(long categoryId,
-			long locationId) {
+	/**
+	 * When the factors of a category are requested for a location the first
+	 * time, the factors of that category are calculated for all locations of
+	 * the result in one run.
+	 */
+	private synchronized Map<FlowDescriptor, Double> getImpactFactors(
+			long categoryId, long locationId) {
 		LongPair id = new LongPair(categoryId, locationId);
 		Map<FlowDescriptor, Double> factors = factorsMap.get(id);
-		if (factors == null) {
-			ImpactCategory category = getImpactCategory(categoryId);
-			factors = factorCalculator.calculate(category, locationId);
-			factorsMap.put(id, factors);
+		if (factors != null)
+			return factors;
+		ImpactCategory category = getImpactCategory(categoryId);
+		Set<Long> locations = new HashSet<>();
+		locations.add(locationId);
+		for (ProcessDescriptor process : result.result.getProcessDescriptors()) {
+			Long location = process.getLocation();
+			if (location != null && !factorsMap.containsKey(
+					new LongPair(categoryId, location)))
+				locations.add(location);
 		}
-		return factors;
+		Map<Long, Map<FlowDescriptor, Double>> results = factorCalculator
+				.calculate(category, locations);
+		for (Map.Entry<Long, Map<FlowDescriptor, Double>> e : results
+				.entrySet())
+			factorsMap.put(new LongPair(categoryId, e.getKey()), e.getValue());
+		return factorsMap.get(id);
 	}
 
 	private ImpactCategory getImpactCategory(long id) {
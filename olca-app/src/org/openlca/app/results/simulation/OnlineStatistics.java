@@ -0,0 +1,338 @@
+package org.openlca.app.results.simulation;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Statistics of simulation results that are updated value by value, each in
+ * constant time and with a fixed-size state, so that they do not need to be
+ * recalculated from all values on a progress update: the mean and variance
+ * are calculated with Welford's algorithm, the percentiles with the P-square
+ * algorithm of Jain and Chlamtac, and the histogram is widened by merging
+ * neighbouring intervals when a value is out of its range. The values of the
+ * runs are still stored in the simulation result.
+ */
+public class OnlineStatistics {
+
+	static final int INTERVALS = 100;
+
+	/** The number of values that are collected before the histogram grows. */
+	private static final int BUFFER = 100;
+
+	private int count;
+	private double mean;
+	private double m2;
+	private double min = Double.NaN;
+	private double max = Double.NaN;
+
+	private double[] buffer = new double[BUFFER];
+	private int[] frequencies = new int[INTERVALS];
+	private double lower;
+	private double width;
+
+	private Quantile p5 = new Quantile(0.05);
+	private Quantile p50 = new Quantile(0.5);
+	private Quantile p95 = new Quantile(0.95);
+
+	/** Exact percentiles 5, 50, 95 if calculated from all values. */
+	private double[] exact;
+
+	/**
+	 * Creates the statistics of the given values. As all values are available
+	 * here, the percentiles are calculated exactly.
+	 */
+	public static OnlineStatistics of(List<Double> values) {
+		OnlineStatistics stats = new OnlineStatistics();
+		if (values == null)
+			return stats;
+		double[] sorted = new double[values.size()];
+		int i = 0;
+		for (Double value : values) {
+			double v = value == null ? 0 : value;
+			sorted[i++] = v;
+			stats.add(v);
+		}
+		stats.setExact(sorted);
+		return stats;
+	}
+
+	private void setExact(double[] values) {
+		if (values.length == 0)
+			return;
+		Arrays.sort(values);
+		exact = new double[] {
+				percentile(values, 0.05),
+				percentile(values, 0.5),
+				percentile(values, 0.95) };
+	}
+
+	private static double percentile(double[] sorted, double p) {
+		int idx = (int) Math.round(p * (sorted.length - 1));
+		return sorted[idx];
+	}
+
+	public void add(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			return;
+		count++;
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+		if (count == 1 || value < min)
+			min = value;
+		if (count == 1 || value > max)
+			max = value;
+		p5.add(value);
+		p50.add(value);
+		p95.add(value);
+		exact = null;
+		addToHistogram(value);
+	}
+
+	private void addToHistogram(double value) {
+		if (count <= BUFFER) {
+			buffer[count - 1] = value;
+			lower = min;
+			width = (max - min) / INTERVALS;
+			if (width == 0)
+				width = min == 0 ? 1e-9 : Math.abs(min) * 1e-9;
+			Arrays.fill(frequencies, 0);
+			for (int i = 0; i < count; i++)
+				frequencies[getInterval(buffer[i])]++;
+			if (count == BUFFER)
+				buffer = null;
+			return;
+		}
+		while (value < lower)
+			growDown();
+		while (value > lower + INTERVALS * width)
+			growUp();
+		frequencies[getInterval(value)]++;
+	}
+
+	/** Doubles the interval width and keeps the lower bound. */
+	private void growUp() {
+		for (int i = 0; i < INTERVALS / 2; i++)
+			frequencies[i] = frequencies[2 * i] + frequencies[2 * i + 1];
+		Arrays.fill(frequencies, INTERVALS / 2, INTERVALS, 0);
+		width *= 2;
+	}
+
+	/** Doubles the interval width and keeps the upper bound. */
+	private void growDown() {
+		double upper = lower + INTERVALS * width;
+		for (int i = INTERVALS - 1; i >= INTERVALS / 2; i--) {
+			int j = 2 * i - INTERVALS;
+			frequencies[i] = frequencies[j] + frequencies[j + 1];
+		}
+		Arrays.fill(frequencies, 0, INTERVALS / 2, 0);
+		width *= 2;
+		lower = upper - INTERVALS * width;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return count == 0 ? 0 : mean;
+	}
+
+	public double getStandardDeviation() {
+		if (count < 2)
+			return 0;
+		return Math.sqrt(m2 / (count - 1));
+	}
+
+	public double getMinimum() {
+		return count == 0 ? 0 : min;
+	}
+
+	public double getMaximum() {
+		return count == 0 ? 0 : max;
+	}
+
+	/** The lower bound of the histogram. */
+	public double getLowerBound() {
+		return count == 0 ? 0 : lower;
+	}
+
+	/** The upper bound of the histogram. */
+	public double getUpperBound() {
+		return count == 0 ? 0 : lower + INTERVALS * width;
+	}
+
+	/**
+	 * Returns the value of the given percentile; only the percentiles 5, 50,
+	 * and 95 are tracked.
+	 */
+	public double getPercentileValue(int percentile) {
+		if (percentile != 5 && percentile != 50 && percentile != 95)
+			throw new IllegalArgumentException("percentile " + percentile
+					+ " is not tracked; only 5, 50, and 95 are available");
+		if (count == 0)
+			return 0;
+		if (percentile == 5)
+			return exact != null ? exact[0] : p5.get();
+		if (percentile == 95)
+			return exact != null ? exact[2] : p95.get();
+		return getMedian();
+	}
+
+	public double getMedian() {
+		if (count == 0)
+			return 0;
+		return exact != null ? exact[1] : p50.get();
+	}
+
+	public int getAbsoluteFrequency(int interval) {
+		if (interval < 0 || interval >= INTERVALS)
+			return 0;
+		return frequencies[interval];
+	}
+
+	public int getMaximalAbsoluteFrequency() {
+		int max = 0;
+		for (int f : frequencies)
+			max = Math.max(max, f);
+		return max;
+	}
+
+	/** Returns the histogram interval of the given value. */
+	public int getInterval(double value) {
+		if (count == 0 || width == 0)
+			return 0;
+		int i = (int) ((value - lower) / width);
+		if (i < 0)
+			return 0;
+		if (i >= INTERVALS)
+			return INTERVALS - 1;
+		return i;
+	}
+
+	/**
+	 * Creates a copy of these statistics that can be passed to another thread.
+	 */
+	public OnlineStatistics copy() {
+		OnlineStatistics c = new OnlineStatistics();
+		c.count = count;
+		c.mean = mean;
+		c.m2 = m2;
+		c.min = min;
+		c.max = max;
+		c.buffer = buffer == null ? null : buffer.clone();
+		c.frequencies = frequencies.clone();
+		c.lower = lower;
+		c.width = width;
+		c.p5 = p5.copy();
+		c.p50 = p50.copy();
+		c.p95 = p95.copy();
+		c.exact = exact == null ? null : exact.clone();
+		return c;
+	}
+
+	/** The P-square estimator of a single quantile. */
+	private static class Quantile {
+
+		private final double p;
+		private int count;
+		private double[] q = new double[5];
+		private double[] n = new double[5];
+		private double[] np = new double[5];
+		private double[] dn = new double[5];
+
+		Quantile(double p) {
+			this.p = p;
+		}
+
+		void add(double x) {
+			if (count < 5) {
+				q[count++] = x;
+				if (count == 5)
+					init();
+				return;
+			}
+			count++;
+			int k;
+			if (x < q[0]) {
+				q[0] = x;
+				k = 0;
+			} else if (x < q[1])
+				k = 0;
+			else if (x < q[2])
+				k = 1;
+			else if (x < q[3])
+				k = 2;
+			else if (x <= q[4])
+				k = 3;
+			else {
+				q[4] = x;
+				k = 3;
+			}
+			for (int i = k + 1; i < 5; i++)
+				n[i]++;
+			for (int i = 0; i < 5; i++)
+				np[i] += dn[i];
+			for (int i = 1; i < 4; i++)
+				adjust(i);
+		}
+
+		private void init() {
+			Arrays.sort(q);
+			for (int i = 0; i < 5; i++)
+				n[i] = i;
+			np[0] = 0;
+			np[1] = 2 * p;
+			np[2] = 4 * p;
+			np[3] = 2 + 2 * p;
+			np[4] = 4;
+			dn[0] = 0;
+			dn[1] = p / 2;
+			dn[2] = p;
+			dn[3] = (1 + p) / 2;
+			dn[4] = 1;
+		}
+
+		private void adjust(int i) {
+			double d = np[i] - n[i];
+			if ((d < 1 || n[i + 1] - n[i] <= 1)
+					&& (d > -1 || n[i - 1] - n[i] >= -1))
+				return;
+			int s = d > 0 ? 1 : -1;
+			double qp = parabolic(i, s);
+			if (q[i - 1] < qp && qp < q[i + 1])
+				q[i] = qp;
+			else
+				q[i] = q[i] + s * (q[i + s] - q[i]) / (n[i + s] - n[i]);
+			n[i] += s;
+		}
+
+		private double parabolic(int i, int s) {
+			return q[i] + s / (n[i + 1] - n[i - 1])
+					* ((n[i] - n[i - 1] + s) * (q[i + 1] - q[i])
+							/ (n[i + 1] - n[i])
+							+ (n[i + 1] - n[i] - s) * (q[i] - q[i - 1])
+									/ (n[i] - n[i - 1]));
+		}
+
+		double get() {
+			if (count == 0)
+				return 0;
+			if (count >= 5)
+				return q[2];
+			double[] sorted = Arrays.copyOf(q, count);
+			Arrays.sort(sorted);
+			return sorted[(int) Math.round(p * (count - 1))];
+		}
+
+		Quantile copy() {
+			Quantile c = new Quantile(p);
+			c.count = count;
+			c.q = q.clone();
+			c.n = n.clone();
+			c.np = np.clone();
+			c.dn = dn.clone();
+			return c;
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package org.openlca.app.results.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.openlca.app.App;
+import org.openlca.app.db.Cache;
+import org.openlca.core.math.CalculationSetup;
+import org.openlca.core.math.Simulator;
+import org.openlca.core.model.descriptors.BaseDescriptor;
+import org.openlca.core.model.descriptors.FlowDescriptor;
+import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
+import org.openlca.core.results.SimulationResult;
+import org.openlca.core.results.SimulationResultProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the simulation on a pool of workers. Each worker creates its own
+ * simulator and thus has its own copy of the inventory matrices. The runs of
+ * the workers are copied in blocks into the result of the editor. The result
+ * of the editor is modified only while holding its monitor, which is also used
+ * by the simulation page to read it; the runs themselves are calculated without
+ * holding this monitor so that the page is not blocked by the simulation.
+ */
+class ParallelSimulation {
+
+	private Logger log = LoggerFactory.getLogger(getClass());
+	private final CalculationSetup setup;
+	private final SimulationResult target;
+	private final SimulationResultProvider<?> targetResult;
+	private final List<Worker> workers = new ArrayList<>();
+	private final AtomicInteger remaining;
+	private final AtomicInteger finished = new AtomicInteger(0);
+	private Tracker tracker;
+
+	/**
+	 * The minimum time in milliseconds between two copies of the runs of a
+	 * worker into the result of the editor.
+	 */
+	private long interval;
+
+	/**
+	 * @param editor
+	 *            the editor with the setup and the initialised simulator
+	 * @param runs
+	 *            the number of runs that should be executed
+	 * @param threads
+	 *            the number of workers that should be used
+	 */
+	ParallelSimulation(SimulationEditor editor, int runs, int threads) {
+		this.setup = editor.getSetup();
+		this.target = editor.getSimulator().getResult();
+		this.targetResult = new SimulationResultProvider<>(target,
+				Cache.getEntityCache());
+		this.remaining = new AtomicInteger(runs);
+		for (int i = 0; i < threads; i++)
+			workers.add(new Worker());
+	}
+
+	/**
+	 * Returns the number of threads that should be used for the simulation.
+	 * One core is kept free for the user interface.
+	 */
+	static int threads(boolean parallel, int runs) {
+		if (!parallel)
+			return 1;
+		int cores = Runtime.getRuntime().availableProcessors() - 1;
+		return Math.max(1, Math.min(cores, runs));
+	}
+
+	/**
+	 * Runs the simulation and blocks until all runs are finished or the
+	 * simulation was canceled. The given progress function is called in the
+	 * calling thread at most every `interval` milliseconds.
+	 */
+	void run(IProgressMonitor monitor, Runnable progress, long interval) {
+		this.interval = interval;
+		ExecutorService pool = Executors.newFixedThreadPool(workers.size());
+		for (Worker worker : workers)
+			pool.execute(() -> worker.run(monitor));
+		pool.shutdown();
+		try {
+			while (!pool.awaitTermination(interval, TimeUnit.MILLISECONDS)) {
+				if (progress != null)
+					progress.run();
+			}
+		} catch (InterruptedException e) {
+			log.error("simulation interrupted", e);
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		if (progress != null)
+			progress.run();
+		tracker = null;
+	}
+
+	int getFinishedRuns() {
+		return finished.get();
+	}
+
+	/**
+	 * Returns the statistics of the runs that were copied into the result of
+	 * the editor for the given flow or impact category. The statistics are
+	 * updated incrementally with the values that were added since the last
+	 * call. This method should be only called from the thread that runs the
+	 * simulation (e.g. in the progress function).
+	 */
+	OnlineStatistics getStatistics(BaseDescriptor d) {
+		if (d == null)
+			return null;
+		if (tracker == null || !tracker.isFor(d))
+			tracker = new Tracker(d);
+		synchronized (target) {
+			List<Double> values = values(targetResult, d);
+			for (int k = tracker.offset; k < values.size(); k++) {
+				Double v = values.get(k);
+				if (v != null)
+					tracker.stats.add(v);
+			}
+			tracker.offset = values.size();
+		}
+		return tracker.stats.copy();
+	}
+
+	private static List<Double> values(SimulationResultProvider<?> result,
+			BaseDescriptor d) {
+		if (d instanceof FlowDescriptor)
+			return result.getFlowResults((FlowDescriptor) d);
+		if (d instanceof ImpactCategoryDescriptor)
+			return result.getImpactResults((ImpactCategoryDescriptor) d);
+		return Collections.emptyList();
+	}
+
+	/** Collects the statistics of the selected flow or impact category. */
+	private class Tracker {
+
+		final BaseDescriptor descriptor;
+		final OnlineStatistics stats = new OnlineStatistics();
+		int offset;
+
+		Tracker(BaseDescriptor descriptor) {
+			this.descriptor = descriptor;
+		}
+
+		boolean isFor(BaseDescriptor d) {
+			return d.getClass() == descriptor.getClass()
+					&& d.getId() == descriptor.getId();
+		}
+	}
+
+	private class Worker {
+
+		private Simulator simulator;
+		private SimulationResultProvider<?> result;
+		private int runs;
+
+		/** The number of runs that were already copied to the editor. */
+		private int copied;
+		private long lastCopy;
+
+		void run(IProgressMonitor monitor) {
+			try {
+				simulator = new Simulator(setup, Cache.getMatrixCache(),
+						App.getSolver());
+				lastCopy = System.currentTimeMillis();
+				while (!monitor.isCanceled()
+						&& remaining.getAndDecrement() > 0) {
+					simulator.nextRun();
+					runs++;
+					if (result == null)
+						result = new SimulationResultProvider<>(
+								simulator.getResult(), Cache.getEntityCache());
+					finished.incrementAndGet();
+					if (System.currentTimeMillis() - lastCopy >= interval)
+						copyRuns();
+				}
+			} catch (Exception e) {
+				log.error("simulation worker failed", e);
+			} finally {
+				copyRuns();
+			}
+		}
+
+		/**
+		 * Appends the runs that were calculated since the last call to the
+		 * result of the editor. The values are collected from the result of
+		 * the worker first so that the monitor of the editor's result is only
+		 * held while they are appended.
+		 */
+		private void copyRuns() {
+			lastCopy = System.currentTimeMillis();
+			if (result == null || runs == copied)
+				return;
+			int n = runs - copied;
+			double[][] flows = new double[n][target.flowIndex.size()];
+			for (FlowDescriptor flow : result.getFlowDescriptors()) {
+				int idx = target.flowIndex.getIndex(flow.getId());
+				if (idx < 0)
+					continue;
+				List<Double> values = result.getFlowResults(flow);
+				for (int run = 0; run < n; run++)
+					flows[run][idx] = values.get(copied + run);
+			}
+			double[][] impacts = null;
+			if (result.hasImpactResults() && target.impactIndex != null) {
+				impacts = new double[n][target.impactIndex.size()];
+				for (ImpactCategoryDescriptor impact : result
+						.getImpactDescriptors()) {
+					int idx = target.impactIndex.getIndex(impact.getId());
+					if (idx < 0)
+						continue;
+					List<Double> values = result.getImpactResults(impact);
+					for (int run = 0; run < n; run++)
+						impacts[run][idx] = values.get(copied + run);
+				}
+			}
+			synchronized (target) {
+				for (double[] run : flows)
+					target.appendFlowResults(run);
+				if (impacts != null) {
+					for (double[] run : impacts)
+						target.appendImpactResults(run);
+				}
+			}
+			copied = runs;
+		}
+	}
+}
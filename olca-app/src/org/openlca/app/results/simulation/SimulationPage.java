@@ -1,5 +1,7 @@
 package org.openlca.app.results.simulation;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.swt.SWT;
@@ -28,6 +30,7 @@ import org.openlca.core.model.Exchange;
 import org.openlca.core.model.Flow;
 import org.openlca.core.model.ProductSystem;
 import org.openlca.core.model.Unit;
+import org.openlca.core.model.descriptors.BaseDescriptor;
 import org.openlca.core.model.descriptors.FlowDescriptor;
 import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
 import org.openlca.core.results.SimulationResult;
@@ -48,13 +51,24 @@ public class SimulationPage extends FormPage {
 	private Section progressSection;
 	private ScrolledForm form;
 	private SimulationResultProvider<?> result;
+	/**
+	 * The result of the simulator; it is modified by the simulation threads
+	 * while holding its monitor.
+	 */
+	private final SimulationResult simulationResult;
 	private ImpactCategoryViewer impactViewer;
 
+	/**
+	 * The selected flow or impact category; this is also read from the thread
+	 * that runs the simulation.
+	 */
+	private volatile BaseDescriptor selected;
+
 	public SimulationPage(SimulationEditor editor) {
 		super(editor, "SimulationPage", M.MonteCarloSimulation);
 		this.editor = editor;
-		SimulationResult result = editor.getSimulator().getResult();
-		this.result = new SimulationResultProvider<>(result,
+		simulationResult = editor.getSimulator().getResult();
+		this.result = new SimulationResultProvider<>(simulationResult,
 				Cache.getEntityCache());
 	}
 
@@ -136,6 +150,7 @@ public class SimulationPage extends FormPage {
 			initImpactCheckViewer(toolkit, composite);
 		statisticsCanvas = new StatisticsCanvas(body);
 		UI.gridData(statisticsCanvas, true, true).verticalIndent = 5;
+		updateSelection();
 	}
 
 	private void initImpactCheckViewer(FormToolkit toolkit, Composite section) {
@@ -165,27 +180,49 @@ public class SimulationPage extends FormPage {
 	private void updateSelection() {
 		if (result == null || statisticsCanvas == null)
 			return;
-		if (resultType == FLOW) {
-			FlowDescriptor flow = flowViewer.getSelected();
-			if (flow != null)
-				statisticsCanvas.setValues(result.getFlowResults(flow));
-		} else {
-			ImpactCategoryDescriptor cat = impactViewer.getSelected();
-			if (cat != null)
-				statisticsCanvas.setValues(result.getImpactResults(cat));
+		List<Double> values = null;
+		synchronized (simulationResult) {
+			if (resultType == FLOW) {
+				FlowDescriptor flow = flowViewer.getSelected();
+				selected = flow;
+				if (flow != null)
+					values = new ArrayList<>(result.getFlowResults(flow));
+			} else {
+				ImpactCategoryDescriptor cat = impactViewer.getSelected();
+				selected = cat;
+				if (cat != null)
+					values = new ArrayList<>(result.getImpactResults(cat));
+			}
 		}
+		if (values != null)
+			statisticsCanvas.setValues(values);
 	}
 
-	void updateProgress() {
-		if (result == null)
+	BaseDescriptor getSelected() {
+		return selected;
+	}
+
+	/**
+	 * Updates the progress bar and the statistics of the selected flow or
+	 * impact category.
+	 */
+	void updateProgress(int finishedRuns, OnlineStatistics stats) {
+		if (result == null || form.isDisposed())
 			return;
-		updateSelection();
-		progressBar.setSelection(progressBar.getSelection() + 1);
+		if (statisticsCanvas != null && stats != null)
+			statisticsCanvas.setStatistics(stats);
+		// one run was already done in the initialisation
+		progressBar.setSelection(finishedRuns + 1);
 	}
 
 	void progressDone(int numberOfIteration) {
 		// TODO: update count text etc.
 		// TODO: dispose the solver!
+		if (form.isDisposed())
+			return;
+		// replace the estimated percentiles of the progress updates with the
+		// exact values of all runs
+		updateSelection();
 		progressSection.setExpanded(false);
 		progressSection.pack();
 		progressSection.setVisible(false);
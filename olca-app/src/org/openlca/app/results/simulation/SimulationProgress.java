@@ -6,7 +6,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.eclipse.swt.widgets.Display;
 import org.openlca.app.M;
-import org.openlca.core.math.Simulator;
+import org.openlca.app.preferencepages.FeatureFlag;
 
 /**
  * The progress that runs the simulations. This should not be executed in the
@@ -14,15 +14,18 @@ import org.openlca.core.math.Simulator;
  */
 class SimulationProgress implements IRunnableWithProgress {
 
+	/** The minimum time in milliseconds between two updates of the page. */
+	private static final long UPDATE_INTERVAL = 250;
+
 	private Display display;
 	private int numberOfRuns;
-	private Simulator solver;
+	private SimulationEditor editor;
 	private SimulationPage page;
 
 	public SimulationProgress(Display display, SimulationEditor editor,
 			SimulationPage page) {
 		this.display = display;
-		this.solver = editor.getSimulator();
+		this.editor = editor;
 		this.numberOfRuns = editor.getSetup().numberOfRuns;
 		this.page = page;
 	}
@@ -32,35 +35,24 @@ class SimulationProgress implements IRunnableWithProgress {
 			InterruptedException {
 		// one simulation has already be done at init step, so only
 		// (numberOfRuns - 1) remains
-		monitor.beginTask(M.MonteCarloSimulation + "...", numberOfRuns - 1);
-		for (int i = 0; i < numberOfRuns - 1; i++) {
-			if (monitor.isCanceled()) {
-				doneAfter(i);
-				break;
-			}
-			doNextRun();
-		}
+		int runs = numberOfRuns - 1;
+		monitor.beginTask(M.MonteCarloSimulation + "...", runs);
+		int threads = ParallelSimulation.threads(
+				FeatureFlag.PARALLEL_SIMULATION.isEnabled(), runs);
+		ParallelSimulation simulation = new ParallelSimulation(editor, runs,
+				threads);
+		simulation.run(monitor, () -> update(simulation), UPDATE_INTERVAL);
 		monitor.done();
-		doneAfter(numberOfRuns - 1);
+		doneAfter(simulation.getFinishedRuns());
 	}
 
 	private void doneAfter(final int numberOfRuns) {
-		display.asyncExec(new Runnable() {
-			@Override
-			public void run() {
-				page.progressDone(numberOfRuns);
-			}
-		});
+		display.asyncExec(() -> page.progressDone(numberOfRuns));
 	}
 
-	private void doNextRun() throws InterruptedException {
-		solver.nextRun();
-		display.asyncExec(new Runnable() {
-			@Override
-			public void run() {
-				page.updateProgress();
-			}
-		});
-		Thread.sleep(10);
+	private void update(ParallelSimulation simulation) {
+		int runs = simulation.getFinishedRuns();
+		OnlineStatistics stats = simulation.getStatistics(page.getSelected());
+		display.asyncExec(() -> page.updateProgress(runs, stats));
 	}
 }
@@ -10,14 +10,13 @@ import org.eclipse.draw2d.Label;
 import org.eclipse.draw2d.LineBorder;
 import org.eclipse.draw2d.geometry.Point;
 import org.openlca.app.util.Numbers;
-import org.openlca.core.results.SimulationStatistics;
 
 /**
  * Draws a chart with a frequency distribution and statistic parameters.
  */
 public class StatisticFigure extends Figure {
 
-	private SimulationStatistics statistics = SimulationStatistics.empty();
+	private OnlineStatistics statistics = new OnlineStatistics();
 
 	private int marginLeft = 35;
 	private int marginBottom = 35;
@@ -58,7 +57,13 @@ public class StatisticFigure extends Figure {
 	}
 
 	public void setData(List<Double> values) {
-		statistics = new SimulationStatistics(values, 100);
+		setData(OnlineStatistics.of(values));
+	}
+
+	public void setData(OnlineStatistics statistics) {
+		if (statistics == null)
+			return;
+		this.statistics = statistics;
 		repaint();
 	}
 
@@ -77,13 +82,14 @@ public class StatisticFigure extends Figure {
 	private void paintBoxes(Graphics graphics, Point boxSize) {
 		graphics.setBackgroundColor(ColorConstants.lightGray);
 		int height = getSize().height - marginBottom;
-		for (int interval = 0; interval < 100; interval++) {
+		for (int interval = 0; interval < OnlineStatistics.INTERVALS; interval++) {
 			int frequency = statistics.getAbsoluteFrequency(interval);
 			for (int block = 1; block <= frequency; block++) {
 				int x = marginLeft + interval * boxSize.x;
 				int y = height - block * boxSize.y;
-				if (y >= marginTop)
-					drawBox(graphics, boxSize, new Point(x, y));
+				if (y < marginTop)
+					break;
+				drawBox(graphics, boxSize, new Point(x, y));
 			}
 		}
 		graphics.setBackgroundColor(ColorConstants.white);
@@ -109,9 +115,9 @@ public class StatisticFigure extends Figure {
 				getSize().width - marginRight, getSize().height - marginBottom);
 		graphics.drawLine(marginLeft, marginTop, marginLeft, getSize().height
 				- marginBottom);
-		graphics.drawText(Numbers.format(statistics.getMinimum(), 3),
+		graphics.drawText(Numbers.format(statistics.getLowerBound(), 3),
 				marginLeft, getSize().height - marginBottom + 10);
-		graphics.drawText(Numbers.format(statistics.getMaximum(), 3),
+		graphics.drawText(Numbers.format(statistics.getUpperBound(), 3),
 				getSize().width - marginRight - 40, getSize().height
 						- marginBottom + 10);
 		graphics.drawText(
@@ -124,12 +130,14 @@ public class StatisticFigure extends Figure {
 		Point size = new Point();
 		int width = getSize().width - marginLeft - marginRight;
 		int height = getSize().height - marginTop - marginBottom;
-		int intervalCount = 100;
+		int intervalCount = OnlineStatistics.INTERVALS;
 		int maxFreq = statistics.getMaximalAbsoluteFrequency();
 		if (maxFreq > height) {
 			double factor = (double) maxFreq / (double) height;
 			maxFreq /= factor;
 		}
+		if (maxFreq < 1)
+			maxFreq = 1;
 		size.x = width / intervalCount;
 		size.y = height / maxFreq;
 		if (size.x < 1)
@@ -21,4 +21,8 @@ public class StatisticsCanvas extends FigureCanvas {
 	public void setValues(List<Double> values) {
 		plot.setData(values);
 	}
+
+	public void setStatistics(OnlineStatistics statistics) {
+		plot.setData(statistics);
+	}
 }
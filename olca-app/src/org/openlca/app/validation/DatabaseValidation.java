@@ -10,10 +10,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.openlca.app.db.Database;
-import org.openlca.app.util.Labels;
 import org.openlca.core.database.Daos;
 import org.openlca.core.database.FlowDao;
 import org.openlca.core.database.IDatabase;
@@ -30,9 +35,15 @@ import org.openlca.core.model.Exchange;
 import org.openlca.core.model.FlowPropertyFactor;
 import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class DatabaseValidation {
 
+	/** The maximum number of model types that are validated in parallel. */
+	private static final int MAX_THREADS = 4;
+
+	private Logger log = LoggerFactory.getLogger(getClass());
 	private IProgressMonitor monitor;
 	private static final List<Class<? extends AbstractEntity>> nesting = new ArrayList<>();
 
@@ -47,10 +58,31 @@ public class DatabaseValidation {
 		return e;
 	}
 
+	/**
+	 * Drops the state of the last validation of the given database; must be
+	 * called when the database is closed.
+	 */
+	public static void close(IDatabase db) {
+		ValidationState.close(db);
+	}
+
 	public List<ModelStatus> evaluateAll() {
+		List<ModelStatus> result = new ArrayList<>();
+		evaluateAll(result::addAll);
+		return result;
+	}
+
+	/**
+	 * Validates all models of the database. The model types are validated in
+	 * parallel and the results of a model type are passed to the given
+	 * consumer as soon as they are available. The consumer is called in the
+	 * thread that called this method.
+	 */
+	public void evaluateAll(Consumer<List<ModelStatus>> consumer) {
 		IDatabase db = Database.get();
 		if (db == null)
-			return Collections.emptyList();
+			return;
+		ValidationState state = ValidationState.start(db);
 		Map<ModelType, Set<Long>> toEval = new HashMap<>();
 		if (monitor != null)
 			monitor.beginTask(M.Preparing, IProgressMonitor.UNKNOWN);
@@ -64,19 +96,71 @@ public class DatabaseValidation {
 				continue;
 			toEval.put(type, ids);
 		}
+		run(toEval, state, consumer);
+	}
+
+	/**
+	 * Validates only the models that were changed since the last validation
+	 * and the models that had problems in the last validation. If there was
+	 * no complete validation of the database before or if models were deleted
+	 * in the meantime (which could break references in any other model), all
+	 * models are validated. Only the models with problems are passed to the
+	 * consumer.
+	 */
+	public void evaluateChanged(Consumer<List<ModelStatus>> consumer) {
+		IDatabase db = Database.get();
+		if (db == null)
+			return;
+		ValidationState state = ValidationState.get(db);
+		if (state == null || !state.canUpdate()) {
+			evaluateAll((list) -> consumer.accept(ValidationState
+					.withProblems(list)));
+			return;
+		}
+		Map<ModelType, Set<Long>> toEval = state.restart();
+		run(toEval, state, (list) -> consumer.accept(ValidationState
+				.withProblems(list)));
+	}
+
+	private void run(Map<ModelType, Set<Long>> toEval, ValidationState state,
+			Consumer<List<ModelStatus>> consumer) {
 		if (monitor != null && !monitor.isCanceled())
-			monitor.beginTask(M.ValidatingDatabase, toEval.size() * 3);
-		List<ModelStatus> result = new ArrayList<>();
+			monitor.beginTask(M.ValidatingDatabase, toEval.size());
+		int threads = Math.max(1, Math.min(MAX_THREADS, Math.min(
+				Runtime.getRuntime().availableProcessors(), toEval.size())));
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CompletionService<List<ModelStatus>> results = new ExecutorCompletionService<>(
+				pool);
 		for (ModelType type : toEval.keySet()) {
-			if (monitor != null && monitor.isCanceled())
-				continue;
-			if (monitor != null)
-				monitor.subTask(Labels.modelType(type));
-			result.addAll(eval(type, toEval.get(type)));
+			Set<Long> ids = toEval.get(type);
+			results.submit(() -> eval(type, ids));
+		}
+		pool.shutdown();
+		boolean complete = true;
+		for (int i = 0; i < toEval.size(); i++) {
+			try {
+				Future<List<ModelStatus>> next = results.take();
+				List<ModelStatus> statuses = next.get();
+				if (isCanceled()) {
+					complete = false;
+					continue;
+				}
+				state.update(statuses);
+				consumer.accept(statuses);
+				if (monitor != null)
+					monitor.worked(1);
+			} catch (Exception e) {
+				log.error("failed to validate models", e);
+				complete = false;
+			}
 		}
+		state.finish(complete && !isCanceled());
 		if (monitor != null)
 			monitor.done();
-		return result;
+	}
+
+	private boolean isCanceled() {
+		return monitor != null && monitor.isCanceled();
 	}
 
 	private Set<Long> getAll(ModelType type) {
@@ -118,30 +202,34 @@ public class DatabaseValidation {
 		return result;
 	}
 
+	/**
+	 * Validates the models with the given IDs. This method is called from the
+	 * worker threads and thus must not report progress to the monitor.
+	 */
 	private List<ModelStatus> eval(ModelType type, Set<Long> ids) {
 		List<ModelStatus> result = new ArrayList<>();
-		if (monitor != null && monitor.isCanceled())
+		if (isCanceled())
 			return result;
 		List<Reference> references = findReferences(type, ids);
-		if (monitor != null && monitor.isCanceled())
+		if (isCanceled())
 			return result;
-		if (monitor != null)
-			monitor.worked(2);
-		List<Reference> notExisting = checkExistence(references);
-		if (monitor != null && monitor.isCanceled())
+		Map<Long, List<Reference>> notExisting = groupByOwner(
+				checkExistence(references));
+		if (isCanceled())
 			return result;
 		Map<Long, Boolean> referenceSet = checkReferenceSet(type, ids);
-		if (monitor != null && monitor.isCanceled())
+		if (isCanceled())
 			return result;
 		for (Long id : ids) {
-			if (monitor != null && monitor.isCanceled())
-				continue;
-			boolean validReferenceSet = referenceSet == null || referenceSet.get(id);
-			ModelStatus status = new ModelStatus(type, id, filter(notExisting, id), validReferenceSet);
+			Boolean hasRef = referenceSet == null ? null : referenceSet.get(id);
+			boolean validReferenceSet = hasRef == null || hasRef;
+			List<Reference> missing = notExisting.get(id);
+			if (missing == null)
+				missing = Collections.emptyList();
+			ModelStatus status = new ModelStatus(type, id, missing,
+					validReferenceSet);
 			result.add(status);
 		}
-		if (monitor != null && !monitor.isCanceled())
-			monitor.worked(1);
 		return result;
 	}
 
@@ -185,12 +273,15 @@ public class DatabaseValidation {
 		return result;
 	}
 
-	private List<Reference> filter(List<Reference> references, long ownerId) {
-		List<Reference> filtered = new ArrayList<>();
-		for (Reference ref : references)
-			if (ref.ownerId == ownerId)
-				filtered.add(ref);
-		return filtered;
+	private Map<Long, List<Reference>> groupByOwner(List<Reference> references) {
+		Map<Long, List<Reference>> map = new HashMap<>();
+		for (Reference ref : references) {
+			List<Reference> list = map.get(ref.ownerId);
+			if (list == null)
+				map.put(ref.ownerId, list = new ArrayList<>());
+			list.add(ref);
+		}
+		return map;
 	}
 
 	private List<Reference> checkExistence(List<Reference> references) {
@@ -0,0 +1,164 @@
+package org.openlca.app.validation;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.IDatabaseListener;
+import org.openlca.core.model.CategorizedEntity;
+import org.openlca.core.model.ModelType;
+
+/**
+ * Stores the models with problems of the last validation of a database and
+ * tracks the models that were changed since then, so that a validation can
+ * be repeated for these models only.
+ */
+class ValidationState implements IDatabaseListener {
+
+	private static ValidationState instance;
+
+	private final IDatabase db;
+	private final Map<ModelType, Set<Long>> changed = new EnumMap<>(
+			ModelType.class);
+	private final Map<ModelType, Map<Long, ModelStatus>> problems = new EnumMap<>(
+			ModelType.class);
+	private boolean deleted;
+	private boolean complete;
+
+	private ValidationState(IDatabase db) {
+		this.db = db;
+	}
+
+	/**
+	 * Returns the state of the last validation of the given database or null
+	 * if it was not validated yet.
+	 */
+	static synchronized ValidationState get(IDatabase db) {
+		if (instance == null || instance.db != db)
+			return null;
+		return instance;
+	}
+
+	/** Resets the state for a complete validation of the given database. */
+	static synchronized ValidationState start(IDatabase db) {
+		if (instance == null || instance.db != db) {
+			if (instance != null)
+				instance.db.removeListener(instance);
+			instance = new ValidationState(db);
+			db.addListener(instance);
+		}
+		instance.reset();
+		return instance;
+	}
+
+	/**
+	 * Removes the state of the given database and its listener; called when
+	 * the database is closed.
+	 */
+	static synchronized void close(IDatabase db) {
+		if (instance == null || instance.db != db)
+			return;
+		db.removeListener(instance);
+		instance = null;
+	}
+
+	private synchronized void reset() {
+		changed.clear();
+		problems.clear();
+		deleted = false;
+		complete = false;
+	}
+
+	/**
+	 * Returns true if the state can be updated by validating only the changed
+	 * models and the models with problems.
+	 */
+	synchronized boolean canUpdate() {
+		return complete && !deleted;
+	}
+
+	/**
+	 * Returns the models that need to be validated again: the models that were
+	 * changed and the models that had problems in the last validation. The
+	 * tracked changes are cleared.
+	 */
+	synchronized Map<ModelType, Set<Long>> restart() {
+		Map<ModelType, Set<Long>> toEval = new HashMap<>();
+		for (ModelType type : problems.keySet())
+			ids(toEval, type).addAll(problems.get(type).keySet());
+		for (ModelType type : changed.keySet())
+			ids(toEval, type).addAll(changed.get(type));
+		changed.clear();
+		complete = false;
+		return toEval;
+	}
+
+	private Set<Long> ids(Map<ModelType, Set<Long>> map, ModelType type) {
+		Set<Long> ids = map.get(type);
+		if (ids == null)
+			map.put(type, ids = new HashSet<>());
+		return ids;
+	}
+
+	synchronized void update(List<ModelStatus> statuses) {
+		for (ModelStatus status : statuses) {
+			Map<Long, ModelStatus> map = problems.get(status.modelType);
+			if (map == null)
+				problems.put(status.modelType, map = new HashMap<>());
+			if (hasProblems(status))
+				map.put(status.id, status);
+			else
+				map.remove(status.id);
+		}
+	}
+
+	synchronized void finish(boolean complete) {
+		this.complete = complete;
+	}
+
+	static boolean hasProblems(ModelStatus status) {
+		return !status.missing.isEmpty() || !status.validReferenceSet;
+	}
+
+	static List<ModelStatus> withProblems(List<ModelStatus> statuses) {
+		List<ModelStatus> list = new ArrayList<>();
+		for (ModelStatus status : statuses)
+			if (hasProblems(status))
+				list.add(status);
+		return list;
+	}
+
+	@Override
+	public void modelInserted(Object object) {
+		track(object);
+	}
+
+	@Override
+	public void modelUpdated(Object object) {
+		track(object);
+	}
+
+	@Override
+	public synchronized void modelDeleted(Object object) {
+		if (object instanceof CategorizedEntity)
+			deleted = true;
+	}
+
+	private synchronized void track(Object object) {
+		if (!(object instanceof CategorizedEntity))
+			return;
+		CategorizedEntity entity = (CategorizedEntity) object;
+		ModelType type = ModelType.forModelClass(entity.getClass());
+		if (type == null || !type.isCategorized())
+			return;
+		Set<Long> ids = changed.get(type);
+		if (ids == null)
+			changed.put(type, ids = new HashSet<>());
+		ids.add(entity.getId());
+	}
+}
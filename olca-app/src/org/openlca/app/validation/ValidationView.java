@@ -1,10 +1,15 @@
 package org.openlca.app.validation;
 
+import static org.eclipse.core.runtime.Status.OK_STATUS;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.action.Action;
-import org.eclipse.jface.dialogs.ProgressMonitorDialog;
 import org.eclipse.jface.viewers.ITableLabelProvider;
 import org.eclipse.jface.viewers.ITreeContentProvider;
 import org.eclipse.jface.viewers.LabelProvider;
@@ -74,27 +79,73 @@ public class ValidationView extends ViewPart {
 			}
 		}, copy);
 		Trees.bindColumnWidths(viewer.getTree(), 0.5, 0.5);
+		Action revalidate = Actions.create("Validate changed models",
+				Icon.REFRESH.descriptor(), ValidationView::revalidate);
+		getViewSite().getActionBars().getToolBarManager().add(revalidate);
 	}
 
+	/** Validates the complete database. */
 	public static void refresh() {
+		validate(false);
+	}
+
+	/**
+	 * Validates the models that were changed since the last validation and
+	 * the models that had problems.
+	 */
+	public static void revalidate() {
+		validate(true);
+	}
+
+	private static void validate(boolean onlyChanged) {
 		IWorkbenchPage page = PlatformUI.getWorkbench().getActiveWorkbenchWindow().getActivePage();
 		try {
 			ValidationView instance = (ValidationView) page.showView("views.problems");
+			instance.viewer.setInput(new Object[0]);
 			List<ModelStatus> result = new ArrayList<>();
-			ProgressMonitorDialog dialog = new ProgressMonitorDialog(UI.shell());
-			dialog.run(true, true, (monitor) -> {
-				DatabaseValidation validation = DatabaseValidation.with(monitor);
-				result.addAll(validation.evaluateAll());				
-			});
-			StatusList[] model = createModel(result);
-			instance.viewer.setInput(model);
-			if (model.length == 0)
-				Info.showBox(M.DatabaseValidationCompleteNoErrorsWereFound);
+			Job job = new Job(M.ValidatingDatabase) {
+				@Override
+				protected IStatus run(IProgressMonitor monitor) {
+					DatabaseValidation validation = DatabaseValidation.with(monitor);
+					Consumer<List<ModelStatus>> consumer = (statuses) -> {
+						synchronized (result) {
+							result.addAll(ValidationState.withProblems(statuses));
+						}
+						instance.update(result, false);
+					};
+					if (onlyChanged)
+						validation.evaluateChanged(consumer);
+					else
+						validation.evaluateAll(consumer);
+					instance.update(result, !monitor.isCanceled());
+					return OK_STATUS;
+				}
+			};
+			job.setUser(true);
+			job.schedule();
 		} catch (Exception e) {
 			log.error("Error validating database", e);
 		}
 	}
 
+	/**
+	 * Shows the current validation results in the view; this is called from
+	 * the validation job whenever new results are available.
+	 */
+	private void update(List<ModelStatus> result, boolean finished) {
+		StatusList[] model;
+		synchronized (result) {
+			model = createModel(result);
+		}
+		App.runInUI("Update validation results", () -> {
+			if (viewer.getControl().isDisposed())
+				return;
+			viewer.setInput(model);
+			if (finished && model.length == 0)
+				Info.showBox(M.DatabaseValidationCompleteNoErrorsWereFound);
+		});
+	}
+
 	public static void clear() {
 		if (instance == null)
 			return;